@@ -0,0 +1,341 @@
+package ru.naumen.bot;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.ResponseParameters;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Асинхронная отправка сообщений в Telegram.
+ * Сообщения складываются в очередь и отправляются отдельным потоком с ограничением
+ * количества одновременных запросов, поэтому обработка команд не ждёт сетевого ответа.
+ * Частота отправки ограничивается лимитами Telegram: общим и для каждого чата
+ */
+@Component
+public class MessageSender {
+
+    private final Logger log = LoggerFactory.getLogger(MessageSender.class);
+
+    /**
+     * Код ответа Telegram при превышении лимита запросов
+     */
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    /**
+     * Пауза после ответа 429, если Telegram не указал retry_after, в секундах
+     */
+    private static final int DEFAULT_RETRY_AFTER_SECONDS = 1;
+
+    /**
+     * Очередь сообщений на отправку
+     */
+    private final OutboundQueue outbox;
+
+    /**
+     * Разрешения на одновременные запросы к Telegram
+     */
+    private final Semaphore inFlight;
+
+    /**
+     * Максимальное количество попыток отправки одного сообщения
+     */
+    private final int maxAttempts;
+
+    /**
+     * Задержка перед первой повторной попыткой, удваивается с каждой попыткой
+     */
+    private final Duration retryBackoff;
+
+    private final LongAdder sentCount = new LongAdder();
+    private final LongAdder retriedCount = new LongAdder();
+    private final LongAdder throttledCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final AtomicLong lastLatencyNanos = new AtomicLong();
+
+    private volatile Transport transport;
+    private volatile Thread senderThread;
+
+    public MessageSender(@Value("${bot.sender.queue-capacity}") int queueCapacity,
+                         @Value("${bot.sender.max-in-flight}") int maxInFlight,
+                         @Value("${bot.sender.max-attempts}") int maxAttempts,
+                         @Value("${bot.sender.retry-backoff}") Duration retryBackoff,
+                         @Value("${bot.sender.global-rate}") double globalRate,
+                         @Value("${bot.sender.chat-rate}") double chatRate,
+                         @Value("${bot.sender.chat-burst}") double chatBurst) {
+        this.outbox = new OutboundQueue(queueCapacity, globalRate, chatRate, chatBurst, System::nanoTime);
+        this.inFlight = new Semaphore(maxInFlight);
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = retryBackoff;
+    }
+
+    /**
+     * Запускает поток отправки сообщений
+     *
+     * @param transport способ асинхронной отправки сообщения в Telegram
+     */
+    public synchronized void start(Transport transport) {
+        if (senderThread != null) {
+            return;
+        }
+        this.transport = transport;
+        senderThread = Thread.ofVirtual().name("message-sender").start(this::runSenderLoop);
+    }
+
+    /**
+     * Ставит сообщение в очередь на отправку
+     *
+     * @param message сообщение
+     * @return true, если сообщение поставлено в очередь; false, если очередь переполнена
+     */
+    public boolean send(SendMessage message) {
+        return enqueue(new OutboundMessage(message, 0));
+    }
+
+    /**
+     * Основной цикл: берёт сообщения из очереди и отправляет их, не дожидаясь ответа
+     */
+    private void runSenderLoop() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                OutboundMessage message = outbox.take();
+                inFlight.acquire();
+                sendAsync(message);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Отправляет сообщение асинхронно, после ответа освобождает разрешение и чат сообщения
+     *
+     * @param message сообщение
+     */
+    private void sendAsync(OutboundMessage message) {
+        long start = System.nanoTime();
+        CompletableFuture<Message> future;
+        try {
+            future = transport.send(message.sendMessage());
+        } catch (TelegramApiException | RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+
+        future.whenComplete((result, error) -> {
+            inFlight.release();
+            try {
+                if (error == null) {
+                    long latency = System.nanoTime() - start;
+                    lastLatencyNanos.set(latency);
+                    totalLatencyNanos.add(latency);
+                    sentCount.increment();
+                } else {
+                    onFailure(message, unwrap(error));
+                }
+            } finally {
+                // Повтор уже стоит в начале очереди чата, поэтому следующее сообщение его не обгонит
+                outbox.complete(message);
+            }
+        });
+    }
+
+    /**
+     * Возвращает сообщение в очередь для повторной отправки или сообщает об ошибке, если попытки закончились.
+     * При превышении лимита (429) чат приостанавливается на retry_after, попытка при этом не расходуется
+     *
+     * @param message сообщение
+     * @param error   ошибка отправки
+     */
+    private void onFailure(OutboundMessage message, Throwable error) {
+        if (isRateLimited(error)) {
+            throttledCount.increment();
+            outbox.retry(message, TimeUnit.SECONDS.toNanos(retryAfterSeconds(error)));
+            return;
+        }
+
+        int nextAttempt = message.attempt() + 1;
+        if (nextAttempt >= maxAttempts || !isRetryable(error)) {
+            failedCount.increment();
+            log.error("Message could not be sent", error);
+            return;
+        }
+
+        retriedCount.increment();
+        outbox.retry(new OutboundMessage(message.sendMessage(), nextAttempt),
+                retryBackoff.toNanos() << message.attempt());
+    }
+
+    /**
+     * Ставит сообщение в очередь, если в ней есть место
+     *
+     * @param message сообщение
+     */
+    private boolean enqueue(OutboundMessage message) {
+        if (outbox.offer(message)) {
+            return true;
+        }
+        droppedCount.increment();
+        log.warn("Сообщение в чат {} отброшено: очередь отправки переполнена", message.sendMessage().getChatId());
+        return false;
+    }
+
+    /**
+     * Проверяет, имеет ли смысл повторять запрос.
+     * Ошибки клиента повторять бесполезно
+     *
+     * @param error ошибка отправки
+     */
+    private boolean isRetryable(Throwable error) {
+        if (error instanceof TelegramApiRequestException requestException
+                && requestException.getErrorCode() != null) {
+            return requestException.getErrorCode() >= 500;
+        }
+        return true;
+    }
+
+    /**
+     * Проверяет, что Telegram отклонил запрос из-за превышения лимита
+     *
+     * @param error ошибка отправки
+     */
+    private boolean isRateLimited(Throwable error) {
+        return error instanceof TelegramApiRequestException requestException
+                && requestException.getErrorCode() != null
+                && requestException.getErrorCode() == TOO_MANY_REQUESTS;
+    }
+
+    /**
+     * Возвращает паузу, указанную Telegram в поле retry_after
+     *
+     * @param error ошибка 429
+     */
+    private int retryAfterSeconds(Throwable error) {
+        ResponseParameters parameters = ((TelegramApiRequestException) error).getParameters();
+        if (parameters == null || parameters.getRetryAfter() == null) {
+            return DEFAULT_RETRY_AFTER_SECONDS;
+        }
+        return parameters.getRetryAfter();
+    }
+
+    /**
+     * Достаёт исходную ошибку из обёртки CompletableFuture
+     */
+    private Throwable unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+
+    /**
+     * Количество сообщений в очереди на отправку
+     */
+    public int getQueueDepth() {
+        return outbox.size();
+    }
+
+    /**
+     * Количество чатов, в которые ожидают отправки сообщения
+     */
+    public int getWaitingChatCount() {
+        return outbox.chatCount();
+    }
+
+    /**
+     * Количество отправленных сообщений
+     */
+    public long getSentCount() {
+        return sentCount.sum();
+    }
+
+    /**
+     * Количество повторных попыток отправки
+     */
+    public long getRetriedCount() {
+        return retriedCount.sum();
+    }
+
+    /**
+     * Количество ответов 429 от Telegram
+     */
+    public long getThrottledCount() {
+        return throttledCount.sum();
+    }
+
+    /**
+     * Количество сообщений, которые не удалось отправить
+     */
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * Количество сообщений, отброшенных из-за переполнения очереди
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * Время отправки последнего сообщения
+     */
+    public Duration getLastSendLatency() {
+        return Duration.ofNanos(lastLatencyNanos.get());
+    }
+
+    /**
+     * Среднее время отправки сообщения
+     */
+    public Duration getAverageSendLatency() {
+        long sent = sentCount.sum();
+        return sent == 0 ? Duration.ZERO : Duration.ofNanos(totalLatencyNanos.sum() / sent);
+    }
+
+    /**
+     * Останавливает отправку сообщений
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (senderThread != null) {
+            senderThread.interrupt();
+        }
+    }
+
+    /**
+     * Асинхронная отправка сообщения в Telegram
+     */
+    @FunctionalInterface
+    public interface Transport {
+        /**
+         * Отправляет сообщение
+         *
+         * @param message сообщение
+         * @return результат отправки
+         */
+        CompletableFuture<Message> send(SendMessage message) throws TelegramApiException;
+    }
+
+    /**
+     * Сообщение в очереди на отправку
+     *
+     * @param sendMessage сообщение
+     * @param attempt     номер попытки, начиная с 0
+     */
+    record OutboundMessage(SendMessage sendMessage, int attempt) {
+    }
+}
@@ -0,0 +1,379 @@
+package ru.naumen.bot;
+
+import ru.naumen.bot.MessageSender.OutboundMessage;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Очередь исходящих сообщений с учётом лимитов Telegram.
+ * У каждого чата своя очередь и свой token bucket, кроме того действует общий token bucket.
+ * Чаты обслуживаются по кругу, поэтому чат с большим количеством сообщений не задерживает остальные.
+ * Лимит чата хранится отдельно от его очереди и переживает её опустошение: иначе каждое новое сообщение
+ * приходило бы в чат с полным запасом токенов.
+ * В каждый чат отправляется не больше одного сообщения одновременно: следующее сообщение чата выдаётся
+ * только после {@link #complete}, поэтому повтор после ошибки не меняет порядок сообщений в чате
+ */
+final class OutboundQueue {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    /**
+     * Очереди чатов, в которых есть сообщения
+     * ключ - id чата,
+     * значение - очередь чата
+     */
+    private final Map<String, ChatQueue> chats = new HashMap<>();
+
+    /**
+     * Порядок обхода чатов
+     */
+    private final ArrayDeque<ChatQueue> ready = new ArrayDeque<>();
+
+    /**
+     * Лимиты чатов в порядке последнего обращения
+     * ключ - id чата,
+     * значение - лимит чата
+     */
+    private final LinkedHashMap<String, ChatLimit> limits = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final TokenBucket globalBucket;
+
+    /**
+     * Допустимая частота сообщений в один чат, в секунду
+     */
+    private final double chatRate;
+
+    /**
+     * Допустимый всплеск сообщений в один чат
+     */
+    private final double chatBurst;
+
+    /**
+     * Максимальное количество сообщений в очереди
+     */
+    private final int capacity;
+
+    /**
+     * Источник текущего времени в наносекундах
+     */
+    private final LongSupplier ticker;
+
+    private int size;
+
+    OutboundQueue(int capacity, double globalRate, double chatRate, double chatBurst, LongSupplier ticker) {
+        this.capacity = capacity;
+        this.chatRate = chatRate;
+        this.chatBurst = chatBurst;
+        this.ticker = ticker;
+        this.globalBucket = new TokenBucket(globalRate, globalRate, ticker.getAsLong());
+    }
+
+    /**
+     * Добавляет сообщение в конец очереди его чата
+     *
+     * @param message сообщение
+     * @return false, если очередь переполнена
+     */
+    boolean offer(OutboundMessage message) {
+        lock.lock();
+        try {
+            if (size >= capacity) {
+                return false;
+            }
+            chatQueue(message).messages.addLast(message);
+            size++;
+            changed.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает сообщение в начало очереди его чата и приостанавливает отправку в этот чат.
+     * Лимит размера очереди не учитывается, чтобы повторная отправка не потерялась
+     *
+     * @param message    сообщение
+     * @param delayNanos пауза перед следующей отправкой в чат
+     */
+    void retry(OutboundMessage message, long delayNanos) {
+        lock.lock();
+        try {
+            ChatQueue chat = chatQueue(message);
+            chat.messages.addFirst(message);
+            chat.limit.blockFor(ticker.getAsLong(), delayNanos);
+            size++;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Отмечает, что отправка сообщения завершена, и разрешает отправку следующего сообщения его чата.
+     * Если сообщение нужно повторить, {@link #retry} вызывается до этого метода
+     *
+     * @param message отправленное сообщение
+     */
+    void complete(OutboundMessage message) {
+        lock.lock();
+        try {
+            ChatLimit limit = limits.get(message.sendMessage().getChatId());
+            if (limit != null) {
+                limit.sending = false;
+                changed.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Извлекает следующее сообщение, которое можно отправить сейчас
+     *
+     * @return сообщение или null, если отправлять сейчас нечего
+     */
+    OutboundMessage poll() {
+        lock.lock();
+        try {
+            return pollEligible(ticker.getAsLong(), new long[1]);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Извлекает следующее сообщение, ожидая, пока его можно будет отправить
+     *
+     * @return сообщение
+     */
+    OutboundMessage take() throws InterruptedException {
+        long[] waitNanos = new long[1];
+        lock.lock();
+        try {
+            while (true) {
+                OutboundMessage message = pollEligible(ticker.getAsLong(), waitNanos);
+                if (message != null) {
+                    return message;
+                }
+                if (waitNanos[0] == Long.MAX_VALUE) {
+                    changed.await();
+                } else {
+                    changed.await(waitNanos[0], TimeUnit.NANOSECONDS);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Обходит чаты по кругу, начиная со следующего после обслуженного последним
+     *
+     * @param nowNanos  текущее время
+     * @param waitNanos сюда записывается время до появления следующего сообщения,
+     *                  если сейчас отправлять нечего
+     */
+    private OutboundMessage pollEligible(long nowNanos, long[] waitNanos) {
+        waitNanos[0] = Long.MAX_VALUE;
+        if (size == 0) {
+            return null;
+        }
+
+        long globalWait = globalBucket.nanosUntilAvailable(nowNanos);
+        if (globalWait > 0) {
+            waitNanos[0] = globalWait;
+            return null;
+        }
+
+        int chatCount = ready.size();
+        for (int i = 0; i < chatCount; i++) {
+            ChatQueue chat = ready.pollFirst();
+            if (chat.limit.sending) {
+                // Чат освободится в complete, который разбудит ожидающих
+                ready.addLast(chat);
+                continue;
+            }
+            long chatWait = chat.limit.nanosUntilReady(nowNanos);
+            if (chatWait <= 0) {
+                globalBucket.consume(nowNanos);
+                // Обращение через карту переносит лимит в конец порядка вытеснения
+                limits.get(chat.chatId).bucket.consume(nowNanos);
+                chat.limit.sending = true;
+                OutboundMessage message = chat.messages.pollFirst();
+                size--;
+                if (chat.messages.isEmpty()) {
+                    chats.remove(chat.chatId);
+                } else {
+                    ready.addLast(chat);
+                }
+                evictIdle(nowNanos);
+                return message;
+            }
+            ready.addLast(chat);
+            waitNanos[0] = Math.min(waitNanos[0], chatWait);
+        }
+        return null;
+    }
+
+    /**
+     * Возвращает очередь чата сообщения, создавая её при необходимости
+     */
+    private ChatQueue chatQueue(OutboundMessage message) {
+        String chatId = message.sendMessage().getChatId();
+        ChatQueue chat = chats.get(chatId);
+        if (chat == null) {
+            long nowNanos = ticker.getAsLong();
+            evictIdle(nowNanos);
+            ChatLimit limit = limits.computeIfAbsent(chatId,
+                    id -> new ChatLimit(new TokenBucket(chatRate, chatBurst, nowNanos)));
+            chat = new ChatQueue(chatId, limit);
+            chats.put(chatId, chat);
+            ready.addLast(chat);
+        }
+        return chat;
+    }
+
+    /**
+     * Удаляет лимиты чатов, давно не получавших сообщений. Лимит удаляется, когда у чата нет очереди,
+     * сообщения в процессе отправки, отправка не приостановлена и запас токенов полон:
+     * новый лимит чата будет таким же.
+     * Проверяются только самые давние лимиты, пока не встретится нужный
+     */
+    private void evictIdle(long nowNanos) {
+        Iterator<Map.Entry<String, ChatLimit>> iterator = limits.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, ChatLimit> entry = iterator.next();
+            if (chats.containsKey(entry.getKey()) || !entry.getValue().isIdle(nowNanos)) {
+                return;
+            }
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Количество сообщений в очереди
+     */
+    int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Количество чатов, ожидающих отправки
+     */
+    int chatCount() {
+        lock.lock();
+        try {
+            return chats.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Количество чатов, лимиты которых хранятся
+     */
+    int limitCount() {
+        lock.lock();
+        try {
+            return limits.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Очередь сообщений одного чата
+     */
+    private static final class ChatQueue {
+        private final String chatId;
+        private final ChatLimit limit;
+        private final ArrayDeque<OutboundMessage> messages = new ArrayDeque<>();
+
+        private ChatQueue(String chatId, ChatLimit limit) {
+            this.chatId = chatId;
+            this.limit = limit;
+        }
+    }
+
+    /**
+     * Лимит отправки в один чат
+     */
+    private static final class ChatLimit {
+        private final TokenBucket bucket;
+
+        /**
+         * Отправляется ли сейчас сообщение в чат
+         */
+        private boolean sending;
+
+        /**
+         * Приостановлена ли отправка в чат
+         */
+        private boolean blocked;
+
+        /**
+         * Время, до которого отправка в чат приостановлена
+         */
+        private long blockedUntilNanos;
+
+        private ChatLimit(TokenBucket bucket) {
+            this.bucket = bucket;
+        }
+
+        /**
+         * Время до момента, когда в чат можно отправить сообщение
+         *
+         * @param nowNanos текущее время
+         */
+        private long nanosUntilReady(long nowNanos) {
+            long wait = bucket.nanosUntilAvailable(nowNanos);
+            if (blocked) {
+                long blockedWait = blockedUntilNanos - nowNanos;
+                if (blockedWait > 0) {
+                    wait = Math.max(wait, blockedWait);
+                } else {
+                    blocked = false;
+                }
+            }
+            return wait;
+        }
+
+        /**
+         * Можно ли забыть лимит: он не отличается от нового
+         *
+         * @param nowNanos текущее время
+         */
+        private boolean isIdle(long nowNanos) {
+            return !sending && nanosUntilReady(nowNanos) <= 0 && bucket.isFull(nowNanos);
+        }
+
+        /**
+         * Приостанавливает отправку в чат
+         *
+         * @param nowNanos   текущее время
+         * @param delayNanos длительность паузы
+         */
+        private void blockFor(long nowNanos, long delayNanos) {
+            long until = nowNanos + delayNanos;
+            if (!blocked || until - blockedUntilNanos > 0) {
+                blockedUntilNanos = until;
+                blocked = true;
+            }
+        }
+    }
+}
@@ -21,23 +21,46 @@ import ru.naumen.service.CommandService;
 @Component
 class TelegramBot extends TelegramLongPollingBot {
 
+    /**
+     * Режим получения обновлений через вебхук
+     */
+    static final String WEBHOOK_MODE = "webhook";
+
     private final Logger log = LoggerFactory.getLogger(TelegramBot.class);
     private final CommandService commandService;
+    private final UpdateDispatcher updateDispatcher;
+    private final MessageSender messageSender;
     private final String botName;
 
+    /**
+     * Режим получения обновлений: polling или webhook
+     */
+    private final String botMode;
+
     public TelegramBot(@Value("${bot.token}") String botToken,
                        @Value("${bot.name}") String botName,
-                       CommandService commandService) {
+                       @Value("${bot.mode}") String botMode,
+                       CommandService commandService,
+                       UpdateDispatcher updateDispatcher,
+                       MessageSender messageSender) {
         super(botToken);
         this.commandService = commandService;
+        this.updateDispatcher = updateDispatcher;
+        this.messageSender = messageSender;
         this.botName = botName;
+        this.botMode = botMode;
     }
 
     /**
-     * Метод инициализации бота, выполняется после поднятия контекста
+     * Метод инициализации бота, выполняется после поднятия контекста.
+     * В режиме вебхука обновления принимает {@link WebhookController}, поэтому сессия long polling не создаётся
      */
     @EventListener({ContextRefreshedEvent.class})
     public void initialize() {
+        messageSender.start(this::executeAsync);
+        if (WEBHOOK_MODE.equals(botMode)) {
+            return;
+        }
         try {
             TelegramBotsApi telegramBotsApi = new TelegramBotsApi(DefaultBotSession.class);
             telegramBotsApi.registerBot(this);
@@ -48,7 +71,8 @@ class TelegramBot extends TelegramLongPollingBot {
     }
 
     /**
-     * Обрабатывает полученное сообщение
+     * Обрабатывает полученное сообщение.
+     * Сама обработка выполняется диспетчером, чтобы не блокировать поток получения обновлений
      *
      * @param update обновление
      */
@@ -59,13 +83,15 @@ class TelegramBot extends TelegramLongPollingBot {
             String chatId = update.getMessage().getChatId().toString();
             long userId = update.getMessage().getFrom().getId();
 
-            Response response = commandService.performCommand(messageText, userId);
-            sendMessageToChat(response, chatId);
+            updateDispatcher.dispatch(userId, () -> {
+                Response response = commandService.performCommand(messageText, userId);
+                sendMessageToChat(response, chatId);
+            });
         }
     }
 
     /**
-     * Отправляет сообщение в чат
+     * Ставит сообщение в очередь на отправку в чат
      *
      * @param response - сообщение
      * @param id       - id чата, куда отправляем сообщение
@@ -83,11 +109,7 @@ class TelegramBot extends TelegramLongPollingBot {
 
         replyKeyboardMarkup.setKeyboard(response.keyboard().keyboardRows());
 
-        try {
-            execute(tgMessage);
-        } catch (TelegramApiException e) {
-            log.error("Message could not be sent", e);
-        }
+        messageSender.send(tgMessage);
     }
 
     @Override
@@ -0,0 +1,77 @@
+package ru.naumen.bot;
+
+/**
+ * Ограничитель частоты запросов по алгоритму token bucket.
+ * Не потокобезопасен, синхронизация выполняется владельцем
+ */
+final class TokenBucket {
+
+    /**
+     * Максимальное количество накопленных токенов (допустимый всплеск)
+     */
+    private final double capacity;
+
+    /**
+     * Скорость пополнения, токенов в наносекунду
+     */
+    private final double tokensPerNano;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * @param ratePerSecond скорость пополнения, токенов в секунду
+     * @param capacity      максимальное количество накопленных токенов
+     * @param nowNanos      текущее время
+     */
+    TokenBucket(double ratePerSecond, double capacity, long nowNanos) {
+        this.capacity = capacity;
+        this.tokensPerNano = ratePerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.lastRefillNanos = nowNanos;
+    }
+
+    /**
+     * Время до появления свободного токена
+     *
+     * @param nowNanos текущее время
+     * @return 0, если токен есть сейчас
+     */
+    long nanosUntilAvailable(long nowNanos) {
+        refill(nowNanos);
+        if (tokens >= 1) {
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    /**
+     * Забирает токен. Перед вызовом нужно убедиться, что токен есть
+     *
+     * @param nowNanos текущее время
+     */
+    void consume(long nowNanos) {
+        refill(nowNanos);
+        tokens -= 1;
+    }
+
+    /**
+     * Накоплен ли полный запас токенов: такой bucket не отличается от нового
+     *
+     * @param nowNanos текущее время
+     */
+    boolean isFull(long nowNanos) {
+        refill(nowNanos);
+        return tokens >= capacity;
+    }
+
+    /**
+     * Пополняет токены за прошедшее время
+     */
+    private void refill(long nowNanos) {
+        if (nowNanos - lastRefillNanos > 0) {
+            tokens = Math.min(capacity, tokens + (nowNanos - lastRefillNanos) * tokensPerNano);
+            lastRefillNanos = nowNanos;
+        }
+    }
+}
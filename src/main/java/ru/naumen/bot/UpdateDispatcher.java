@@ -0,0 +1,219 @@
+package ru.naumen.bot;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Диспетчер входящих обновлений.
+ * Обновления одного пользователя выполняются последовательно в порядке поступления,
+ * обновления разных пользователей - параллельно на виртуальных потоках
+ */
+@Component
+public class UpdateDispatcher {
+
+    private final Logger log = LoggerFactory.getLogger(UpdateDispatcher.class);
+
+    /**
+     * Время ожидания завершения задач при остановке, в секундах
+     */
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    /**
+     * Очереди задач пользователей
+     * ключ - пользователь,
+     * значение - очередь ожидающих задач.
+     * Очередь существует, пока для пользователя работает обработчик
+     */
+    private final Map<Long, Queue<Runnable>> lanes = new ConcurrentHashMap<>();
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Максимальное количество ожидающих задач одного пользователя
+     */
+    private final int laneCapacity;
+
+    /**
+     * Максимальное количество ожидающих задач всех пользователей
+     */
+    private final int maxPending;
+
+    /**
+     * Количество ожидающих задач всех пользователей
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final LongAdder processedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+
+    public UpdateDispatcher(@Value("${bot.dispatcher.lane-capacity}") int laneCapacity,
+                            @Value("${bot.dispatcher.max-pending}") int maxPending) {
+        if (laneCapacity < 1 || maxPending < 1) {
+            throw new IllegalArgumentException("Размеры очередей диспетчера должны быть положительными");
+        }
+        this.laneCapacity = laneCapacity;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Ставит задачу в очередь пользователя
+     *
+     * @param userId Id пользователя
+     * @param task   задача
+     * @return true, если задача принята; false, если очередь переполнена
+     */
+    public boolean dispatch(long userId, Runnable task) {
+        if (executor.isShutdown()) {
+            droppedCount.increment();
+            return false;
+        }
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            droppedCount.increment();
+            log.warn("Обновление пользователя {} отброшено: очередь диспетчера переполнена", userId);
+            return false;
+        }
+
+        boolean[] queued = new boolean[1];
+        boolean[] newLane = new boolean[1];
+        lanes.compute(userId, (id, lane) -> {
+            if (lane == null) {
+                lane = new ArrayDeque<>();
+                newLane[0] = true;
+            }
+            if (lane.size() < laneCapacity) {
+                lane.add(task);
+                queued[0] = true;
+            }
+            return lane;
+        });
+
+        if (!queued[0]) {
+            pending.decrementAndGet();
+            rejectedCount.increment();
+            log.warn("Обновление пользователя {} отклонено: очередь пользователя переполнена", userId);
+            return false;
+        }
+
+        if (newLane[0]) {
+            try {
+                executor.execute(() -> drain(userId));
+            } catch (RejectedExecutionException e) {
+                Queue<Runnable> lane = lanes.remove(userId);
+                int lost = lane == null ? 0 : lane.size();
+                pending.addAndGet(-lost);
+                droppedCount.add(lost);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Выполняет задачи пользователя, пока его очередь не опустеет
+     *
+     * @param userId Id пользователя
+     */
+    private void drain(long userId) {
+        Runnable task;
+        while ((task = pollNext(userId)) != null) {
+            pending.decrementAndGet();
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                failedCount.increment();
+                log.error("Ошибка при обработке обновления пользователя {}", userId, e);
+            }
+            processedCount.increment();
+        }
+    }
+
+    /**
+     * Извлекает следующую задачу пользователя.
+     * Пустая очередь удаляется атомарно, чтобы следующая задача запустила новый обработчик
+     *
+     * @param userId Id пользователя
+     * @return задача или null, если очередь пуста
+     */
+    private Runnable pollNext(long userId) {
+        Runnable[] next = new Runnable[1];
+        lanes.computeIfPresent(userId, (id, lane) -> {
+            next[0] = lane.poll();
+            return next[0] == null ? null : lane;
+        });
+        return next[0];
+    }
+
+    /**
+     * Количество задач, ожидающих выполнения
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * Количество пользователей, для которых сейчас работает обработчик
+     */
+    public int getActiveLaneCount() {
+        return lanes.size();
+    }
+
+    /**
+     * Количество выполненных задач
+     */
+    public long getProcessedCount() {
+        return processedCount.sum();
+    }
+
+    /**
+     * Количество задач, отклонённых из-за переполнения очереди пользователя
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * Количество задач, отброшенных из-за переполнения общей очереди или остановки диспетчера
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * Количество задач, завершившихся ошибкой
+     */
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * Останавливает диспетчер, дожидаясь выполнения принятых задач
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Не все обновления были обработаны до остановки, осталось {}", pending.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
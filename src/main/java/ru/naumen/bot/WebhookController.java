@@ -0,0 +1,70 @@
+package ru.naumen.bot;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Приём обновлений от Telegram через вебхук.
+ * Обновления передаются в тот же обработчик, что и при long polling
+ */
+@RestController
+@ConditionalOnProperty(name = "bot.mode", havingValue = TelegramBot.WEBHOOK_MODE)
+class WebhookController {
+
+    /**
+     * Заголовок, в котором Telegram передаёт секретный токен вебхука
+     */
+    static final String SECRET_TOKEN_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+
+    private final TelegramBot telegramBot;
+
+    /**
+     * Секретный токен, заданный при регистрации вебхука
+     */
+    private final byte[] secretToken;
+
+    WebhookController(TelegramBot telegramBot,
+                      @Value("${bot.webhook.secret-token}") String secretToken) {
+        this.telegramBot = telegramBot;
+        this.secretToken = secretToken.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Принимает обновление от Telegram
+     *
+     * @param token  секретный токен из заголовка запроса
+     * @param update обновление
+     * @return 200, если обновление принято; 401, если токен неверный
+     */
+    @PostMapping("${bot.webhook.path}")
+    public ResponseEntity<Void> onUpdate(@RequestHeader(name = SECRET_TOKEN_HEADER, required = false) String token,
+                                         @RequestBody Update update) {
+        if (!isValidToken(token)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        telegramBot.onUpdateReceived(update);
+        return ResponseEntity.ok().build();
+    }
+
+    /**
+     * Сравнивает токен из запроса с секретным за постоянное время
+     *
+     * @param token токен из запроса
+     * @return true, если токены совпадают
+     */
+    private boolean isValidToken(String token) {
+        return token != null
+                && MessageDigest.isEqual(secretToken, token.getBytes(StandardCharsets.UTF_8));
+    }
+}
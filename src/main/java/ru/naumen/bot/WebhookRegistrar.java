@@ -0,0 +1,92 @@
+package ru.naumen.bot;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+
+import java.util.Map;
+
+/**
+ * Регистрирует вебхук бота в Telegram после запуска приложения
+ */
+@Component
+@ConditionalOnProperty(name = "bot.mode", havingValue = TelegramBot.WEBHOOK_MODE)
+class WebhookRegistrar {
+
+    private final Logger log = LoggerFactory.getLogger(WebhookRegistrar.class);
+    private final RestClient restClient;
+    private final String botToken;
+
+    /**
+     * Публичный адрес, на который Telegram будет отправлять обновления
+     */
+    private final String webhookUrl;
+
+    /**
+     * Секретный токен, который Telegram передаёт в каждом запросе
+     */
+    private final String secretToken;
+
+    WebhookRegistrar(RestClient.Builder restClientBuilder,
+                     @Value("${bot.api-url}") String apiUrl,
+                     @Value("${bot.token}") String botToken,
+                     @Value("${bot.webhook.url}") String webhookUrl,
+                     @Value("${bot.webhook.path}") String webhookPath,
+                     @Value("${bot.webhook.secret-token}") String secretToken) {
+        this.restClient = restClientBuilder.baseUrl(apiUrl).build();
+        this.botToken = botToken;
+        this.webhookUrl = webhookUrl + webhookPath;
+        this.secretToken = secretToken;
+    }
+
+    /**
+     * Регистрирует вебхук, выполняется после запуска веб-сервера
+     */
+    @EventListener({ApplicationReadyEvent.class})
+    public void initialize() {
+        try {
+            registerWebhook();
+        } catch (RestClientException | IllegalStateException e) {
+            log.error("Error registering webhook", e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Отправляет в Telegram запрос setWebhook
+     *
+     * @throws IllegalStateException если Telegram отклонил запрос
+     */
+    void registerWebhook() {
+        TelegramApiResponse response = restClient.post()
+                .uri("/bot{token}/setWebhook", botToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of("url", webhookUrl, "secret_token", secretToken))
+                .retrieve()
+                .body(TelegramApiResponse.class);
+
+        if (response == null || !response.ok()) {
+            String description = response == null ? null : response.description();
+            throw new IllegalStateException("Telegram отклонил регистрацию вебхука: " + description);
+        }
+        log.info("Вебхук зарегистрирован: {}", webhookUrl);
+    }
+
+    /**
+     * Ответ Bot API
+     *
+     * @param ok          успешность запроса
+     * @param description описание ошибки
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record TelegramApiResponse(boolean ok, String description) {
+    }
+}
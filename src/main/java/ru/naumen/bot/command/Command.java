@@ -1,13 +1,15 @@
 package ru.naumen.bot.command;
 
+import java.util.List;
+
 /**
- * Команды, их подпись на клавиатуре
+ * Команды, их подпись на клавиатуре и альтернативные названия
  */
 public enum Command {
     /**
      * Команда генерации пароля
      */
-    GENERATE("/generate", "Генерировать"),
+    GENERATE("/generate", "Генерировать", "/gen"),
 
     /**
      * Команда редактирования пароля
@@ -17,7 +19,7 @@ public enum Command {
     /**
      * Команда удаления пароля
      */
-    DELETE("/del", "Удалить"),
+    DELETE("/del", "Удалить", "/delete"),
 
     /**
      * Команда сохранения пароля
@@ -37,7 +39,7 @@ public enum Command {
     /**
      * Команда запуска бота и вызова главного меню
      */
-    START("/start", "Меню"),
+    START("/start", "Меню", "/menu"),
 
     /**
      * Команда сортировки паролей
@@ -47,7 +49,22 @@ public enum Command {
     /**
      * Команда поиска паролей
      */
-    FIND("/find", "Искать");
+    FIND("/find", "Искать", "/search"),
+
+    /**
+     * Команда показа одного пароля
+     */
+    SHOW("/show", "Показать", "/reveal"),
+
+    /**
+     * Команда перехода на следующую страницу списка
+     */
+    NEXT_PAGE("/next", "Вперёд"),
+
+    /**
+     * Команда перехода на предыдущую страницу списка
+     */
+    PREVIOUS_PAGE("/prev", "Назад", "/previous");
 
     /**
      * Команда
@@ -59,6 +76,11 @@ public enum Command {
      */
     private final String keyboardLabel;
 
+    /**
+     * Альтернативные названия команды
+     */
+    private final List<String> aliases;
+
     /**
      * Получить команду
      */
@@ -74,13 +96,22 @@ public enum Command {
     }
 
     /**
-     * Конструктор для команды, ее подписи на клавиатуре
+     * Получить альтернативные названия команды
+     */
+    public List<String> getAliases() {
+        return aliases;
+    }
+
+    /**
+     * Конструктор для команды, ее подписи на клавиатуре и альтернативных названий
      *
      * @param command          Текст команды
      * @param keyboardLabel    Описание команды
+     * @param aliases          Альтернативные названия команды
      */
-    Command(String command, String keyboardLabel) {
+    Command(String command, String keyboardLabel, String... aliases) {
         this.command = command;
         this.keyboardLabel = keyboardLabel;
+        this.aliases = List.of(aliases);
     }
 }
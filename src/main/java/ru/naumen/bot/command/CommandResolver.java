@@ -0,0 +1,192 @@
+package ru.naumen.bot.command;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/**
+ * Поиск команды по тексту сообщения.
+ * Названия команд, подписи на клавиатуре и альтернативные названия собираются в префиксное дерево
+ * один раз при создании, поиск идёт по символам исходной строки без создания подстрок.
+ * В командах вида "/command" регистр не учитывается и допускается суффикс "@ИмяБота".
+ * Подписи на клавиатуре должны совпасть точно, чтобы ответ в диалоге, совпавший с подписью
+ * с точностью до регистра, не считался командой
+ */
+@Component
+public class CommandResolver {
+
+    /**
+     * Разделитель команды и имени бота
+     */
+    private static final char BOT_NAME_SEPARATOR = '@';
+
+    /**
+     * Префикс команд, к которым допускается имя бота
+     */
+    private static final String COMMAND_PREFIX = "/";
+
+    /**
+     * Имя бота
+     */
+    private final String botName;
+
+    /**
+     * Корень префиксного дерева
+     */
+    private final Node root = new Node();
+
+    public CommandResolver(@Value("${bot.name}") String botName) {
+        this.botName = botName;
+
+        for (Command command : Command.values()) {
+            Stream.concat(Stream.of(command.getCommand(), command.getKeyboardLabel()), command.getAliases().stream())
+                    .forEach(name -> add(name, command));
+        }
+    }
+
+    /**
+     * Поиск команды по строке целиком
+     *
+     * @param input строка ввода (например, "/edit" или "Изменить")
+     * @return команда или null, если строка не является командой
+     */
+    public Command resolve(CharSequence input) {
+        return resolve(input, 0, input.length());
+    }
+
+    /**
+     * Поиск команды по первому слову команды
+     *
+     * @param command слова команды
+     * @return команда или null, если первое слово не является командой
+     */
+    public Command resolve(CommandTokens command) {
+        return resolve(command.source(), command.start(0), command.end(0));
+    }
+
+    /**
+     * Поиск команды по части строки
+     *
+     * @param text  строка
+     * @param start начало команды в строке
+     * @param end   конец команды в строке (не включительно)
+     * @return команда или null, если часть строки не является командой
+     */
+    public Command resolve(CharSequence text, int start, int end) {
+        Node node = root;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == BOT_NAME_SEPARATOR && node.acceptsBotName) {
+                return isBotName(text, i + 1, end) ? node.command : null;
+            }
+            node = node.child(Character.toLowerCase(c));
+            if (node == null) {
+                return null;
+            }
+        }
+        return node.exactName == null || matchesExactly(text, start, node.exactName) ? node.command : null;
+    }
+
+    /**
+     * Добавляет название команды в дерево
+     *
+     * @param name    название
+     * @param command команда
+     */
+    private void add(String name, Command command) {
+        Node node = root;
+        for (int i = 0; i < name.length(); i++) {
+            node = node.getOrAddChild(Character.toLowerCase(name.charAt(i)));
+        }
+        if (node.command != null && node.command != command) {
+            throw new IllegalStateException(
+                    String.format("Название %s используется командами %s и %s", name, node.command, command));
+        }
+        node.command = command;
+        node.acceptsBotName = name.startsWith(COMMAND_PREFIX);
+        node.exactName = node.acceptsBotName ? null : name;
+    }
+
+    /**
+     * Проверяет, что часть строки с позиции start совпадает с названием с учётом регистра.
+     * Длина уже совпала при проходе по дереву
+     */
+    private static boolean matchesExactly(CharSequence text, int start, String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (text.charAt(start + i) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Проверяет, что часть строки совпадает с именем бота без учёта регистра
+     */
+    private boolean isBotName(CharSequence text, int start, int end) {
+        if (end - start != botName.length()) {
+            return false;
+        }
+        for (int i = 0; i < botName.length(); i++) {
+            if (Character.toLowerCase(text.charAt(start + i)) != Character.toLowerCase(botName.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Узел префиксного дерева
+     */
+    private static final class Node {
+
+        /**
+         * Символы переходов, в порядке добавления
+         */
+        private char[] keys = new char[0];
+
+        /**
+         * Дочерние узлы, в том же порядке, что и символы
+         */
+        private Node[] children = new Node[0];
+
+        /**
+         * Команда, название которой заканчивается в этом узле
+         */
+        private Command command;
+
+        /**
+         * Допускается ли после названия суффикс с именем бота
+         */
+        private boolean acceptsBotName;
+
+        /**
+         * Название, которое должно совпасть с учётом регистра, или null для команд вида "/command"
+         */
+        private String exactName;
+
+        Node child(char key) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node getOrAddChild(char key) {
+            Node child = child(key);
+            if (child != null) {
+                return child;
+            }
+            keys = Arrays.copyOf(keys, keys.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            child = new Node();
+            keys[keys.length - 1] = key;
+            children[children.length - 1] = child;
+            return child;
+        }
+    }
+}
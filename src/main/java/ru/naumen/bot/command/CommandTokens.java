@@ -0,0 +1,233 @@
+package ru.naumen.bot.command;
+
+import java.util.Arrays;
+
+/**
+ * Слова команды, разделённые пробелами.
+ * Хранит только границы слов в исходной строке, поэтому разбор не создаёт подстрок.
+ * Разбивает строку так же, как {@code String.split(" ")}: пустые слова между пробелами сохраняются,
+ * пустые слова в конце отбрасываются
+ */
+public final class CommandTokens {
+
+    private static final char SEPARATOR = ' ';
+
+    /**
+     * Начальное количество слов, под которое выделяется место
+     */
+    private static final int INITIAL_CAPACITY = 8;
+
+    /**
+     * Исходная строка
+     */
+    private CharSequence source = "";
+
+    /**
+     * Границы слов: начало слова i в bounds[2 * i], конец - в bounds[2 * i + 1]
+     */
+    private int[] bounds = new int[INITIAL_CAPACITY * 2];
+
+    /**
+     * Количество слов
+     */
+    private int count;
+
+    private CommandTokens() {
+    }
+
+    /**
+     * Разбирает строку на слова
+     *
+     * @param source строка
+     */
+    public static CommandTokens parse(CharSequence source) {
+        CommandTokens command = new CommandTokens();
+        command.split(source);
+        return command;
+    }
+
+    /**
+     * Создаёт команду из уже разделённых слов
+     *
+     * @param tokens слова команды
+     */
+    public static CommandTokens of(String... tokens) {
+        CommandTokens command = new CommandTokens();
+        command.source = String.join(String.valueOf(SEPARATOR), tokens);
+        int start = 0;
+        for (String token : tokens) {
+            command.add(start, start + token.length());
+            start += token.length() + 1;
+        }
+        return command;
+    }
+
+    /**
+     * Находит границы слов строки
+     */
+    private void split(CharSequence source) {
+        this.source = source;
+
+        int length = source.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            if (source.charAt(i) == SEPARATOR) {
+                add(start, i);
+                start = i + 1;
+            }
+        }
+
+        if (count == 0) {
+            // Разделителей нет - строка целиком является единственным словом
+            add(0, length);
+            return;
+        }
+
+        add(start, length);
+        while (count > 0 && bounds[2 * count - 1] == bounds[2 * count - 2]) {
+            count--;
+        }
+    }
+
+    /**
+     * Количество слов
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Исходная строка
+     */
+    public CharSequence source() {
+        return source;
+    }
+
+    /**
+     * Позиция начала слова в исходной строке
+     *
+     * @param index номер слова
+     */
+    public int start(int index) {
+        checkIndex(index);
+        return bounds[2 * index];
+    }
+
+    /**
+     * Позиция конца слова (не включительно) в исходной строке
+     *
+     * @param index номер слова
+     */
+    public int end(int index) {
+        checkIndex(index);
+        return bounds[2 * index + 1];
+    }
+
+    /**
+     * Возвращает слово как строку. Это единственный метод, создающий подстроку
+     *
+     * @param index номер слова
+     */
+    public String get(int index) {
+        return source.subSequence(start(index), end(index)).toString();
+    }
+
+    /**
+     * Сравнивает слово со строкой без создания подстроки
+     *
+     * @param index номер слова
+     * @param value строка для сравнения
+     * @return true, если слово совпадает со строкой
+     */
+    public boolean contentEquals(int index, CharSequence value) {
+        int start = start(index);
+        int length = end(index) - start;
+        if (length != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (source.charAt(start + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Разбирает слово как целое число без создания подстроки
+     *
+     * @param index номер слова
+     * @throws NumberFormatException если слово не является числом
+     */
+    public int parseInt(int index) {
+        return Integer.parseInt(source, start(index), end(index), 10);
+    }
+
+    /**
+     * Возвращает слова в виде массива строк, как {@code String.split(" ")}
+     */
+    public String[] toArray() {
+        String[] tokens = new String[count];
+        for (int i = 0; i < count; i++) {
+            tokens[i] = get(i);
+        }
+        return tokens;
+    }
+
+    /**
+     * Добавляет границы слова, при необходимости расширяя массив
+     */
+    private void add(int start, int end) {
+        if (2 * count == bounds.length) {
+            bounds = Arrays.copyOf(bounds, bounds.length * 2);
+        }
+        bounds[2 * count] = start;
+        bounds[2 * count + 1] = end;
+        count++;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Слово " + index + " отсутствует, всего слов: " + count);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        CommandTokens that = (CommandTokens) o;
+        if (count != that.count) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            int start = that.start(i);
+            if (!contentEquals(i, that.source.subSequence(start, that.end(i)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = 0; i < count; i++) {
+            int end = end(i);
+            for (int j = start(i); j < end; j++) {
+                hash = 31 * hash + source.charAt(j);
+            }
+            hash = 31 * hash + SEPARATOR;
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
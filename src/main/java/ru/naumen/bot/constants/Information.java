@@ -11,12 +11,23 @@ public class Information {
     - /generate [length] [complexity] – Генерировать пароль длиной [length] символов и сложностью [complexity] (1, 2 или 3, где 1 - простой, 3 - сложный);
     - /save [password] [description] – Сохранить пароль, задать описание;
     - /list – Показать список сохранённых паролей;
+    - /show [passwordID] – Показать сохранённый пароль с ID [passwordID];
     - /edit [passwordID] [length] [complexity] [description] – Изменяет пароль с ID [passwordID], генерирует новый под заданные параметры;
     - /del [passwordID] – Удалить сохранённый пароль с ID [passwordID];
     - /help - Справка.""";
 
     public static final String PASSWORD_LIST_FORMAT = "%d) Сайт: %s, Пароль: %s";
 
+    /**
+     * Строка списка со скрытым паролем
+     */
+    public static final String MASKED_PASSWORD_LIST_FORMAT = "%d) Сайт: %s, Пароль: ********";
+
+    /**
+     * Подсказка под списком со скрытыми паролями
+     */
+    public static final String SHOW_PASSWORD_HINT = "Показать пароль: /show [номер]";
+
     /**
      * Приватный конструктор, чтобы нельзя было создавать объекты
      */
@@ -10,6 +10,13 @@ public class Parameters {
     public static final String COMPLEXITY_HARD = "Сложный";
     public static final String BY_DATE = "Дате";
     public static final String BY_DESCRIPTION = "Описанию";
+    public static final String BY_CREATION = "Созданию";
+    public static final String BY_STRENGTH = "Надёжности";
+
+    /**
+     * Отметка сортировки по убыванию: кнопка "Дате" + DESCENDING сортирует от новых к старым
+     */
+    public static final String DESCENDING = "↓";
 
     /**
      * Приватный конструктор, чтобы нельзя было создавать объекты
@@ -0,0 +1,106 @@
+package ru.naumen.cache;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import jakarta.annotation.PreDestroy;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.time.Duration;
+import java.util.Map;
+import java.util.OptionalLong;
+
+/**
+ * Кеш второго уровня Hibernate и кеш запросов в памяти процесса: JCache поверх Caffeine.
+ * <p>
+ * Области создаются здесь с заданными размером и временем жизни, Hibernate получает готовый {@link CacheManager}.
+ * Области, которой нет в этом списке, Hibernate не создаёт сам, а завершает запуск ошибкой.
+ * <p>
+ * Кеш запросов хранит только uuid найденных записей, сами записи берутся из области сущностей,
+ * поэтому она живёт не меньше области запросов. Область отметок обновления таблиц не ограничена:
+ * по ней Hibernate отбрасывает результаты запросов, прочитанные до изменения таблицы,
+ * и потерянная отметка означала бы устаревший ответ
+ */
+@Component
+public class EntityCacheConfiguration implements HibernatePropertiesCustomizer {
+
+    /**
+     * Область пользователей
+     */
+    public static final String USERS_REGION = "users";
+
+    /**
+     * Область паролей
+     */
+    public static final String PASSWORDS_REGION = "passwords";
+
+    /**
+     * Область результатов запросов
+     */
+    public static final String QUERIES_REGION = RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME;
+
+    /**
+     * Область отметок времени последнего изменения таблиц
+     */
+    public static final String TIMESTAMPS_REGION = RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME;
+
+    private final CacheManager cacheManager;
+
+    public EntityCacheConfiguration(@Value("${bot.entity-cache.users.maximum-size}") long usersMaximumSize,
+                                    @Value("${bot.entity-cache.users.time-to-live}") Duration usersTimeToLive,
+                                    @Value("${bot.entity-cache.passwords.maximum-size}") long passwordsMaximumSize,
+                                    @Value("${bot.entity-cache.passwords.time-to-live}") Duration passwordsTimeToLive,
+                                    @Value("${bot.entity-cache.queries.maximum-size}") long queriesMaximumSize,
+                                    @Value("${bot.entity-cache.queries.time-to-live}") Duration queriesTimeToLive) {
+        if (queriesTimeToLive.compareTo(passwordsTimeToLive) > 0) {
+            throw new IllegalArgumentException("Результаты запросов не должны жить дольше паролей, на которые ссылаются");
+        }
+        cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName()).getCacheManager();
+        cacheManager.createCache(USERS_REGION, region(usersMaximumSize, usersTimeToLive));
+        cacheManager.createCache(PASSWORDS_REGION, region(passwordsMaximumSize, passwordsTimeToLive));
+        cacheManager.createCache(QUERIES_REGION, region(queriesMaximumSize, queriesTimeToLive));
+        cacheManager.createCache(TIMESTAMPS_REGION, region(OptionalLong.empty(), OptionalLong.empty()));
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+        hibernateProperties.put(AvailableSettings.USE_QUERY_CACHE, true);
+        hibernateProperties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+        hibernateProperties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+        hibernateProperties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        hibernateProperties.put(AvailableSettings.GENERATE_STATISTICS, true);
+    }
+
+    /**
+     * Закрывает кеши при остановке приложения
+     */
+    @PreDestroy
+    public void close() {
+        cacheManager.close();
+    }
+
+    private static CaffeineConfiguration<Object, Object> region(long maximumSize, Duration timeToLive) {
+        if (maximumSize < 1 || timeToLive.isNegative() || timeToLive.isZero()) {
+            throw new IllegalArgumentException("Размер области кеша и время жизни записей должны быть положительными");
+        }
+        return region(OptionalLong.of(maximumSize), OptionalLong.of(timeToLive.toNanos()));
+    }
+
+    private static CaffeineConfiguration<Object, Object> region(OptionalLong maximumSize,
+                                                                OptionalLong expireAfterWriteNanos) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(maximumSize);
+        configuration.setExpireAfterWrite(expireAfterWriteNanos);
+        // Hibernate кладёт в кеш неизменяемые разобранные записи, копировать их при каждом обращении незачем
+        configuration.setStoreByValue(false);
+        configuration.setStatisticsEnabled(true);
+        return configuration;
+    }
+}
@@ -0,0 +1,98 @@
+package ru.naumen.cache;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Периодически пишет в лог попадания и промахи областей кеша второго уровня и кеша запросов,
+ * чтобы по ним подбирать размеры и время жизни в {@code bot.entity-cache}.
+ * Счётчики накопительные с момента запуска
+ */
+@Component
+public class EntityCacheStatistics {
+
+    private final Logger log = LoggerFactory.getLogger(EntityCacheStatistics.class);
+
+    private final Statistics statistics;
+
+    private final Duration reportInterval;
+
+    private volatile Thread reportThread;
+
+    public EntityCacheStatistics(EntityManagerFactory entityManagerFactory,
+                                 @Value("${bot.entity-cache.report-interval}") Duration reportInterval) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        this.reportInterval = reportInterval;
+    }
+
+    /**
+     * Запускает вывод статистики после запуска приложения.
+     * Нулевой интервал отключает вывод
+     */
+    @EventListener({ApplicationReadyEvent.class})
+    public synchronized void start() {
+        if (reportInterval.isZero() || reportThread != null) {
+            return;
+        }
+        reportThread = Thread.ofVirtual().name("entity-cache-statistics").start(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Thread.sleep(reportInterval);
+                    log.info(report());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    /**
+     * Собирает статистику всех областей в одну строку
+     */
+    String report() {
+        return "Кеш сущностей: "
+                + region(EntityCacheConfiguration.USERS_REGION,
+                statistics.getDomainDataRegionStatistics(EntityCacheConfiguration.USERS_REGION))
+                + "; " + region(EntityCacheConfiguration.PASSWORDS_REGION,
+                statistics.getDomainDataRegionStatistics(EntityCacheConfiguration.PASSWORDS_REGION))
+                + "; " + region("queries",
+                statistics.getQueryRegionStatistics(EntityCacheConfiguration.QUERIES_REGION));
+    }
+
+    /**
+     * Останавливает вывод статистики
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (reportThread != null) {
+            reportThread.interrupt();
+        }
+    }
+
+    private static String region(String name, CacheRegionStatistics region) {
+        if (region == null) {
+            return name + " нет обращений";
+        }
+        long hits = region.getHitCount();
+        long misses = region.getMissCount();
+        return String.format(Locale.ROOT, "%s попаданий %d, промахов %d, доля попаданий %.1f%%, записей %d",
+                name, hits, misses, hitRatio(hits, misses), region.getElementCountInMemory());
+    }
+
+    private static double hitRatio(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? 0 : 100.0 * hits / total;
+    }
+}
@@ -0,0 +1,61 @@
+package ru.naumen.cache;
+
+import ru.naumen.service.SortOrder;
+
+import java.util.UUID;
+
+/**
+ * Положение пользователя в постраничном списке паролей.
+ * Страница задаётся ключами первой и последней записи, поэтому соседняя страница
+ * выбирается условием по ключу, а не смещением
+ *
+ * @param listing    просматриваемый список
+ * @param search     поисковый запрос для {@link Listing#FIND}, для остальных списков null
+ * @param order      порядок записей списка
+ * @param firstIndex номер первой записи страницы в списке, начиная с 1
+ * @param count      количество записей на странице
+ * @param first      ключ первой записи страницы
+ * @param last       ключ последней записи страницы
+ * @param hasNext    есть ли записи после страницы
+ */
+public record PageCursor(Listing listing, String search, SortOrder order, int firstIndex, int count,
+                         Key first, Key last, boolean hasNext) {
+
+    /**
+     * Есть ли записи перед страницей
+     */
+    public boolean hasPrevious() {
+        return firstIndex > 1;
+    }
+
+    /**
+     * Список паролей, который просматривает пользователь
+     */
+    public enum Listing {
+        /**
+         * Все пароли со скрытыми значениями, по времени создания
+         */
+        LIST,
+        /**
+         * Все пароли в порядке, который выбрал пользователь
+         */
+        SORTED,
+        /**
+         * Пароли, описание которых подходит под поисковый запрос, по описанию
+         */
+        FIND,
+        /**
+         * Пароли, описание которых похоже на поисковый запрос, по убыванию близости. Выводятся одной страницей
+         */
+        SIMILAR
+    }
+
+    /**
+     * Ключ записи в порядке списка
+     *
+     * @param value значение поля сортировки: описание, дата или время в формате ISO, оценка надёжности
+     * @param uuid  uuid пароля, различает записи с одинаковым значением
+     */
+    public record Key(String value, UUID uuid) {
+    }
+}
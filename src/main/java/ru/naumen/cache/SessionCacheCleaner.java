@@ -0,0 +1,60 @@
+package ru.naumen.cache;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Периодически удаляет из {@link UserStateCache} сессии, к которым не обращались дольше времени жизни.
+ * Без очистки просроченная сессия удаляется только при обращении к ней или когда её место нужно другой
+ */
+@Component
+public class SessionCacheCleaner {
+
+    private final UserStateCache userStateCache;
+
+    private final Duration cleanupInterval;
+
+    private volatile Thread cleanupThread;
+
+    public SessionCacheCleaner(UserStateCache userStateCache,
+                               @Value("${bot.session-cache.cleanup-interval}") Duration cleanupInterval) {
+        this.userStateCache = userStateCache;
+        this.cleanupInterval = cleanupInterval;
+    }
+
+    /**
+     * Запускает очистку после запуска приложения.
+     * Нулевой интервал отключает очистку
+     */
+    @EventListener({ApplicationReadyEvent.class})
+    public synchronized void start() {
+        if (cleanupInterval.isZero() || cleanupThread != null) {
+            return;
+        }
+        cleanupThread = Thread.ofVirtual().name("session-cache-cleaner").start(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Thread.sleep(cleanupInterval);
+                    userStateCache.cleanUp();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    /**
+     * Останавливает очистку
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (cleanupThread != null) {
+            cleanupThread.interrupt();
+        }
+    }
+}
@@ -0,0 +1,595 @@
+package ru.naumen.cache;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.naumen.model.State;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Сохранение сессий {@link UserStateCache} на диск, чтобы диалоги переживали перезапуск.
+ * Состоит из периодического снимка всех сессий и журнала изменений после снимка.
+ * <p>
+ * Потоки обработки запросов только ставят изменение в очередь.
+ * Журнал дописывает и снимки делает один фоновый поток: снимок копирует сегменты кеша по одному
+ * и записывается через отображённый в память файл, журнал при этом начинается заново.
+ * При запуске снимок читается отображением в память, затем применяются журналы с его поколения.
+ * Повторное применение изменения безопасно: запись журнала содержит всю сессию целиком.
+ * Вытеснение сессии из кеша записывается как её удаление.
+ * Каждая пачка записей сбрасывается на диск до перехода к следующей,
+ * обрезанная при аварии запись в конце журнала отбрасывается по контрольной сумме
+ */
+@Component
+public class SessionStore {
+
+    private final Logger log = LoggerFactory.getLogger(SessionStore.class);
+
+    static final String SNAPSHOT_FILE = "sessions.snapshot";
+    private static final String SNAPSHOT_TEMP_FILE = "sessions.snapshot.tmp";
+    private static final String LOG_PREFIX = "sessions-";
+    private static final String LOG_SUFFIX = ".log";
+
+    /**
+     * Сигнатура файлов хранилища ("NSES")
+     */
+    private static final int MAGIC = 0x4E534553;
+    private static final int VERSION = 1;
+
+    /**
+     * Размер заголовка снимка без таблицы состояний: сигнатура, версия, поколение журнала
+     */
+    private static final int SNAPSHOT_HEADER_SIZE = Integer.BYTES * 2 + Long.BYTES;
+
+    /**
+     * Сколько изменений записывается в журнал за один проход
+     */
+    private static final int BATCH_SIZE = 1024;
+
+    /**
+     * Пауза перед первым повтором неудавшегося снимка. Каждая следующая неудача удваивает паузу,
+     * но не больше интервала снимков
+     */
+    private static final long SNAPSHOT_RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Отметка в очереди, по которой фоновый поток завершается
+     */
+    private static final Change STOP = new Change(Long.MIN_VALUE, State.NONE, null);
+
+    private static final State[] STATES = State.values();
+
+    private final UserStateCache cache;
+    private final boolean enabled;
+    private final Path directory;
+    private final long snapshotIntervalNanos;
+
+    /**
+     * Изменения, ещё не записанные в журнал
+     */
+    private final LinkedBlockingQueue<Change> changes = new LinkedBlockingQueue<>();
+
+    private final LongAdder loggedCount = new LongAdder();
+    private final LongAdder snapshotCount = new LongAdder();
+
+    /**
+     * Поколение текущего журнала. Меняется только фоновым потоком
+     */
+    private long generation;
+    private FileChannel logChannel;
+    private DataOutputStream logOutput;
+    private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream();
+    private final DataOutputStream record = new DataOutputStream(recordBuffer);
+
+    private volatile Thread storeThread;
+
+    @Autowired
+    public SessionStore(UserStateCache cache,
+                        @Value("${bot.session-store.enabled}") boolean enabled,
+                        @Value("${bot.session-store.directory}") Path directory,
+                        @Value("${bot.session-store.snapshot-interval}") Duration snapshotInterval) {
+        this.cache = cache;
+        this.enabled = enabled;
+        this.directory = directory;
+        this.snapshotIntervalNanos = snapshotInterval.toNanos();
+    }
+
+    /**
+     * Восстанавливает сессии и запускает фоновый поток записи
+     */
+    @PostConstruct
+    public synchronized void start() {
+        if (!enabled || storeThread != null) {
+            return;
+        }
+        open();
+        storeThread = Thread.ofVirtual().name("session-store").start(this::runStoreLoop);
+    }
+
+    /**
+     * Восстанавливает сессии с диска, открывает новый журнал и подписывается на изменения кеша
+     */
+    void open() {
+        try {
+            Files.createDirectories(directory);
+            long started = System.nanoTime();
+            int restored = restore();
+            log.info("Восстановлено {} сессий за {} мс", restored,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            openLog(generation + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть хранилище сессий " + directory, e);
+        }
+        cache.setListener(this::onChange);
+    }
+
+    /**
+     * Ставит изменение сессии в очередь на запись. Вызывается кешем под блокировкой сегмента
+     */
+    private void onChange(long userId, State state, String[] params) {
+        changes.offer(new Change(userId, state, params));
+    }
+
+    /**
+     * Основной цикл: дописывает изменения в журнал и по расписанию делает снимок
+     */
+    private void runStoreLoop() {
+        long nextSnapshot = System.nanoTime() + snapshotIntervalNanos;
+        int snapshotFailures = 0;
+        List<Change> batch = new ArrayList<>(BATCH_SIZE);
+        boolean stopped = false;
+        while (!stopped) {
+            try {
+                Change first = changes.poll(Math.max(0, nextSnapshot - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    changes.drainTo(batch, BATCH_SIZE - 1);
+                    stopped = batch.removeIf(change -> change == STOP);
+                    appendToLog(batch);
+                    batch.clear();
+                }
+                if (System.nanoTime() - nextSnapshot >= 0) {
+                    boolean done = false;
+                    try {
+                        snapshot();
+                        done = true;
+                    } finally {
+                        // Неудачный снимок повторяется не сразу, иначе ошибка повторялась бы в цикле без пауз
+                        snapshotFailures = done ? 0 : snapshotFailures + 1;
+                        nextSnapshot = System.nanoTime() + snapshotDelay(snapshotFailures);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stopped = true;
+            } catch (IOException | RuntimeException e) {
+                log.error("Ошибка записи сессий на диск", e);
+                batch.clear();
+            }
+        }
+        close();
+    }
+
+    /**
+     * Пауза до следующего снимка
+     *
+     * @param failures сколько снимков подряд не удалось сделать
+     */
+    long snapshotDelay(int failures) {
+        if (failures == 0) {
+            return snapshotIntervalNanos;
+        }
+        long delay = SNAPSHOT_RETRY_NANOS << Math.min(failures - 1, 30);
+        return Math.min(delay, snapshotIntervalNanos);
+    }
+
+    /**
+     * Записывает в журнал все изменения из очереди
+     */
+    void flush() throws IOException {
+        List<Change> batch = new ArrayList<>();
+        changes.drainTo(batch);
+        batch.removeIf(change -> change == STOP);
+        appendToLog(batch);
+    }
+
+    /**
+     * Делает снимок всех сессий и удаляет журналы, которые он покрывает.
+     * Журнал начинается заново до копирования кеша: изменения, записанные в старый журнал,
+     * уже есть в кеше и попадут в снимок, а остальные будут в новом журнале
+     */
+    void snapshot() throws IOException {
+        long snapshotGeneration = generation + 1;
+        openLog(snapshotGeneration);
+
+        List<Entry> entries = new ArrayList<>(cache.size());
+        cache.forEachSession((userId, state, params, idleNanos) ->
+                entries.add(new Entry(userId, state, params, idleNanos)));
+        writeSnapshot(entries, snapshotGeneration);
+        deleteLogsBefore(snapshotGeneration);
+        snapshotCount.increment();
+    }
+
+    /**
+     * Останавливает фоновый поток. Оставшиеся изменения записываются, делается последний снимок
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        Thread thread = storeThread;
+        if (thread == null) {
+            return;
+        }
+        changes.offer(STOP);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        storeThread = null;
+    }
+
+    /**
+     * Записывает оставшиеся изменения, делает снимок и закрывает журнал
+     */
+    void close() {
+        cache.setListener(null);
+        try {
+            flush();
+            snapshot();
+            logOutput.close();
+        } catch (IOException e) {
+            log.error("Не удалось сохранить сессии при остановке", e);
+        }
+    }
+
+    /**
+     * Количество изменений, записанных в журнал
+     */
+    public long getLoggedCount() {
+        return loggedCount.sum();
+    }
+
+    /**
+     * Количество сделанных снимков
+     */
+    public long getSnapshotCount() {
+        return snapshotCount.sum();
+    }
+
+    /**
+     * Загружает снимок и применяет журналы начиная с его поколения
+     *
+     * @return количество сессий после восстановления
+     */
+    private int restore() throws IOException {
+        long snapshotGeneration = readSnapshot();
+        generation = snapshotGeneration;
+        for (Map.Entry<Long, Path> logFile : listLogs().entrySet()) {
+            if (logFile.getKey() >= snapshotGeneration) {
+                replayLog(logFile.getValue());
+            }
+            generation = Math.max(generation, logFile.getKey());
+        }
+        return cache.size();
+    }
+
+    /**
+     * Читает снимок в кеш
+     *
+     * @return поколение журнала, с которого нужно продолжить восстановление; 0, если снимка нет
+     */
+    private long readSnapshot() throws IOException {
+        Path file = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int bodyLength = buffer.limit() - Integer.BYTES;
+            if (bodyLength < SNAPSHOT_HEADER_SIZE
+                    || crc(buffer, 0, bodyLength) != buffer.getInt(bodyLength)
+                    || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                log.warn("Снимок сессий {} повреждён и будет пропущен", file);
+                return 0;
+            }
+            long snapshotGeneration = buffer.getLong();
+            State[] states = readStateTable(buffer);
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                long userId = buffer.getLong();
+                State state = states[buffer.get()];
+                long idleNanos = buffer.getLong();
+                String[] params = readParams(buffer);
+                if (state != null) {
+                    cache.restore(userId, state, params, idleNanos);
+                }
+            }
+            return snapshotGeneration;
+        }
+    }
+
+    /**
+     * Записывает снимок во временный файл и атомарно заменяет им прежний
+     */
+    private void writeSnapshot(List<Entry> entries, long snapshotGeneration) throws IOException {
+        byte[] stateTable = stateTable();
+        long size = SNAPSHOT_HEADER_SIZE + stateTable.length + Integer.BYTES + Integer.BYTES;
+        List<byte[][]> encodedParams = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            byte[][] params = encode(entry.params());
+            encodedParams.add(params);
+            size += Long.BYTES + Byte.BYTES + Long.BYTES + paramsSize(params);
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Снимок сессий больше 2 ГБ");
+        }
+
+        Path temp = directory.resolve(SNAPSHOT_TEMP_FILE);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(snapshotGeneration).put(stateTable);
+            buffer.putInt(entries.size());
+            for (int i = 0; i < entries.size(); i++) {
+                Entry entry = entries.get(i);
+                buffer.putLong(entry.userId())
+                        .put((byte) entry.state().ordinal())
+                        .putLong(entry.idleNanos());
+                putParams(buffer, encodedParams.get(i));
+            }
+            int bodyLength = buffer.position();
+            buffer.putInt(crc(buffer, 0, bodyLength));
+            buffer.force();
+        }
+        Files.move(temp, directory.resolve(SNAPSHOT_FILE),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Применяет записи журнала к кешу до конца файла или до первой повреждённой записи
+     */
+    private void replayLog(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            State[] states;
+            try {
+                if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                    log.warn("Журнал сессий {} имеет неизвестный формат и будет пропущен", file);
+                    return;
+                }
+                states = readStateTable(buffer);
+            } catch (BufferUnderflowException e) {
+                return;
+            }
+            while (buffer.remaining() >= Integer.BYTES) {
+                int length = buffer.getInt();
+                if (length < 0 || buffer.remaining() < length + Integer.BYTES) {
+                    log.warn("Журнал сессий {} обрезан, последняя запись пропущена", file);
+                    return;
+                }
+                int start = buffer.position();
+                if (crc(buffer, start, length) != buffer.getInt(start + length)) {
+                    log.warn("Журнал сессий {} повреждён, записи с позиции {} пропущены", file, start);
+                    return;
+                }
+                long userId = buffer.getLong();
+                State state = states[buffer.get()];
+                String[] params = readParams(buffer);
+                buffer.position(start + length + Integer.BYTES);
+                if (state != null) {
+                    cache.restore(userId, state, params, 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Закрывает текущий журнал и начинает новый
+     */
+    private void openLog(long newGeneration) throws IOException {
+        if (logOutput != null) {
+            logOutput.close();
+        }
+        Path file = directory.resolve(LOG_PREFIX + newGeneration + LOG_SUFFIX);
+        logChannel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        logOutput = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(logChannel)));
+        logOutput.writeInt(MAGIC);
+        logOutput.writeInt(VERSION);
+        logOutput.write(stateTable());
+        commitLog();
+        generation = newGeneration;
+    }
+
+    /**
+     * Сбрасывает записанное в журнал на диск: flush передаёт данные только операционной системе
+     */
+    private void commitLog() throws IOException {
+        logOutput.flush();
+        logChannel.force(false);
+    }
+
+    /**
+     * Дописывает изменения в журнал. Запись: длина, сессия, контрольная сумма
+     */
+    private void appendToLog(List<Change> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        CRC32 crc = new CRC32();
+        for (Change change : batch) {
+            recordBuffer.reset();
+            record.writeLong(change.userId());
+            record.writeByte(change.state().ordinal());
+            byte[][] params = encode(change.params());
+            record.writeShort(params.length);
+            for (byte[] param : params) {
+                record.writeInt(param.length);
+                record.write(param);
+            }
+            crc.reset();
+            crc.update(recordBuffer.toByteArray());
+            logOutput.writeInt(recordBuffer.size());
+            recordBuffer.writeTo(logOutput);
+            logOutput.writeInt((int) crc.getValue());
+        }
+        commitLog();
+        loggedCount.add(batch.size());
+    }
+
+    /**
+     * Журналы в каталоге по возрастанию поколения
+     */
+    private TreeMap<Long, Path> listLogs() throws IOException {
+        TreeMap<Long, Path> logs = new TreeMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                if (name.startsWith(LOG_PREFIX) && name.endsWith(LOG_SUFFIX)) {
+                    try {
+                        logs.put(Long.parseLong(name, LOG_PREFIX.length(),
+                                name.length() - LOG_SUFFIX.length(), 10), file);
+                    } catch (NumberFormatException e) {
+                        log.warn("Посторонний файл в каталоге сессий: {}", file);
+                    }
+                }
+            });
+        }
+        return logs;
+    }
+
+    private void deleteLogsBefore(long snapshotGeneration) throws IOException {
+        for (Path file : listLogs().headMap(snapshotGeneration).values()) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Таблица имён состояний: по ней порядковые номера из файла сопоставляются с текущим State,
+     * даже если состояния в перечислении переставят
+     */
+    private static byte[] stateTable() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(STATES.length);
+            for (State state : STATES) {
+                out.writeUTF(state.name());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Читает таблицу имён состояний. Неизвестным сейчас состояниям соответствует null
+     */
+    private static State[] readStateTable(ByteBuffer buffer) {
+        State[] states = new State[buffer.get() & 0xFF];
+        for (int i = 0; i < states.length; i++) {
+            byte[] name = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(name);
+            String stateName = new String(name, StandardCharsets.UTF_8);
+            for (State state : STATES) {
+                if (state.name().equals(stateName)) {
+                    states[i] = state;
+                }
+            }
+        }
+        return states;
+    }
+
+    private static byte[][] encode(String[] params) {
+        if (params == null) {
+            return new byte[0][];
+        }
+        byte[][] encoded = new byte[params.length][];
+        for (int i = 0; i < params.length; i++) {
+            encoded[i] = params[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return encoded;
+    }
+
+    private static long paramsSize(byte[][] params) {
+        long size = Short.BYTES;
+        for (byte[] param : params) {
+            size += Integer.BYTES + param.length;
+        }
+        return size;
+    }
+
+    private static void putParams(ByteBuffer buffer, byte[][] params) {
+        buffer.putShort((short) params.length);
+        for (byte[] param : params) {
+            buffer.putInt(param.length).put(param);
+        }
+    }
+
+    /**
+     * Читает параметры, пустой список возвращается как null
+     */
+    private static String[] readParams(ByteBuffer buffer) {
+        int count = buffer.getShort() & 0xFFFF;
+        if (count == 0) {
+            return null;
+        }
+        String[] params = new String[count];
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            params[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return params;
+    }
+
+    private static int crc(ByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Изменение сессии в очереди на запись
+     *
+     * @param params параметры или null
+     */
+    private record Change(long userId, State state, String[] params) {
+    }
+
+    /**
+     * Копия сессии для снимка
+     *
+     * @param params    параметры или null
+     * @param idleNanos сколько времени к сессии не обращались
+     */
+    private record Entry(long userId, State state, String[] params, long idleNanos) {
+    }
+}
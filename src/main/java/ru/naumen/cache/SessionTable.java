@@ -0,0 +1,314 @@
+package ru.naumen.cache;
+
+import ru.naumen.model.State;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Таблица сессий с ключом long и открытой адресацией.
+ * Данные сессии лежат в параллельных массивах: Id пользователя, порядковый номер состояния (byte),
+ * параметры, положение в списке паролей и время последнего обращения. Ключи не упаковываются в Long, на сессию не создаётся объект.
+ * Удаление сдвигает следующие записи назад, поэтому в таблице нет "надгробий".
+ * Не потокобезопасна, доступ синхронизирует владелец
+ */
+final class SessionTable {
+
+    /**
+     * Отметка свободной ячейки в массиве состояний. Состояния хранятся как ordinal + 1
+     */
+    private static final byte FREE = 0;
+
+    private static final int MIN_LENGTH = 16;
+
+    /**
+     * Количество занятых ячеек, из которых выбирается вытесняемая сессия
+     */
+    private static final int EVICTION_SAMPLE = 8;
+
+    private static final State[] STATES = State.values();
+
+    private long[] keys;
+    private byte[] states;
+    private String[][] params;
+    private PageCursor[] cursors;
+    private long[] accessTimes;
+
+    private int mask;
+    private int size;
+
+    /**
+     * Максимальное количество сессий
+     */
+    private final int maxSize;
+
+    /**
+     * Длина массивов, больше которой таблица не растёт
+     */
+    private final int maxLength;
+
+    /**
+     * Позиция, с которой начинается выбор следующей вытесняемой сессии
+     */
+    private int evictionHand;
+
+    SessionTable(int maxSize) {
+        this.maxSize = maxSize;
+        this.maxLength = tableLengthFor(maxSize);
+        allocate(Math.min(MIN_LENGTH, maxLength));
+    }
+
+    /**
+     * Ищет ячейку сессии
+     *
+     * @param key Id пользователя
+     * @return номер ячейки или -1, если сессии нет
+     */
+    int indexOf(long key) {
+        int slot = slotFor(key);
+        while (states[slot] != FREE) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Добавляет сессию в состоянии NONE без параметров. Сессии с таким ключом в таблице быть не должно
+     *
+     * @param key Id пользователя
+     * @param now текущее время
+     * @return номер ячейки
+     */
+    int insert(long key, long now) {
+        if (size >= maxSize) {
+            throw new IllegalStateException("Таблица сессий заполнена");
+        }
+        if (size + 1 > threshold() && keys.length < maxLength) {
+            resize(keys.length * 2);
+        }
+        int slot = slotFor(key);
+        while (states[slot] != FREE) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        states[slot] = encode(State.NONE);
+        params[slot] = null;
+        cursors[slot] = null;
+        accessTimes[slot] = now;
+        size++;
+        return slot;
+    }
+
+    /**
+     * Удаляет сессию, сдвигая назад записи, которые оказались за ней при вставке
+     *
+     * @param slot номер ячейки
+     */
+    void removeAt(int slot) {
+        int hole = slot;
+        int i = slot;
+        while (true) {
+            i = (i + 1) & mask;
+            if (states[i] == FREE) {
+                break;
+            }
+            int ideal = slotFor(keys[i]);
+            // Запись можно сдвинуть в дыру, если дыра лежит между её идеальной позицией и текущей
+            if (((i - ideal) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                states[hole] = states[i];
+                params[hole] = params[i];
+                cursors[hole] = cursors[i];
+                accessTimes[hole] = accessTimes[i];
+                hole = i;
+            }
+        }
+        states[hole] = FREE;
+        params[hole] = null;
+        cursors[hole] = null;
+        size--;
+    }
+
+    /**
+     * Удаляет сессию, к которой дольше всего не обращались среди нескольких занятых ячеек
+     *
+     * @return ключ удалённой сессии
+     */
+    long evictOne() {
+        int victim = -1;
+        int examined = 0;
+        int slot = evictionHand;
+        for (int scanned = 0; scanned < keys.length && examined < EVICTION_SAMPLE; scanned++) {
+            if (states[slot] != FREE) {
+                if (victim < 0 || accessTimes[slot] - accessTimes[victim] < 0) {
+                    victim = slot;
+                }
+                examined++;
+            }
+            slot = (slot + 1) & mask;
+        }
+        evictionHand = slot;
+        if (victim < 0) {
+            throw new IllegalStateException("В таблице нет сессий для вытеснения");
+        }
+        long key = keys[victim];
+        removeAt(victim);
+        return key;
+    }
+
+    /**
+     * Удаляет все сессии, к которым не обращались дольше idleTimeoutNanos
+     *
+     * @param removedKeys получает ключ каждой удалённой сессии
+     * @return количество удалённых сессий
+     */
+    int removeIdle(long now, long idleTimeoutNanos, LongConsumer removedKeys) {
+        int removed = 0;
+        int slot = 0;
+        while (slot < keys.length) {
+            if (states[slot] != FREE && isIdle(slot, now, idleTimeoutNanos)) {
+                // На место удалённой могла сдвинуться другая запись, ячейку нужно проверить снова
+                long key = keys[slot];
+                removeAt(slot);
+                removedKeys.accept(key);
+                removed++;
+            } else {
+                slot++;
+            }
+        }
+        return removed;
+    }
+
+    boolean isFull() {
+        return size >= maxSize;
+    }
+
+    int size() {
+        return size;
+    }
+
+    State stateAt(int slot) {
+        return STATES[states[slot] - 1];
+    }
+
+    void setState(int slot, State state) {
+        states[slot] = encode(state);
+    }
+
+    /**
+     * Параметры сессии или null, если их нет. Массив нельзя изменять
+     */
+    String[] paramsAt(int slot) {
+        return params[slot];
+    }
+
+    void setParams(int slot, String[] values) {
+        params[slot] = values == null || values.length == 0 ? null : values;
+    }
+
+    /**
+     * Положение в списке паролей или null, если пользователь не листает список
+     */
+    PageCursor cursorAt(int slot) {
+        return cursors[slot];
+    }
+
+    void setCursor(int slot, PageCursor cursor) {
+        cursors[slot] = cursor;
+    }
+
+    /**
+     * Проверяет, что к сессии не обращались дольше idleTimeoutNanos
+     */
+    boolean isIdle(int slot, long now, long idleTimeoutNanos) {
+        return now - accessTimes[slot] >= idleTimeoutNanos;
+    }
+
+    void touch(int slot, long now) {
+        accessTimes[slot] = now;
+    }
+
+    /**
+     * Длина массивов таблицы, номера ячеек лежат в диапазоне [0, length)
+     */
+    int length() {
+        return keys.length;
+    }
+
+    boolean isOccupied(int slot) {
+        return states[slot] != FREE;
+    }
+
+    long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    long accessTimeAt(int slot) {
+        return accessTimes[slot];
+    }
+
+    private int threshold() {
+        return keys.length - (keys.length >>> 2);
+    }
+
+    private void resize(int length) {
+        long[] oldKeys = keys;
+        byte[] oldStates = states;
+        String[][] oldParams = params;
+        PageCursor[] oldCursors = cursors;
+        long[] oldAccessTimes = accessTimes;
+
+        allocate(length);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldStates[i] == FREE) {
+                continue;
+            }
+            int slot = slotFor(oldKeys[i]);
+            while (states[slot] != FREE) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[i];
+            states[slot] = oldStates[i];
+            params[slot] = oldParams[i];
+            cursors[slot] = oldCursors[i];
+            accessTimes[slot] = oldAccessTimes[i];
+        }
+        evictionHand = 0;
+    }
+
+    private void allocate(int length) {
+        keys = new long[length];
+        states = new byte[length];
+        params = new String[length][];
+        cursors = new PageCursor[length];
+        accessTimes = new long[length];
+        mask = length - 1;
+    }
+
+    private int slotFor(long key) {
+        long hash = key;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (int) hash & mask;
+    }
+
+    private static byte encode(State state) {
+        return (byte) (state.ordinal() + 1);
+    }
+
+    /**
+     * Наименьшая степень двойки, при которой maxSize записей занимают не больше 3/4 таблицы
+     */
+    private static int tableLengthFor(int maxSize) {
+        long required = Math.max(MIN_LENGTH, (long) maxSize + (maxSize + 2) / 3 + 1);
+        if (required > (1 << 30)) {
+            throw new IllegalArgumentException("Слишком большой размер таблицы сессий: " + maxSize);
+        }
+        return Integer.highestOneBit((int) required - 1) << 1;
+    }
+}
@@ -0,0 +1,19 @@
+package ru.naumen.cache;
+
+import ru.naumen.model.State;
+
+import java.util.List;
+
+/**
+ * Снимок сессии пользователя
+ *
+ * @param state  состояние пользователя
+ * @param params введённые параметры
+ */
+public record UserSession(State state, List<String> params) {
+
+    /**
+     * Сессия пользователя, для которого ничего не сохранено
+     */
+    public static final UserSession EMPTY = new UserSession(State.NONE, List.of());
+}
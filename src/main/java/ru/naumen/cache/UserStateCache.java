@@ -1,61 +1,162 @@
 package ru.naumen.cache;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import ru.naumen.model.State;
 
-import java.util.ArrayList;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
 
 /**
- * Кеш данных пользователей
+ * Кеш данных пользователей.
+ * Состояние, введённые параметры и положение в списке паролей хранятся в одной сессии в таблице {@link SessionTable}.
+ * Количество сессий ограничено, сессии без обращений дольше заданного времени удаляются.
+ * Пользователь без сессии находится в состоянии {@link State#NONE} без параметров
  */
 @Component
 public class UserStateCache {
 
     /**
-     * Используется как кеш, где хранятся состояния пользователя
-     * ключи - пользователь,
-     * значение - состояния
+     * Количество сегментов, каждый со своей блокировкой.
+     * Максимальный размер делится между сегментами поровну
      */
-    private final Map<Long, State> totalUserState = new ConcurrentHashMap<>();
+    private static final int SEGMENT_COUNT = 16;
 
     /**
-     * Используется как кеш, где хранятся введенные параметры пользователя
-     * ключи - пользователь,
-     * значение - список параметров
+     * Максимальное количество сессий по умолчанию
      */
-    private final Map<Long, List<String>> totalUserParams = new ConcurrentHashMap<>();
+    private static final int DEFAULT_MAXIMUM_SIZE = 100_000;
 
     /**
-     * Возвращает состояние пользователя. Добавляет его в кэш, если его нет
+     * Время жизни сессии без обращений по умолчанию
+     */
+    private static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofHours(24);
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+    /**
+     * Время жизни сессии без обращений, в наносекундах
+     */
+    private final long idleTimeoutNanos;
+
+    /**
+     * Источник времени в наносекундах
+     */
+    private final LongSupplier ticker;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * Получатель изменений сессий, null - изменения никуда не передаются
+     */
+    private volatile SessionListener listener;
+
+    /**
+     * Создаёт кеш с ограничениями по умолчанию
+     */
+    public UserStateCache() {
+        this(DEFAULT_MAXIMUM_SIZE, DEFAULT_IDLE_TIMEOUT, System::nanoTime);
+    }
+
+    @Autowired
+    public UserStateCache(@Value("${bot.session-cache.maximum-size}") int maximumSize,
+                          @Value("${bot.session-cache.idle-timeout}") Duration idleTimeout) {
+        this(maximumSize, idleTimeout, System::nanoTime);
+    }
+
+    /**
+     * @param maximumSize максимальное количество сессий
+     * @param idleTimeout время жизни сессии без обращений
+     * @param ticker      источник времени в наносекундах
+     */
+    public UserStateCache(int maximumSize, Duration idleTimeout, LongSupplier ticker) {
+        if (maximumSize < 1 || idleTimeout.isNegative() || idleTimeout.isZero()) {
+            throw new IllegalArgumentException("Размер кеша и время жизни сессии должны быть положительными");
+        }
+        int segmentCapacity = Math.max(1, (maximumSize + SEGMENT_COUNT - 1) / SEGMENT_COUNT);
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.ticker = ticker;
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(segmentCapacity, ticker.getAsLong());
+        }
+    }
+
+    /**
+     * Возвращает состояние пользователя.
+     * Если сессии нет, возвращает {@link State#NONE}, не создавая её
      *
      * @param userId Id пользователя
      */
     public State getUserState(long userId) {
-        if (totalUserState.containsKey(userId)) {
-            return totalUserState.get(userId);
-        } else {
-            totalUserState.put(userId, State.NONE);
-            return State.NONE;
+        Segment segment = segmentFor(userId);
+        segment.lock.lock();
+        try {
+            int slot = segment.find(userId);
+            return slot < 0 ? State.NONE : segment.table.stateAt(slot);
+        } finally {
+            segment.lock.unlock();
         }
     }
 
     /**
-     * Возвращает параметры пользователя. Добавляет его в кэш, если его нет
+     * Возвращает параметры пользователя.
+     * Если сессии нет, возвращает пустой список, не создавая её
      *
      * @param userId Id пользователя
      */
     public List<String> getUserParams(long userId) {
-        if (totalUserParams.containsKey(userId)) {
-            return totalUserParams.get(userId);
-        } else {
-            totalUserParams.put(userId, new ArrayList<>());
-            return List.of();
+        Segment segment = segmentFor(userId);
+        segment.lock.lock();
+        try {
+            int slot = segment.find(userId);
+            return slot < 0 ? List.of() : paramsOf(segment.table, slot);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает состояние и параметры пользователя за один поиск
+     *
+     * @param userId Id пользователя
+     */
+    public UserSession getSession(long userId) {
+        Segment segment = segmentFor(userId);
+        segment.lock.lock();
+        try {
+            int slot = segment.find(userId);
+            return slot < 0
+                    ? UserSession.EMPTY
+                    : new UserSession(segment.table.stateAt(slot), paramsOf(segment.table, slot));
+        } finally {
+            segment.lock.unlock();
         }
     }
 
+    /**
+     * Атомарно читает и изменяет сессию пользователя.
+     * Действие выполняется под блокировкой сегмента, поэтому между чтением и записью
+     * сессию не изменит другой поток. Вызывающему коду блокировки не нужны.
+     * Действие должно быть коротким: в нём нельзя обращаться к базе данных, к Telegram и к самому кешу.
+     * Сессия создаётся только при первой записи, сессия без состояния, параметров и положения в списке
+     * после действия удаляется
+     *
+     * @param userId Id пользователя
+     * @param action действие над сессией, редактор действителен только внутри него
+     * @return результат действия
+     */
+    public <R> R compute(long userId, Function<SessionEditor, R> action) {
+        return compute(userId, action, true);
+    }
+
     /**
      * Добавляет параметр пользователю
      *
@@ -63,10 +164,10 @@ public class UserStateCache {
      * @param param  параметр
      */
     public void addParam(long userId, String param) {
-        if (!totalUserParams.containsKey(userId)) {
-            totalUserParams.put(userId, new ArrayList<>());
-        }
-        totalUserParams.get(userId).add(param);
+        compute(userId, session -> {
+            session.addParam(param);
+            return null;
+        }, false);
     }
 
     /**
@@ -76,7 +177,10 @@ public class UserStateCache {
      * @param state  состояние
      */
     public void setState(long userId, State state) {
-        totalUserState.put(userId, state);
+        compute(userId, session -> {
+            session.setState(state);
+            return null;
+        }, false);
     }
 
     /**
@@ -85,7 +189,469 @@ public class UserStateCache {
      * @param userId - id пользователя
      */
     public void clearParamsForUser(long userId) {
-        totalUserParams.remove(userId);
+        compute(userId, session -> {
+            session.clearParams();
+            return null;
+        }, false);
+    }
+
+    /**
+     * Возвращает положение пользователя в списке паролей
+     *
+     * @param userId Id пользователя
+     * @return положение или null, если пользователь не листает список
+     */
+    public PageCursor getPageCursor(long userId) {
+        return compute(userId, SessionEditor::cursor);
+    }
+
+    /**
+     * Запоминает положение пользователя в списке паролей
+     *
+     * @param userId Id пользователя
+     * @param cursor положение или null, чтобы его забыть
+     */
+    public void setPageCursor(long userId, PageCursor cursor) {
+        compute(userId, session -> {
+            session.setCursor(cursor);
+            return null;
+        }, false);
+    }
+
+    /**
+     * Удаляет все сессии, к которым не обращались дольше времени жизни.
+     * Периодически вызывается из {@link SessionCacheCleaner}
+     */
+    public void cleanUp() {
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                segment.table.removeIdle(segment.now(), idleTimeoutNanos, this::evicted);
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Обходит все сессии. Сегменты блокируются по одному на время обхода сегмента,
+     * поэтому посетитель должен только копировать данные
+     */
+    void forEachSession(SessionVisitor visitor) {
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                long now = segment.now();
+                SessionTable table = segment.table;
+                for (int slot = 0; slot < table.length(); slot++) {
+                    if (table.isOccupied(slot)) {
+                        visitor.visit(table.keyAt(slot), table.stateAt(slot), table.paramsAt(slot),
+                                now - table.accessTimeAt(slot));
+                    }
+                }
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Восстанавливает сессию из сохранённой копии, не сообщая об изменении получателю.
+     * Состояние {@link State#NONE} без параметров удаляет сессию
+     *
+     * @param params    параметры или null
+     * @param idleNanos сколько времени к сессии не обращались
+     */
+    void restore(long userId, State state, String[] params, long idleNanos) {
+        Segment segment = segmentFor(userId);
+        segment.lock.lock();
+        try {
+            if (state == State.NONE && params == null) {
+                int slot = segment.table.indexOf(userId);
+                if (slot >= 0) {
+                    segment.table.removeAt(slot);
+                }
+                return;
+            }
+            int slot = segment.findOrCreate(userId);
+            segment.table.setState(slot, state);
+            segment.table.setParams(slot, params);
+            segment.table.touch(slot, segment.now() - Math.max(0, idleNanos));
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Учитывает вытеснение сессии и сообщает о нём получателю изменений как об удалении,
+     * иначе при восстановлении из журнала сессия вернулась бы. Вызывается под блокировкой сегмента
+     */
+    private void evicted(long userId) {
+        evictionCount.increment();
+        SessionListener current = listener;
+        if (current != null) {
+            current.onChange(userId, State.NONE, null);
+        }
+    }
+
+    /**
+     * Устанавливает получателя изменений сессий
+     */
+    void setListener(SessionListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Количество сессий в кеше
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                size += segment.table.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Количество чтений, нашедших сессию
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Количество чтений, не нашедших сессию
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Количество сессий, удалённых по размеру или времени жизни
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * Выполняет действие над сессией под блокировкой сегмента
+     *
+     * @param countLookup учитывать ли поиск в счётчиках попаданий и промахов.
+     *                    Запись без чтения в них не учитывается
+     */
+    private <R> R compute(long userId, Function<SessionEditor, R> action, boolean countLookup) {
+        Segment segment = segmentFor(userId);
+        segment.lock.lock();
+        try {
+            SessionEditor editor = segment.editor;
+            editor.open(userId, countLookup);
+            try {
+                return action.apply(editor);
+            } finally {
+                editor.close();
+            }
+        } finally {
+            segment.lock.unlock();
+        }
     }
-}
 
+    /**
+     * Выбирает сегмент по Id пользователя
+     */
+    private Segment segmentFor(long userId) {
+        long hash = userId * 0x9E3779B97F4A7C15L;
+        return segments[(int) (hash >>> 60) & (SEGMENT_COUNT - 1)];
+    }
+
+    /**
+     * Параметры сессии в виде неизменяемого списка
+     */
+    private static List<String> paramsOf(SessionTable table, int slot) {
+        String[] params = table.paramsAt(slot);
+        return params == null ? List.of() : List.of(params);
+    }
+
+    /**
+     * Часть кеша под отдельной блокировкой
+     */
+    private final class Segment {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final SessionTable table;
+
+        /**
+         * Редактор сессий сегмента. Используется только под блокировкой, поэтому один на сегмент
+         */
+        private final SessionEditor editor = new SessionEditor(this);
+
+        /**
+         * Последнее выданное время. Время в сегменте строго возрастает,
+         * чтобы порядок обращений различался даже при одинаковых показаниях часов
+         */
+        private long lastTick;
+
+        Segment(int capacity, long startTick) {
+            this.table = new SessionTable(capacity);
+            this.lastTick = startTick - 1;
+        }
+
+        /**
+         * Текущее время сегмента, в наносекундах
+         */
+        long now() {
+            long tick = ticker.getAsLong();
+            lastTick = tick - lastTick > 0 ? tick : lastTick + 1;
+            return lastTick;
+        }
+
+        /**
+         * Ищет сессию и обновляет время обращения. Просроченная сессия удаляется
+         *
+         * @return номер ячейки или -1, если сессии нет
+         */
+        int find(long userId) {
+            return find(userId, true);
+        }
+
+        /**
+         * Ищет сессию и обновляет время обращения. Просроченная сессия удаляется
+         *
+         * @param countLookup учитывать ли поиск в счётчиках попаданий и промахов
+         * @return номер ячейки или -1, если сессии нет
+         */
+        int find(long userId, boolean countLookup) {
+            long now = now();
+            int slot = table.indexOf(userId);
+            if (slot >= 0 && table.isIdle(slot, now, idleTimeoutNanos)) {
+                table.removeAt(slot);
+                evicted(userId);
+                slot = -1;
+            }
+            if (slot < 0) {
+                if (countLookup) {
+                    missCount.increment();
+                }
+                return -1;
+            }
+            if (countLookup) {
+                hitCount.increment();
+            }
+            table.touch(slot, now);
+            return slot;
+        }
+
+        /**
+         * Ищет сессию, создавая новую при отсутствии.
+         * Если сегмент заполнен, перед созданием вытесняется одна из давно не использованных сессий
+         *
+         * @return номер ячейки
+         */
+        int findOrCreate(long userId) {
+            long now = now();
+            int slot = table.indexOf(userId);
+            if (slot >= 0 && table.isIdle(slot, now, idleTimeoutNanos)) {
+                table.removeAt(slot);
+                evicted(userId);
+                slot = -1;
+            }
+            if (slot >= 0) {
+                table.touch(slot, now);
+                return slot;
+            }
+            if (table.isFull()) {
+                evicted(table.evictOne());
+            }
+            return table.insert(userId, now);
+        }
+    }
+
+    /**
+     * Сессия пользователя внутри {@link #compute}.
+     * Чтения не создают сессию, первая запись создаёт её. Вне действия редактором пользоваться нельзя
+     */
+    public final class SessionEditor {
+
+        private final Segment segment;
+
+        private long userId;
+
+        /**
+         * Ячейка сессии или -1, если сессии пока нет
+         */
+        private int slot;
+
+        private boolean open;
+
+        /**
+         * Изменялась ли сессия внутри текущего действия
+         */
+        private boolean changed;
+
+        private SessionEditor(Segment segment) {
+            this.segment = segment;
+        }
+
+        /**
+         * Текущее состояние пользователя
+         */
+        public State state() {
+            checkOpen();
+            return slot < 0 ? State.NONE : segment.table.stateAt(slot);
+        }
+
+        /**
+         * Текущие параметры пользователя в виде неизменяемого списка
+         */
+        public List<String> params() {
+            checkOpen();
+            return slot < 0 ? List.of() : paramsOf(segment.table, slot);
+        }
+
+        /**
+         * Состояние и параметры пользователя
+         */
+        public UserSession snapshot() {
+            checkOpen();
+            return slot < 0
+                    ? UserSession.EMPTY
+                    : new UserSession(segment.table.stateAt(slot), paramsOf(segment.table, slot));
+        }
+
+        /**
+         * Положение в списке паролей или null
+         */
+        public PageCursor cursor() {
+            checkOpen();
+            return slot < 0 ? null : segment.table.cursorAt(slot);
+        }
+
+        /**
+         * Устанавливает положение в списке паролей.
+         * Положение не передаётся получателю изменений: после перезапуска список открывается заново
+         */
+        public SessionEditor setCursor(PageCursor cursor) {
+            checkOpen();
+            if (slot < 0 && cursor == null) {
+                return this;
+            }
+            segment.table.setCursor(slot(), cursor);
+            return this;
+        }
+
+        /**
+         * Устанавливает состояние
+         */
+        public SessionEditor setState(State state) {
+            checkOpen();
+            if (slot < 0 && state == State.NONE) {
+                return this;
+            }
+            segment.table.setState(slot(), state);
+            changed = true;
+            return this;
+        }
+
+        /**
+         * Добавляет параметр в конец списка
+         */
+        public SessionEditor addParam(String param) {
+            checkOpen();
+            int slot = slot();
+            String[] params = segment.table.paramsAt(slot);
+            if (params == null) {
+                segment.table.setParams(slot, new String[]{param});
+            } else {
+                String[] extended = Arrays.copyOf(params, params.length + 1);
+                extended[params.length] = param;
+                segment.table.setParams(slot, extended);
+            }
+            changed = true;
+            return this;
+        }
+
+        /**
+         * Удаляет все параметры
+         */
+        public SessionEditor clearParams() {
+            checkOpen();
+            if (slot >= 0) {
+                segment.table.setParams(slot, null);
+                changed = true;
+            }
+            return this;
+        }
+
+        private void open(long userId, boolean countLookup) {
+            if (open) {
+                // Вложенный вызов из действия увидел бы чужое состояние редактора
+                throw new IllegalStateException("Повторный вход в compute для сегмента кеша");
+            }
+            this.userId = userId;
+            this.slot = segment.find(userId, countLookup);
+            this.open = true;
+            this.changed = false;
+        }
+
+        private void close() {
+            if (changed && listener != null && slot >= 0) {
+                // Сообщаем под блокировкой, чтобы изменения одного пользователя пришли в том же порядке
+                listener.onChange(userId, segment.table.stateAt(slot), segment.table.paramsAt(slot));
+            }
+            if (slot >= 0 && segment.table.stateAt(slot) == State.NONE && segment.table.paramsAt(slot) == null
+                    && segment.table.cursorAt(slot) == null) {
+                // Сессия без состояния, параметров и положения в списке не отличается от отсутствующей
+                segment.table.removeAt(slot);
+            }
+            slot = -1;
+            open = false;
+        }
+
+        /**
+         * Ячейка сессии, при отсутствии сессия создаётся
+         */
+        private int slot() {
+            if (slot < 0) {
+                slot = segment.findOrCreate(userId);
+            }
+            return slot;
+        }
+
+        private void checkOpen() {
+            if (!open) {
+                throw new IllegalStateException("Редактор сессии используется вне compute");
+            }
+        }
+    }
+
+    /**
+     * Получатель изменений сессий
+     */
+    @FunctionalInterface
+    interface SessionListener {
+        /**
+         * Вызывается под блокировкой сегмента после изменения сессии.
+         * Состояние {@link State#NONE} без параметров означает, что сессия удалена
+         *
+         * @param params параметры или null, массив нельзя изменять
+         */
+        void onChange(long userId, State state, String[] params);
+    }
+
+    /**
+     * Посетитель сессий для {@link #forEachSession}
+     */
+    @FunctionalInterface
+    interface SessionVisitor {
+        /**
+         * @param params    параметры или null, массив нельзя изменять
+         * @param idleNanos сколько времени к сессии не обращались
+         */
+        void visit(long userId, State state, String[] params, long idleNanos);
+    }
+}
@@ -1,6 +1,7 @@
 package ru.naumen.handler;
 
 import ru.naumen.bot.Response;
+import ru.naumen.bot.command.CommandTokens;
 
 /**
  * Хэндлер команд
@@ -10,9 +11,21 @@ public interface CommandHandler {
     /**
      * Исполнить команду
      *
+     * @param command слова команды
+     * @param userId  Id пользователя
+     * @return ответ
+     */
+    Response handle(CommandTokens command, long userId);
+
+    /**
+     * Исполнить команду, заданную массивом слов.
+     * Оставлен для совместимости, сводится к {@link #handle(CommandTokens, long)}
+     *
      * @param splitCommand команда, разделённая по пробелам
      * @param userId       Id пользователя
      * @return ответ
      */
-    Response handle(String[] splitCommand, long userId);
+    default Response handle(String[] splitCommand, long userId) {
+        return handle(CommandTokens.of(splitCommand), userId);
+    }
 }
@@ -2,20 +2,21 @@ package ru.naumen.handler;
 
 import org.springframework.stereotype.Component;
 import ru.naumen.bot.Response;
+import ru.naumen.bot.command.CommandTokens;
 import ru.naumen.cache.UserStateCache;
+import ru.naumen.exception.PasswordNotFoundException;
 import ru.naumen.keyboard.KeyboardCreator;
 import ru.naumen.model.State;
 import ru.naumen.model.UserPassword;
 import ru.naumen.service.PasswordService;
 
-import java.util.List;
-
 import static ru.naumen.bot.constants.Errors.*;
 import static ru.naumen.bot.constants.Parameters.COMMAND_WITHOUT_PARAMS_LENGTH;
 import static ru.naumen.bot.constants.Requests.ENTER_PASSWORD_INDEX;
 
 /**
- * Хэндлер удаления пароля
+ * Хэндлер удаления пароля.
+ * Пароль находится по номеру в списке одним запросом и удаляется одним условным запросом
  */
 @Component("/del")
 public class DeleteHandler implements CommandHandler {
@@ -42,62 +43,83 @@ public class DeleteHandler implements CommandHandler {
     }
 
     @Override
-    public Response handle(String[] splitCommand, long userId) {
-        if (splitCommand.length == COMMAND_WITHOUT_PARAMS_LENGTH) {
+    public Response handle(CommandTokens command, long userId) {
+        if (command.count() == COMMAND_WITHOUT_PARAMS_LENGTH) {
             userStateCache.setState(userId, State.DELETE_STEP_1);
 
             return new Response(ENTER_PASSWORD_INDEX, keyboardCreator.createEmptyKeyboard());
         }
 
-        if (!isValidCommand(splitCommand)) {
+        if (!isValidCommand(command)) {
             userStateCache.setState(userId, State.NONE);
             userStateCache.clearParamsForUser(userId);
 
             return new Response(INCORRECT_COMMAND_RESPONSE, keyboardCreator.createMainKeyboard());
         }
 
+        return delete(command.get(1), userId);
+    }
+
+    /**
+     * Удаляет пароль
+     *
+     * @param index  номер пароля в списке
+     * @param userId Id пользователя
+     * @return ответ
+     */
+    public Response delete(String index, long userId) {
         int passwordIndex;
         try {
-            passwordIndex = Integer.parseInt(splitCommand[1]);
+            passwordIndex = Integer.parseInt(index);
         } catch (NumberFormatException e) {
             userStateCache.setState(userId, State.IN_LIST);
 
             return new Response(INDEX_ERROR_MESSAGE, keyboardCreator.createInListKeyboard());
         }
 
-        List<UserPassword> userPasswords = passwordService.getUserPasswords(userId);
-
-        if (!passwordService.isValidPasswordIndex(passwordIndex, userId)) {
-            userStateCache.setState(userId, State.IN_LIST);
-
-            return new Response(
-                    String.format(PASSWORD_NOT_FOUND_MESSAGE, passwordIndex),
-                    keyboardCreator.createInListKeyboard()
-            );
+        UserPassword userPassword;
+        try {
+            userPassword = passwordService.findPasswordByIndex(userId, passwordIndex);
+        } catch (PasswordNotFoundException e) {
+            return passwordNotFound(passwordIndex, userId);
         }
 
-        // Пользователь получает список начиная с 1
-        int passwordIndexInSystem = passwordIndex - 1;
-
-        String uuid = userPasswords.get(passwordIndexInSystem).getUuid();
-        String description = userPasswords.get(passwordIndexInSystem).getDescription();
-        passwordService.deletePassword(uuid);
+        if (!passwordService.deletePassword(userPassword)) {
+            return passwordNotFound(passwordIndex, userId);
+        }
         userStateCache.setState(userId, State.NONE);
         userStateCache.clearParamsForUser(userId);
 
         return new Response(
-                String.format(PASSWORD_DELETED_MESSAGE, description),
+                String.format(PASSWORD_DELETED_MESSAGE, userPassword.getDescription()),
                 keyboardCreator.createMainKeyboard()
         );
     }
 
+    /**
+     * Возвращает пользователя к списку, если пароля с таким номером нет
+     *
+     * @param passwordIndex номер пароля в списке
+     * @param userId        Id пользователя
+     * @return ответ
+     */
+    private Response passwordNotFound(int passwordIndex, long userId) {
+        userStateCache.setState(userId, State.IN_LIST);
+        userStateCache.clearParamsForUser(userId);
+
+        return new Response(
+                String.format(PASSWORD_NOT_FOUND_MESSAGE, passwordIndex),
+                keyboardCreator.createInListKeyboard()
+        );
+    }
+
     /**
      * Валидирует команду
      *
-     * @param splitCommand команда, разделённая по пробелам
+     * @param command слова команды
      * @return true, если команда валидна
      */
-    private boolean isValidCommand(String[] splitCommand) {
-        return (splitCommand.length - COMMAND_WITHOUT_PARAMS_LENGTH) == PARAMS_COUNT;
+    private boolean isValidCommand(CommandTokens command) {
+        return (command.count() - COMMAND_WITHOUT_PARAMS_LENGTH) == PARAMS_COUNT;
     }
 }
@@ -0,0 +1,164 @@
+package ru.naumen.handler;
+
+import org.springframework.stereotype.Component;
+import ru.naumen.bot.Response;
+import ru.naumen.bot.command.Command;
+import ru.naumen.model.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Таблица переходов диалога.
+ * Для каждого состояния пользователя хранит шаг, обрабатывающий следующее сообщение.
+ * Таблица собирается один раз и индексируется порядковым номером состояния
+ */
+@Component
+public class DialogTransitions {
+
+    /**
+     * Переходы, индекс - {@link State#ordinal()}
+     */
+    private final Transition[] transitions = new Transition[State.values().length];
+
+    /**
+     * Команды, с которых начинаются диалоги
+     */
+    private final List<Entry> entries = new ArrayList<>();
+
+    public DialogTransitions(NonCommandHandler nonCommandHandler) {
+        entry(Command.GENERATE, State.GENERATION_STEP_1);
+        entry(Command.SAVE, State.SAVE_STEP_1);
+        entry(Command.EDIT, State.EDIT_STEP_1);
+        entry(Command.DELETE, State.DELETE_STEP_1);
+        entry(Command.SORT, State.SORT_STEP_1);
+        entry(Command.FIND, State.FIND_STEP_1);
+        entry(Command.SHOW, State.SHOW_STEP_1);
+
+        add(State.GENERATION_STEP_1, "длина пароля", List.of(State.GENERATION_STEP_2),
+                (text, userId) -> nonCommandHandler.getPasswordLength(text, userId, State.GENERATION_STEP_2));
+        add(State.GENERATION_STEP_2, "сложность пароля", List.of(State.NONE),
+                nonCommandHandler::generatePassword);
+        add(State.SAVE_STEP_1, "пароль", List.of(State.SAVE_STEP_2),
+                (text, userId) -> nonCommandHandler.getPassword(text, userId, State.SAVE_STEP_2));
+        add(State.SAVE_STEP_2, "описание пароля", List.of(State.NONE),
+                nonCommandHandler::savePassword);
+        add(State.EDIT_STEP_1, "номер пароля", List.of(State.EDIT_STEP_2, State.IN_LIST),
+                nonCommandHandler::getEditIndex);
+        add(State.EDIT_STEP_2, "длина пароля", List.of(State.EDIT_STEP_3),
+                (text, userId) -> nonCommandHandler.getPasswordLength(text, userId, State.EDIT_STEP_3));
+        add(State.EDIT_STEP_3, "сложность пароля", List.of(State.EDIT_STEP_4),
+                nonCommandHandler::getEditComplexity);
+        add(State.EDIT_STEP_4, "описание пароля", List.of(State.NONE),
+                nonCommandHandler::editPassword);
+        add(State.DELETE_STEP_1, "номер пароля", List.of(State.NONE, State.IN_LIST),
+                nonCommandHandler::getDeleteIndex);
+        add(State.SORT_STEP_1, "тип сортировки", List.of(State.NONE, State.IN_LIST),
+                nonCommandHandler::getSortType);
+        add(State.FIND_STEP_1, "поисковый запрос", List.of(State.NONE),
+                nonCommandHandler::getSearchRequest);
+        add(State.SHOW_STEP_1, "номер пароля", List.of(State.IN_LIST),
+                nonCommandHandler::getShowIndex);
+    }
+
+    /**
+     * Возвращает переход из состояния
+     *
+     * @param state состояние пользователя
+     * @return переход или null, если в этом состоянии сообщение без команды не ожидается
+     */
+    public Transition get(State state) {
+        return transitions[state.ordinal()];
+    }
+
+    /**
+     * Все переходы в порядке состояний
+     */
+    public List<Transition> getTransitions() {
+        List<Transition> result = new ArrayList<>();
+        for (Transition transition : transitions) {
+            if (transition != null) {
+                result.add(transition);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Команды, с которых начинаются диалоги
+     */
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Выводит граф диалога в формате Graphviz DOT
+     */
+    public String toDot() {
+        StringBuilder dot = new StringBuilder("digraph dialog {\n");
+        for (Entry entry : entries) {
+            dot.append(String.format("    %s -> %s [label=\"%s\"];%n",
+                    State.NONE, entry.state(), entry.command().getCommand()));
+        }
+        for (Transition transition : getTransitions()) {
+            for (State next : transition.nextStates()) {
+                dot.append(String.format("    %s -> %s [label=\"%s\"];%n",
+                        transition.state(), next, transition.expectedInput()));
+            }
+        }
+        return dot.append("}\n").toString();
+    }
+
+    /**
+     * Добавляет переход
+     */
+    private void add(State state, String expectedInput, List<State> nextStates, DialogStep step) {
+        if (transitions[state.ordinal()] != null) {
+            throw new IllegalStateException("Переход из состояния " + state + " уже задан");
+        }
+        transitions[state.ordinal()] = new Transition(state, expectedInput, nextStates, step);
+    }
+
+    /**
+     * Добавляет команду, начинающую диалог
+     */
+    private void entry(Command command, State state) {
+        entries.add(new Entry(command, state));
+    }
+
+    /**
+     * Шаг диалога - обработка сообщения пользователя в определённом состоянии
+     */
+    @FunctionalInterface
+    public interface DialogStep {
+        /**
+         * Обрабатывает сообщение
+         *
+         * @param text   текст сообщения
+         * @param userId Id пользователя
+         * @return ответ
+         */
+        Response handle(String text, long userId);
+    }
+
+    /**
+     * Переход диалога
+     *
+     * @param state         состояние, в котором ожидается сообщение
+     * @param expectedInput что пользователь вводит на этом шаге
+     * @param nextStates    состояния, в которые возможен переход
+     * @param step          обработчик сообщения
+     */
+    public record Transition(State state, String expectedInput, List<State> nextStates, DialogStep step) {
+    }
+
+    /**
+     * Начало диалога
+     *
+     * @param command команда
+     * @param state   состояние после команды
+     */
+    public record Entry(Command command, State state) {
+    }
+}
@@ -4,6 +4,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 import ru.naumen.bot.Response;
+import ru.naumen.bot.command.CommandTokens;
 import ru.naumen.cache.UserStateCache;
 import ru.naumen.exception.ComplexityFormatException;
 import ru.naumen.exception.PasswordLengthException;
@@ -20,7 +21,8 @@ import static ru.naumen.bot.constants.Parameters.COMMAND_WITHOUT_PARAMS_LENGTH;
 import static ru.naumen.bot.constants.Requests.ENTER_PASSWORD_INDEX;
 
 /**
- * Хэндлер изменения пароля
+ * Хэндлер изменения пароля.
+ * Пароль находится по номеру в списке одним запросом и заменяется одним условным запросом
  */
 @Component("/edit")
 public class EditHandler implements CommandHandler {
@@ -53,58 +55,64 @@ public class EditHandler implements CommandHandler {
     }
 
     @Override
-    public Response handle(String[] splitCommand, long userId) {
-        if (splitCommand.length == COMMAND_WITHOUT_PARAMS_LENGTH) {
+    public Response handle(CommandTokens command, long userId) {
+        if (command.count() == COMMAND_WITHOUT_PARAMS_LENGTH) {
             userStateCache.setState(userId, State.EDIT_STEP_1);
 
             return new Response(ENTER_PASSWORD_INDEX, keyboardCreator.createEmptyKeyboard());
         }
 
-        if (!isValidCommand(splitCommand)) {
+        if (!isValidCommand(command)) {
             userStateCache.setState(userId, State.NONE);
             userStateCache.clearParamsForUser(userId);
 
             return new Response(INCORRECT_COMMAND_RESPONSE, keyboardCreator.createMainKeyboard());
         }
 
+        String description = command.count() == EDIT_COMMAND_LENGTH_HAS_DESCRIPTION ? command.get(4) : null;
+        return edit(command.get(1), command.get(2), command.get(3), description, userId);
+    }
+
+    /**
+     * Заменяет пароль новым, сгенерированным по параметрам
+     *
+     * @param index       номер пароля в списке
+     * @param length      длина нового пароля
+     * @param complexity  сложность нового пароля
+     * @param description новое описание или null, чтобы оставить прежнее
+     * @param userId      Id пользователя
+     * @return ответ
+     */
+    public Response edit(String index, String length, String complexity, String description, long userId) {
         int passwordIndex;
         try {
-            passwordIndex = Integer.parseInt(splitCommand[1]);
+            passwordIndex = Integer.parseInt(index);
         } catch (NumberFormatException e) {
             userStateCache.setState(userId, State.IN_LIST);
 
             return new Response(INDEX_ERROR_MESSAGE, keyboardCreator.createInListKeyboard());
         }
 
-        if (!passwordService.isValidPasswordIndex(passwordIndex, userId)) {
-            userStateCache.setState(userId, State.IN_LIST);
-
-            return new Response(String.format(
-                    PASSWORD_NOT_FOUND_MESSAGE, passwordIndex),
-                    keyboardCreator.createInListKeyboard()
-            );
+        UserPassword userPassword;
+        try {
+            userPassword = passwordService.findPasswordByIndex(userId, passwordIndex);
+        } catch (PasswordNotFoundException e) {
+            return passwordNotFound(passwordIndex, userId);
         }
 
-        List<UserPassword> userPasswords = passwordService.getUserPasswords(userId);
-
-        String uuid = userPasswords.get(passwordIndex - 1).getUuid();
         try {
-            int length = Integer.parseInt(splitCommand[2]);
-            String complexity = splitCommand[3];
-
-            UserPassword passwordByUuid = passwordService.findPasswordByUuid(uuid);
-            String description = passwordByUuid.getDescription();
-            String newPassword = passwordService.generatePassword(length, complexity);
+            String newDescription = description == null ? userPassword.getDescription() : description;
+            String newPassword = passwordService.generatePassword(Integer.parseInt(length), complexity);
 
-            if (splitCommand.length == EDIT_COMMAND_LENGTH_HAS_DESCRIPTION) {
-                description = splitCommand[4];
+            if (!passwordService.updatePassword(userPassword, newDescription, newPassword)) {
+                log.warn("Пароль {} удалён до обновления", userPassword.getUuid());
+                return passwordNotFound(passwordIndex, userId);
             }
-            passwordService.updatePassword(uuid, description, newPassword);
             userStateCache.setState(userId, State.NONE);
             userStateCache.clearParamsForUser(userId);
 
             return new Response(
-                    String.format(PASSWORD_UPDATED_MESSAGE, description, newPassword),
+                    String.format(PASSWORD_UPDATED_MESSAGE, newDescription, newPassword),
                     keyboardCreator.createMainKeyboard()
             );
         } catch (PasswordLengthException | NumberFormatException e) {
@@ -117,24 +125,33 @@ public class EditHandler implements CommandHandler {
             userStateCache.clearParamsForUser(userId);
 
             return new Response(COMPLEXITY_ERROR_MESSAGE, keyboardCreator.createMainKeyboard());
-        } catch (PasswordNotFoundException e) {
-            log.error(e.getMessage());
-            userStateCache.setState(userId, State.NONE);
-
-            return new Response(
-                    String.format(PASSWORD_NOT_FOUND_MESSAGE, passwordIndex),
-                    keyboardCreator.createMainKeyboard()
-            );
         }
     }
 
+    /**
+     * Возвращает пользователя к списку, если пароля с таким номером нет
+     *
+     * @param passwordIndex номер пароля в списке
+     * @param userId        Id пользователя
+     * @return ответ
+     */
+    private Response passwordNotFound(int passwordIndex, long userId) {
+        userStateCache.setState(userId, State.IN_LIST);
+        userStateCache.clearParamsForUser(userId);
+
+        return new Response(
+                String.format(PASSWORD_NOT_FOUND_MESSAGE, passwordIndex),
+                keyboardCreator.createInListKeyboard()
+        );
+    }
+
     /**
      * Валидирует команду
      *
-     * @param splitCommand команда, разделённая по пробелам
+     * @param command слова команды
      * @return true, если команда валидна
      */
-    private boolean isValidCommand(String[] splitCommand) {
-        return paramsCount.contains(splitCommand.length - COMMAND_WITHOUT_PARAMS_LENGTH);
+    private boolean isValidCommand(CommandTokens command) {
+        return paramsCount.contains(command.count() - COMMAND_WITHOUT_PARAMS_LENGTH);
     }
 }
@@ -2,33 +2,30 @@ package ru.naumen.handler;
 
 import org.springframework.stereotype.Component;
 import ru.naumen.bot.Response;
+import ru.naumen.bot.command.CommandTokens;
+import ru.naumen.cache.PageCursor.Listing;
 import ru.naumen.keyboard.KeyboardCreator;
 import ru.naumen.cache.UserStateCache;
 import ru.naumen.model.State;
-import ru.naumen.model.UserPassword;
-import ru.naumen.service.EncodeService;
-import ru.naumen.service.PasswordService;
-
-import java.util.List;
 
 import static ru.naumen.bot.constants.Errors.INCORRECT_COMMAND_RESPONSE;
-import static ru.naumen.bot.constants.Information.PASSWORD_LIST_FORMAT;
 import static ru.naumen.bot.constants.Parameters.COMMAND_WITHOUT_PARAMS_LENGTH;
 
 /**
- * Хэндлер поиска паролей
+ * Хэндлер поиска паролей.
+ * Найденные пароли выводятся по страницам, см. {@link PasswordPager}
  */
 @Component("/find")
 public class FindHandler implements CommandHandler {
-    private final PasswordService passwordService;
+    private final PasswordPager passwordPager;
     private final UserStateCache userStateCache;
-    private final EncodeService encodeService;
     private final KeyboardCreator keyboardCreator;
 
     /**
      * Сообщение с запросом на ввод поискового запроса
      */
-    private static final String ENTER_SEARCH_REQUEST = "Введите поисковый запрос";
+    private static final String ENTER_SEARCH_REQUEST = "Введите поисковый запрос: часть описания, "
+            + "начало слова со звёздочкой (exa*) или слово целиком в кавычках (\"example\")";
 
     /**
      * Сообщение, когда пароли не найдены
@@ -40,60 +37,62 @@ public class FindHandler implements CommandHandler {
      */
     private static final int PARAMS_COUNT = 1;
 
-    public FindHandler(PasswordService passwordService,
+    public FindHandler(PasswordPager passwordPager,
                        UserStateCache userStateCache,
-                       EncodeService encodeService,
                        KeyboardCreator keyboardCreator) {
-        this.passwordService = passwordService;
+        this.passwordPager = passwordPager;
         this.userStateCache = userStateCache;
-        this.encodeService = encodeService;
         this.keyboardCreator = keyboardCreator;
     }
 
     @Override
-    public Response handle(String[] splitCommand, long userId) {
-        if (splitCommand.length == COMMAND_WITHOUT_PARAMS_LENGTH) {
+    public Response handle(CommandTokens command, long userId) {
+        if (command.count() == COMMAND_WITHOUT_PARAMS_LENGTH) {
             userStateCache.setState(userId, State.FIND_STEP_1);
             return new Response(ENTER_SEARCH_REQUEST, keyboardCreator.createEmptyKeyboard());
         }
 
-        if (!isValidCommand(splitCommand)) {
+        if (!isValidCommand(command)) {
             userStateCache.setState(userId, State.NONE);
             userStateCache.clearParamsForUser(userId);
 
             return new Response(INCORRECT_COMMAND_RESPONSE, keyboardCreator.createEmptyKeyboard());
         }
 
-        String searchRequest = splitCommand[1];
-        List<UserPassword> foundPasswords = passwordService.getUserPasswordsWithPartialDescription(userId, searchRequest);
+        return find(command.get(1), userId);
+    }
+
+    /**
+     * Ищет пароли по описанию, см. {@link ru.naumen.service.SearchQuery}.
+     * Если таких нет, показывает пароли с похожим описанием, например, при опечатке в запросе
+     *
+     * @param searchRequest поисковый запрос
+     * @param userId        Id пользователя
+     * @return ответ
+     */
+    public Response find(String searchRequest, long userId) {
+        Response firstPage = passwordPager.firstPage(userId, Listing.FIND, searchRequest);
+        if (firstPage == null) {
+            firstPage = passwordPager.similarPage(userId, searchRequest);
+        }
 
-        if (foundPasswords.isEmpty()) {
+        if (firstPage == null) {
             userStateCache.setState(userId, State.NONE);
             userStateCache.clearParamsForUser(userId);
 
             return new Response(NO_PASSWORDS_FOUND, keyboardCreator.createMainKeyboard());
         }
 
-        StringBuilder stringBuilder = new StringBuilder();
-        for (int i = 0; i < foundPasswords.size(); i++) {
-            String description = foundPasswords.get(i).getDescription();
-            String password = encodeService.decryptData(foundPasswords.get(i).getPassword());
-            stringBuilder.append(String.format("\n" + PASSWORD_LIST_FORMAT, i + 1, description, password));
-        }
-
-        userStateCache.setState(userId, State.NONE);
-        userStateCache.clearParamsForUser(userId);
-
-        return new Response(stringBuilder.toString(), keyboardCreator.createMainKeyboard());
+        return firstPage;
     }
 
     /**
      * Валидирует команду
      *
-     * @param splitCommand команда, разделённая по пробелам
+     * @param command слова команды
      * @return true, если команда валидна
      */
-    private boolean isValidCommand(String[] splitCommand) {
-        return (splitCommand.length - COMMAND_WITHOUT_PARAMS_LENGTH) == PARAMS_COUNT;
+    private boolean isValidCommand(CommandTokens command) {
+        return (command.count() - COMMAND_WITHOUT_PARAMS_LENGTH) == PARAMS_COUNT;
     }
 }
@@ -2,6 +2,7 @@ package ru.naumen.handler;
 
 import org.springframework.stereotype.Component;
 import ru.naumen.bot.Response;
+import ru.naumen.bot.command.CommandTokens;
 import ru.naumen.cache.UserStateCache;
 import ru.naumen.exception.ComplexityFormatException;
 import ru.naumen.exception.PasswordLengthException;
@@ -41,24 +42,33 @@ public class GenerateHandler implements CommandHandler {
     }
 
     @Override
-    public Response handle(String[] splitCommand, long userId) {
-        if (splitCommand.length == COMMAND_WITHOUT_PARAMS_LENGTH) {
+    public Response handle(CommandTokens command, long userId) {
+        if (command.count() == COMMAND_WITHOUT_PARAMS_LENGTH) {
             userStateCache.setState(userId, State.GENERATION_STEP_1);
 
             return new Response(ENTER_PASSWORD_LENGTH, keyboardCreator.createEmptyKeyboard());
         }
 
-        if (!isValidCommand(splitCommand)) {
+        if (!isValidCommand(command)) {
             userStateCache.setState(userId, State.NONE);
 
             return new Response(INCORRECT_COMMAND_RESPONSE, keyboardCreator.createMainKeyboard());
         }
 
-        try {
-            int length = Integer.parseInt(splitCommand[1]);
-            String complexity = splitCommand[2];
+        return generate(command.get(1), command.get(2), userId);
+    }
 
-            String password = passwordService.generatePassword(length, complexity);
+    /**
+     * Генерирует пароль по параметрам
+     *
+     * @param length     длина пароля
+     * @param complexity сложность пароля
+     * @param userId     Id пользователя
+     * @return ответ
+     */
+    public Response generate(String length, String complexity, long userId) {
+        try {
+            String password = passwordService.generatePassword(Integer.parseInt(length), complexity);
             userStateCache.setState(userId, State.NONE);
             userStateCache.clearParamsForUser(userId);
 
@@ -82,11 +92,11 @@ public class GenerateHandler implements CommandHandler {
     /**
      * Валидирует команду
      *
-     * @param splitCommand команда, разделённая по пробелам
+     * @param command слова команды
      * @return true, если команда валидна
      */
-    private boolean isValidCommand(String[] splitCommand) {
-        return (splitCommand.length - COMMAND_WITHOUT_PARAMS_LENGTH) == PARAMS_COUNT;
+    private boolean isValidCommand(CommandTokens command) {
+        return (command.count() - COMMAND_WITHOUT_PARAMS_LENGTH) == PARAMS_COUNT;
     }
 
 }
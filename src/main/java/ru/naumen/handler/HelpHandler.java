@@ -2,6 +2,7 @@ package ru.naumen.handler;
 
 import org.springframework.stereotype.Component;
 import ru.naumen.bot.Response;
+import ru.naumen.bot.command.CommandTokens;
 import ru.naumen.cache.UserStateCache;
 import ru.naumen.keyboard.KeyboardCreator;
 import ru.naumen.model.State;
@@ -26,8 +27,8 @@ public class HelpHandler implements CommandHandler {
     }
 
     @Override
-    public Response handle(String[] splitCommand, long userId) {
-        if (!isValidCommand(splitCommand)) {
+    public Response handle(CommandTokens command, long userId) {
+        if (!isValidCommand(command)) {
             return new Response(INCORRECT_COMMAND_RESPONSE, keyboardCreator.createMainKeyboard());
         }
 
@@ -40,10 +41,10 @@ public class HelpHandler implements CommandHandler {
     /**
      * Валидирует команду
      *
-     * @param splitCommand команда, разделённая по пробелам
+     * @param command слова команды
      * @return true, если команда валидна
      */
-    private boolean isValidCommand(String[] splitCommand) {
-        return splitCommand.length == COMMAND_WITHOUT_PARAMS_LENGTH;
+    private boolean isValidCommand(CommandTokens command) {
+        return command.count() == COMMAND_WITHOUT_PARAMS_LENGTH;
     }
 }
@@ -0,0 +1,44 @@
+package ru.naumen.handler;
+
+import org.springframework.stereotype.Component;
+import ru.naumen.bot.Response;
+import ru.naumen.bot.command.CommandTokens;
+import ru.naumen.keyboard.KeyboardCreator;
+
+import static ru.naumen.bot.constants.Errors.INCORRECT_COMMAND_RESPONSE;
+import static ru.naumen.bot.constants.Parameters.COMMAND_WITHOUT_PARAMS_LENGTH;
+
+/**
+ * Хэндлер перехода на следующую страницу списка паролей
+ */
+@Component("/next")
+public class NextPageHandler implements CommandHandler {
+
+    private final PasswordPager passwordPager;
+    private final KeyboardCreator keyboardCreator;
+
+    public NextPageHandler(PasswordPager passwordPager,
+                           KeyboardCreator keyboardCreator) {
+        this.passwordPager = passwordPager;
+        this.keyboardCreator = keyboardCreator;
+    }
+
+    @Override
+    public Response handle(CommandTokens command, long userId) {
+        if (!isValidCommand(command)) {
+            return new Response(INCORRECT_COMMAND_RESPONSE, keyboardCreator.createMainKeyboard());
+        }
+
+        return passwordPager.nextPage(userId);
+    }
+
+    /**
+     * Валидирует команду
+     *
+     * @param command слова команды
+     * @return true, если команда валидна
+     */
+    private boolean isValidCommand(CommandTokens command) {
+        return command.count() == COMMAND_WITHOUT_PARAMS_LENGTH;
+    }
+}
@@ -2,14 +2,12 @@ package ru.naumen.handler;
 
 import org.springframework.stereotype.Component;
 import ru.naumen.bot.Response;
-import ru.naumen.bot.command.Command;
 import ru.naumen.cache.UserStateCache;
 import ru.naumen.keyboard.KeyboardCreator;
 import ru.naumen.model.State;
 import ru.naumen.service.PasswordService;
 
 import java.util.List;
-import java.util.Map;
 
 import static ru.naumen.bot.constants.Errors.INDEX_ERROR_MESSAGE;
 import static ru.naumen.bot.constants.Errors.PASSWORD_NOT_FOUND_MESSAGE;
@@ -30,50 +28,67 @@ public class NonCommandHandler {
     private static final String ENTER_PASSWORD_COMPLEXITY_REQUEST = "Выберите сложность пароля";
 
     /**
-     * Ответ с ошибкой
+     * Хэндлеры команд, которыми завершаются шаги диалога
      */
-    private static final String FAILURE = "Что-то пошло не так :( ";
-
-    /**
-     * Хэндлеры команд
-     * Название бина (сама команда формата "/command") -> хэндлер
-     */
-    private final Map<String, CommandHandler> commandHandlers;
+    private final GenerateHandler generateHandler;
+    private final SaveHandler saveHandler;
+    private final EditHandler editHandler;
+    private final DeleteHandler deleteHandler;
+    private final SortHandler sortHandler;
+    private final FindHandler findHandler;
+    private final ShowHandler showHandler;
     private final KeyboardCreator keyboardCreator;
 
 
     public NonCommandHandler(UserStateCache userStateCache,
                              PasswordService passwordService,
-                             Map<String, CommandHandler> commandHandlers,
+                             GenerateHandler generateHandler,
+                             SaveHandler saveHandler,
+                             EditHandler editHandler,
+                             DeleteHandler deleteHandler,
+                             SortHandler sortHandler,
+                             FindHandler findHandler,
+                             ShowHandler showHandler,
                              KeyboardCreator keyboardCreator) {
         this.userStateCache = userStateCache;
         this.passwordService = passwordService;
-        this.commandHandlers = commandHandlers;
+        this.generateHandler = generateHandler;
+        this.saveHandler = saveHandler;
+        this.editHandler = editHandler;
+        this.deleteHandler = deleteHandler;
+        this.sortHandler = sortHandler;
+        this.findHandler = findHandler;
+        this.showHandler = showHandler;
         this.keyboardCreator = keyboardCreator;
     }
 
     /**
-     * Получает сложность пароля
+     * Последний шаг генерации: получает сложность и генерирует пароль
      *
      * @param complexity - команда, содержащая сложность пароля
      * @param userId     - ID пользователя
-     * @param nextState  - следующее состояние
-     * @param response   - ответ в случае завершения
      */
-    public Response getComplexity(String complexity, long userId,
-                                  State nextState, String response) {
-        userStateCache.addParam(userId, complexity);
-        List<String> params = userStateCache.getUserParams(userId);
+    public Response generatePassword(String complexity, long userId) {
+        List<String> params = userStateCache.compute(userId, session -> session
+                .addParam(complexity)
+                .setState(State.NONE)
+                .params());
 
-        userStateCache.setState(userId, nextState);
-        if (nextState == State.NONE) {
-            String[] splitCommand = {Command.GENERATE.getCommand(), params.get(0), complexity};
+        return generateHandler.generate(params.get(0), complexity, userId);
+    }
 
-            CommandHandler handler = commandHandlers.get(Command.GENERATE.getCommand());
-            return handler.handle(splitCommand, userId);
-        }
+    /**
+     * Получает сложность нового пароля при изменении и запрашивает описание
+     *
+     * @param complexity - команда, содержащая сложность пароля
+     * @param userId     - ID пользователя
+     */
+    public Response getEditComplexity(String complexity, long userId) {
+        userStateCache.compute(userId, session -> session
+                .addParam(complexity)
+                .setState(State.EDIT_STEP_4));
 
-        return new Response(response, keyboardCreator.createEmptyKeyboard());
+        return new Response(ENTER_PASSWORD_DESCRIPTION, keyboardCreator.createEmptyKeyboard());
     }
 
     /**
@@ -84,41 +99,43 @@ public class NonCommandHandler {
      * @param nextState - следующее состояние
      */
     public Response getPasswordLength(String length, long userId, State nextState) {
-        userStateCache.setState(userId, nextState);
-        userStateCache.addParam(userId, length);
+        userStateCache.compute(userId, session -> session
+                .setState(nextState)
+                .addParam(length));
 
         return new Response(ENTER_PASSWORD_COMPLEXITY_REQUEST, keyboardCreator.createSelectComplexityKeyboard());
     }
 
     /**
-     * Получает описание пароля из команды
+     * Последний шаг сохранения: получает описание и сохраняет пароль
      *
      * @param description - входящая команда
-     * @param userId      -ID пользователя
-     * @param nextState   - следующее состояние
+     * @param userId      - ID пользователя
      */
-    public Response getDescription(String description, long userId, State nextState, String response) {
-        userStateCache.addParam(userId, description);
-        State currentState = userStateCache.getUserState(userId);
-        userStateCache.setState(userId, nextState);
-
-        if (currentState.equals(State.SAVE_STEP_2)) {
-            String[] splitCommand = {Command.SAVE.getCommand(), userStateCache.getUserParams(userId).get(0), description};
-
-            CommandHandler handler = commandHandlers.get(Command.SAVE.getCommand());
-            return handler.handle(splitCommand, userId);
-        } else if (currentState.equals(State.EDIT_STEP_4)) {
-            String[] splitCommand = {Command.EDIT.getCommand(),
-                    userStateCache.getUserParams(userId).get(0),
-                    userStateCache.getUserParams(userId).get(1),
-                    userStateCache.getUserParams(userId).get(2),
-                    description};
-
-            CommandHandler handler = commandHandlers.get(Command.EDIT.getCommand());
-            return handler.handle(splitCommand, userId);
-        }
+    public Response savePassword(String description, long userId) {
+        List<String> params = userStateCache.compute(userId, session -> {
+            List<String> entered = session.addParam(description).params();
+            session.setState(State.NONE);
+            return entered;
+        });
+
+        return saveHandler.save(params.get(0), description, userId);
+    }
 
-        return new Response(response, keyboardCreator.createEmptyKeyboard());
+    /**
+     * Последний шаг изменения: получает описание и заменяет пароль
+     *
+     * @param description - входящая команда
+     * @param userId      - ID пользователя
+     */
+    public Response editPassword(String description, long userId) {
+        List<String> params = userStateCache.compute(userId, session -> {
+            List<String> entered = session.addParam(description).params();
+            session.setState(State.NONE);
+            return entered;
+        });
+
+        return editHandler.edit(params.get(0), params.get(1), params.get(2), description, userId);
     }
 
     /**
@@ -129,46 +146,60 @@ public class NonCommandHandler {
      * @param nextState - следующее состояние пользователя
      */
     public Response getPassword(String password, long userId, State nextState) {
-        userStateCache.addParam(userId, password);
-        userStateCache.setState(userId, nextState);
+        userStateCache.compute(userId, session -> session
+                .addParam(password)
+                .setState(nextState));
 
         return new Response(ENTER_PASSWORD_DESCRIPTION, keyboardCreator.createEmptyKeyboard());
     }
 
     /**
-     * Получение индекса из команды
+     * Получает номер изменяемого пароля и запрашивает длину нового пароля.
+     * Если пароля с таким номером нет, возвращает пользователя к списку
      *
      * @param index  - пришедшее сообщение
      * @param userId - ID пользователя
      */
-    public Response getIndexPassword(String index, long userId) {
-        userStateCache.addParam(userId, index);
-        State currentState = userStateCache.getUserState(userId);
-
+    public Response getEditIndex(String index, long userId) {
+        int passwordIndex;
         try {
-            if (!passwordService.isValidPasswordIndex(Integer.parseInt(index), userId)) {
-                userStateCache.setState(userId, State.IN_LIST);
-                userStateCache.clearParamsForUser(userId);
-
-                return new Response(String.format(PASSWORD_NOT_FOUND_MESSAGE, index), keyboardCreator.createInListKeyboard());
-            }
+            passwordIndex = Integer.parseInt(index);
         } catch (NumberFormatException e) {
-            userStateCache.setState(userId, State.IN_LIST);
+            returnToList(userId);
             return new Response(INDEX_ERROR_MESSAGE, keyboardCreator.createInListKeyboard());
         }
+        if (!passwordService.isValidPasswordIndex(passwordIndex, userId)) {
+            returnToList(userId);
+            return new Response(String.format(PASSWORD_NOT_FOUND_MESSAGE, index), keyboardCreator.createInListKeyboard());
+        }
 
-        if (currentState.equals(State.EDIT_STEP_1)) {
-            userStateCache.setState(userId, State.EDIT_STEP_2);
+        userStateCache.compute(userId, session -> session
+                .addParam(index)
+                .setState(State.EDIT_STEP_2));
 
-            return new Response(ENTER_PASSWORD_LENGTH, keyboardCreator.createEmptyKeyboard());
-        } else if (currentState.equals(State.DELETE_STEP_1)) {
-            String[] splitCommand = new String[]{Command.DELETE.getCommand(), index};
+        return new Response(ENTER_PASSWORD_LENGTH, keyboardCreator.createEmptyKeyboard());
+    }
 
-            CommandHandler handler = commandHandlers.get(Command.DELETE.getCommand());
-            return handler.handle(splitCommand, userId);
-        }
+    /**
+     * Получает номер удаляемого пароля и удаляет его.
+     * Удаление само находит пароль по номеру, отдельная проверка номера была бы лишним запросом
+     *
+     * @param index  - пришедшее сообщение
+     * @param userId - ID пользователя
+     */
+    public Response getDeleteIndex(String index, long userId) {
+        return deleteHandler.delete(index, userId);
+    }
 
-        return new Response(ENTER_PASSWORD_LENGTH, keyboardCreator.createEmptyKeyboard());
+    /**
+     * Получает номер пароля и показывает его.
+     * Показ сам находит пароль по номеру, отдельная проверка номера была бы лишним запросом
+     *
+     * @param index  - пришедшее сообщение
+     * @param userId - ID пользователя
+     */
+    public Response getShowIndex(String index, long userId) {
+        return showHandler.show(index, userId);
     }
 
     /**
@@ -177,16 +208,8 @@ public class NonCommandHandler {
      * @param sortType тип сортировки
      * @param userId   id пользователя
      */
-    public Response getSortType(String sortType, Long userId) {
-        State currentState = userStateCache.getUserState(userId);
-        if (currentState.equals(State.SORT_STEP_1)) {
-            String[] splitCommand = {sortType};
-            CommandHandler handler = commandHandlers.get(Command.SORT.getCommand());
-            return handler.handle(splitCommand, userId);
-        }
-
-        userStateCache.clearParamsForUser(userId);
-        return new Response(FAILURE, keyboardCreator.createMainKeyboard());
+    public Response getSortType(String sortType, long userId) {
+        return sortHandler.sort(sortType, userId);
     }
 
     /**
@@ -195,15 +218,18 @@ public class NonCommandHandler {
      * @param searchRequest поисковый запрос
      * @param userId        id пользователя
      */
-    public Response getSearchRequest(String searchRequest, Long userId) {
-        State currentState = userStateCache.getUserState(userId);
-        if (currentState.equals(State.FIND_STEP_1)) {
-            String[] splitCommand = {Command.FIND.getCommand(), searchRequest};
-            CommandHandler handler = commandHandlers.get(Command.FIND.getCommand());
-            return handler.handle(splitCommand, userId);
-        }
+    public Response getSearchRequest(String searchRequest, long userId) {
+        return findHandler.find(searchRequest, userId);
+    }
 
-        userStateCache.clearParamsForUser(userId);
-        return new Response(FAILURE, keyboardCreator.createMainKeyboard());
+    /**
+     * Возвращает пользователя к списку паролей без введённых параметров
+     *
+     * @param userId - ID пользователя
+     */
+    private void returnToList(long userId) {
+        userStateCache.compute(userId, session -> session
+                .setState(State.IN_LIST)
+                .clearParams());
     }
 }
@@ -0,0 +1,311 @@
+package ru.naumen.handler;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.naumen.bot.Response;
+import ru.naumen.cache.PageCursor;
+import ru.naumen.cache.PageCursor.Listing;
+import ru.naumen.cache.UserStateCache;
+import ru.naumen.exception.IncorrectSortTypeException;
+import ru.naumen.keyboard.Keyboard;
+import ru.naumen.keyboard.KeyboardCreator;
+import ru.naumen.model.State;
+import ru.naumen.model.UserPassword;
+import ru.naumen.service.EncodeService;
+import ru.naumen.service.PasswordService;
+import ru.naumen.service.SortOrder;
+import ru.naumen.service.SortType;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import static ru.naumen.bot.constants.Errors.NO_PASSWORDS_MESSAGE;
+import static ru.naumen.bot.constants.Information.*;
+
+/**
+ * Постраничный вывод списков паролей.
+ * Страница загружается по ключу соседней записи, положение пользователя хранится в {@link UserStateCache}.
+ * Страница заканчивается раньше, если следующая строка не помещается в сообщение Telegram
+ */
+@Component
+public class PasswordPager {
+
+    /**
+     * Максимальная длина сообщения Telegram
+     */
+    static final int MESSAGE_LIMIT = 4096;
+
+    /**
+     * Ответ, когда пользователь листает список, не открыв его
+     */
+    private static final String NO_LIST_MESSAGE = "Сначала откройте список паролей: /list";
+
+    /**
+     * Ответ на переход дальше последней страницы
+     */
+    private static final String LAST_PAGE_MESSAGE = "Это последняя страница списка";
+
+    /**
+     * Ответ на переход до первой страницы
+     */
+    private static final String FIRST_PAGE_MESSAGE = "Это первая страница списка";
+
+    /**
+     * Заголовок списка похожих паролей
+     */
+    private static final String SIMILAR_HEADER = "Точных совпадений нет. Похожие пароли:";
+
+    private final PasswordService passwordService;
+    private final EncodeService encodeService;
+    private final UserStateCache userStateCache;
+    private final KeyboardCreator keyboardCreator;
+
+    /**
+     * Количество паролей на странице
+     */
+    private final int pageSize;
+
+    public PasswordPager(PasswordService passwordService,
+                         EncodeService encodeService,
+                         UserStateCache userStateCache,
+                         KeyboardCreator keyboardCreator,
+                         @Value("${bot.list.page-size}") int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Размер страницы должен быть положительным");
+        }
+        this.passwordService = passwordService;
+        this.encodeService = encodeService;
+        this.userStateCache = userStateCache;
+        this.keyboardCreator = keyboardCreator;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Показывает первую страницу списка
+     *
+     * @param userId  Id пользователя
+     * @param listing список
+     * @param search  поисковый запрос для {@link Listing#FIND}, для остальных списков null
+     * @return ответ или null, если в списке нет паролей
+     */
+    public Response firstPage(long userId, Listing listing, String search) {
+        return firstPage(userId, listing, search, defaultOrder(listing));
+    }
+
+    /**
+     * Показывает первую страницу всех паролей в заданном порядке
+     *
+     * @param userId Id пользователя
+     * @param order  порядок паролей
+     * @return ответ или null, если паролей нет
+     */
+    public Response sortedPage(long userId, SortOrder order) {
+        return firstPage(userId, Listing.SORTED, null, order);
+    }
+
+    private Response firstPage(long userId, Listing listing, String search, SortOrder order) {
+        List<UserPassword> rows = load(userId, order, search, null, true, pageSize + 1);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        return showForward(userId, listing, search, order, rows, 1);
+    }
+
+    /**
+     * Показывает пароли, описание которых похоже на поисковый запрос: лучшие совпадения одной страницей
+     *
+     * @param userId Id пользователя
+     * @param search поисковый запрос
+     * @return ответ или null, если похожих паролей нет
+     */
+    public Response similarPage(long userId, String search) {
+        List<UserPassword> rows = passwordService.findSimilarPasswords(userId, search, pageSize);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        return showForward(userId, Listing.SIMILAR, search, defaultOrder(Listing.SIMILAR), rows, 1);
+    }
+
+    /**
+     * Показывает следующую страницу списка, который листает пользователь
+     *
+     * @param userId Id пользователя
+     * @return ответ
+     */
+    public Response nextPage(long userId) {
+        PageCursor cursor = userStateCache.getPageCursor(userId);
+        if (cursor == null) {
+            return new Response(NO_LIST_MESSAGE, keyboardCreator.createMainKeyboard());
+        }
+        if (!cursor.hasNext()) {
+            return new Response(LAST_PAGE_MESSAGE, keyboardFor(cursor));
+        }
+
+        List<UserPassword> rows = load(userId, cursor.order(), cursor.search(), cursor.last(), true, pageSize + 1);
+        if (rows.isEmpty()) {
+            // Пароли после страницы удалили, пока пользователь её читал
+            PageCursor last = new PageCursor(cursor.listing(), cursor.search(), cursor.order(), cursor.firstIndex(),
+                    cursor.count(), cursor.first(), cursor.last(), false);
+            userStateCache.setPageCursor(userId, last);
+            return new Response(LAST_PAGE_MESSAGE, keyboardFor(last));
+        }
+        return showForward(userId, cursor.listing(), cursor.search(), cursor.order(), rows,
+                cursor.firstIndex() + cursor.count());
+    }
+
+    /**
+     * Показывает предыдущую страницу списка, который листает пользователь
+     *
+     * @param userId Id пользователя
+     * @return ответ
+     */
+    public Response previousPage(long userId) {
+        PageCursor cursor = userStateCache.getPageCursor(userId);
+        if (cursor == null) {
+            return new Response(NO_LIST_MESSAGE, keyboardCreator.createMainKeyboard());
+        }
+        if (!cursor.hasPrevious()) {
+            return new Response(FIRST_PAGE_MESSAGE, keyboardFor(cursor));
+        }
+
+        List<UserPassword> rows = load(userId, cursor.order(), cursor.search(), cursor.first(), false, pageSize);
+        if (rows.isEmpty()) {
+            // Пароли перед страницей удалили, пока пользователь её читал
+            Response first = firstPage(userId, cursor.listing(), cursor.search(), cursor.order());
+            return first != null ? first : new Response(NO_PASSWORDS_MESSAGE, keyboardCreator.createMainKeyboard());
+        }
+        return showBackward(userId, cursor.listing(), cursor.search(), cursor.order(), rows, cursor.firstIndex());
+    }
+
+    /**
+     * Выводит страницу, начиная с первой записи
+     *
+     * @param rows       записи страницы и, если есть, первая запись следующей страницы
+     * @param firstIndex номер первой записи
+     */
+    private Response showForward(long userId, Listing listing, String search, SortOrder order,
+                                 List<UserPassword> rows, int firstIndex) {
+        List<UserPassword> page = rows.subList(0, Math.min(rows.size(), pageSize));
+        List<String> passwords = decrypt(listing, page);
+        int budget = MESSAGE_LIMIT - header(listing).length() - footer(listing).length();
+
+        StringBuilder text = new StringBuilder(header(listing));
+        int shown = 0;
+        while (shown < page.size()) {
+            String line = line(listing, firstIndex + shown, page.get(shown), passwords, shown);
+            if (shown > 0 && text.length() + line.length() > budget) {
+                break;
+            }
+            text.append(line);
+            shown++;
+        }
+        // Похожие пароли ранжированы, а не упорядочены по ключу: то, что не поместилось, не показывается
+        boolean hasNext = listing != Listing.SIMILAR && (shown < page.size() || rows.size() > pageSize);
+
+        PageCursor cursor = new PageCursor(listing, search, order, firstIndex, shown,
+                key(order, page.get(0)), key(order, page.get(shown - 1)), hasNext);
+        return remember(userId, cursor, text.append(footer(listing)).toString());
+    }
+
+    /**
+     * Выводит страницу, начиная с последней записи: если записи не помещаются, отбрасываются первые
+     *
+     * @param rows      записи страницы
+     * @param nextIndex номер записи, следующей за страницей
+     */
+    private Response showBackward(long userId, Listing listing, String search, SortOrder order,
+                                  List<UserPassword> rows, int nextIndex) {
+        List<String> passwords = decrypt(listing, rows);
+        int budget = MESSAGE_LIMIT - header(listing).length() - footer(listing).length();
+
+        Deque<String> lines = new ArrayDeque<>();
+        int length = 0;
+        int shown = 0;
+        while (shown < rows.size()) {
+            int position = rows.size() - 1 - shown;
+            String line = line(listing, nextIndex - 1 - shown, rows.get(position), passwords, position);
+            if (shown > 0 && length + line.length() > budget) {
+                break;
+            }
+            lines.addFirst(line);
+            length += line.length();
+            shown++;
+        }
+        boolean reachedStart = rows.size() < pageSize && shown == rows.size();
+        int firstIndex = reachedStart ? 1 : Math.max(1, nextIndex - shown);
+
+        StringBuilder text = new StringBuilder(header(listing));
+        lines.forEach(text::append);
+        PageCursor cursor = new PageCursor(listing, search, order, firstIndex, shown,
+                key(order, rows.get(rows.size() - shown)), key(order, rows.get(rows.size() - 1)), true);
+        return remember(userId, cursor, text.append(footer(listing)).toString());
+    }
+
+    /**
+     * Запоминает положение в списке вместе с состоянием, которое оставляет список
+     */
+    private Response remember(long userId, PageCursor cursor, String text) {
+        userStateCache.compute(userId, session -> {
+            session.setCursor(cursor);
+            if (cursor.listing() == Listing.LIST) {
+                session.setState(State.IN_LIST);
+            } else {
+                session.setState(State.NONE).clearParams();
+            }
+            return null;
+        });
+        return new Response(text, keyboardFor(cursor));
+    }
+
+    /**
+     * Загружает записи списка
+     */
+    private List<UserPassword> load(long userId, SortOrder order, String search,
+                                    PageCursor.Key from, boolean forward, int limit) {
+        try {
+            return passwordService.getPasswordPage(userId, order, search, from, forward, limit);
+        } catch (IncorrectSortTypeException e) {
+            throw new IllegalStateException("Порядок " + order + " не поддерживается", e);
+        }
+    }
+
+    /**
+     * Расшифровывает пароли страницы. В списке {@link Listing#LIST} пароли скрыты и не расшифровываются
+     */
+    private List<String> decrypt(Listing listing, List<UserPassword> page) {
+        return listing == Listing.LIST ? List.of() : encodeService.decryptPasswords(page);
+    }
+
+    private String line(Listing listing, int number, UserPassword row, List<String> passwords, int position) {
+        return listing == Listing.LIST
+                ? String.format("\n" + MASKED_PASSWORD_LIST_FORMAT, number, row.getDescription())
+                : String.format("\n" + PASSWORD_LIST_FORMAT, number, row.getDescription(), passwords.get(position));
+    }
+
+    private static String header(Listing listing) {
+        return listing == Listing.SIMILAR ? SIMILAR_HEADER : "";
+    }
+
+    private static String footer(Listing listing) {
+        return listing == Listing.LIST ? "\n\n" + SHOW_PASSWORD_HINT : "";
+    }
+
+    private PageCursor.Key key(SortOrder order, UserPassword row) {
+        return passwordService.getPageKey(row, order.type());
+    }
+
+    private Keyboard keyboardFor(PageCursor cursor) {
+        Keyboard keyboard = cursor.listing() == Listing.LIST
+                ? keyboardCreator.createInListKeyboard()
+                : keyboardCreator.createMainKeyboard();
+        return keyboardCreator.addPageButtons(keyboard, cursor.hasPrevious(), cursor.hasNext());
+    }
+
+    /**
+     * Порядок списка, если его не выбрал пользователь
+     */
+    private static SortOrder defaultOrder(Listing listing) {
+        return listing == Listing.LIST ? SortOrder.LIST : SortOrder.ascending(SortType.BY_DESCRIPTION);
+    }
+}
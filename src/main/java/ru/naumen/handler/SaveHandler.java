@@ -4,6 +4,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 import ru.naumen.bot.Response;
+import ru.naumen.bot.command.CommandTokens;
 import ru.naumen.keyboard.KeyboardCreator;
 import ru.naumen.cache.UserStateCache;
 import ru.naumen.exception.EncryptException;
@@ -50,6 +51,11 @@ public class SaveHandler implements CommandHandler {
      */
     private static final String ENCRYPT_ERROR = "Ошибка шифрования пароля";
 
+    /**
+     * Описание пароля, если пользователь его не задал
+     */
+    private static final String UNKNOWN_DESCRIPTION = "Неизвестно";
+
     /**
      * Возможные количества параметров команды
      */
@@ -65,28 +71,35 @@ public class SaveHandler implements CommandHandler {
     }
 
     @Override
-    public Response handle(String[] splitCommand, long userId) {
-        if (splitCommand.length == COMMAND_WITHOUT_PARAMS_LENGTH) {
+    public Response handle(CommandTokens command, long userId) {
+        if (command.count() == COMMAND_WITHOUT_PARAMS_LENGTH) {
             userStateCache.setState(userId, State.SAVE_STEP_1);
 
             return new Response(ENTER_PASSWORD_REQUEST, keyboardCreator.createEmptyKeyboard());
         }
 
-        if (!isValidCommand(splitCommand)) {
+        if (!isValidCommand(command)) {
             userStateCache.setState(userId, State.NONE);
             userStateCache.clearParamsForUser(userId);
 
             return new Response(INCORRECT_COMMAND_RESPONSE, keyboardCreator.createMainKeyboard());
         }
 
+        String description = command.count() == SAVE_COMMAND_LENGTH_NO_DESCRIPTION ? null : command.get(2);
+        return save(command.get(1), description, userId);
+    }
+
+    /**
+     * Сохраняет пароль
+     *
+     * @param password    пароль
+     * @param description описание или null, если описание не задано
+     * @param userId      Id пользователя
+     * @return ответ
+     */
+    public Response save(String password, String description, long userId) {
         try {
-            String password = splitCommand[1];
-            if (splitCommand.length == SAVE_COMMAND_LENGTH_NO_DESCRIPTION) {
-                passwordService.createUserPassword(password, "Неизвестно", userId);
-            } else {
-                String description = splitCommand[2];
-                passwordService.createUserPassword(password, description, userId);
-            }
+            passwordService.createUserPassword(password, description == null ? UNKNOWN_DESCRIPTION : description, userId);
             userStateCache.clearParamsForUser(userId);
             userStateCache.setState(userId, State.NONE);
 
@@ -107,10 +120,10 @@ public class SaveHandler implements CommandHandler {
     /**
      * Валидирует команду
      *
-     * @param splitCommand команда, разделённая по пробелам
+     * @param command слова команды
      * @return true, если команда валидна
      */
-    private boolean isValidCommand(String[] splitCommand) {
-        return params.contains(splitCommand.length - COMMAND_WITHOUT_PARAMS_LENGTH);
+    private boolean isValidCommand(CommandTokens command) {
+        return params.contains(command.count() - COMMAND_WITHOUT_PARAMS_LENGTH);
     }
 }
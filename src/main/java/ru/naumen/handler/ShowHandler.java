@@ -0,0 +1,118 @@
+package ru.naumen.handler;
+
+import org.springframework.stereotype.Component;
+import ru.naumen.bot.Response;
+import ru.naumen.bot.command.CommandTokens;
+import ru.naumen.cache.UserStateCache;
+import ru.naumen.exception.PasswordNotFoundException;
+import ru.naumen.keyboard.KeyboardCreator;
+import ru.naumen.model.State;
+import ru.naumen.model.UserPassword;
+import ru.naumen.service.EncodeService;
+import ru.naumen.service.PasswordService;
+
+import static ru.naumen.bot.constants.Errors.*;
+import static ru.naumen.bot.constants.Parameters.COMMAND_WITHOUT_PARAMS_LENGTH;
+import static ru.naumen.bot.constants.Requests.ENTER_PASSWORD_INDEX;
+
+/**
+ * Хэндлер показа пароля.
+ * Расшифровывается только выбранный пароль из списка
+ */
+@Component("/show")
+public class ShowHandler implements CommandHandler {
+    private final EncodeService encodeService;
+    private final PasswordService passwordService;
+    private final UserStateCache userStateCache;
+    private final KeyboardCreator keyboardCreator;
+
+    /**
+     * Сообщение с паролем
+     */
+    private static final String PASSWORD_SHOWN_MESSAGE = "Сайт: %s, Пароль: %s";
+
+    /**
+     * Количество параметров команды
+     */
+    private static final int PARAMS_COUNT = 1;
+
+    public ShowHandler(EncodeService encodeService,
+                       PasswordService passwordService,
+                       UserStateCache userStateCache,
+                       KeyboardCreator keyboardCreator) {
+        this.encodeService = encodeService;
+        this.passwordService = passwordService;
+        this.userStateCache = userStateCache;
+        this.keyboardCreator = keyboardCreator;
+    }
+
+    @Override
+    public Response handle(CommandTokens command, long userId) {
+        if (command.count() == COMMAND_WITHOUT_PARAMS_LENGTH) {
+            userStateCache.setState(userId, State.SHOW_STEP_1);
+
+            return new Response(ENTER_PASSWORD_INDEX, keyboardCreator.createEmptyKeyboard());
+        }
+
+        if (!isValidCommand(command)) {
+            userStateCache.setState(userId, State.NONE);
+            userStateCache.clearParamsForUser(userId);
+
+            return new Response(INCORRECT_COMMAND_RESPONSE, keyboardCreator.createMainKeyboard());
+        }
+
+        return show(command.get(1), userId);
+    }
+
+    /**
+     * Показывает пароль
+     *
+     * @param index  номер пароля в списке
+     * @param userId Id пользователя
+     * @return ответ
+     */
+    public Response show(String index, long userId) {
+        int passwordIndex;
+        try {
+            passwordIndex = Integer.parseInt(index);
+        } catch (NumberFormatException e) {
+            userStateCache.setState(userId, State.IN_LIST);
+
+            return new Response(INDEX_ERROR_MESSAGE, keyboardCreator.createInListKeyboard());
+        }
+
+        UserPassword userPassword;
+        try {
+            userPassword = passwordService.findPasswordByIndex(userId, passwordIndex);
+        } catch (PasswordNotFoundException e) {
+            userStateCache.compute(userId, session -> session
+                    .setState(State.IN_LIST)
+                    .clearParams());
+
+            return new Response(
+                    String.format(PASSWORD_NOT_FOUND_MESSAGE, passwordIndex),
+                    keyboardCreator.createInListKeyboard()
+            );
+        }
+
+        String password = encodeService.decryptPassword(userPassword);
+        userStateCache.compute(userId, session -> session
+                .setState(State.IN_LIST)
+                .clearParams());
+
+        return new Response(
+                String.format(PASSWORD_SHOWN_MESSAGE, userPassword.getDescription(), password),
+                keyboardCreator.createInListKeyboard()
+        );
+    }
+
+    /**
+     * Валидирует команду
+     *
+     * @param command слова команды
+     * @return true, если команда валидна
+     */
+    private boolean isValidCommand(CommandTokens command) {
+        return (command.count() - COMMAND_WITHOUT_PARAMS_LENGTH) == PARAMS_COUNT;
+    }
+}
@@ -2,30 +2,25 @@ package ru.naumen.handler;
 
 import org.springframework.stereotype.Component;
 import ru.naumen.bot.Response;
+import ru.naumen.bot.command.CommandTokens;
 import ru.naumen.cache.UserStateCache;
-import ru.naumen.exception.IncorrectSortTypeException;
 import ru.naumen.keyboard.KeyboardCreator;
 import ru.naumen.model.State;
-import ru.naumen.model.UserPassword;
-import ru.naumen.service.EncodeService;
-import ru.naumen.service.PasswordService;
+import ru.naumen.service.SortOrder;
 import ru.naumen.service.SortType;
 
-import java.util.List;
-
 import static ru.naumen.bot.constants.Errors.INCORRECT_COMMAND_RESPONSE;
 import static ru.naumen.bot.constants.Errors.NO_PASSWORDS_MESSAGE;
-import static ru.naumen.bot.constants.Information.PASSWORD_LIST_FORMAT;
 import static ru.naumen.bot.constants.Parameters.*;
 
 /**
- * Хэндлер сортировки паролей
+ * Хэндлер сортировки паролей.
+ * Отсортированный список выводится по страницам, см. {@link PasswordPager}
  */
 @Component("/sort")
 public class SortHandler implements CommandHandler {
-    private final PasswordService passwordService;
+    private final PasswordPager passwordPager;
     private final UserStateCache userStateCache;
-    private final EncodeService encodeService;
 
     /**
      * Сообщение с запросом на выбор типа сортировки
@@ -33,19 +28,17 @@ public class SortHandler implements CommandHandler {
     private static final String CHOOSE_SORT_TYPE_REQUEST = "Отсортировать пароли по:";
     private final KeyboardCreator keyboardCreator;
 
-    public SortHandler(PasswordService passwordService,
+    public SortHandler(PasswordPager passwordPager,
                        UserStateCache userStateCache,
-                       EncodeService encodeService,
                        KeyboardCreator keyboardCreator) {
-        this.passwordService = passwordService;
+        this.passwordPager = passwordPager;
         this.userStateCache = userStateCache;
-        this.encodeService = encodeService;
         this.keyboardCreator = keyboardCreator;
     }
 
     @Override
-    public Response handle(String[] splitCommand, long userId) {
-        if (!isValidCommand(splitCommand)) {
+    public Response handle(CommandTokens command, long userId) {
+        if (!isValidCommand(command)) {
             userStateCache.setState(userId, State.NONE);
             userStateCache.clearParamsForUser(userId);
 
@@ -54,53 +47,50 @@ public class SortHandler implements CommandHandler {
 
         State currentState = userStateCache.getUserState(userId);
         if (currentState.equals(State.SORT_STEP_1)) {
-            String sortType = splitCommand[0];
-
-            try {
-                List<UserPassword> sortedPasswords;
-                switch (sortType) {
-                    case BY_DATE -> sortedPasswords = passwordService.getUserPasswordsSorted(userId, SortType.BY_DATE);
-                    case BY_DESCRIPTION ->
-                            sortedPasswords = passwordService.getUserPasswordsSorted(userId, SortType.BY_DESCRIPTION);
-                    default -> {
-                        return new Response(INCORRECT_COMMAND_RESPONSE, keyboardCreator.createMainKeyboard());
-                    }
-                }
-
-                if (sortedPasswords.isEmpty()) {
-                    userStateCache.setState(userId, State.NONE);
-                    return new Response(NO_PASSWORDS_MESSAGE, keyboardCreator.createMainKeyboard());
-                }
-
-                StringBuilder stringBuilder = new StringBuilder();
-                for (int i = 0; i < sortedPasswords.size(); i++) {
-                    String description = sortedPasswords.get(i).getDescription();
-                    String password = encodeService.decryptData(sortedPasswords.get(i).getPassword());
-                    stringBuilder.append(String.format("\n" + PASSWORD_LIST_FORMAT, i + 1, description, password));
-                }
+            return sort(command.get(0), userId);
+        }
 
-                userStateCache.setState(userId, State.NONE);
-                userStateCache.clearParamsForUser(userId);
+        userStateCache.setState(userId, State.SORT_STEP_1);
+        return new Response(CHOOSE_SORT_TYPE_REQUEST, keyboardCreator.createSelectSortTypeKeyboard());
+    }
 
-                return new Response(stringBuilder.toString(), keyboardCreator.createMainKeyboard());
-            } catch (IncorrectSortTypeException e) {
-                userStateCache.setState(userId, State.IN_LIST);
-                return new Response(INCORRECT_COMMAND_RESPONSE, keyboardCreator.createInListKeyboard());
+    /**
+     * Сортирует пароли
+     *
+     * @param sortType тип сортировки, с отметкой {@code DESCENDING} в конце - по убыванию
+     * @param userId   Id пользователя
+     * @return ответ
+     */
+    public Response sort(String sortType, long userId) {
+        boolean descending = sortType.endsWith(DESCENDING);
+        String field = descending ? sortType.substring(0, sortType.length() - DESCENDING.length()) : sortType;
+        SortType type;
+        switch (field) {
+            case BY_DATE -> type = SortType.BY_DATE;
+            case BY_DESCRIPTION -> type = SortType.BY_DESCRIPTION;
+            case BY_CREATION -> type = SortType.BY_CREATION;
+            case BY_STRENGTH -> type = SortType.BY_STRENGTH;
+            default -> {
+                return new Response(INCORRECT_COMMAND_RESPONSE, keyboardCreator.createMainKeyboard());
             }
+        }
 
-        } else {
-            userStateCache.setState(userId, State.SORT_STEP_1);
-            return new Response(CHOOSE_SORT_TYPE_REQUEST, keyboardCreator.createSelectSortTypeKeyboard());
+        Response firstPage = passwordPager.sortedPage(userId, new SortOrder(type, descending));
+        if (firstPage == null) {
+            userStateCache.setState(userId, State.NONE);
+            return new Response(NO_PASSWORDS_MESSAGE, keyboardCreator.createMainKeyboard());
         }
+
+        return firstPage;
     }
 
     /**
      * Валидирует команду
      *
-     * @param splitCommand команда, разделённая по пробелам
+     * @param command слова команды
      * @return true, если команда валидна
      */
-    private boolean isValidCommand(String[] splitCommand) {
-        return splitCommand.length == COMMAND_WITHOUT_PARAMS_LENGTH;
+    private boolean isValidCommand(CommandTokens command) {
+        return command.count() == COMMAND_WITHOUT_PARAMS_LENGTH;
     }
 }
@@ -38,16 +38,18 @@ public class KeyboardCreator {
 
     /**
      * Создаёт клавиатуру с выбором типа сортировки
-     * Можно выбрать по дате (BY_DATE) и описанию (BY_DESCRIPTION)
+     * Можно выбрать по дате (BY_DATE), описанию (BY_DESCRIPTION), созданию (BY_CREATION)
+     * и надёжности (BY_STRENGTH), в каждой строке по возрастанию и по убыванию (DESCENDING)
      */
     public Keyboard createSelectSortTypeKeyboard() {
         List<KeyboardRow> keyboardRows = new ArrayList<>();
 
-        KeyboardRow keyboardRowFirst = new KeyboardRow();
-        keyboardRowFirst.add(new KeyboardButton(BY_DATE));
-        keyboardRowFirst.add(new KeyboardButton(BY_DESCRIPTION));
-
-        keyboardRows.add(keyboardRowFirst);
+        for (String sortType : List.of(BY_DATE, BY_DESCRIPTION, BY_CREATION, BY_STRENGTH)) {
+            KeyboardRow keyboardRow = new KeyboardRow();
+            keyboardRow.add(new KeyboardButton(sortType));
+            keyboardRow.add(new KeyboardButton(sortType + DESCENDING));
+            keyboardRows.add(keyboardRow);
+        }
 
         return new Keyboard(keyboardRows);
     }
@@ -60,6 +62,7 @@ public class KeyboardCreator {
      * EDIT - начать процедуру изменения пароля
      * SORT - отсортировать пароли
      * FIND - поиск паролей по описанию
+     * SHOW - показать один пароль
      */
     public Keyboard createInListKeyboard() {
         List<KeyboardRow> keyboardRows = new ArrayList<>();
@@ -72,6 +75,7 @@ public class KeyboardCreator {
         KeyboardRow keyboardRowSecond = new KeyboardRow();
         keyboardRowSecond.add(new KeyboardButton(Command.SORT.getKeyboardLabel()));
         keyboardRowSecond.add(new KeyboardButton(Command.FIND.getKeyboardLabel()));
+        keyboardRowSecond.add(new KeyboardButton(Command.SHOW.getKeyboardLabel()));
 
         keyboardRows.add(keyboardRowFirst);
         keyboardRows.add(keyboardRowSecond);
@@ -100,6 +104,35 @@ public class KeyboardCreator {
         return new Keyboard(keyboardRows);
     }
 
+    /**
+     * Добавляет к клавиатуре строку перехода между страницами списка
+     * Кнопки:
+     * PREVIOUS_PAGE - предыдущая страница, если она есть
+     * NEXT_PAGE - следующая страница, если она есть
+     *
+     * @param keyboard    клавиатура
+     * @param hasPrevious есть ли предыдущая страница
+     * @param hasNext     есть ли следующая страница
+     * @return клавиатура со строкой перехода первой или исходная клавиатура, если переходить некуда
+     */
+    public Keyboard addPageButtons(Keyboard keyboard, boolean hasPrevious, boolean hasNext) {
+        if (!hasPrevious && !hasNext) {
+            return keyboard;
+        }
+        KeyboardRow pageRow = new KeyboardRow();
+        if (hasPrevious) {
+            pageRow.add(new KeyboardButton(Command.PREVIOUS_PAGE.getKeyboardLabel()));
+        }
+        if (hasNext) {
+            pageRow.add(new KeyboardButton(Command.NEXT_PAGE.getKeyboardLabel()));
+        }
+
+        List<KeyboardRow> keyboardRows = new ArrayList<>();
+        keyboardRows.add(pageRow);
+        keyboardRows.addAll(keyboard.keyboardRows());
+        return new Keyboard(keyboardRows);
+    }
+
     /**
      * Создает пустую клавиатуру
      *
@@ -48,6 +48,10 @@ public enum State {
      * Шаг для поиска - ввод запроса
      */
     FIND_STEP_1,
+    /**
+     * Шаг для показа пароля - ввод индекса
+     */
+    SHOW_STEP_1,
     /**
      * Пользователь находится в списке паролей
      */
@@ -1,6 +1,9 @@
 package ru.naumen.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import ru.naumen.cache.EntityCacheConfiguration;
 
 import java.util.List;
 import java.util.Objects;
@@ -9,6 +12,8 @@ import java.util.Objects;
  * Основной класс с пользователями бота
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = EntityCacheConfiguration.USERS_REGION)
 @Table(name = "tbl_users")
 public class User {
 
@@ -25,6 +30,18 @@ public class User {
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL)
     private List<UserPassword> userPasswords;
 
+    /**
+     * Ключ данных пользователя, зашифрованный мастер-ключом
+     */
+    @Column(name = "data_key", length = 64)
+    private byte[] dataKey;
+
+    /**
+     * Идентификатор мастер-ключа, которым зашифрован ключ данных
+     */
+    @Column(name = "master_key_id")
+    private Integer masterKeyId;
+
     public User(long id, List<UserPassword> userPasswords) {
         this.id = id;
         this.userPasswords = userPasswords;
@@ -50,6 +67,22 @@ public class User {
         this.id = telegramId;
     }
 
+    public byte[] getDataKey() {
+        return dataKey;
+    }
+
+    public void setDataKey(byte[] dataKey) {
+        this.dataKey = dataKey;
+    }
+
+    public Integer getMasterKeyId() {
+        return masterKeyId;
+    }
+
+    public void setMasterKeyId(Integer masterKeyId) {
+        this.masterKeyId = masterKeyId;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -1,24 +1,38 @@
 package ru.naumen.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import ru.naumen.cache.EntityCacheConfiguration;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
 import java.util.Objects;
+import java.util.UUID;
 
 /**
  * Класс пароля
  */
 @Entity
-@Table(name = "tbl_passwords")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = EntityCacheConfiguration.PASSWORDS_REGION)
+@Table(name = "tbl_passwords", indexes = {
+        @Index(name = "idx_passwords_user_created", columnList = "user_id, created_at, uuid"),
+        @Index(name = "idx_passwords_user_description", columnList = "user_id, description, uuid"),
+        @Index(name = "idx_passwords_user_date", columnList = "user_id, date, uuid")
+})
 public class UserPassword {
 
     /**
      * Уникальный идентификатор пароля, UUID.
+     * Хранится в столбце типа UUID: 16 байт вместо строки из 36 символов в ключе и во всех индексах
      */
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
-    @Column(name = "uuid", unique = true, nullable = false)
-    private String uuid;
+    @Column(name = "uuid", nullable = false)
+    private UUID uuid;
 
     /**
      * Описание пароля
@@ -27,11 +41,18 @@ public class UserPassword {
     private String description;
 
     /**
-     * Пароль в зашифрованном виде
+     * Пароль, зашифрованный прежним способом (AES/ECB) и закодированный в base64.
+     * Заполнен только у записей, которые ещё не перешифрованы в {@link #secret}
      */
-    @Column(name = "password", nullable = false, unique = false)
+    @Column(name = "password", nullable = true, unique = false)
     private String password;
 
+    /**
+     * Пароль в зашифрованном виде: байт версии формата, nonce и шифротекст AES-GCM
+     */
+    @Column(name = "secret", nullable = true, unique = false, length = 1024)
+    private byte[] secret;
+
     /**
      * Пользователь, которому принадлежит пароль
      */
@@ -44,7 +65,19 @@ public class UserPassword {
     @Column(name = "date", nullable = false, unique = false)
     private LocalDate lastModifyDate;
 
-    public UserPassword(String uuid, String description, String password, User user, LocalDate lastModifyDate) {
+    /**
+     * Время создания пароля. Вместе с uuid задаёт порядок списка, по которому пароль выбирается по номеру
+     */
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * Пароль перешифрован без изменения: дата изменения при сохранении не обновляется
+     */
+    @Transient
+    private boolean reencrypted;
+
+    public UserPassword(UUID uuid, String description, String password, User user, LocalDate lastModifyDate) {
         this.uuid = uuid;
         this.description = description;
         this.password = password;
@@ -62,7 +95,7 @@ public class UserPassword {
         this.user = user;
     }
 
-    public String getUuid() {
+    public UUID getUuid() {
         return uuid;
     }
 
@@ -74,6 +107,14 @@ public class UserPassword {
         return password;
     }
 
+    public byte[] getSecret() {
+        return secret;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
     public LocalDate getLastModifyDate() {
         return lastModifyDate;
     }
@@ -86,13 +127,50 @@ public class UserPassword {
         this.password = password;
     }
 
+    public void setSecret(byte[] secret) {
+        this.secret = secret;
+    }
+
     /**
-     * Устанавливает дату последнего обновления пароля при его сохранении в базу данных
+     * Заменяет пароль прежнего формата перешифрованным. Для пользователя пароль не меняется,
+     * поэтому дата изменения при сохранении остаётся прежней
+     *
+     * @param secret пароль в новом формате
+     */
+    public void reencrypt(byte[] secret) {
+        this.secret = secret;
+        this.password = null;
+        this.reencrypted = true;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * Устанавливает время создания при первом сохранении пароля в базу данных.
+     * Время усекается до микросекунд - точности столбца, чтобы ключ в памяти совпадал с сохранённым
      */
     @PrePersist
+    private void initCreatedAt() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        }
+        setLastModifyDate();
+    }
+
+    /**
+     * Устанавливает дату последнего обновления пароля при его сохранении в базу данных
+     */
     @PreUpdate
     private void setLastModifyDate() {
-        this.lastModifyDate = LocalDate.now();
+        if (!reencrypted) {
+            this.lastModifyDate = LocalDate.now();
+        }
     }
 
     @Override
@@ -107,11 +185,12 @@ public class UserPassword {
         return Objects.equals(uuid, that.uuid)
                 && Objects.equals(description, that.description)
                 && Objects.equals(password, that.password)
+                && Arrays.equals(secret, that.secret)
                 && Objects.equals(user, that.user);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(uuid, description, password, user);
+        return 31 * Objects.hash(uuid, description, password, user) + Arrays.hashCode(secret);
     }
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package ru.naumen.repository;
+
+import java.util.UUID;
+
+/**
+ * Описание пароля без самого пароля: uuid и описание
+ */
+public interface PasswordDescription {
+
+    UUID getUuid();
+
+    String getDescription();
+}
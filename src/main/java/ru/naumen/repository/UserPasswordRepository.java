@@ -1,62 +1,136 @@
 package ru.naumen.repository;
 
 import ru.naumen.model.UserPassword;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
 
 /**
- * Репозиторий с паролями пользователей
+ * Репозиторий с паролями пользователей.
+ * Результаты запросов позиции и количества хранятся в кеше запросов Hibernate
+ * и сбрасываются при любом изменении tbl_passwords
  */
-public interface UserPasswordRepository extends JpaRepository<UserPassword, Long> {
+public interface UserPasswordRepository extends JpaRepository<UserPassword, UUID> {
     /**
-     * Находит список паролей для пользователя с указанным id
+     * Находит список паролей для пользователя с указанным id в порядке списка: по времени создания и uuid
      * @param userId Id пользователя
      */
-    List<UserPassword> findByUserId(long userId);
+    List<UserPassword> findByUserIdOrderByCreatedAtAscUuidAsc(long userId);
 
     /**
-     * Проверяет, существует ли пароль с указанным uuid
-     * @param uuid uuid пароля
+     * Находит пароли пользователя в порядке списка, начиная с позиции страницы.
+     * С {@code PageRequest.of(index, 1)} выполняется один запрос с OFFSET index LIMIT 1,
+     * который проходит по индексу (user_id, created_at, uuid) без сортировки
+     * @param userId Id пользователя
+     * @param pageable позиция и размер страницы
      */
-    boolean existsByUuid(String uuid);
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<UserPassword> findByUserIdOrderByCreatedAtAscUuidAsc(long userId, Pageable pageable);
 
     /**
-     * Удаляет пароль с указанным uuid
+     * Удаляет пароль с указанным uuid через сущность: из кэша второго уровня вытесняется только она
      * @param uuid uuid пароля
+     * @return false, если пароль уже удалён
      */
-    void deleteByUuid(String uuid);
+    @Transactional
+    default boolean removeByUuid(UUID uuid) {
+        Optional<UserPassword> password = findById(uuid);
+        password.ifPresent(this::delete);
+        return password.isPresent();
+    }
 
     /**
-     * Находит запись пароля с указанным uuid
+     * Заменяет пароль и описание, если запись ещё существует.
+     * Сущность читается из кэша второго уровня и записывается целиком, поэтому в кэше обновляется только она.
+     * Дата изменения обновляется при сохранении
      * @param uuid uuid пароля
+     * @param description новое описание
+     * @param secret новый пароль в зашифрованном виде
+     * @return false, если пароль успели удалить
      */
-    UserPassword findByUuid(String uuid);
+    @Transactional
+    default boolean replacePassword(UUID uuid, String description, byte[] secret) {
+        Optional<UserPassword> stored = findById(uuid);
+        if (stored.isEmpty()) {
+            return false;
+        }
+        UserPassword password = stored.get();
+        password.setDescription(description);
+        password.setPassword(null);
+        password.setSecret(secret);
+        save(password);
+        return true;
+    }
 
     /**
      * Подсчитывает количество паролей для пользователя с указанным id
      * @param userId Id пользователя
      * @return Количество паролей пользователя
      */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     int countByUserId(long userId);
 
     /**
-     * Находит список паролей для пользователя с указанным id и по описанию.
-     * Описание может быть передано не полностью, регистр не учитывается
+     * Находит uuid и описания всех паролей пользователя, без загрузки самих паролей
      * @param userId Id пользователя
-     * @param searchRequest поисковый запрос пароля
      */
-    List<UserPassword> findByDescriptionContainsIgnoreCaseAndUserId(String searchRequest, long userId);
+    @Query("select p.uuid as uuid, p.description as description from UserPassword p where p.user.id = :userId")
+    List<PasswordDescription> findDescriptionsByUserId(@Param("userId") long userId);
 
     /**
-     * Находит список паролей для пользователя с указанным id, отсортированный по описанию
-     * @param userId Id пользователя
+     * Находит Id пользователей, у которых есть пароли
      */
-    List<UserPassword> findByUserIdOrderByDescriptionAsc(long userId);
+    @Query("select distinct p.user.id from UserPassword p")
+    List<Long> findUserIdsWithPasswords();
 
     /**
-     * Находит список паролей для пользователя с указанным id, отсортированный по дате
-     * @param userId Id пользователя
+     * Находит пароли прежнего формата с uuid больше заданного, по возрастанию uuid
+     * @param uuid uuid, после которого начинается поиск
+     * @param limit максимальное количество записей
+     */
+    List<UserPassword> findByPasswordIsNotNullAndUuidGreaterThanOrderByUuidAsc(UUID uuid, Limit limit);
+
+    /**
+     * Подсчитывает количество паролей прежнего формата
+     */
+    long countByPasswordIsNotNull();
+
+    /**
+     * Находит пароль, блокируя запись до конца транзакции
+     * @param uuid uuid пароля
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<UserPassword> findLockedByUuid(UUID uuid);
+
+    /**
+     * Заменяет пароль прежнего формата на новый, если запись не изменилась с момента чтения.
+     * Запись блокируется на время проверки и записи, в кэше второго уровня обновляется только она.
+     * Дата изменения пароля не обновляется
+     * @param uuid uuid пароля
+     * @param password прочитанный пароль прежнего формата
+     * @param secret пароль в новом формате
+     * @return false, если пароль успели изменить или удалить
      */
-    List<UserPassword> findByUserIdOrderByLastModifyDate(long userId);
+    @Transactional
+    default boolean replaceLegacyPassword(UUID uuid, String password, byte[] secret) {
+        Optional<UserPassword> stored = findLockedByUuid(uuid);
+        if (stored.isEmpty() || !password.equals(stored.get().getPassword())) {
+            return false;
+        }
+        stored.get().reencrypt(secret);
+        save(stored.get());
+        return true;
+    }
 }
@@ -1,7 +1,14 @@
 package ru.naumen.repository;
 
 import ru.naumen.model.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
 
 /**
  * Репозиторий с пользователями
@@ -15,8 +22,58 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsById(long id);
 
     /**
-     * Находит пользователя с указанным Id
+     * Находит пользователя с указанным Id.
+     * Читает через {@link #findById(Object)}, а не запросом, поэтому пользователь берётся из кеша второго уровня
+     * @param id Id пользователя
+     * @return пользователь или null, если его нет
+     */
+    default User findById(long id) {
+        return findById(Long.valueOf(id)).orElse(null);
+    }
+
+    /**
+     * Сохраняет ключ данных пользователя, если ключа у него ещё нет
      * @param id Id пользователя
+     * @param dataKey ключ данных, зашифрованный мастер-ключом
+     * @param masterKeyId идентификатор мастер-ключа
+     * @return количество изменённых записей: 0, если ключ уже создан
+     */
+    @Modifying
+    @Transactional
+    @Query("update User u set u.dataKey = :dataKey, u.masterKeyId = :masterKeyId "
+            + "where u.id = :id and u.dataKey is null")
+    int initDataKey(@Param("id") long id,
+                    @Param("dataKey") byte[] dataKey,
+                    @Param("masterKeyId") int masterKeyId);
+
+    /**
+     * Заменяет ключ данных, перешифрованный новым мастер-ключом, если ключ не изменился с момента чтения
+     * @param id Id пользователя
+     * @param previousKeyId идентификатор прежнего мастер-ключа
+     * @param dataKey ключ данных, зашифрованный новым мастер-ключом
+     * @param masterKeyId идентификатор нового мастер-ключа
+     * @return количество изменённых записей
+     */
+    @Modifying
+    @Transactional
+    @Query("update User u set u.dataKey = :dataKey, u.masterKeyId = :masterKeyId "
+            + "where u.id = :id and u.masterKeyId = :previousKeyId")
+    int rewrapDataKey(@Param("id") long id,
+                      @Param("previousKeyId") int previousKeyId,
+                      @Param("dataKey") byte[] dataKey,
+                      @Param("masterKeyId") int masterKeyId);
+
+    /**
+     * Находит пользователей, чей ключ данных зашифрован не указанным мастер-ключом, по возрастанию Id
+     * @param masterKeyId идентификатор мастер-ключа
+     * @param id Id, после которого начинается поиск
+     * @param limit максимальное количество записей
+     */
+    List<User> findByMasterKeyIdNotAndIdGreaterThanOrderByIdAsc(int masterKeyId, long id, Limit limit);
+
+    /**
+     * Подсчитывает пользователей, чей ключ данных зашифрован не указанным мастер-ключом
+     * @param masterKeyId идентификатор мастер-ключа
      */
-    User findById(long id);
-}
\ No newline at end of file
+    long countByMasterKeyIdNot(int masterKeyId);
+}
@@ -0,0 +1,159 @@
+package ru.naumen.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * BK-дерево слов по расстоянию Левенштейна.
+ * Поиск слов в пределах расстояния k обходит только поддеревья с рёбрами [d - k, d + k],
+ * где d - расстояние до слова узла, поэтому сравнивается малая часть слов
+ *
+ * @param <T> значения, привязанные к словам
+ */
+final class BkTree<T> {
+
+    private Node<T> root;
+
+    private int size;
+
+    /**
+     * Добавляет значение слова
+     *
+     * @param word  слово
+     * @param value значение
+     */
+    void add(String word, T value) {
+        if (root == null) {
+            root = new Node<>(word);
+            root.values.add(value);
+            size++;
+            return;
+        }
+        Node<T> node = root;
+        while (true) {
+            int distance = distance(word, node.word);
+            if (distance == 0) {
+                node.values.add(value);
+                return;
+            }
+            Node<T> child = node.children.get(distance);
+            if (child == null) {
+                child = new Node<>(word);
+                child.values.add(value);
+                node.children.put(distance, child);
+                node.maxEdge = Math.max(node.maxEdge, distance);
+                size++;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Передаёт значения всех слов, расстояние до которых не больше заданного
+     *
+     * @param word        слово запроса
+     * @param maxDistance наибольшее расстояние
+     * @param consumer    получатель значения и расстояния до его слова
+     */
+    void search(String word, int maxDistance, ObjIntConsumer<T> consumer) {
+        if (root == null) {
+            return;
+        }
+        Deque<Node<T>> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node<T> node = stack.pop();
+            // Большее расстояние не нужно: рёбер длиннее maxEdge нет, и ни одно поддерево не подойдёт
+            int distance = distance(word, node.word, maxDistance + node.maxEdge);
+            if (distance <= maxDistance) {
+                for (T value : node.values) {
+                    consumer.accept(value, distance);
+                }
+            }
+            for (Map.Entry<Integer, Node<T>> child : node.children.entrySet()) {
+                if (Math.abs(child.getKey() - distance) <= maxDistance) {
+                    stack.push(child.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Количество различных слов
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Расстояние Левенштейна: наименьшее количество вставок, удалений и замен символов
+     */
+    static int distance(String first, String second) {
+        return distance(first, second, Integer.MAX_VALUE - 1);
+    }
+
+    /**
+     * Расстояние Левенштейна, ограниченное сверху: считаются только клетки на расстоянии не больше limit
+     * от диагонали, и как только расстояние заведомо больше limit, вычисление прекращается
+     *
+     * @return расстояние или limit + 1, если оно больше limit
+     */
+    static int distance(String first, String second, int limit) {
+        int n = first.length();
+        int m = second.length();
+        if (Math.abs(n - m) > limit) {
+            return limit + 1;
+        }
+        int outside = limit + 1;
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            previous[j] = Math.min(j, outside);
+        }
+        for (int i = 1; i <= n; i++) {
+            int from = Math.max(1, i - limit);
+            int to = (int) Math.min(m, (long) i + limit);
+            current[from - 1] = from == 1 ? Math.min(i, outside) : outside;
+            int rowMin = current[from - 1];
+            char c = first.charAt(i - 1);
+            for (int j = from; j <= to; j++) {
+                int replace = previous[j - 1] + (c == second.charAt(j - 1) ? 0 : 1);
+                int above = j - i < limit ? previous[j] : outside;
+                int value = Math.min(replace, Math.min(above, current[j - 1]) + 1);
+                current[j] = Math.min(value, outside);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > limit) {
+                return outside;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[m];
+    }
+
+    private static final class Node<T> {
+
+        private final String word;
+
+        private final List<T> values = new ArrayList<>(1);
+
+        private final Map<Integer, Node<T>> children = new HashMap<>();
+
+        /**
+         * Длина самого длинного ребра к потомку
+         */
+        private int maxEdge;
+
+        private Node(String word) {
+            this.word = word;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package ru.naumen.service;
+
+import javax.crypto.Cipher;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пул объектов Cipher одного преобразования.
+ * Если при создании пула указан ключ, объекты выдаются уже инициализированными им,
+ * иначе вызывающий инициализирует объект сам перед каждой операцией (так работает AES-GCM,
+ * где каждое шифрование требует нового nonce).
+ * Cipher не потокобезопасен, поэтому каждый объект в каждый момент принадлежит одному потоку.
+ * Пул не привязан к потокам, в отличие от ThreadLocal, поэтому подходит для виртуальных потоков:
+ * объектов создаётся столько, сколько операций выполняется одновременно, а не сколько было потоков
+ */
+final class CipherPool {
+
+    private final String transformation;
+    private final int mode;
+
+    /**
+     * Ключ для инициализации новых объектов или null, если инициализирует вызывающий
+     */
+    private final Key key;
+
+    /**
+     * Максимальное количество простаивающих объектов, лишние после всплеска нагрузки выбрасываются
+     */
+    private final int maxIdle;
+
+    private final Queue<Cipher> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    CipherPool(String transformation, int mode, Key key, int maxIdle) {
+        this.transformation = transformation;
+        this.mode = mode;
+        this.key = key;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Пул объектов, которые вызывающий инициализирует сам
+     */
+    CipherPool(String transformation, int maxIdle) {
+        this(transformation, 0, null, maxIdle);
+    }
+
+    /**
+     * Берёт объект из пула или создаёт новый, инициализированный ключом пула, если он задан
+     */
+    Cipher acquire() throws GeneralSecurityException {
+        Cipher cipher = idle.poll();
+        if (cipher != null) {
+            idleCount.decrementAndGet();
+            return cipher;
+        }
+        cipher = Cipher.getInstance(transformation);
+        if (key != null) {
+            cipher.init(mode, key);
+        }
+        return cipher;
+    }
+
+    /**
+     * Возвращает объект в пул. Объект, инициализированный пулом, можно возвращать только
+     * после успешного doFinal: тогда Cipher снова в состоянии сразу после инициализации.
+     * После ошибки объект нужно просто не возвращать
+     */
+    void release(Cipher cipher) {
+        if (idleCount.incrementAndGet() <= maxIdle) {
+            idle.offer(cipher);
+        } else {
+            idleCount.decrementAndGet();
+        }
+    }
+}
@@ -4,18 +4,18 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.naumen.bot.Response;
 import ru.naumen.bot.command.Command;
+import ru.naumen.bot.command.CommandResolver;
+import ru.naumen.bot.command.CommandTokens;
 import ru.naumen.cache.UserStateCache;
 import ru.naumen.handler.CommandHandler;
-import ru.naumen.handler.NonCommandHandler;
+import ru.naumen.handler.DialogTransitions;
 import ru.naumen.keyboard.KeyboardCreator;
-import ru.naumen.model.State;
 
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.Map;
 import java.util.Optional;
 
 import static ru.naumen.bot.constants.Errors.INCORRECT_COMMAND_RESPONSE;
-import static ru.naumen.bot.constants.Requests.ENTER_PASSWORD_DESCRIPTION;
 
 /**
  * Класс для работы с командами бота
@@ -23,31 +23,30 @@ import static ru.naumen.bot.constants.Requests.ENTER_PASSWORD_DESCRIPTION;
 @Service
 public class CommandService {
     private final UserStateCache userStateCache;
-    private final NonCommandHandler nonCommandHandler;
+    private final DialogTransitions dialogTransitions;
     private final KeyboardCreator keyboardCreator;
+    private final CommandResolver commandResolver;
 
     /**
      * Хэндлеры команд
-     * Название бина (сама команда формата "/command") -> хэндлер
+     * Команда -> хэндлер, бин которого назван самой командой формата "/command"
      */
-    private final Map<String, CommandHandler> commandHandlers;
-
-    /**
-     * Ввод, соответствующий команде -> сама команда
-     */
-    private final Map<String, Command> commandMap = new HashMap<>();
+    private final Map<Command, CommandHandler> commandHandlers = new EnumMap<>(Command.class);
 
     public CommandService(UserStateCache userStateCache,
-                          NonCommandHandler nonCommandHandler, KeyboardCreator keyboardCreator,
-                          Map<String, CommandHandler> commandHandlers) {
+                          DialogTransitions dialogTransitions, KeyboardCreator keyboardCreator,
+                          Map<String, CommandHandler> commandHandlers, CommandResolver commandResolver) {
         this.userStateCache = userStateCache;
-        this.nonCommandHandler = nonCommandHandler;
+        this.dialogTransitions = dialogTransitions;
         this.keyboardCreator = keyboardCreator;
-        this.commandHandlers = commandHandlers;
+        this.commandResolver = commandResolver;
 
         for (Command cmd : Command.values()) {
-            commandMap.put(cmd.getCommand(), cmd);
-            commandMap.put(cmd.getKeyboardLabel(), cmd);
+            CommandHandler handler = commandHandlers.get(cmd.getCommand());
+            if (handler == null) {
+                throw new IllegalStateException("Нет хэндлера для команды " + cmd.getCommand());
+            }
+            this.commandHandlers.put(cmd, handler);
         }
     }
 
@@ -58,7 +57,7 @@ public class CommandService {
      * @return команда
      */
     public Optional<Command> findCommand(String input) {
-        return Optional.ofNullable(commandMap.get(input));
+        return Optional.ofNullable(commandResolver.resolve(input));
     }
 
     /**
@@ -70,40 +69,32 @@ public class CommandService {
      */
     @Transactional
     public Response performCommand(String message, long userId) {
-        String[] splitCommand = message.split(" ");
+        CommandTokens command = CommandTokens.parse(message);
+        if (command.count() == 0) {
+            return new Response(INCORRECT_COMMAND_RESPONSE, keyboardCreator.createMainKeyboard());
+        }
 
-        return findCommand(splitCommand[0])
-                .map(command -> {
-                    CommandHandler handler = commandHandlers.get(command.getCommand());
-                    return handler.handle(splitCommand, userId);
-                })
-                .orElseGet(() -> performNotCommandMessage(splitCommand, userId));
+        Command foundCommand = commandResolver.resolve(command);
+        if (foundCommand == null) {
+            return performNotCommandMessage(command, userId);
+        }
+        return commandHandlers.get(foundCommand).handle(command, userId);
     }
 
     /**
      * Обработка сообщения, которое не является командой
      *
-     * @param splitCommand - входящее сообщение разделенное пробелами
-     * @param userId       - ID пользователя
+     * @param command - слова входящего сообщения
+     * @param userId  - ID пользователя
      */
-    private Response performNotCommandMessage(String[] splitCommand, long userId) {
-        if (splitCommand.length > 1) {
+    private Response performNotCommandMessage(CommandTokens command, long userId) {
+        if (command.count() > 1) {
             return new Response(INCORRECT_COMMAND_RESPONSE, keyboardCreator.createMainKeyboard());
         }
-        final String command = splitCommand[0];
-
-        return switch (userStateCache.getUserState(userId)) {
-            case GENERATION_STEP_1 -> nonCommandHandler.getPasswordLength(command, userId, State.GENERATION_STEP_2);
-            case GENERATION_STEP_2 -> nonCommandHandler.getComplexity(command, userId, State.NONE, null);
-            case SAVE_STEP_1 -> nonCommandHandler.getPassword(command, userId, State.SAVE_STEP_2);
-            case SAVE_STEP_2, EDIT_STEP_4 -> nonCommandHandler.getDescription(command, userId, State.NONE, null);
-            case EDIT_STEP_1, DELETE_STEP_1 -> nonCommandHandler.getIndexPassword(command, userId);
-            case EDIT_STEP_2 -> nonCommandHandler.getPasswordLength(command, userId, State.EDIT_STEP_3);
-            case EDIT_STEP_3 ->
-                    nonCommandHandler.getComplexity(command, userId, State.EDIT_STEP_4, ENTER_PASSWORD_DESCRIPTION);
-            case SORT_STEP_1 -> nonCommandHandler.getSortType(command, userId);
-            case FIND_STEP_1 -> nonCommandHandler.getSearchRequest(command, userId);
-            default -> new Response(INCORRECT_COMMAND_RESPONSE, keyboardCreator.createMainKeyboard());
-        };
+        DialogTransitions.Transition transition = dialogTransitions.get(userStateCache.getUserState(userId));
+        if (transition == null) {
+            return new Response(INCORRECT_COMMAND_RESPONSE, keyboardCreator.createMainKeyboard());
+        }
+        return transition.step().handle(command.get(0), userId);
     }
 }
@@ -0,0 +1,326 @@
+package ru.naumen.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import ru.naumen.exception.DecryptException;
+import ru.naumen.exception.EncryptException;
+import ru.naumen.model.User;
+import ru.naumen.repository.UserRepository;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ключи данных пользователей.
+ * Пароли пользователя шифруются его собственным ключом AES-256, а в базе данных ключ хранится
+ * зашифрованным мастер-ключом. При смене мастер-ключа перешифровываются только ключи пользователей.
+ * Расшифрованные ключи хранятся в LRU-кэше, размер которого ограничен объёмом памяти
+ * <p>
+ * Мастер-ключ с идентификатором 1 - это {@code password.encrypt-key}, им же расшифровываются пароли,
+ * записанные до появления ключей пользователей. Остальные мастер-ключи задаются списком
+ * {@code password.master-key.additional-keys} вида {@code 2:ключ,3:ключ}
+ */
+@Service
+public class DataKeyService {
+
+    private final Logger log = LoggerFactory.getLogger(DataKeyService.class);
+
+    private static final String ALGORITHM = "AES";
+
+    private static final String GCM_TRANSFORMATION = "AES/GCM/NoPadding";
+
+    /**
+     * Версия формата зашифрованного ключа: байт версии, идентификатор мастер-ключа, nonce и шифротекст с тегом.
+     * Заголовок и id пользователя входят в проверяемые данные, поэтому ключ нельзя подставить другому пользователю
+     */
+    static final byte WRAP_FORMAT_V1 = 1;
+
+    /**
+     * Идентификатор мастер-ключа {@code password.encrypt-key}
+     */
+    static final int PRIMARY_KEY_ID = 1;
+
+    private static final int DATA_KEY_LENGTH = 32;
+    private static final int GCM_NONCE_LENGTH = 12;
+    private static final int GCM_TAG_BITS = 128;
+    private static final int WRAP_HEADER_LENGTH = 2 + GCM_NONCE_LENGTH;
+
+    /**
+     * Длина зашифрованного ключа
+     */
+    static final int WRAPPED_KEY_LENGTH = WRAP_HEADER_LENGTH + DATA_KEY_LENGTH + GCM_TAG_BITS / Byte.SIZE;
+
+    /**
+     * Оценка памяти одной записи кэша: узел LinkedHashMap, Long и SecretKeySpec с массивом ключа
+     */
+    static final int CACHE_ENTRY_BYTES = 160;
+
+    private final UserRepository userRepository;
+
+    /**
+     * Мастер-ключи по идентификаторам
+     */
+    private final Map<Integer, SecretKeySpec> masterKeys;
+
+    /**
+     * Идентификатор мастер-ключа, которым шифруются новые ключи пользователей
+     */
+    private final int currentKeyId;
+
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Расшифрованные ключи по id пользователя в порядке последнего обращения
+     */
+    private final LinkedHashMap<Long, SecretKey> cache;
+    private final int cacheCapacity;
+    private final ReentrantLock cacheLock = new ReentrantLock();
+
+    private final LongAdder unwrapCount = new LongAdder();
+
+    public DataKeyService(UserRepository userRepository,
+                          @Value("${password.encrypt-key}") String encryptKey,
+                          @Value("${password.master-key.current-id}") int currentKeyId,
+                          @Value("${password.master-key.additional-keys}") String additionalKeys,
+                          @Value("${password.data-key-cache.max-size}") DataSize cacheMaxSize) {
+        this.userRepository = userRepository;
+        this.masterKeys = parseMasterKeys(encryptKey, additionalKeys);
+        if (!masterKeys.containsKey(currentKeyId)) {
+            throw new IllegalArgumentException("Не задан текущий мастер-ключ " + currentKeyId);
+        }
+        this.currentKeyId = currentKeyId;
+        this.cacheCapacity = (int) Math.max(1, Math.min(Integer.MAX_VALUE, cacheMaxSize.toBytes() / CACHE_ENTRY_BYTES));
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, SecretKey> eldest) {
+                return size() > cacheCapacity;
+            }
+        };
+    }
+
+    /**
+     * Возвращает ключ данных пользователя. Если ключа ещё нет, создаёт его и сохраняет в БД
+     *
+     * @param user пользователь
+     * @return расшифрованный ключ данных
+     */
+    public SecretKey getDataKey(User user) {
+        SecretKey dataKey = getCached(user.getId());
+        if (dataKey != null) {
+            return dataKey;
+        }
+        byte[] wrappedKey = user.getDataKey() != null ? user.getDataKey() : createDataKey(user);
+        try {
+            dataKey = unwrap(wrappedKey, user.getId());
+        } catch (GeneralSecurityException e) {
+            throw new DecryptException("Не удалось расшифровать ключ пользователя " + user.getId(), e);
+        }
+        putCached(user.getId(), dataKey);
+        return dataKey;
+    }
+
+    /**
+     * Перешифровывает ключ пользователя текущим мастер-ключом.
+     * Сам ключ данных не меняется, поэтому пароли и кэш остаются действительными
+     *
+     * @param user пользователь
+     * @return true, если ключ перешифрован; false, если он уже зашифрован текущим мастер-ключом
+     * или был изменён с момента чтения
+     */
+    public boolean rewrap(User user) {
+        byte[] wrappedKey = user.getDataKey();
+        if (wrappedKey == null || user.getMasterKeyId() == null || user.getMasterKeyId() == currentKeyId) {
+            return false;
+        }
+        byte[] rewrapped;
+        try {
+            SecretKey dataKey = unwrap(wrappedKey, user.getId());
+            rewrapped = wrap(dataKey.getEncoded(), user.getId());
+        } catch (GeneralSecurityException e) {
+            throw new DecryptException("Не удалось перешифровать ключ пользователя " + user.getId(), e);
+        }
+        if (userRepository.rewrapDataKey(user.getId(), user.getMasterKeyId(), rewrapped, currentKeyId) != 1) {
+            return false;
+        }
+        user.setDataKey(rewrapped);
+        user.setMasterKeyId(currentKeyId);
+        return true;
+    }
+
+    /**
+     * Идентификатор текущего мастер-ключа
+     */
+    public int getCurrentKeyId() {
+        return currentKeyId;
+    }
+
+    /**
+     * Количество расшифрований ключей пользователей мастер-ключом
+     */
+    public long getUnwrapCount() {
+        return unwrapCount.sum();
+    }
+
+    /**
+     * Количество ключей в кэше
+     */
+    int cachedCount() {
+        cacheLock.lock();
+        try {
+            return cache.size();
+        } finally {
+            cacheLock.unlock();
+        }
+    }
+
+    /**
+     * Создаёт ключ данных и сохраняет его, если у пользователя ключа ещё нет.
+     * Если ключ параллельно создал другой поток, возвращает сохранённый им ключ
+     */
+    private byte[] createDataKey(User user) {
+        byte[] dataKey = new byte[DATA_KEY_LENGTH];
+        random.nextBytes(dataKey);
+        byte[] wrappedKey;
+        try {
+            wrappedKey = wrap(dataKey, user.getId());
+        } catch (GeneralSecurityException e) {
+            throw new EncryptException("Не удалось создать ключ пользователя " + user.getId(), e);
+        } finally {
+            Arrays.fill(dataKey, (byte) 0);
+        }
+
+        int keyId = currentKeyId;
+        if (userRepository.initDataKey(user.getId(), wrappedKey, keyId) != 1) {
+            User stored = userRepository.findById(user.getId());
+            if (stored == null || stored.getDataKey() == null) {
+                throw new EncryptException("Не удалось сохранить ключ пользователя " + user.getId(), null);
+            }
+            wrappedKey = stored.getDataKey();
+            keyId = stored.getMasterKeyId();
+        } else {
+            log.info("Создан ключ данных пользователя {}", user.getId());
+        }
+        user.setDataKey(wrappedKey);
+        user.setMasterKeyId(keyId);
+        return wrappedKey;
+    }
+
+    /**
+     * Шифрует ключ данных текущим мастер-ключом
+     */
+    private byte[] wrap(byte[] dataKey, long userId) throws GeneralSecurityException {
+        byte[] wrappedKey = new byte[WRAPPED_KEY_LENGTH];
+        wrappedKey[0] = WRAP_FORMAT_V1;
+        wrappedKey[1] = (byte) currentKeyId;
+        byte[] nonce = new byte[GCM_NONCE_LENGTH];
+        random.nextBytes(nonce);
+        System.arraycopy(nonce, 0, wrappedKey, 2, GCM_NONCE_LENGTH);
+
+        Cipher cipher = Cipher.getInstance(GCM_TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, masterKeys.get(currentKeyId), new GCMParameterSpec(GCM_TAG_BITS, nonce));
+        cipher.updateAAD(associatedData(wrappedKey, userId));
+        cipher.doFinal(dataKey, 0, dataKey.length, wrappedKey, WRAP_HEADER_LENGTH);
+        return wrappedKey;
+    }
+
+    /**
+     * Расшифровывает ключ данных мастер-ключом, указанным в его заголовке
+     */
+    private SecretKey unwrap(byte[] wrappedKey, long userId) throws GeneralSecurityException {
+        if (wrappedKey.length != WRAPPED_KEY_LENGTH || wrappedKey[0] != WRAP_FORMAT_V1) {
+            throw new GeneralSecurityException("Неизвестный формат ключа пользователя");
+        }
+        int keyId = wrappedKey[1] & 0xFF;
+        SecretKeySpec masterKey = masterKeys.get(keyId);
+        if (masterKey == null) {
+            throw new GeneralSecurityException("Не задан мастер-ключ " + keyId);
+        }
+
+        Cipher cipher = Cipher.getInstance(GCM_TRANSFORMATION);
+        cipher.init(Cipher.DECRYPT_MODE, masterKey, new GCMParameterSpec(GCM_TAG_BITS, wrappedKey, 2, GCM_NONCE_LENGTH));
+        cipher.updateAAD(associatedData(wrappedKey, userId));
+        byte[] dataKey = cipher.doFinal(wrappedKey, WRAP_HEADER_LENGTH, wrappedKey.length - WRAP_HEADER_LENGTH);
+        unwrapCount.increment();
+        try {
+            return new SecretKeySpec(dataKey, ALGORITHM);
+        } finally {
+            Arrays.fill(dataKey, (byte) 0);
+        }
+    }
+
+    /**
+     * Проверяемые данные: заголовок ключа и id пользователя
+     */
+    private static byte[] associatedData(byte[] wrappedKey, long userId) {
+        return ByteBuffer.allocate(2 + Long.BYTES)
+                .put(wrappedKey, 0, 2)
+                .putLong(userId)
+                .array();
+    }
+
+    private SecretKey getCached(long userId) {
+        cacheLock.lock();
+        try {
+            return cache.get(userId);
+        } finally {
+            cacheLock.unlock();
+        }
+    }
+
+    private void putCached(long userId, SecretKey dataKey) {
+        cacheLock.lock();
+        try {
+            cache.put(userId, dataKey);
+        } finally {
+            cacheLock.unlock();
+        }
+    }
+
+    /**
+     * Разбирает мастер-ключи: основной ключ с идентификатором 1 и дополнительные вида {@code id:ключ}
+     */
+    private static Map<Integer, SecretKeySpec> parseMasterKeys(String encryptKey, String additionalKeys) {
+        Map<Integer, SecretKeySpec> keys = new HashMap<>();
+        keys.put(PRIMARY_KEY_ID, masterKey(encryptKey));
+        for (String entry : additionalKeys.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int separator = entry.indexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Мастер-ключ должен быть задан в виде id:ключ");
+            }
+            int keyId = Integer.parseInt(entry.substring(0, separator).trim());
+            if (keyId <= PRIMARY_KEY_ID || keyId > 0xFF) {
+                throw new IllegalArgumentException("Идентификатор мастер-ключа должен быть от 2 до 255: " + keyId);
+            }
+            if (keys.put(keyId, masterKey(entry.substring(separator + 1).trim())) != null) {
+                throw new IllegalArgumentException("Мастер-ключ " + keyId + " задан дважды");
+            }
+        }
+        return keys;
+    }
+
+    private static SecretKeySpec masterKey(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length != 16 && keyBytes.length != 24 && keyBytes.length != 32) {
+            throw new IllegalArgumentException("Длина мастер-ключа должна быть 16, 24 или 32 байта");
+        }
+        return new SecretKeySpec(keyBytes, ALGORITHM);
+    }
+}
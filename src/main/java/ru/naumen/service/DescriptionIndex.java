@@ -0,0 +1,462 @@
+package ru.naumen.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.naumen.cache.PageCursor;
+import ru.naumen.repository.PasswordDescription;
+import ru.naumen.repository.UserPasswordRepository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Триграммный индекс описаний паролей для поиска.
+ * Индекс пользователя строится из БД при первом поиске и дальше изменяется вместе с паролями,
+ * поэтому поиск не читает таблицу паролей. Индексы хранятся в LRU-кэше на заданное количество пользователей,
+ * при запуске приложения их можно построить заранее.
+ * Поиск пересекает списки записей по триграммам запроса и проверяет найденные описания целиком.
+ * Запросы короче триграммы проверяются по всем описаниям пользователя в порядке выдачи.
+ * Для запросов с опечатками есть ранжированный поиск похожих слов по BK-дереву слов описаний
+ */
+@Component
+public class DescriptionIndex {
+
+    private final Logger log = LoggerFactory.getLogger(DescriptionIndex.class);
+
+    /**
+     * Длина n-граммы
+     */
+    static final int GRAM_LENGTH = 3;
+
+    /**
+     * Порядок выдачи: по ключу сортировки описания, как в /sort по описанию, см. {@link SortEngine}
+     */
+    private static final Comparator<Entry> ORDER = Comparator.comparing(Entry::key);
+
+    /**
+     * Количество счётчиков изменений, по которым отбрасываются индексы, прочитанные во время изменения
+     */
+    private static final int GENERATION_STRIPES = 64;
+
+    private final UserPasswordRepository userPasswordRepository;
+    private final SortEngine sortEngine;
+    private final boolean preload;
+    private final int maximumUsers;
+
+    /**
+     * Индексы загруженных пользователей в порядке последнего обращения
+     */
+    private final LinkedHashMap<Long, UserIndex> indexes;
+
+    /**
+     * Счётчики изменений по группам пользователей. Индекс, во время чтения которого счётчик изменился,
+     * мог не увидеть изменение и в кэш не кладётся
+     */
+    private final long[] generations = new long[GENERATION_STRIPES];
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile Thread preloadThread;
+
+    public DescriptionIndex(UserPasswordRepository userPasswordRepository,
+                            SortEngine sortEngine,
+                            @Value("${bot.find.index.preload}") boolean preload,
+                            @Value("${bot.find.index.maximum-users}") int maximumUsers) {
+        if (maximumUsers < 1) {
+            throw new IllegalArgumentException("Размер кэша индексов должен быть положительным");
+        }
+        this.userPasswordRepository = userPasswordRepository;
+        this.sortEngine = sortEngine;
+        this.preload = preload;
+        this.maximumUsers = maximumUsers;
+        this.indexes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, UserIndex> eldest) {
+                return size() > maximumUsers;
+            }
+        };
+    }
+
+    /**
+     * Загружает индексы пользователей после запуска приложения, не больше, чем помещается в кэш
+     */
+    @EventListener({ApplicationReadyEvent.class})
+    public synchronized void start() {
+        if (!preload || preloadThread != null) {
+            return;
+        }
+        preloadThread = Thread.ofVirtual().name("description-index").start(() -> {
+            try {
+                List<Long> userIds = userPasswordRepository.findUserIdsWithPasswords();
+                userIds = userIds.subList(0, Math.min(userIds.size(), maximumUsers));
+                for (Long userId : userIds) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        return;
+                    }
+                    indexOf(userId);
+                }
+                log.info("Построен индекс описаний паролей {} пользователей", userIds.size());
+            } catch (RuntimeException e) {
+                log.error("Построение индекса описаний прервано", e);
+            }
+        });
+    }
+
+    /**
+     * Находит страницу паролей пользователя, описание которых подходит под запрос
+     *
+     * @param userId  Id пользователя
+     * @param query   запрос
+     * @param from    ключ записи, от которой отсчитывается страница, или null для первой страницы
+     * @param forward true - записи после ключа, false - записи перед ключом
+     * @param limit   максимальное количество записей
+     * @return uuid паролей в порядке описания и uuid
+     */
+    public List<UUID> find(long userId, SearchQuery query, PageCursor.Key from, boolean forward, int limit) {
+        Entry key = from == null ? null : new Entry(sortEngine.descriptionKey(from.value(), from.uuid()), null);
+        return indexOf(userId).find(query, key, forward, limit);
+    }
+
+    /**
+     * Находит пароли пользователя, в описании которых есть слова, похожие на слова запроса.
+     * Допустимое расстояние Левенштейна зависит от длины слова запроса, см. {@link #maxDistance(String)}
+     *
+     * @param userId  Id пользователя
+     * @param request поисковый запрос
+     * @param limit   максимальное количество записей
+     * @return uuid паролей по убыванию близости: сначала больше совпавших слов, затем меньше суммарное расстояние
+     */
+    public List<UUID> findSimilar(long userId, String request, int limit) {
+        List<String> queryWords = words(SearchQuery.parse(request).text());
+        if (queryWords.isEmpty()) {
+            return List.of();
+        }
+        return indexOf(userId).findSimilar(queryWords, limit);
+    }
+
+    /**
+     * Добавляет пароль в индекс или меняет его описание.
+     * Индекс, который ещё не загружен, не меняется: при загрузке изменение будет прочитано из БД
+     *
+     * @param userId      Id пользователя
+     * @param uuid        uuid пароля
+     * @param description описание пароля
+     */
+    public void put(long userId, UUID uuid, String description) {
+        Entry entry = entry(uuid, description);
+        change(userId, index -> index.put(entry));
+    }
+
+    /**
+     * Удаляет пароль из индекса
+     *
+     * @param userId Id пользователя
+     * @param uuid   uuid пароля
+     */
+    public void remove(long userId, UUID uuid) {
+        change(userId, index -> index.remove(uuid));
+    }
+
+    /**
+     * Количество пользователей, индекс которых загружен
+     */
+    public int indexedUsers() {
+        lock.lock();
+        try {
+            return indexes.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает индекс пользователя, при первом обращении читая его из БД.
+     * Чтение выполняется без блокировки: индекс, во время чтения которого пароли пользователя изменились,
+     * используется для одного поиска, но в кэш не кладётся
+     */
+    private UserIndex indexOf(long userId) {
+        int stripe = stripe(userId);
+        long generation;
+        lock.lock();
+        try {
+            UserIndex index = indexes.get(userId);
+            if (index != null) {
+                return index;
+            }
+            generation = generations[stripe];
+        } finally {
+            lock.unlock();
+        }
+
+        UserIndex index = new UserIndex();
+        for (PasswordDescription password : userPasswordRepository.findDescriptionsByUserId(userId)) {
+            index.put(entry(password.getUuid(), password.getDescription()));
+        }
+        lock.lock();
+        try {
+            if (generations[stripe] == generation) {
+                UserIndex loaded = indexes.putIfAbsent(userId, index);
+                if (loaded != null) {
+                    return loaded;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return index;
+    }
+
+    /**
+     * Отмечает изменение паролей пользователя и применяет его к индексу, если индекс загружен
+     */
+    private void change(long userId, Consumer<UserIndex> change) {
+        lock.lock();
+        try {
+            generations[stripe(userId)]++;
+            UserIndex index = indexes.get(userId);
+            if (index != null) {
+                change.accept(index);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int stripe(long userId) {
+        return Long.hashCode(userId) & (GENERATION_STRIPES - 1);
+    }
+
+    private Entry entry(UUID uuid, String description) {
+        return new Entry(sortEngine.descriptionKey(description, uuid), SearchQuery.normalize(description));
+    }
+
+    /**
+     * Сравнивает uuid без знака, как БД: иначе порядок расходился бы с порядком списка по описанию
+     */
+    static int compareUuid(UUID first, UUID second) {
+        int compare = Long.compareUnsigned(first.getMostSignificantBits(), second.getMostSignificantBits());
+        return compare != 0
+                ? compare
+                : Long.compareUnsigned(first.getLeastSignificantBits(), second.getLeastSignificantBits());
+    }
+
+    /**
+     * Слова текста: последовательности букв и цифр
+     */
+    static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean letter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                words.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Допустимое количество опечаток в слове запроса: в коротких словах опечатки не допускаются,
+     * иначе почти любое короткое слово оказывается похожим
+     */
+    static int maxDistance(String word) {
+        if (word.length() < 3) {
+            return 0;
+        }
+        return word.length() <= 5 ? 1 : 2;
+    }
+
+    /**
+     * Триграммы текста, каждая упакована в long по 16 бит на символ
+     */
+    static Set<Long> grams(String text) {
+        Set<Long> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            grams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+        return grams;
+    }
+
+    /**
+     * Пароль в индексе
+     *
+     * @param key        ключ сортировки описания для порядка выдачи
+     * @param normalized описание для сравнения с запросом
+     */
+    private record Entry(SortEngine.SortKey key, String normalized) {
+
+        UUID uuid() {
+            return key.uuid();
+        }
+    }
+
+    /**
+     * Близость пароля к запросу
+     *
+     * @param matched  количество слов запроса, похожих на слова описания
+     * @param distance сумма расстояний до похожих слов
+     */
+    private record Score(Entry entry, int matched, int distance) {
+
+        private static final Comparator<Score> RANK = Comparator
+                .comparingInt(Score::matched).reversed()
+                .thenComparingInt(Score::distance)
+                .thenComparing(Score::entry, ORDER);
+
+        Score plus(Score other) {
+            return new Score(entry, matched + other.matched, distance + other.distance);
+        }
+    }
+
+    /**
+     * Индекс паролей одного пользователя
+     */
+    private static final class UserIndex {
+
+        private final Map<UUID, Entry> entries = new HashMap<>();
+
+        private final NavigableSet<Entry> ordered = new TreeSet<>(ORDER);
+
+        private final Map<Long, Set<Entry>> postings = new HashMap<>();
+
+        /**
+         * Дерево слов описаний для поиска похожих. Строится при первом таком поиске,
+         * сбрасывается при изменении паролей
+         */
+        private BkTree<Entry> wordTree;
+
+        synchronized void put(Entry entry) {
+            remove(entry.uuid());
+            wordTree = null;
+            entries.put(entry.uuid(), entry);
+            ordered.add(entry);
+            for (Long gram : grams(entry.normalized())) {
+                postings.computeIfAbsent(gram, g -> new HashSet<>()).add(entry);
+            }
+        }
+
+        synchronized void remove(UUID uuid) {
+            Entry entry = entries.remove(uuid);
+            if (entry == null) {
+                return;
+            }
+            wordTree = null;
+            ordered.remove(entry);
+            for (Long gram : grams(entry.normalized())) {
+                Set<Entry> posting = postings.get(gram);
+                posting.remove(entry);
+                if (posting.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+
+        synchronized List<UUID> find(SearchQuery query, Entry key, boolean forward, int limit) {
+            NavigableSet<Entry> candidates = query.text().length() < GRAM_LENGTH ? ordered : candidates(query);
+            NavigableSet<Entry> range = key == null ? candidates
+                    : forward ? candidates.tailSet(key, false)
+                    : candidates.headSet(key, false).descendingSet();
+
+            List<UUID> page = new ArrayList<>(Math.min(limit, range.size()));
+            for (Entry entry : range) {
+                if (page.size() == limit) {
+                    break;
+                }
+                if (query.matches(entry.normalized())) {
+                    page.add(entry.uuid());
+                }
+            }
+            if (key != null && !forward) {
+                Collections.reverse(page);
+            }
+            return page;
+        }
+
+        synchronized List<UUID> findSimilar(List<String> queryWords, int limit) {
+            if (wordTree == null) {
+                wordTree = new BkTree<>();
+                for (Entry entry : ordered) {
+                    for (String word : words(entry.normalized())) {
+                        wordTree.add(word, entry);
+                    }
+                }
+            }
+
+            Map<Entry, Score> scores = new HashMap<>();
+            for (String queryWord : queryWords) {
+                Map<Entry, Integer> nearest = new HashMap<>();
+                wordTree.search(queryWord, maxDistance(queryWord),
+                        (entry, distance) -> nearest.merge(entry, distance, Math::min));
+                nearest.forEach((entry, distance) -> scores.merge(entry, new Score(entry, 1, distance), Score::plus));
+            }
+
+            // Лучшие limit записей: в вершине очереди худшая из отобранных
+            PriorityQueue<Score> top = new PriorityQueue<>(limit + 1, Score.RANK.reversed());
+            for (Score score : scores.values()) {
+                top.add(score);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+            List<Score> ranked = new ArrayList<>(top);
+            ranked.sort(Score.RANK);
+
+            List<UUID> result = new ArrayList<>(ranked.size());
+            for (Score score : ranked) {
+                result.add(score.entry().uuid());
+            }
+            return result;
+        }
+
+        /**
+         * Записи, содержащие все триграммы запроса: пересечение списков, начиная с самого короткого
+         */
+        private NavigableSet<Entry> candidates(SearchQuery query) {
+            List<Set<Entry>> lists = new ArrayList<>();
+            for (Long gram : grams(query.text())) {
+                Set<Entry> posting = postings.get(gram);
+                if (posting == null) {
+                    return Collections.emptyNavigableSet();
+                }
+                lists.add(posting);
+            }
+            lists.sort(Comparator.comparingInt(Set::size));
+
+            NavigableSet<Entry> result = new TreeSet<>(ORDER);
+            for (Entry entry : lists.get(0)) {
+                if (containsAll(lists, entry)) {
+                    result.add(entry);
+                }
+            }
+            return result;
+        }
+
+        private static boolean containsAll(List<Set<Entry>> lists, Entry entry) {
+            for (int i = 1; i < lists.size(); i++) {
+                if (!lists.get(i).contains(entry)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -1,40 +1,195 @@
 package ru.naumen.service;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import ru.naumen.exception.DecryptException;
 import ru.naumen.exception.EncryptException;
+import ru.naumen.model.User;
+import ru.naumen.model.UserPassword;
 
 import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
- * Класс для работы с шифрованием паролей
+ * Класс для работы с шифрованием паролей.
+ * Пароли шифруются AES-GCM ключом данных пользователя ({@link DataKeyService}) в двоичный формат:
+ * байт версии, nonce и шифротекст с тегом.
+ * Записи, зашифрованные напрямую ключом {@code password.encrypt-key}, читаются по-прежнему:
+ * формат AES-GCM первой версии - до следующего изменения пароля,
+ * прежний формат (AES/ECB в base64) - пока его не перешифрует {@link PasswordMigrator}
  */
 @Service
 public class EncodeService {
 
     private static final String ALGORITHM = "AES";
 
-    private final String secretKey;
+    private static final String GCM_TRANSFORMATION = "AES/GCM/NoPadding";
 
-    public EncodeService(@Value("${password.encrypt-key}") String secretKey) {
-        this.secretKey = secretKey;
+    /**
+     * Версия формата: AES-GCM ключом {@code password.encrypt-key}, nonce 12 байт, тег 128 бит.
+     * Байт версии входит в проверяемые данные
+     */
+    static final byte FORMAT_GCM_V1 = 1;
+
+    /**
+     * Версия формата: AES-GCM ключом данных пользователя, остальное как в {@link #FORMAT_GCM_V1}
+     */
+    static final byte FORMAT_GCM_V2 = 2;
+
+    private static final int GCM_NONCE_LENGTH = 12;
+    private static final int GCM_TAG_BITS = 128;
+
+    /**
+     * Длина заголовка: байт версии и nonce
+     */
+    private static final int GCM_HEADER_LENGTH = 1 + GCM_NONCE_LENGTH;
+
+    /**
+     * Значения символов base64 по коду символа, -1 - не символ base64
+     */
+    private static final int[] BASE64_VALUES = new int[128];
+
+    static {
+        Arrays.fill(BASE64_VALUES, -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64_VALUES[alphabet.charAt(i)] = i;
+        }
+    }
+
+    /**
+     * Максимальное количество простаивающих Cipher в каждом пуле
+     */
+    private static final int MAX_IDLE_CIPHERS = 64;
+
+    /**
+     * Количество паролей, начиная с которого {@link #decryptAll} делит работу между ядрами, по умолчанию
+     */
+    private static final int DEFAULT_PARALLEL_THRESHOLD = 256;
+
+    private final SecretKeySpec key;
+
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Ключ и шифры создаются один раз: поиск провайдера и разворачивание ключа
+     * занимают больше времени, чем само шифрование короткого пароля
+     */
+    private final CipherPool encryptCiphers;
+    private final CipherPool decryptCiphers;
+
+    /**
+     * Шифры AES-GCM инициализируются перед каждой операцией: каждому шифрованию нужен новый nonce
+     */
+    private final CipherPool gcmCiphers;
+
+    /**
+     * Количество паролей, начиная с которого расшифрование списка выполняется параллельно.
+     * Это же количество - наименьшая часть списка, которую получает одна задача
+     */
+    private final int parallelThreshold;
+
+    /**
+     * Ключи данных пользователей, null - если сервис работает только с ключом {@code password.encrypt-key}
+     */
+    private final DataKeyService dataKeyService;
+
+    public EncodeService(String secretKey) {
+        this(secretKey, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    public EncodeService(String secretKey, int parallelThreshold) {
+        this(secretKey, parallelThreshold, null);
+    }
+
+    @Autowired
+    public EncodeService(@Value("${password.encrypt-key}") String secretKey,
+                         @Value("${password.decrypt-parallel-threshold}") int parallelThreshold,
+                         DataKeyService dataKeyService) {
+        if (parallelThreshold < 1) {
+            throw new IllegalArgumentException("Порог параллельного расшифрования должен быть положительным");
+        }
+        this.key = new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.encryptCiphers = new CipherPool(ALGORITHM, Cipher.ENCRYPT_MODE, key, MAX_IDLE_CIPHERS);
+        this.decryptCiphers = new CipherPool(ALGORITHM, Cipher.DECRYPT_MODE, key, MAX_IDLE_CIPHERS);
+        this.gcmCiphers = new CipherPool(GCM_TRANSFORMATION, MAX_IDLE_CIPHERS);
+        this.parallelThreshold = parallelThreshold;
+        this.dataKeyService = dataKeyService;
     }
 
     /**
-     * Шифрует строку алгоритмом AES по заданному ключу
+     * Шифрует строку алгоритмом AES-GCM ключом данных пользователя со случайным nonce
+     *
+     * @param plainString строка
+     * @param owner       пользователь, которому принадлежит пароль
+     * @return байт версии формата, nonce и шифротекст с тегом
+     */
+    public byte[] encrypt(String plainString, User owner) {
+        if (owner == null) {
+            throw new EncryptException("Не указан владелец пароля", null);
+        }
+        return seal(FORMAT_GCM_V2, requireDataKeyService().getDataKey(owner), plainString);
+    }
+
+    /**
+     * Шифрует строку алгоритмом AES-GCM ключом {@code password.encrypt-key} со случайным nonce.
+     * Новые пароли так не шифруются, метод оставлен для проверки совместимости
+     *
+     * @param plainString строка
+     * @return байт версии формата, nonce и шифротекст с тегом
+     */
+    public byte[] encrypt(String plainString) {
+        return seal(FORMAT_GCM_V1, key, plainString);
+    }
+
+    /**
+     * Шифрует строку алгоритмом AES-GCM в формате указанной версии
+     */
+    private byte[] seal(byte format, SecretKey secretKey, String plainString) {
+        try {
+            byte[] plainBytes = plainString.getBytes(StandardCharsets.UTF_8);
+            byte[] nonce = new byte[GCM_NONCE_LENGTH];
+            random.nextBytes(nonce);
+
+            Cipher cipher = gcmCiphers.acquire();
+            cipher.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(GCM_TAG_BITS, nonce));
+            byte[] secret = new byte[GCM_HEADER_LENGTH + cipher.getOutputSize(plainBytes.length)];
+            secret[0] = format;
+            System.arraycopy(nonce, 0, secret, 1, GCM_NONCE_LENGTH);
+            cipher.updateAAD(secret, 0, 1);
+            cipher.doFinal(plainBytes, 0, plainBytes.length, secret, GCM_HEADER_LENGTH);
+            gcmCiphers.release(cipher);
+            return secret;
+        } catch (Exception e) {
+            throw new EncryptException("Ошибка при шифровании пароля", e);
+        }
+    }
+
+    /**
+     * Шифрует строку прежним способом: AES/ECB, результат в base64.
+     * Новые пароли так не шифруются, метод оставлен для проверки совместимости
      *
      * @param plainString строка
      * @return шифрованная строка
      */
     public String encryptData(String plainString) {
         try {
-            SecretKeySpec secretKey = new SecretKeySpec(this.secretKey.getBytes(), ALGORITHM);
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-            byte[] encryptedBytes = cipher.doFinal(plainString.getBytes());
+            Cipher cipher = encryptCiphers.acquire();
+            byte[] encryptedBytes = cipher.doFinal(plainString.getBytes(StandardCharsets.UTF_8));
+            encryptCiphers.release(cipher);
             return Base64.getEncoder().encodeToString(encryptedBytes);
         } catch (Exception e) {
             throw new EncryptException("Ошибка при шифровании пароля", e);
@@ -42,23 +197,311 @@ public class EncodeService {
     }
 
     /**
-     * Расшифровывает строку алгоритмом AES по заданному ключу
+     * Расшифровывает пароль в формате {@link #encrypt(String)}
+     *
+     * @param secret байт версии формата, nonce и шифротекст
+     * @return расшифрованная строка
+     */
+    public String decrypt(byte[] secret) {
+        return decrypt(secret, null);
+    }
+
+    /**
+     * Расшифровывает пароль в любом из форматов AES-GCM
+     *
+     * @param secret байт версии формата, nonce и шифротекст
+     * @param owner  пользователь, которому принадлежит пароль
+     * @return расшифрованная строка
+     */
+    public String decrypt(byte[] secret, User owner) {
+        SecretKey dataKey = isUserKeyFormat(secret) && owner != null
+                ? requireDataKeyService().getDataKey(owner)
+                : null;
+        try (DecryptContext context = new DecryptContext()) {
+            return context.decryptSecret(secret, dataKey);
+        } catch (DecryptException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new DecryptException("При расшифровании пароля произошла ошибка", e);
+        }
+    }
+
+    /**
+     * Расшифровывает строку прежнего формата (AES/ECB в base64)
      *
      * @param encryptedString шифрованная строка
      * @return расшифрованная строка
      */
     public String decryptData(String encryptedString) {
+        try (DecryptContext context = new DecryptContext()) {
+            return context.decryptLegacy(encryptedString);
+        } catch (Exception e) {
+            throw new DecryptException("При расшифровании пароля произошла ошибка", e);
+        }
+    }
+
+    /**
+     * Расшифровывает список строк прежнего формата, сохраняя порядок.
+     * Часть списка расшифровывается одним Cipher и одним набором буферов.
+     * Список длиннее порога делится на части, которые выполняются в общем ForkJoinPool
+     *
+     * @param encryptedStrings шифрованные строки
+     * @return расшифрованные строки в том же порядке
+     */
+    public List<String> decryptAll(List<String> encryptedStrings) {
+        return decryptEach(encryptedStrings, DecryptContext::decryptLegacy);
+    }
+
+    /**
+     * Расшифровывает один пароль в любом из форматов
+     *
+     * @param password пароль из базы данных
+     * @return расшифрованный пароль
+     */
+    public String decryptPassword(UserPassword password) {
+        return password.getSecret() != null
+                ? decrypt(password.getSecret(), password.getUser())
+                : decryptData(password.getPassword());
+    }
+
+    /**
+     * Расшифровывает пароли в любом из форматов, сохраняя порядок.
+     * Ключ данных каждого владельца расшифровывается один раз до начала работы,
+     * дальше список расшифровывается так же, как в {@link #decryptAll}
+     *
+     * @param passwords пароли из базы данных
+     * @return расшифрованные пароли в том же порядке
+     */
+    public List<String> decryptPasswords(List<UserPassword> passwords) {
+        Map<Long, SecretKey> dataKeys = resolveDataKeys(passwords);
+        return decryptEach(passwords, (context, password) -> {
+            if (password.getSecret() == null) {
+                return context.decryptLegacy(password.getPassword());
+            }
+            SecretKey dataKey = password.getUser() != null ? dataKeys.get(password.getUser().getId()) : null;
+            return context.decryptSecret(password.getSecret(), dataKey);
+        });
+    }
+
+    /**
+     * Получает ключи данных владельцев паролей, зашифрованных ключом пользователя
+     */
+    private Map<Long, SecretKey> resolveDataKeys(List<UserPassword> passwords) {
+        Map<Long, SecretKey> dataKeys = new HashMap<>();
+        for (UserPassword password : passwords) {
+            User owner = password.getUser();
+            if (owner != null && isUserKeyFormat(password.getSecret()) && !dataKeys.containsKey(owner.getId())) {
+                dataKeys.put(owner.getId(), requireDataKeyService().getDataKey(owner));
+            }
+        }
+        return dataKeys;
+    }
+
+    private static boolean isUserKeyFormat(byte[] secret) {
+        return secret != null && secret.length > 0 && secret[0] == FORMAT_GCM_V2;
+    }
+
+    private DataKeyService requireDataKeyService() {
+        if (dataKeyService == null) {
+            throw new IllegalStateException("Ключи данных пользователей не настроены");
+        }
+        return dataKeyService;
+    }
+
+    /**
+     * Расшифровывает элементы списка, большой список - параллельно
+     */
+    private <T> List<String> decryptEach(List<T> source, ItemDecryptor<T> decryptor) {
+        String[] decrypted = new String[source.size()];
         try {
-            encryptedString = encryptedString.replaceAll("\\s", "+");
-            SecretKeySpec secretKey = new SecretKeySpec(this.secretKey.getBytes(), ALGORITHM);
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.DECRYPT_MODE, secretKey);
-            byte[] encryptedBytes = Base64.getDecoder().decode(encryptedString);
-            byte[] decryptedBytes = cipher.doFinal(encryptedBytes);
-
-            return new String(decryptedBytes);
+            if (decrypted.length < parallelThreshold * 2) {
+                decryptRange(source, decryptor, decrypted, 0, decrypted.length);
+            } else {
+                ForkJoinPool.commonPool().invoke(new DecryptTask<>(source, decryptor, decrypted, 0, decrypted.length));
+            }
+        } catch (DecryptException e) {
+            throw e;
         } catch (Exception e) {
             throw new DecryptException("При расшифровании пароля произошла ошибка", e);
         }
+        return Arrays.asList(decrypted);
+    }
+
+    /**
+     * Расшифровывает элементы с from по to одним набором шифров и буферов
+     */
+    private <T> void decryptRange(List<T> source, ItemDecryptor<T> decryptor, String[] target, int from, int to)
+            throws GeneralSecurityException {
+        try (DecryptContext context = new DecryptContext()) {
+            for (int i = from; i < to; i++) {
+                target[i] = decryptor.decrypt(context, source.get(i));
+            }
+        }
+    }
+
+    /**
+     * Расшифрование одного элемента списка
+     */
+    @FunctionalInterface
+    private interface ItemDecryptor<T> {
+        String decrypt(DecryptContext context, T item) throws GeneralSecurityException;
+    }
+
+    /**
+     * Шифры и буферы одной задачи расшифрования.
+     * Шифры берутся из пулов при первой необходимости и возвращаются при закрытии,
+     * если все операции прошли успешно. Буферы растут под самую длинную строку
+     */
+    private final class DecryptContext implements AutoCloseable {
+
+        private Cipher legacyCipher;
+        private Cipher gcmCipher;
+        private boolean failed;
+
+        private byte[] encrypted = new byte[64];
+        private byte[] plain = new byte[64];
+
+        /**
+         * Расшифровывает строку прежнего формата
+         */
+        String decryptLegacy(String encryptedString) throws GeneralSecurityException {
+            failed = true;
+            if (legacyCipher == null) {
+                legacyCipher = decryptCiphers.acquire();
+            }
+            int encryptedLength = decodeBase64(encryptedString);
+            byte[] plainBytes = plainBuffer(legacyCipher.getOutputSize(encryptedLength));
+            int plainLength = legacyCipher.doFinal(encrypted, 0, encryptedLength, plainBytes, 0);
+            failed = false;
+            return new String(plainBytes, 0, plainLength, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Расшифровывает пароль в формате AES-GCM
+         *
+         * @param dataKey ключ данных владельца, нужен для формата {@link #FORMAT_GCM_V2}
+         */
+        String decryptSecret(byte[] secret, SecretKey dataKey) throws GeneralSecurityException {
+            if (secret.length < GCM_HEADER_LENGTH + GCM_TAG_BITS / Byte.SIZE) {
+                throw new GeneralSecurityException("Неизвестный формат зашифрованного пароля");
+            }
+            SecretKey secretKey = switch (secret[0]) {
+                case FORMAT_GCM_V1 -> key;
+                case FORMAT_GCM_V2 -> dataKey;
+                default -> throw new GeneralSecurityException("Неизвестный формат зашифрованного пароля");
+            };
+            if (secretKey == null) {
+                throw new GeneralSecurityException("Не найден ключ данных владельца пароля");
+            }
+            if (gcmCipher == null) {
+                gcmCipher = gcmCiphers.acquire();
+            }
+            // Шифр инициализируется заново для каждой записи, поэтому ошибка не портит его
+            gcmCipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(GCM_TAG_BITS, secret, 1, GCM_NONCE_LENGTH));
+            gcmCipher.updateAAD(secret, 0, 1);
+            int encryptedLength = secret.length - GCM_HEADER_LENGTH;
+            byte[] plainBytes = plainBuffer(gcmCipher.getOutputSize(encryptedLength));
+            int plainLength = gcmCipher.doFinal(secret, GCM_HEADER_LENGTH, encryptedLength, plainBytes, 0);
+            return new String(plainBytes, 0, plainLength, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Декодирует base64 сразу в буфер шифротекста: {@link Base64.Decoder} принимает только массив
+         * точной длины, который пришлось бы создавать для каждой записи.
+         * Пробелы читаются как '+': они появляются на месте '+', когда base64 прошёл через разбор URL
+         *
+         * @return длина шифротекста
+         */
+        private int decodeBase64(String base64) throws GeneralSecurityException {
+            int length = base64.length();
+            while (length > 0 && base64.charAt(length - 1) == '=') {
+                length--;
+            }
+            int padding = base64.length() - length;
+            if (length % 4 == 1 || padding > 2 || padding > 0 && base64.length() % 4 != 0) {
+                throw new GeneralSecurityException("Некорректный base64 зашифрованного пароля");
+            }
+
+            byte[] target = encryptedBuffer(length / 4 * 3 + 2);
+            int bits = 0;
+            int bitCount = 0;
+            int position = 0;
+            for (int i = 0; i < length; i++) {
+                char c = base64.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    c = '+';
+                }
+                int value = c < BASE64_VALUES.length ? BASE64_VALUES[c] : -1;
+                if (value < 0) {
+                    throw new GeneralSecurityException("Некорректный base64 зашифрованного пароля");
+                }
+                bits = bits << 6 | value;
+                bitCount += 6;
+                if (bitCount >= Byte.SIZE) {
+                    bitCount -= Byte.SIZE;
+                    target[position++] = (byte) (bits >> bitCount);
+                }
+            }
+            return position;
+        }
+
+        private byte[] encryptedBuffer(int required) {
+            if (encrypted.length < required) {
+                encrypted = new byte[required];
+            }
+            return encrypted;
+        }
+
+        private byte[] plainBuffer(int required) {
+            if (plain.length < required) {
+                plain = new byte[required];
+            }
+            return plain;
+        }
+
+        @Override
+        public void close() {
+            if (legacyCipher != null && !failed) {
+                decryptCiphers.release(legacyCipher);
+            }
+            if (gcmCipher != null) {
+                gcmCiphers.release(gcmCipher);
+            }
+        }
+    }
+
+    /**
+     * Параллельное расшифрование части списка
+     */
+    private final class DecryptTask<T> extends RecursiveAction {
+
+        private final List<T> source;
+        private final ItemDecryptor<T> decryptor;
+        private final String[] target;
+        private final int from;
+        private final int to;
+
+        DecryptTask(List<T> source, ItemDecryptor<T> decryptor, String[] target, int from, int to) {
+            this.source = source;
+            this.decryptor = decryptor;
+            this.target = target;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from < parallelThreshold * 2) {
+                try {
+                    decryptRange(source, decryptor, target, from, to);
+                } catch (GeneralSecurityException | IllegalArgumentException e) {
+                    throw new DecryptException("При расшифровании пароля произошла ошибка", e);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new DecryptTask<>(source, decryptor, target, from, middle),
+                    new DecryptTask<>(source, decryptor, target, middle, to));
+        }
     }
 }
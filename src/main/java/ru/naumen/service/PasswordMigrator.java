@@ -0,0 +1,218 @@
+package ru.naumen.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import ru.naumen.exception.DecryptException;
+import ru.naumen.exception.EncryptException;
+import ru.naumen.model.User;
+import ru.naumen.model.UserPassword;
+import ru.naumen.repository.UserPasswordRepository;
+import ru.naumen.repository.UserRepository;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Фоновое перешифрование после запуска приложения.
+ * Сначала ключи данных пользователей, зашифрованные прежним мастер-ключом, перешифровываются текущим.
+ * Затем пароли прежнего формата (AES/ECB в base64) перешифровываются ключом данных владельца.
+ * Записи обрабатываются порциями с паузой между порциями, чтобы не мешать обработке сообщений.
+ * Каждая запись заменяется отдельным условным обновлением: если запись успела измениться, она пропускается
+ */
+@Component
+public class PasswordMigrator {
+
+    private final Logger log = LoggerFactory.getLogger(PasswordMigrator.class);
+
+    /**
+     * UUID, меньший любого сгенерированного: с него начинается обход паролей по возрастанию uuid
+     */
+    static final UUID FIRST_UUID = new UUID(0L, 0L);
+
+    private final UserPasswordRepository userPasswordRepository;
+    private final UserRepository userRepository;
+    private final EncodeService encodeService;
+    private final DataKeyService dataKeyService;
+    private final PasswordVault passwordVault;
+    private final boolean enabled;
+
+    /**
+     * Количество записей в одной порции
+     */
+    private final int batchSize;
+
+    /**
+     * Пауза между порциями
+     */
+    private final Duration batchPause;
+
+    private final LongAdder migratedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder rewrappedCount = new LongAdder();
+
+    private volatile Thread migratorThread;
+
+    public PasswordMigrator(UserPasswordRepository userPasswordRepository,
+                            UserRepository userRepository,
+                            EncodeService encodeService,
+                            DataKeyService dataKeyService,
+                            PasswordVault passwordVault,
+                            @Value("${password.migration.enabled}") boolean enabled,
+                            @Value("${password.migration.batch-size}") int batchSize,
+                            @Value("${password.migration.batch-pause}") Duration batchPause) {
+        this.userPasswordRepository = userPasswordRepository;
+        this.userRepository = userRepository;
+        this.encodeService = encodeService;
+        this.dataKeyService = dataKeyService;
+        this.passwordVault = passwordVault;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.batchPause = batchPause;
+    }
+
+    /**
+     * Запускает перешифрование после запуска приложения
+     */
+    @EventListener({ApplicationReadyEvent.class})
+    public synchronized void start() {
+        if (!enabled || migratorThread != null) {
+            return;
+        }
+        migratorThread = Thread.ofVirtual().name("password-migrator").start(() -> {
+            try {
+                rewrapAll();
+                migrateAll();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.error("Перешифрование паролей прервано", e);
+            }
+        });
+    }
+
+    /**
+     * Перешифровывает текущим мастер-ключом все ключи данных, зашифрованные другими мастер-ключами
+     */
+    void rewrapAll() throws InterruptedException {
+        int currentKeyId = dataKeyService.getCurrentKeyId();
+        long staleCount = userRepository.countByMasterKeyIdNot(currentKeyId);
+        if (staleCount == 0) {
+            return;
+        }
+        log.info("Перешифрование {} ключей пользователей мастер-ключом {}", staleCount, currentKeyId);
+
+        Long lastId = Long.MIN_VALUE;
+        while (lastId != null && !Thread.currentThread().isInterrupted()) {
+            lastId = rewrapBatch(lastId);
+            if (lastId != null) {
+                Thread.sleep(batchPause);
+            }
+        }
+        log.info("Перешифровано ключей пользователей: {}", rewrappedCount.sum());
+    }
+
+    /**
+     * Перешифровывает ключи данных одной порции пользователей
+     *
+     * @param afterId Id, после которого начинается порция
+     * @return Id последнего пользователя порции или null, если пользователей больше нет
+     */
+    Long rewrapBatch(long afterId) {
+        List<User> batch = userRepository.findByMasterKeyIdNotAndIdGreaterThanOrderByIdAsc(
+                dataKeyService.getCurrentKeyId(), afterId, Limit.of(batchSize));
+        for (User user : batch) {
+            try {
+                if (dataKeyService.rewrap(user)) {
+                    rewrappedCount.increment();
+                }
+            } catch (DecryptException e) {
+                failedCount.increment();
+                log.warn("Не удалось перешифровать ключ пользователя {}", user.getId());
+            }
+        }
+        return batch.size() < batchSize ? null : batch.get(batch.size() - 1).getId();
+    }
+
+    /**
+     * Перешифровывает все пароли прежнего формата
+     */
+    void migrateAll() throws InterruptedException {
+        long legacyCount = userPasswordRepository.countByPasswordIsNotNull();
+        if (legacyCount == 0) {
+            return;
+        }
+        log.info("Перешифрование {} паролей прежнего формата", legacyCount);
+
+        UUID lastUuid = FIRST_UUID;
+        while (lastUuid != null && !Thread.currentThread().isInterrupted()) {
+            lastUuid = migrateBatch(lastUuid);
+            if (lastUuid != null) {
+                Thread.sleep(batchPause);
+            }
+        }
+        log.info("Перешифровано паролей: {}, с ошибкой: {}", migratedCount.sum(), failedCount.sum());
+    }
+
+    /**
+     * Перешифровывает одну порцию паролей
+     *
+     * @param afterUuid uuid, после которого начинается порция
+     * @return uuid последней записи порции или null, если записей больше нет
+     */
+    UUID migrateBatch(UUID afterUuid) {
+        List<UserPassword> batch = userPasswordRepository
+                .findByPasswordIsNotNullAndUuidGreaterThanOrderByUuidAsc(afterUuid, Limit.of(batchSize));
+        for (UserPassword password : batch) {
+            try {
+                byte[] secret = encodeService.encrypt(encodeService.decryptData(password.getPassword()), password.getUser());
+                if (userPasswordRepository.replaceLegacyPassword(password.getUuid(), password.getPassword(), secret)) {
+                    migratedCount.increment();
+                    passwordVault.invalidate(password.getUser().getId());
+                }
+            } catch (DecryptException | EncryptException e) {
+                failedCount.increment();
+                log.warn("Не удалось перешифровать пароль {}, запись оставлена в прежнем формате", password.getUuid());
+            }
+        }
+        return batch.size() < batchSize ? null : batch.get(batch.size() - 1).getUuid();
+    }
+
+    /**
+     * Количество перешифрованных паролей
+     */
+    public long getMigratedCount() {
+        return migratedCount.sum();
+    }
+
+    /**
+     * Количество перешифрованных ключей пользователей
+     */
+    public long getRewrappedCount() {
+        return rewrappedCount.sum();
+    }
+
+    /**
+     * Количество паролей и ключей пользователей, которые не удалось перешифровать
+     */
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * Останавливает перешифрование
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (migratorThread != null) {
+            migratorThread.interrupt();
+        }
+    }
+}
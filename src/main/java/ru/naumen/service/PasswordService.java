@@ -2,14 +2,20 @@ package ru.naumen.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import ru.naumen.cache.PageCursor;
 import ru.naumen.exception.*;
 import ru.naumen.model.User;
 import ru.naumen.model.UserPassword;
 import ru.naumen.repository.UserPasswordRepository;
 
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 import static ru.naumen.bot.constants.Parameters.*;
 
@@ -23,6 +29,8 @@ public class PasswordService {
     private final EncodeService encodeService;
     private final UserService userService;
     private final UserPasswordRepository userPasswordRepository;
+    private final DescriptionIndex descriptionIndex;
+    private final PasswordVault passwordVault;
     private final Logger log = LoggerFactory.getLogger(PasswordService.class);
     private static final String LOWERCASE = "abcdefghijklmnopqrstuvwxyz";
     private static final String UPPERCASE = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
@@ -39,10 +47,16 @@ public class PasswordService {
      */
     private static final int MAXIMUM_PASSWORD_LENGTH = 128;
 
-    public PasswordService(EncodeService encodeService, UserService userService, UserPasswordRepository userPasswordRepository) {
+    public PasswordService(EncodeService encodeService,
+                           UserService userService,
+                           UserPasswordRepository userPasswordRepository,
+                           DescriptionIndex descriptionIndex,
+                           PasswordVault passwordVault) {
         this.encodeService = encodeService;
         this.userService = userService;
         this.userPasswordRepository = userPasswordRepository;
+        this.descriptionIndex = descriptionIndex;
+        this.passwordVault = passwordVault;
     }
 
     /**
@@ -54,97 +68,195 @@ public class PasswordService {
      */
     public void createUserPassword(String password, String description, long userId)
             throws UserNotFoundException, EncryptException {
-        String encodedPassword = encodeService.encryptData(password);
         User user = userService.getUserById(userId);
-        UserPassword userPassword = new UserPassword(description, encodedPassword, user);
+        byte[] secret = encodeService.encrypt(password, user);
+        UserPassword userPassword = new UserPassword(description, null, user);
+        userPassword.setSecret(secret);
 
         userPasswordRepository.save(userPassword);
+        descriptionIndex.put(userId, userPassword.getUuid(), description);
+        passwordVault.invalidate(userId);
         log.info("Создан новый пароль {}", userPassword.getUuid());
     }
 
     /**
-     * Возвращает список паролей конкретного пользователя
+     * Возвращает список паролей конкретного пользователя в порядке списка: по времени создания
      *
      * @param userId ID пользователя
      */
     public List<UserPassword> getUserPasswords(long userId) {
-        return userPasswordRepository.findByUserId(userId);
+        PasswordVault.Snapshot snapshot = passwordVault.get(userId);
+        return snapshot != null
+                ? snapshot.passwords()
+                : userPasswordRepository.findByUserIdOrderByCreatedAtAscUuidAsc(userId);
     }
 
     /**
-     * Ищет пароли у конкретного пользователя
+     * Возвращает страницу паролей пользователя.
+     * Страница выбирается по ключу соседней записи двоичным поиском в снимке хранилища, поэтому её стоимость
+     * не зависит от номера страницы. Для хранилища без снимка порядок строится тем же {@link SortEngine},
+     * см. {@link PasswordVault#largePage}: описания сравниваются по одним правилам, есть снимок или нет
      *
      * @param userId        ID пользователя
-     * @param searchRequest поисковый запрос пароля (частичное описание без учёта регистра)
+     * @param sortOrder     порядок паролей
+     * @param searchRequest поисковый запрос, см. {@link SearchQuery}, или null для всех паролей.
+     *                      Найденные пароли выводятся по описанию
+     * @param from          ключ записи, от которой отсчитывается страница, или null для первой страницы
+     * @param forward       true - записи после ключа, false - записи перед ключом
+     * @param limit         максимальное количество записей
+     * @return пароли в порядке сортировки
      */
-    public List<UserPassword> getUserPasswordsWithPartialDescription(long userId, String searchRequest) {
-        return userPasswordRepository.findByDescriptionContainsIgnoreCaseAndUserId(searchRequest, userId);
+    public List<UserPassword> getPasswordPage(long userId, SortOrder sortOrder, String searchRequest,
+                                              PageCursor.Key from, boolean forward, int limit)
+            throws IncorrectSortTypeException {
+        if (sortOrder == null) {
+            throw new IncorrectSortTypeException("Некорректный тип сортировки!");
+        }
+        if (sortOrder.type() == SortType.BY_DESCRIPTION && searchRequest != null) {
+            return findPasswordPage(userId, SearchQuery.parse(searchRequest), from, forward, limit);
+        }
+        PasswordVault.Snapshot snapshot = passwordVault.get(userId);
+        return snapshot != null
+                ? snapshot.page(sortOrder, from, forward, limit)
+                : passwordVault.largePage(userId, sortOrder, from, forward, limit);
     }
 
     /**
-     * Ищет пароли у конкретного пользователя
+     * Находит страницу паролей по индексу описаний и загружает только пароли страницы
      *
-     * @param userId ID пользователя
-     * @return список с отсортированными паролями или пустой список, если паролей у пользователя нет
+     * @return пароли в порядке описания и uuid, кроме удалённых после поиска
+     */
+    private List<UserPassword> findPasswordPage(long userId, SearchQuery query,
+                                                PageCursor.Key from, boolean forward, int limit) {
+        return findInOrder(userId, descriptionIndex.find(userId, query, from, forward, limit));
+    }
+
+    /**
+     * Находит пароли, описание которых похоже на запрос, если по самому запросу ничего не найдено.
+     * Учитываются опечатки в словах запроса, см. {@link DescriptionIndex#findSimilar(long, String, int)}
+     *
+     * @param userId        ID пользователя
+     * @param searchRequest поисковый запрос
+     * @param limit         максимальное количество записей
+     * @return пароли по убыванию близости к запросу
      */
-    public List<UserPassword> getUserPasswordsSorted(long userId, SortType sortType) throws IncorrectSortTypeException {
-        switch (sortType) {
-            case BY_DATE -> {
-                return userPasswordRepository.findByUserIdOrderByLastModifyDate(userId);
+    public List<UserPassword> findSimilarPasswords(long userId, String searchRequest, int limit) {
+        return findInOrder(userId, descriptionIndex.findSimilar(userId, searchRequest, limit));
+    }
+
+    /**
+     * Находит пароли с заданными uuid в снимке хранилища, а если снимка нет - загружает одним запросом
+     *
+     * @return пароли в порядке uuid, кроме удалённых после поиска
+     */
+    private List<UserPassword> findInOrder(long userId, List<UUID> uuids) {
+        if (uuids.isEmpty()) {
+            return List.of();
+        }
+        PasswordVault.Snapshot snapshot = passwordVault.get(userId);
+        if (snapshot != null) {
+            List<UserPassword> page = new ArrayList<>(uuids.size());
+            for (UUID uuid : uuids) {
+                UserPassword userPassword = snapshot.find(uuid);
+                if (userPassword != null) {
+                    page.add(userPassword);
+                }
             }
-            case BY_DESCRIPTION -> {
-                return userPasswordRepository.findByUserIdOrderByDescriptionAsc(userId);
+            return page;
+        }
+        Map<UUID, UserPassword> found = new HashMap<>(uuids.size());
+        for (UserPassword userPassword : userPasswordRepository.findAllById(uuids)) {
+            found.put(userPassword.getUuid(), userPassword);
+        }
+        List<UserPassword> page = new ArrayList<>(uuids.size());
+        for (UUID uuid : uuids) {
+            UserPassword userPassword = found.get(uuid);
+            if (userPassword != null) {
+                page.add(userPassword);
             }
-            default -> throw new IncorrectSortTypeException("Некорректный тип сортировки!");
         }
+        return page;
     }
 
     /**
-     * Удаляет пароль
+     * Ключ пароля в порядке сортировки: значение поля сортировки и uuid.
+     * Для сортировки по надёжности пароль расшифровывается, в ключ попадает только оценка
      *
-     * @param uuid uuid
+     * @param userPassword пароль
+     * @param sortType     порядок паролей
      */
-    public void deletePassword(String uuid) {
-        if (userPasswordRepository.existsByUuid(uuid)) {
-            userPasswordRepository.deleteByUuid(uuid);
-            log.info("Удалён пароль {}", uuid);
-        }
+    public PageCursor.Key getPageKey(UserPassword userPassword, SortType sortType) {
+        String value = switch (sortType) {
+            case BY_CREATION -> userPassword.getCreatedAt().toString();
+            case BY_DATE -> userPassword.getLastModifyDate().toString();
+            case BY_DESCRIPTION -> userPassword.getDescription();
+            case BY_STRENGTH -> String.valueOf(SortEngine.strength(encodeService.decryptPassword(userPassword)));
+        };
+        return new PageCursor.Key(value, userPassword.getUuid());
     }
 
     /**
-     * Обновляет данные для пароля
+     * Находит пароль по номеру в списке: в снимке хранилища или одним запросом, не загружая весь список
      *
-     * @param uuid        uuid
-     * @param description описание (если передаётся null, то не обновляется)
-     * @param password    пароль
+     * @param userId        ID пользователя
+     * @param passwordIndex номер пароля в списке, начиная с 1
+     * @throws PasswordNotFoundException если пароля с таким номером нет
      */
-    public void updatePassword(String uuid, String description, String password) {
-        if (userPasswordRepository.existsByUuid(uuid)) {
-            UserPassword userPassword = userPasswordRepository.findByUuid(uuid);
-
-            String encodedPassword = encodeService.encryptData(password);
-            userPassword.setPassword(encodedPassword);
-            if (description != null) {
-                userPassword.setDescription(description);
+    public UserPassword findPasswordByIndex(long userId, int passwordIndex) throws PasswordNotFoundException {
+        if (passwordIndex < 1) {
+            throw new PasswordNotFoundException("Пароль не найден!");
+        }
+        PasswordVault.Snapshot snapshot = passwordVault.get(userId);
+        if (snapshot != null) {
+            UserPassword userPassword = snapshot.get(passwordIndex - 1);
+            if (userPassword == null) {
+                throw new PasswordNotFoundException("Пароль не найден!");
             }
+            return userPassword;
+        }
+        List<UserPassword> found = userPasswordRepository.findByUserIdOrderByCreatedAtAscUuidAsc(
+                userId, PageRequest.of(passwordIndex - 1, 1));
+        if (found.isEmpty()) {
+            throw new PasswordNotFoundException("Пароль не найден!");
+        }
+        return found.get(0);
+    }
 
-            userPasswordRepository.save(userPassword);
-            log.info("Обновлён пароль {}", uuid);
+    /**
+     * Удаляет пароль
+     *
+     * @param userPassword найденный пароль
+     * @return true, если пароль удалён, false, если его уже не было
+     */
+    public boolean deletePassword(UserPassword userPassword) {
+        boolean deleted = userPasswordRepository.removeByUuid(userPassword.getUuid());
+        if (deleted) {
+            descriptionIndex.remove(userPassword.getUser().getId(), userPassword.getUuid());
+            passwordVault.invalidate(userPassword.getUser().getId());
+            log.info("Удалён пароль {}", userPassword.getUuid());
         }
+        return deleted;
     }
 
     /**
-     * Ищет пароль по UUID
+     * Обновляет данные для пароля
      *
-     * @param uuid uuid
-     * @throws PasswordNotFoundException если пароль не найден
+     * @param userPassword найденный пароль
+     * @param description  описание (если передаётся null, то не обновляется)
+     * @param password     пароль
+     * @return true, если пароль обновлён, false, если его успели удалить
      */
-    public UserPassword findPasswordByUuid(String uuid) throws PasswordNotFoundException {
-        UserPassword password = userPasswordRepository.findByUuid(uuid);
-        if (password == null) {
-            throw new PasswordNotFoundException("Пароль не найден!");
+    public boolean updatePassword(UserPassword userPassword, String description, String password) {
+        byte[] secret = encodeService.encrypt(password, userPassword.getUser());
+        String newDescription = description == null ? userPassword.getDescription() : description;
+
+        boolean updated = userPasswordRepository.replacePassword(userPassword.getUuid(), newDescription, secret);
+        if (updated) {
+            descriptionIndex.put(userPassword.getUser().getId(), userPassword.getUuid(), newDescription);
+            passwordVault.invalidate(userPassword.getUser().getId());
+            log.info("Обновлён пароль {}", userPassword.getUuid());
         }
-        return password;
+        return updated;
     }
 
     /**
@@ -155,7 +267,8 @@ public class PasswordService {
      * @return true, если индекс валиден
      */
     public boolean isValidPasswordIndex(int passwordIndex, long userId) {
-        int countPasswords = userPasswordRepository.countByUserId(userId);
+        PasswordVault.Snapshot snapshot = passwordVault.get(userId);
+        int countPasswords = snapshot != null ? snapshot.size() : userPasswordRepository.countByUserId(userId);
 
         return passwordIndex <= countPasswords
                 && passwordIndex >= 1;
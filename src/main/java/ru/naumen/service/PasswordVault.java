@@ -0,0 +1,319 @@
+package ru.naumen.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.naumen.cache.PageCursor;
+import ru.naumen.model.User;
+import ru.naumen.model.UserPassword;
+import ru.naumen.repository.UserPasswordRepository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Снимки хранилищ паролей пользователей в памяти.
+ * Снимок читается из БД одним запросом при первом обращении и сортируется в памяти, см. {@link SortEngine},
+ * поэтому страницы, количество и выбор по номеру в течение диалога не обращаются к БД.
+ * Снимок неизменяемый: создание, изменение и удаление пароля не правят его, а сбрасывают.
+ * <p>
+ * Снимки хранятся в LRU-кэше на заданное количество пользователей. Для хранилищ больше заданного размера
+ * снимок не строится, а их размер и пароль по номеру узнаются запросами, без чтения всех паролей.
+ * Страницы таких хранилищ тоже выбираются из снимка, чтобы порядок описаний был одним правилам
+ * {@link SortEngine}, а не правилам сравнения строк БД: он читается при первом листании и хранится
+ * в отдельном LRU-кэше на меньшее количество пользователей, см. {@link #largePage}
+ */
+@Component
+public class PasswordVault {
+
+    /**
+     * Количество счётчиков сбросов, по которым отбрасываются снимки, прочитанные во время изменения
+     */
+    private static final int GENERATION_STRIPES = 64;
+
+    /**
+     * Отметка хранилища, для которого снимок не строится
+     */
+    private static final Snapshot TOO_LARGE = new Snapshot(List.of(), null);
+
+    private final UserPasswordRepository userPasswordRepository;
+    private final SortEngine sortEngine;
+    private final int maximumPasswords;
+
+    /**
+     * Снимки по id пользователя в порядке последнего обращения
+     */
+    private final LinkedHashMap<Long, Snapshot> snapshots;
+
+    /**
+     * Снимки для страниц хранилищ больше заданного размера по id пользователя в порядке последнего обращения
+     */
+    private final LinkedHashMap<Long, Snapshot> largeSnapshots;
+
+    /**
+     * Счётчики сбросов по группам пользователей. Снимок, во время чтения которого счётчик изменился,
+     * мог не увидеть изменение и в кэш не кладётся
+     */
+    private final long[] generations = new long[GENERATION_STRIPES];
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public PasswordVault(UserPasswordRepository userPasswordRepository,
+                         SortEngine sortEngine,
+                         @Value("${bot.vault-cache.maximum-users}") int maximumUsers,
+                         @Value("${bot.vault-cache.maximum-passwords}") int maximumPasswords,
+                         @Value("${bot.vault-cache.maximum-large-users}") int maximumLargeUsers) {
+        if (maximumUsers < 1 || maximumPasswords < 1 || maximumLargeUsers < 1) {
+            throw new IllegalArgumentException("Размеры кэша хранилищ должны быть положительными");
+        }
+        this.userPasswordRepository = userPasswordRepository;
+        this.sortEngine = sortEngine;
+        this.maximumPasswords = maximumPasswords;
+        this.snapshots = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Snapshot> eldest) {
+                return size() > maximumUsers;
+            }
+        };
+        this.largeSnapshots = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Snapshot> eldest) {
+                return size() > maximumLargeUsers;
+            }
+        };
+    }
+
+    /**
+     * Возвращает снимок хранилища пользователя, при первом обращении читая его из БД
+     *
+     * @param userId Id пользователя
+     * @return снимок или null, если паролей у пользователя больше, чем хранится в снимке
+     */
+    public Snapshot get(long userId) {
+        int stripe = stripe(userId);
+        long generation;
+        lock.lock();
+        try {
+            Snapshot snapshot = snapshots.get(userId);
+            if (snapshot != null) {
+                return snapshot == TOO_LARGE ? null : snapshot;
+            }
+            generation = generations[stripe];
+        } finally {
+            lock.unlock();
+        }
+
+        Snapshot snapshot = TOO_LARGE;
+        if (userPasswordRepository.countByUserId(userId) <= maximumPasswords) {
+            List<UserPassword> passwords = userPasswordRepository.findByUserIdOrderByCreatedAtAscUuidAsc(userId);
+            // Пароли могли добавить между запросами
+            if (passwords.size() <= maximumPasswords) {
+                snapshot = new Snapshot(passwords, sortEngine);
+            }
+        }
+        lock.lock();
+        try {
+            if (generations[stripe] == generation) {
+                snapshots.put(userId, snapshot);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return snapshot == TOO_LARGE ? null : snapshot;
+    }
+
+    /**
+     * Страница паролей хранилища, снимок которого не строится, см. {@link Snapshot#page}.
+     * Пароли читаются при первом обращении, а каждый порядок строится один раз, а не для каждой страницы
+     *
+     * @param userId    Id пользователя
+     * @param sortOrder порядок паролей
+     * @param from      ключ записи, от которой отсчитывается страница, или null для первой страницы
+     * @param forward   true - записи после ключа, false - записи перед ключом
+     * @param limit     максимальное количество записей
+     * @return пароли в порядке сортировки
+     */
+    public List<UserPassword> largePage(long userId, SortOrder sortOrder, PageCursor.Key from,
+                                        boolean forward, int limit) {
+        return largeSnapshot(userId).page(sortOrder, from, forward, limit);
+    }
+
+    private Snapshot largeSnapshot(long userId) {
+        int stripe = stripe(userId);
+        long generation;
+        lock.lock();
+        try {
+            Snapshot snapshot = largeSnapshots.get(userId);
+            if (snapshot != null) {
+                return snapshot;
+            }
+            generation = generations[stripe];
+        } finally {
+            lock.unlock();
+        }
+
+        Snapshot snapshot = new Snapshot(userPasswordRepository.findByUserIdOrderByCreatedAtAscUuidAsc(userId),
+                sortEngine);
+        lock.lock();
+        try {
+            if (generations[stripe] == generation) {
+                largeSnapshots.put(userId, snapshot);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Сбрасывает снимок пользователя после изменения его паролей
+     *
+     * @param userId Id пользователя
+     */
+    public void invalidate(long userId) {
+        lock.lock();
+        try {
+            snapshots.remove(userId);
+            largeSnapshots.remove(userId);
+            generations[stripe(userId)]++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int stripe(long userId) {
+        return Long.hashCode(userId) & (GENERATION_STRIPES - 1);
+    }
+
+    /**
+     * Копии полей паролей в том же порядке
+     */
+    private static List<StoredPassword> copyOf(List<UserPassword> passwords) {
+        List<StoredPassword> copies = new ArrayList<>(passwords.size());
+        for (UserPassword password : passwords) {
+            copies.add(StoredPassword.of(password));
+        }
+        return copies;
+    }
+
+    /**
+     * Копия владельца паролей одного пользователя или null для пустого списка
+     */
+    private static User ownerOf(List<UserPassword> passwords) {
+        return passwords.isEmpty() ? null : StoredPassword.copyOf(passwords.get(0).getUser());
+    }
+
+    /**
+     * Новые сущности паролей для вызывающего, см. {@link StoredPassword#toPassword}
+     */
+    private static List<UserPassword> toPasswords(List<StoredPassword> passwords, User owner) {
+        List<UserPassword> userPasswords = new ArrayList<>(passwords.size());
+        for (StoredPassword password : passwords) {
+            userPasswords.add(password.toPassword(owner));
+        }
+        return userPasswords;
+    }
+
+    /**
+     * Неизменяемый снимок хранилища: пароли пользователя в порядке списка и по uuid.
+     * Остальные порядки строятся {@link SortEngine} при первом обращении к ним и хранятся до сброса снимка.
+     * Снимок разделяется между потоками, поэтому хранит копии полей паролей, см. {@link StoredPassword},
+     * а каждый вызов возвращает новые сущности, которые вызывающий может изменять
+     */
+    public static final class Snapshot {
+
+        private final List<StoredPassword> byCreation;
+        private final Map<UUID, StoredPassword> byUuid;
+        private final User owner;
+        private final SortEngine sortEngine;
+
+        /**
+         * Построенные порядки по номеру {@link SortType}
+         */
+        private final AtomicReferenceArray<SortEngine.Ordering> orderings =
+                new AtomicReferenceArray<>(SortType.values().length);
+
+        /**
+         * @param passwords  пароли в порядке списка
+         * @param sortEngine сортировка остальных порядков
+         */
+        public Snapshot(List<UserPassword> passwords, SortEngine sortEngine) {
+            this.byCreation = List.copyOf(copyOf(passwords));
+            Map<UUID, StoredPassword> uuids = new HashMap<>(passwords.size() * 2);
+            for (StoredPassword password : byCreation) {
+                uuids.put(password.uuid(), password);
+            }
+            this.byUuid = Map.copyOf(uuids);
+            this.owner = ownerOf(passwords);
+            this.sortEngine = sortEngine;
+        }
+
+        /**
+         * Количество паролей
+         */
+        public int size() {
+            return byCreation.size();
+        }
+
+        /**
+         * Все пароли в порядке списка
+         */
+        public List<UserPassword> passwords() {
+            return toPasswords(byCreation, owner);
+        }
+
+        /**
+         * Пароль по номеру в списке
+         *
+         * @param index номер, начиная с 0
+         * @return пароль или null, если номер вне списка
+         */
+        public UserPassword get(int index) {
+            return index >= 0 && index < byCreation.size() ? byCreation.get(index).toPassword(owner) : null;
+        }
+
+        /**
+         * Пароль по uuid
+         *
+         * @return пароль или null, если его нет
+         */
+        public UserPassword find(UUID uuid) {
+            StoredPassword password = byUuid.get(uuid);
+            return password != null ? password.toPassword(owner) : null;
+        }
+
+        /**
+         * Страница паролей в заданном порядке, см. {@link PasswordService#getPasswordPage}
+         *
+         * @param sortOrder порядок паролей
+         * @param from      ключ записи, от которой отсчитывается страница, или null для первой страницы
+         * @param forward   true - записи после ключа, false - записи перед ключом
+         * @param limit     максимальное количество записей
+         * @return пароли в порядке сортировки
+         */
+        public List<UserPassword> page(SortOrder sortOrder, PageCursor.Key from, boolean forward, int limit) {
+            SortType sortType = sortOrder.type();
+            return toPasswords(ordering(sortType).page(from == null ? null : sortEngine.keyOf(sortType, from),
+                    sortOrder.descending(), forward, limit), owner);
+        }
+
+        /**
+         * Порядок по полю: построенный ранее или новый. Если два потока строят порядок одновременно,
+         * сохраняется первый, порядки совпадают
+         */
+        private SortEngine.Ordering ordering(SortType sortType) {
+            SortEngine.Ordering ordering = orderings.get(sortType.ordinal());
+            if (ordering == null) {
+                ordering = sortEngine.sort(byCreation, owner, sortType);
+                if (!orderings.compareAndSet(sortType.ordinal(), null, ordering)) {
+                    ordering = orderings.get(sortType.ordinal());
+                }
+            }
+            return ordering;
+        }
+    }
+}
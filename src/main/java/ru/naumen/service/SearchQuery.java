@@ -0,0 +1,77 @@
+package ru.naumen.service;
+
+import java.util.Locale;
+
+/**
+ * Поисковый запрос по описанию пароля.
+ * Запрос без разметки ищется как часть описания, запрос со звёздочкой в конце ("exa*") - как начало слова,
+ * запрос в кавычках ("\"example\"") - как слово целиком. Регистр не учитывается
+ *
+ * @param text текст запроса в нижнем регистре без разметки
+ * @param mode способ сравнения
+ */
+public record SearchQuery(String text, Mode mode) {
+
+    /**
+     * Способ сравнения запроса с описанием
+     */
+    public enum Mode {
+        /**
+         * Часть описания
+         */
+        SUBSTRING,
+        /**
+         * Начало слова описания
+         */
+        PREFIX,
+        /**
+         * Слово описания целиком
+         */
+        WORD
+    }
+
+    /**
+     * Разбирает поисковый запрос пользователя
+     *
+     * @param request запрос
+     */
+    public static SearchQuery parse(String request) {
+        String text = request.strip();
+        if (text.length() > 2 && text.startsWith("\"") && text.endsWith("\"")) {
+            return new SearchQuery(normalize(text.substring(1, text.length() - 1)), Mode.WORD);
+        }
+        if (text.length() > 1 && text.endsWith("*")) {
+            return new SearchQuery(normalize(text.substring(0, text.length() - 1)), Mode.PREFIX);
+        }
+        return new SearchQuery(normalize(text), Mode.SUBSTRING);
+    }
+
+    /**
+     * Приводит текст к виду, в котором запросы сравниваются с описаниями
+     *
+     * @param text текст
+     */
+    public static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Подходит ли описание под запрос
+     *
+     * @param normalized описание, приведённое {@link #normalize(String)}
+     */
+    public boolean matches(String normalized) {
+        if (mode == Mode.SUBSTRING) {
+            return normalized.contains(text);
+        }
+        for (int from = normalized.indexOf(text); from >= 0; from = normalized.indexOf(text, from + 1)) {
+            int end = from + text.length();
+            boolean wordStart = from == 0 || !Character.isLetterOrDigit(normalized.charAt(from - 1));
+            boolean wordEnd = end == normalized.length() || !Character.isLetterOrDigit(normalized.charAt(end));
+            if (wordStart && (mode == Mode.PREFIX || wordEnd)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,282 @@
+package ru.naumen.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.naumen.cache.PageCursor;
+import ru.naumen.model.User;
+import ru.naumen.model.UserPassword;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Сортировка паролей в памяти по любому {@link SortType}.
+ * Ключ сортировки вычисляется для каждого пароля один раз: число для времени создания, даты и надёжности
+ * и ключ сопоставления {@link Collator} для описания. Ключи сопоставления сравниваются побайтно,
+ * поэтому правила алфавита разбираются при построении ключа, а не при каждом сравнении.
+ * Описания сравниваются без учёта регистра, а ё стоит рядом с е, как в словаре
+ */
+@Component
+public class SortEngine {
+
+    /**
+     * Размеры алфавитов групп символов для оценки надёжности
+     */
+    private static final int LOWERCASE_SIZE = 26;
+    private static final int UPPERCASE_SIZE = 26;
+    private static final int DIGITS_SIZE = 10;
+    private static final int OTHER_SIZE = 33;
+
+    private final EncodeService encodeService;
+
+    /**
+     * Образец правил сравнения описаний. Построение ключей синхронизировано внутри {@link Collator},
+     * поэтому каждая сортировка работает со своей копией
+     */
+    private final Collator collator;
+
+    public SortEngine(EncodeService encodeService,
+                      @Value("${bot.sort.locale}") String locale) {
+        this.encodeService = encodeService;
+        this.collator = Collator.getInstance(Locale.forLanguageTag(locale));
+        this.collator.setStrength(Collator.SECONDARY);
+    }
+
+    /**
+     * Сортирует пароли по возрастанию поля. Для сортировки по надёжности пароли расшифровываются,
+     * но в порядке остаются только оценки надёжности
+     *
+     * @param passwords пароли
+     * @param owner     владелец паролей, ключом данных которого они расшифровываются
+     * @param sortType  поле сортировки
+     * @return пароли по возрастанию ключа сортировки
+     */
+    Ordering sort(List<StoredPassword> passwords, User owner, SortType sortType) {
+        List<String> plain = sortType == SortType.BY_STRENGTH ? decrypt(passwords, owner) : null;
+        Collator ownCollator = (Collator) collator.clone();
+        Entry[] entries = new Entry[passwords.size()];
+        for (int i = 0; i < entries.length; i++) {
+            StoredPassword password = passwords.get(i);
+            SortKey key = switch (sortType) {
+                case BY_CREATION -> new SortKey(creationTime(password.createdAt()), password.uuid());
+                case BY_DATE -> new SortKey(password.lastModifyDate().toEpochDay(), password.uuid());
+                case BY_DESCRIPTION -> descriptionKey(ownCollator, password.description(), password.uuid());
+                case BY_STRENGTH -> new SortKey(strength(plain.get(i)), password.uuid());
+            };
+            entries[i] = new Entry(key, password);
+        }
+        Arrays.sort(entries, Comparator.comparing(Entry::key));
+
+        List<StoredPassword> ordered = new ArrayList<>(entries.length);
+        SortKey[] keys = new SortKey[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            ordered.add(entries[i].password());
+            keys[i] = entries[i].key();
+        }
+        return new Ordering(List.copyOf(ordered), keys);
+    }
+
+    /**
+     * Расшифровывает пароли одним вызовом, см. {@link EncodeService#decryptPasswords}
+     */
+    private List<String> decrypt(List<StoredPassword> passwords, User owner) {
+        List<UserPassword> userPasswords = new ArrayList<>(passwords.size());
+        for (StoredPassword password : passwords) {
+            userPasswords.add(password.toPassword(owner));
+        }
+        return encodeService.decryptPasswords(userPasswords);
+    }
+
+    /**
+     * Ключ сортировки записи страницы, см. {@link PasswordService#getPageKey}
+     *
+     * @param sortType поле сортировки
+     * @param key      ключ записи
+     */
+    SortKey keyOf(SortType sortType, PageCursor.Key key) {
+        return switch (sortType) {
+            case BY_CREATION -> new SortKey(creationTime(LocalDateTime.parse(key.value())), key.uuid());
+            case BY_DATE -> new SortKey(LocalDate.parse(key.value()).toEpochDay(), key.uuid());
+            case BY_DESCRIPTION -> descriptionKey(collator, key.value(), key.uuid());
+            case BY_STRENGTH -> new SortKey(Integer.parseInt(key.value()), key.uuid());
+        };
+    }
+
+    /**
+     * Ключ сортировки описания: по нему упорядочена и выдача поиска, см. {@link DescriptionIndex}
+     *
+     * @param description описание или null
+     * @param uuid        uuid пароля
+     */
+    SortKey descriptionKey(String description, UUID uuid) {
+        return descriptionKey(collator, description, uuid);
+    }
+
+    /**
+     * Оценивает надёжность пароля в битах: длина, умноженная на log2 размера алфавита.
+     * Алфавит складывается из групп символов, которые встречаются в пароле:
+     * строчные и заглавные латинские буквы, цифры и остальные символы
+     *
+     * @param password расшифрованный пароль
+     * @return оценка надёжности, 0 для пустого пароля
+     */
+    static int strength(String password) {
+        boolean lowercase = false;
+        boolean uppercase = false;
+        boolean digits = false;
+        boolean other = false;
+        int length = 0;
+        for (int i = 0; i < password.length(); i += Character.charCount(password.codePointAt(i))) {
+            int c = password.codePointAt(i);
+            if (c >= 'a' && c <= 'z') {
+                lowercase = true;
+            } else if (c >= 'A' && c <= 'Z') {
+                uppercase = true;
+            } else if (c >= '0' && c <= '9') {
+                digits = true;
+            } else {
+                other = true;
+            }
+            length++;
+        }
+        int alphabet = (lowercase ? LOWERCASE_SIZE : 0) + (uppercase ? UPPERCASE_SIZE : 0)
+                + (digits ? DIGITS_SIZE : 0) + (other ? OTHER_SIZE : 0);
+        return alphabet == 0 ? 0 : (int) Math.round(length * Math.log(alphabet) / Math.log(2));
+    }
+
+    private static SortKey descriptionKey(Collator collator, String description, UUID uuid) {
+        return new SortKey(0, collator.getCollationKey(description == null ? "" : description), description, uuid);
+    }
+
+    /**
+     * Время создания в наносекундах от начала эпохи: точно, как в ключе страницы
+     */
+    private static long creationTime(LocalDateTime createdAt) {
+        return createdAt.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + createdAt.getNano();
+    }
+
+    private record Entry(SortKey key, StoredPassword password) {
+    }
+
+    /**
+     * Ключ сортировки пароля. Сравнивается по числу, затем по ключу сопоставления описания,
+     * затем по самому описанию, чтобы описания, равные для {@link Collator}, шли в одном порядке,
+     * и наконец по uuid без знака
+     *
+     * @param number      время, дата или надёжность; для сортировки по описанию 0
+     * @param collation   ключ сопоставления описания или null
+     * @param description описание или null
+     * @param uuid        uuid пароля
+     */
+    record SortKey(long number, CollationKey collation, String description, UUID uuid)
+            implements Comparable<SortKey> {
+
+        private static final Comparator<String> DESCRIPTION_ORDER = Comparator.nullsFirst(Comparator.naturalOrder());
+
+        SortKey(long number, UUID uuid) {
+            this(number, null, null, uuid);
+        }
+
+        @Override
+        public int compareTo(SortKey other) {
+            int compare = Long.compare(number, other.number);
+            if (compare == 0 && collation != null) {
+                compare = collation.compareTo(other.collation);
+            }
+            if (compare == 0) {
+                compare = DESCRIPTION_ORDER.compare(description, other.description);
+            }
+            return compare != 0 ? compare : DescriptionIndex.compareUuid(uuid, other.uuid);
+        }
+    }
+
+    /**
+     * Пароли по возрастанию ключа сортировки вместе с ключами.
+     * Неизменяем и разделяется между потоками
+     */
+    static final class Ordering {
+
+        private final List<StoredPassword> passwords;
+        private final SortKey[] keys;
+
+        private Ordering(List<StoredPassword> passwords, SortKey[] keys) {
+            this.passwords = passwords;
+            this.keys = keys;
+        }
+
+        /**
+         * Пароли по возрастанию ключа
+         */
+        List<StoredPassword> passwords() {
+            return passwords;
+        }
+
+        /**
+         * Страница паролей, см. {@link PasswordService#getPasswordPage}
+         *
+         * @param from       ключ записи, от которой отсчитывается страница, или null для первой страницы
+         * @param descending true - страница порядка по убыванию
+         * @param forward    true - записи после ключа в порядке вывода, false - записи перед ключом
+         * @param limit      максимальное количество записей
+         * @return пароли в порядке вывода
+         */
+        List<StoredPassword> page(SortKey from, boolean descending, boolean forward, int limit) {
+            int size = passwords.size();
+            if (!descending) {
+                if (from == null) {
+                    return passwords.subList(0, Math.min(limit, size));
+                }
+                int position = position(from, forward);
+                return forward
+                        ? passwords.subList(position, Math.min(size, position + limit))
+                        : passwords.subList(Math.max(0, position - limit), position);
+            }
+            // По убыванию следующие записи - меньшие ключа, предыдущие - большие
+            if (from == null) {
+                return reversed(passwords.subList(Math.max(0, size - limit), size));
+            }
+            int position = position(from, !forward);
+            return forward
+                    ? reversed(passwords.subList(Math.max(0, position - limit), position))
+                    : reversed(passwords.subList(position, Math.min(size, position + limit)));
+        }
+
+        /**
+         * Двоичный поиск ключа
+         *
+         * @param includeKey учитывать ли запись самого ключа
+         * @return количество записей меньше ключа, а с includeKey - не больше ключа
+         */
+        private int position(SortKey key, boolean includeKey) {
+            int low = 0;
+            int high = keys.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int compare = keys[middle].compareTo(key);
+                if (compare < 0 || includeKey && compare == 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private static List<StoredPassword> reversed(List<StoredPassword> passwords) {
+            List<StoredPassword> result = new ArrayList<>(passwords.size());
+            for (int i = passwords.size() - 1; i >= 0; i--) {
+                result.add(passwords.get(i));
+            }
+            return result;
+        }
+    }
+}
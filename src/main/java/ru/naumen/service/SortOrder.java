@@ -0,0 +1,33 @@
+package ru.naumen.service;
+
+/**
+ * Порядок вывода паролей: поле сортировки и направление
+ *
+ * @param type       поле сортировки
+ * @param descending true - по убыванию, false - по возрастанию
+ */
+public record SortOrder(SortType type, boolean descending) {
+
+    /**
+     * Порядок списка: по времени создания
+     */
+    public static final SortOrder LIST = ascending(SortType.BY_CREATION);
+
+    /**
+     * Порядок по возрастанию поля
+     *
+     * @param type поле сортировки
+     */
+    public static SortOrder ascending(SortType type) {
+        return new SortOrder(type, false);
+    }
+
+    /**
+     * Порядок по убыванию поля
+     *
+     * @param type поле сортировки
+     */
+    public static SortOrder descending(SortType type) {
+        return new SortOrder(type, true);
+    }
+}
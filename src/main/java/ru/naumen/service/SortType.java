@@ -4,12 +4,20 @@ package ru.naumen.service;
  * Тип сортировки
  */
 public enum SortType {
+    /**
+     * Сортировка по времени создания: порядок списка, по которому пароль выбирается по номеру
+     */
+    BY_CREATION,
     /**
      * Сортировка по дате
      */
     BY_DATE,
     /**
-     * Сортировка по описанию
+     * Сортировка по описанию с учётом правил русского и английского алфавитов
+     */
+    BY_DESCRIPTION,
+    /**
+     * Сортировка по надёжности пароля, см. {@link SortEngine#strength(String)}
      */
-    BY_DESCRIPTION
+    BY_STRENGTH
 }
@@ -0,0 +1,62 @@
+package ru.naumen.service;
+
+import ru.naumen.model.User;
+import ru.naumen.model.UserPassword;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Неизменяемая копия полей пароля для снимков хранилища, см. {@link PasswordVault.Snapshot}.
+ * Снимки разделяются между потоками, поэтому хранят копии, а не сущности JPA: сущность привязана
+ * к сессии Hibernate и изменяется при сохранении. Наружу снимок отдаёт новые сущности, см. {@link #toPassword}
+ *
+ * @param uuid           uuid пароля
+ * @param description    описание или null
+ * @param createdAt      время создания
+ * @param lastModifyDate дата последнего изменения
+ * @param password       пароль прежнего формата или null, см. {@link UserPassword#getPassword()}
+ * @param secret         пароль в зашифрованном виде или null. Массив принадлежит копии и не изменяется
+ */
+record StoredPassword(UUID uuid, String description, LocalDateTime createdAt, LocalDate lastModifyDate,
+                      String password, byte[] secret) {
+
+    /**
+     * Копирует поля пароля
+     *
+     * @param userPassword пароль, прочитанный из БД
+     */
+    static StoredPassword of(UserPassword userPassword) {
+        byte[] secret = userPassword.getSecret();
+        return new StoredPassword(userPassword.getUuid(), userPassword.getDescription(), userPassword.getCreatedAt(),
+                userPassword.getLastModifyDate(), userPassword.getPassword(), secret == null ? null : secret.clone());
+    }
+
+    /**
+     * Новая сущность пароля с полями копии, не связанная с сессией Hibernate и с другими вызовами
+     *
+     * @param owner владелец пароля; у пароля будет его копия
+     */
+    UserPassword toPassword(User owner) {
+        UserPassword userPassword = new UserPassword(uuid, description, password, copyOf(owner), lastModifyDate);
+        userPassword.setSecret(secret == null ? null : secret.clone());
+        userPassword.setCreatedAt(createdAt);
+        return userPassword;
+    }
+
+    /**
+     * Копия пользователя с ключом данных, достаточная для расшифрования и изменения его паролей
+     *
+     * @param user пользователь или null
+     */
+    static User copyOf(User user) {
+        if (user == null) {
+            return null;
+        }
+        User copy = new User(user.getId());
+        copy.setDataKey(user.getDataKey() == null ? null : user.getDataKey().clone());
+        copy.setMasterKeyId(user.getMasterKeyId());
+        return copy;
+    }
+}
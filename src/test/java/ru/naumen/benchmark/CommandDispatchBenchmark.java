@@ -0,0 +1,96 @@
+package ru.naumen.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.naumen.bot.command.Command;
+import ru.naumen.bot.command.CommandResolver;
+import ru.naumen.bot.command.CommandTokens;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение разбора команды через String.split и через CommandTokens.
+ * Измеряется путь CommandService: разбор сообщения, поиск команды по первому слову и чтение параметров.
+ * Запуск: main-метод класса из тестового classpath
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-XX:+UseParallelGC")
+public class CommandDispatchBenchmark {
+
+    @Param({"/generate 12 3", "/edit 1 12 2 example.com", "Генерировать", "qwerty"})
+    private String message;
+
+    private final Map<String, Command> commandMap = new HashMap<>();
+
+    private final CommandResolver commandResolver = new CommandResolver("PasswordBot");
+
+    @Setup
+    public void setUp() {
+        for (Command cmd : Command.values()) {
+            commandMap.put(cmd.getCommand(), cmd);
+            commandMap.put(cmd.getKeyboardLabel(), cmd);
+        }
+    }
+
+    /**
+     * Текущий способ: регулярное разбиение и массив подстрок
+     */
+    @Benchmark
+    public void split(Blackhole blackhole) {
+        String[] splitCommand = message.split(" ");
+        blackhole.consume(commandMap.get(splitCommand[0]));
+        for (int i = 1; i < splitCommand.length; i++) {
+            blackhole.consume(splitCommand[i].length());
+        }
+    }
+
+    /**
+     * Новый способ: границы слов поверх исходной строки
+     */
+    @Benchmark
+    public void tokens(Blackhole blackhole) {
+        CommandTokens command = CommandTokens.parse(message);
+        blackhole.consume(commandMap.get(command.get(0)));
+        for (int i = 1; i < command.count(); i++) {
+            blackhole.consume(command.end(i) - command.start(i));
+        }
+    }
+
+    /**
+     * Границы слов и поиск команды по префиксному дереву без создания первого слова
+     */
+    @Benchmark
+    public void tokensWithResolver(Blackhole blackhole) {
+        CommandTokens command = CommandTokens.parse(message);
+        blackhole.consume(commandResolver.resolve(command));
+        for (int i = 1; i < command.count(); i++) {
+            blackhole.consume(command.end(i) - command.start(i));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CommandDispatchBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
@@ -0,0 +1,135 @@
+package ru.naumen.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.naumen.service.EncodeService;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость одной операции EncodeService.
+ * Для сравнения используется прежняя реализация: ключ и Cipher создаются на каждый вызов.
+ * Запуск: main-метод класса из тестового classpath
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class EncodeServiceBenchmark {
+
+    private static final String KEY = "BC1D9VG58QKH6CYK99DGB1UBESR8VRXD";
+
+    private static final String PASSWORD = "pA$$w0rd-For-Example.com";
+
+    /**
+     * Размер списка паролей для расшифрования списком, как в /list
+     */
+    private static final int LIST_SIZE = 500;
+
+    private EncodeService encodeService;
+
+    private String encrypted;
+
+    private byte[] secret;
+
+    private List<String> encryptedList;
+
+    @Setup
+    public void setUp() {
+        encodeService = new EncodeService(KEY);
+        encrypted = encodeService.encryptData(PASSWORD);
+        secret = encodeService.encrypt(PASSWORD);
+        encryptedList = new ArrayList<>(LIST_SIZE);
+        for (int i = 0; i < LIST_SIZE; i++) {
+            encryptedList.add(encodeService.encryptData(PASSWORD + i));
+        }
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return encodeService.encryptData(PASSWORD);
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return encodeService.decryptData(encrypted);
+    }
+
+    /**
+     * Шифрование в формате AES-GCM
+     */
+    @Benchmark
+    public byte[] encryptGcm() {
+        return encodeService.encrypt(PASSWORD);
+    }
+
+    /**
+     * Расшифрование формата AES-GCM без base64
+     */
+    @Benchmark
+    public String decryptGcm() {
+        return encodeService.decrypt(secret);
+    }
+
+    /**
+     * Список по одному паролю, как раньше делали обработчики
+     */
+    @Benchmark
+    public void decryptListOneByOne(Blackhole blackhole) {
+        for (String password : encryptedList) {
+            blackhole.consume(encodeService.decryptData(password));
+        }
+    }
+
+    /**
+     * Список одним вызовом
+     */
+    @Benchmark
+    public List<String> decryptAll() {
+        return encodeService.decryptAll(encryptedList);
+    }
+
+    @Benchmark
+    public String legacyEncrypt() throws Exception {
+        SecretKeySpec secretKey = new SecretKeySpec(KEY.getBytes(), "AES");
+        Cipher cipher = Cipher.getInstance("AES");
+        cipher.init(Cipher.ENCRYPT_MODE, secretKey);
+        return Base64.getEncoder().encodeToString(cipher.doFinal(PASSWORD.getBytes()));
+    }
+
+    @Benchmark
+    public String legacyDecrypt() throws Exception {
+        String encryptedString = encrypted.replaceAll("\\s", "+");
+        SecretKeySpec secretKey = new SecretKeySpec(KEY.getBytes(), "AES");
+        Cipher cipher = Cipher.getInstance("AES");
+        cipher.init(Cipher.DECRYPT_MODE, secretKey);
+        return new String(cipher.doFinal(Base64.getDecoder().decode(encryptedString)));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EncodeServiceBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,328 @@
+package ru.naumen.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Задержка запросов к tbl_passwords на большой таблице в файловой H2.
+ * Схема и индексы повторяют отображение UserPassword, запросы - SQL запросов UserPasswordRepository
+ * и запросов страниц по ключу, которые проходят по индексам сортировок.
+ * База заполняется один раз и переиспользуется следующими запусками, пока совпадает количество строк.
+ * Запуск: main-метод класса из тестового classpath
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class PasswordQueryBenchmark {
+
+    private static final String URL = "jdbc:h2:file:./target/benchmark/passwords";
+
+    /**
+     * Количество паролей у одного пользователя
+     */
+    private static final int PASSWORDS_PER_USER = 100;
+
+    /**
+     * Размер страницы с учётом записи, по которой определяется наличие следующей страницы
+     */
+    private static final int PAGE_LIMIT = 11;
+
+    private static final int INSERT_BATCH_SIZE = 10_000;
+
+    private static final String[] SITES = {"mail", "bank", "shop", "work", "game", "news", "cloud", "forum"};
+
+    /**
+     * Количество строк в tbl_passwords
+     */
+    @Param({"10000000"})
+    private int rowCount;
+
+    private Connection connection;
+
+    private int userCount;
+
+    private PreparedStatement countByUser;
+    private PreparedStatement byIndex;
+    private PreparedStatement creationPage;
+    private PreparedStatement creationPageAfter;
+    private PreparedStatement descriptionPageAfter;
+    private PreparedStatement datePageAfter;
+    private PreparedStatement findPage;
+    private PreparedStatement byUuid;
+    private PreparedStatement sampleUuid;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        userCount = rowCount / PASSWORDS_PER_USER;
+        connection = DriverManager.getConnection(URL, "sa", "");
+        if (storedRowCount() != rowCount) {
+            load();
+        }
+
+        countByUser = connection.prepareStatement(
+                "select count(*) from tbl_passwords where user_id = ?");
+        byIndex = connection.prepareStatement(
+                "select * from tbl_passwords where user_id = ? order by created_at, uuid offset ? rows fetch first 1 row only");
+        creationPage = connection.prepareStatement(
+                "select * from tbl_passwords where user_id = ? order by created_at, uuid fetch first ? rows only");
+        creationPageAfter = connection.prepareStatement(
+                "select * from tbl_passwords where user_id = ? "
+                        + "and (created_at > ? or (created_at = ? and uuid > ?)) "
+                        + "order by created_at, uuid fetch first ? rows only");
+        descriptionPageAfter = connection.prepareStatement(
+                "select * from tbl_passwords where user_id = ? "
+                        + "and (description > ? or (description = ? and uuid > ?)) "
+                        + "order by description, uuid fetch first ? rows only");
+        datePageAfter = connection.prepareStatement(
+                "select * from tbl_passwords where user_id = ? "
+                        + "and (date > ? or (date = ? and uuid > ?)) "
+                        + "order by date, uuid fetch first ? rows only");
+        findPage = connection.prepareStatement(
+                "select * from tbl_passwords where user_id = ? and lower(description) like ? escape '!' "
+                        + "order by description, uuid fetch first ? rows only");
+        byUuid = connection.prepareStatement(
+                "select * from tbl_passwords where uuid = ?");
+        sampleUuid = connection.prepareStatement(
+                "select uuid from tbl_passwords where user_id = ? fetch first 1 row only");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    /**
+     * Количество паролей пользователя, как при проверке номера в /edit
+     */
+    @Benchmark
+    public long countByUser() throws SQLException {
+        countByUser.setLong(1, randomUser());
+        try (ResultSet resultSet = countByUser.executeQuery()) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    /**
+     * Пароль по номеру в списке, как в /show, /edit и /del
+     */
+    @Benchmark
+    public void passwordByIndex(Blackhole blackhole) throws SQLException {
+        byIndex.setLong(1, randomUser());
+        byIndex.setInt(2, ThreadLocalRandom.current().nextInt(PASSWORDS_PER_USER));
+        consume(byIndex, blackhole);
+    }
+
+    /**
+     * Первая страница /list
+     */
+    @Benchmark
+    public void listFirstPage(Blackhole blackhole) throws SQLException {
+        creationPage.setLong(1, randomUser());
+        creationPage.setInt(2, PAGE_LIMIT);
+        consume(creationPage, blackhole);
+    }
+
+    /**
+     * Страница /list в середине списка, от ключа (время создания, uuid)
+     */
+    @Benchmark
+    public void listPageAfter(Blackhole blackhole) throws SQLException {
+        LocalDateTime createdAt = createdAt(ThreadLocalRandom.current().nextInt(PASSWORDS_PER_USER / 2));
+        creationPageAfter.setLong(1, randomUser());
+        creationPageAfter.setObject(2, createdAt);
+        creationPageAfter.setObject(3, createdAt);
+        creationPageAfter.setObject(4, new UUID(0L, 0L));
+        creationPageAfter.setInt(5, PAGE_LIMIT);
+        consume(creationPageAfter, blackhole);
+    }
+
+    /**
+     * Страница /sort по описанию в середине списка
+     */
+    @Benchmark
+    public void descriptionPageAfter(Blackhole blackhole) throws SQLException {
+        String description = SITES[ThreadLocalRandom.current().nextInt(SITES.length)];
+        descriptionPageAfter.setLong(1, randomUser());
+        descriptionPageAfter.setString(2, description);
+        descriptionPageAfter.setString(3, description);
+        descriptionPageAfter.setObject(4, new UUID(0L, 0L));
+        descriptionPageAfter.setInt(5, PAGE_LIMIT);
+        consume(descriptionPageAfter, blackhole);
+    }
+
+    /**
+     * Страница /sort по дате в середине списка
+     */
+    @Benchmark
+    public void datePageAfter(Blackhole blackhole) throws SQLException {
+        LocalDate date = date(ThreadLocalRandom.current().nextInt(PASSWORDS_PER_USER / 2));
+        datePageAfter.setLong(1, randomUser());
+        datePageAfter.setObject(2, date);
+        datePageAfter.setObject(3, date);
+        datePageAfter.setObject(4, new UUID(0L, 0L));
+        datePageAfter.setInt(5, PAGE_LIMIT);
+        consume(datePageAfter, blackhole);
+    }
+
+    /**
+     * Первая страница /find по подстроке описания
+     */
+    @Benchmark
+    public void findPage(Blackhole blackhole) throws SQLException {
+        findPage.setLong(1, randomUser());
+        findPage.setString(2, "%an%");
+        findPage.setInt(3, PAGE_LIMIT);
+        consume(findPage, blackhole);
+    }
+
+    /**
+     * Пароль по первичному ключу, как в условных update и delete
+     */
+    @Benchmark
+    public void passwordByUuid(Blackhole blackhole) throws SQLException {
+        sampleUuid.setLong(1, randomUser());
+        UUID uuid;
+        try (ResultSet resultSet = sampleUuid.executeQuery()) {
+            resultSet.next();
+            uuid = resultSet.getObject(1, UUID.class);
+        }
+        byUuid.setObject(1, uuid);
+        consume(byUuid, blackhole);
+    }
+
+    /**
+     * Создаёт схему как у сущностей и заполняет её.
+     * Строки вставляются в порядке пользователей, время создания растёт в пределах пользователя
+     */
+    private void load() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop table if exists tbl_passwords");
+            statement.execute("drop table if exists tbl_users");
+            statement.execute("create table tbl_users (id bigint not null primary key, "
+                    + "data_key varbinary(64), master_key_id integer)");
+            statement.execute("create table tbl_passwords (uuid uuid not null primary key, "
+                    + "description varchar(255), password varchar(255), secret varbinary(1024), "
+                    + "user_id bigint references tbl_users (id), date date not null, "
+                    + "created_at timestamp(6) not null)");
+        }
+
+        connection.setAutoCommit(false);
+        try (PreparedStatement users = connection.prepareStatement("insert into tbl_users (id) values (?)")) {
+            for (long userId = 1; userId <= userCount; userId++) {
+                users.setLong(1, userId);
+                users.addBatch();
+                if (userId % INSERT_BATCH_SIZE == 0) {
+                    users.executeBatch();
+                }
+            }
+            users.executeBatch();
+        }
+
+        byte[] secret = new byte[60];
+        ThreadLocalRandom.current().nextBytes(secret);
+        try (PreparedStatement passwords = connection.prepareStatement("insert into tbl_passwords "
+                + "(uuid, description, secret, user_id, date, created_at) values (?, ?, ?, ?, ?, ?)")) {
+            for (int row = 0; row < rowCount; row++) {
+                int position = row % PASSWORDS_PER_USER;
+                passwords.setObject(1, UUID.randomUUID());
+                passwords.setString(2, SITES[position % SITES.length] + "-" + position + ".example.com");
+                passwords.setBytes(3, secret);
+                passwords.setLong(4, row / PASSWORDS_PER_USER + 1);
+                passwords.setObject(5, date(position));
+                passwords.setObject(6, createdAt(position));
+                passwords.addBatch();
+                if ((row + 1) % INSERT_BATCH_SIZE == 0) {
+                    passwords.executeBatch();
+                    connection.commit();
+                }
+            }
+            passwords.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+
+        // Индексы строятся после загрузки: так быстрее, чем поддерживать их при каждой вставке
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create index idx_passwords_user_created on tbl_passwords (user_id, created_at, uuid)");
+            statement.execute("create index idx_passwords_user_description on tbl_passwords (user_id, description, uuid)");
+            statement.execute("create index idx_passwords_user_date on tbl_passwords (user_id, date, uuid)");
+            statement.execute("analyze");
+        }
+    }
+
+    private long storedRowCount() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select count(*) from information_schema.tables "
+                     + "where table_name = 'TBL_PASSWORDS'")) {
+            resultSet.next();
+            if (resultSet.getLong(1) == 0) {
+                return -1;
+            }
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select count(*) from tbl_passwords")) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private long randomUser() {
+        return ThreadLocalRandom.current().nextLong(userCount) + 1;
+    }
+
+    private static LocalDate date(int position) {
+        return LocalDate.of(2020, 1, 1).plusDays(position);
+    }
+
+    private static LocalDateTime createdAt(int position) {
+        return LocalDateTime.of(2020, 1, 1, 0, 0).plusMinutes(position);
+    }
+
+    private static void consume(PreparedStatement statement, Blackhole blackhole) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                blackhole.consume(resultSet.getObject(1));
+                blackhole.consume(resultSet.getString("description"));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PasswordQueryBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,248 @@
+package ru.naumen.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.naumen.cache.PageCursor;
+import ru.naumen.model.User;
+import ru.naumen.model.UserPassword;
+import ru.naumen.service.PasswordVault;
+import ru.naumen.service.SortEngine;
+import ru.naumen.service.SortOrder;
+import ru.naumen.service.SortType;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Страница /sort: сортировка запросом к БД против сортировки снимка хранилища в памяти.
+ * <p>
+ * В БД - H2 в памяти со схемой и индексами UserPassword и запросы страниц по ключу.
+ * В памяти - {@link PasswordVault.Snapshot}: сортировка с нуля, которую оплачивает первая страница
+ * после сброса снимка, и страница из построенного порядка.
+ * БД сравнивает описания посимвольно, снимок - ключами сопоставления русского языка,
+ * поэтому страницы всех хранилищ, и больших тоже, выбираются из снимка.
+ * Запуск: main-метод класса из тестового classpath
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class SortBenchmark {
+
+    private static final long USER_ID = 1L;
+
+    /**
+     * Размер страницы с учётом записи, по которой определяется наличие следующей страницы
+     */
+    private static final int PAGE_LIMIT = 11;
+
+    private static final String[] SITES = {"Почта", "банк", "Госуслуги", "ёлка", "mail", "Bank", "shop", "work"};
+
+    private static final SortOrder BY_DESCRIPTION = SortOrder.ascending(SortType.BY_DESCRIPTION);
+    private static final SortOrder BY_DATE_DESCENDING = SortOrder.descending(SortType.BY_DATE);
+
+    /**
+     * Количество паролей пользователя
+     */
+    @Param({"10", "1000", "100000"})
+    private int size;
+
+    private Connection connection;
+    private PreparedStatement descriptionPage;
+    private PreparedStatement descriptionPageAfter;
+    private PreparedStatement dateDescendingPage;
+
+    private SortEngine sortEngine;
+    private List<UserPassword> passwords;
+    private PasswordVault.Snapshot snapshot;
+
+    /**
+     * Ключ записи в середине порядка по описанию
+     */
+    private UserPassword middle;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        Random random = new Random(42);
+        passwords = new ArrayList<>(size);
+        User user = new User(USER_ID);
+        for (int i = 0; i < size; i++) {
+            UserPassword password = new UserPassword(new UUID(random.nextLong(), random.nextLong()),
+                    SITES[random.nextInt(SITES.length)] + "-" + random.nextInt(size), null, user,
+                    LocalDate.of(2020, 1, 1).plusDays(random.nextInt(1000)));
+            password.setCreatedAt(LocalDateTime.of(2020, 1, 1, 0, 0).plusSeconds(i));
+            passwords.add(password);
+        }
+        sortEngine = new SortEngine(null, "ru");
+        snapshot = new PasswordVault.Snapshot(passwords, sortEngine);
+        snapshot.page(BY_DATE_DESCENDING, null, true, PAGE_LIMIT);
+        middle = snapshot.page(BY_DESCRIPTION, null, true, size / 2 + 1).get(size / 2);
+
+        connection = DriverManager.getConnection("jdbc:h2:mem:sort-" + size, "sa", "");
+        load();
+        descriptionPage = connection.prepareStatement(
+                "select * from tbl_passwords where user_id = ? order by description, uuid fetch first ? rows only");
+        descriptionPageAfter = connection.prepareStatement(
+                "select * from tbl_passwords where user_id = ? "
+                        + "and (description > ? or (description = ? and uuid > ?)) "
+                        + "order by description, uuid fetch first ? rows only");
+        dateDescendingPage = connection.prepareStatement(
+                "select * from tbl_passwords where user_id = ? order by date desc, uuid desc fetch first ? rows only");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    /**
+     * Первая страница по описанию: запрос с сортировкой в БД
+     */
+    @Benchmark
+    public void databaseDescriptionPage(Blackhole blackhole) throws SQLException {
+        descriptionPage.setLong(1, USER_ID);
+        descriptionPage.setInt(2, PAGE_LIMIT);
+        consume(descriptionPage, blackhole);
+    }
+
+    /**
+     * Страница по описанию в середине списка: запрос по ключу с сортировкой в БД
+     */
+    @Benchmark
+    public void databaseDescriptionPageAfter(Blackhole blackhole) throws SQLException {
+        descriptionPageAfter.setLong(1, USER_ID);
+        descriptionPageAfter.setString(2, middle.getDescription());
+        descriptionPageAfter.setString(3, middle.getDescription());
+        descriptionPageAfter.setObject(4, middle.getUuid());
+        descriptionPageAfter.setInt(5, PAGE_LIMIT);
+        consume(descriptionPageAfter, blackhole);
+    }
+
+    /**
+     * Первая страница по убыванию даты: запрос с сортировкой в БД
+     */
+    @Benchmark
+    public void databaseDateDescendingPage(Blackhole blackhole) throws SQLException {
+        dateDescendingPage.setLong(1, USER_ID);
+        dateDescendingPage.setInt(2, PAGE_LIMIT);
+        consume(dateDescendingPage, blackhole);
+    }
+
+    /**
+     * Первая страница по описанию в новом снимке: ключи сопоставления и сортировка с нуля
+     */
+    @Benchmark
+    public List<UserPassword> memorySortDescription() {
+        return new PasswordVault.Snapshot(passwords, sortEngine).page(BY_DESCRIPTION, null, true, PAGE_LIMIT);
+    }
+
+    /**
+     * Первая страница по описанию из построенного порядка
+     */
+    @Benchmark
+    public List<UserPassword> memoryDescriptionPage() {
+        return snapshot.page(BY_DESCRIPTION, null, true, PAGE_LIMIT);
+    }
+
+    /**
+     * Страница по описанию в середине списка: двоичный поиск ключа в построенном порядке
+     */
+    @Benchmark
+    public List<UserPassword> memoryDescriptionPageAfter() {
+        return snapshot.page(BY_DESCRIPTION, new PageCursor.Key(middle.getDescription(), middle.getUuid()),
+                true, PAGE_LIMIT);
+    }
+
+    /**
+     * Первая страница по убыванию даты из построенного порядка
+     */
+    @Benchmark
+    public List<UserPassword> memoryDateDescendingPage() {
+        return snapshot.page(BY_DATE_DESCENDING, null, true, PAGE_LIMIT);
+    }
+
+    /**
+     * Создаёт схему как у сущностей и записывает в неё пароли снимка
+     */
+    private void load() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop table if exists tbl_passwords");
+            statement.execute("drop table if exists tbl_users");
+            statement.execute("create table tbl_users (id bigint not null primary key, "
+                    + "data_key varbinary(64), master_key_id integer)");
+            statement.execute("create table tbl_passwords (uuid uuid not null primary key, "
+                    + "description varchar(255), password varchar(255), secret varbinary(1024), "
+                    + "user_id bigint references tbl_users (id), date date not null, "
+                    + "created_at timestamp(6) not null)");
+            statement.execute("insert into tbl_users (id) values (" + USER_ID + ")");
+        }
+
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement("insert into tbl_passwords "
+                + "(uuid, description, user_id, date, created_at) values (?, ?, ?, ?, ?)")) {
+            for (UserPassword password : passwords) {
+                insert.setObject(1, password.getUuid());
+                insert.setString(2, password.getDescription());
+                insert.setLong(3, USER_ID);
+                insert.setObject(4, password.getLastModifyDate());
+                insert.setObject(5, password.getCreatedAt());
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create index idx_passwords_user_created on tbl_passwords (user_id, created_at, uuid)");
+            statement.execute("create index idx_passwords_user_description on tbl_passwords (user_id, description, uuid)");
+            statement.execute("create index idx_passwords_user_date on tbl_passwords (user_id, date, uuid)");
+            statement.execute("analyze");
+        }
+    }
+
+    private static void consume(PreparedStatement statement, Blackhole blackhole) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                blackhole.consume(resultSet.getObject(1));
+                blackhole.consume(resultSet.getString("description"));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SortBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
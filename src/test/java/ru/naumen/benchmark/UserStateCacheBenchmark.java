@@ -0,0 +1,148 @@
+package ru.naumen.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.naumen.cache.UserStateCache;
+
+import java.lang.ref.Reference;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Память и время поиска сессий UserStateCache на миллионе пользователей.
+ * Для сравнения используется прежнее устройство кеша: две ConcurrentHashMap с ключами Long.
+ * Запуск: main-метод класса из тестового classpath, сначала печатается занимаемая память
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class UserStateCacheBenchmark {
+
+    /**
+     * Каждый третий пользователь находится в середине диалога и имеет параметры
+     */
+    private static final int USERS_WITH_PARAMS_RATIO = 3;
+
+    @Param({"1000000"})
+    private int users;
+
+    private UserStateCache cache;
+
+    private Map<Long, ru.naumen.model.State> legacyStates;
+    private Map<Long, List<String>> legacyParams;
+
+    @Setup
+    public void setUp() {
+        cache = fillCache(users);
+        legacyStates = new ConcurrentHashMap<>();
+        legacyParams = new ConcurrentHashMap<>();
+        fillLegacy(users, legacyStates, legacyParams);
+    }
+
+    /**
+     * Состояние и параметры за один поиск
+     */
+    @Benchmark
+    public void session(Blackhole blackhole) {
+        long userId = ThreadLocalRandom.current().nextInt(users);
+        blackhole.consume(cache.getSession(userId));
+    }
+
+    /**
+     * Состояние и параметры из двух карт прежнего кеша
+     */
+    @Benchmark
+    public void legacy(Blackhole blackhole) {
+        long userId = ThreadLocalRandom.current().nextInt(users);
+        blackhole.consume(legacyStates.get(userId));
+        blackhole.consume(legacyParams.get(userId));
+    }
+
+    private static UserStateCache fillCache(int users) {
+        UserStateCache cache = new UserStateCache(users * 2, Duration.ofHours(24), System::nanoTime);
+        for (long userId = 0; userId < users; userId++) {
+            if (userId % USERS_WITH_PARAMS_RATIO == 0) {
+                cache.setState(userId, ru.naumen.model.State.EDIT_STEP_3);
+                cache.addParam(userId, "1");
+                cache.addParam(userId, "12");
+            } else {
+                cache.setState(userId, ru.naumen.model.State.IN_LIST);
+            }
+        }
+        return cache;
+    }
+
+    private static void fillLegacy(int users, Map<Long, ru.naumen.model.State> states,
+                                   Map<Long, List<String>> params) {
+        for (long userId = 0; userId < users; userId++) {
+            List<String> userParams = new ArrayList<>();
+            if (userId % USERS_WITH_PARAMS_RATIO == 0) {
+                states.put(userId, ru.naumen.model.State.EDIT_STEP_3);
+                userParams.add("1");
+                userParams.add("12");
+            } else {
+                states.put(userId, ru.naumen.model.State.IN_LIST);
+            }
+            params.put(userId, userParams);
+        }
+    }
+
+    /**
+     * Занятая память кучи после сборки мусора
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Печатает количество байт на пользователя для обоих вариантов кеша
+     */
+    private static void printFootprint(int users) {
+        long before = usedHeap();
+        Map<Long, ru.naumen.model.State> states = new ConcurrentHashMap<>();
+        Map<Long, List<String>> params = new ConcurrentHashMap<>();
+        fillLegacy(users, states, params);
+        long legacy = usedHeap() - before;
+        Reference.reachabilityFence(states);
+        Reference.reachabilityFence(params);
+        System.out.printf("Две ConcurrentHashMap: %d байт на пользователя%n", legacy / users);
+
+        before = usedHeap();
+        UserStateCache cache = fillCache(users);
+        long compact = usedHeap() - before;
+        Reference.reachabilityFence(cache);
+        System.out.printf("UserStateCache: %d байт на пользователя%n", compact / users);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        printFootprint(1_000_000);
+        new Runner(new OptionsBuilder()
+                .include(UserStateCacheBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
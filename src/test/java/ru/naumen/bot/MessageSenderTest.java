@@ -0,0 +1,191 @@
+package ru.naumen.bot;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Класс модульных тестов для MessageSender
+ */
+class MessageSenderTest {
+
+    private MessageSender messageSender;
+
+    /**
+     * Создаёт отправитель перед каждым тестом
+     */
+    @BeforeEach
+    void setUp() {
+        messageSender = new MessageSender(10, 2, 3, Duration.ofMillis(10), 1000, 1000, 1000);
+    }
+
+    /**
+     * Останавливает отправитель после каждого теста
+     */
+    @AfterEach
+    void tearDown() {
+        messageSender.shutdown();
+    }
+
+    /**
+     * Тест отправки сообщений
+     */
+    @Test
+    void testSend() {
+        List<String> sent = new CopyOnWriteArrayList<>();
+        messageSender.start(message -> {
+            sent.add(message.getText());
+            return CompletableFuture.completedFuture(new Message());
+        });
+
+        messageSender.send(createMessage("first"));
+        messageSender.send(createMessage("second"));
+
+        awaitCondition(() -> messageSender.getSentCount() == 2);
+        Assertions.assertEquals(List.of("first", "second"), sent);
+        Assertions.assertEquals(0, messageSender.getQueueDepth());
+    }
+
+    /**
+     * Тест повторной отправки после ошибки
+     */
+    @Test
+    void testSend_RetryAfterFailure() {
+        AtomicInteger attempts = new AtomicInteger();
+        messageSender.start(message -> {
+            if (attempts.incrementAndGet() == 1) {
+                return CompletableFuture.failedFuture(new IllegalStateException("network error"));
+            }
+            return CompletableFuture.completedFuture(new Message());
+        });
+
+        messageSender.send(createMessage("text"));
+
+        awaitCondition(() -> messageSender.getSentCount() == 1);
+        Assertions.assertEquals(2, attempts.get());
+        Assertions.assertEquals(1, messageSender.getRetriedCount());
+    }
+
+    /**
+     * Тест, что после исчерпания попыток сообщение считается неотправленным
+     */
+    @Test
+    void testSend_AttemptsExhausted() {
+        AtomicInteger attempts = new AtomicInteger();
+        messageSender.start(message -> {
+            attempts.incrementAndGet();
+            return CompletableFuture.failedFuture(new IllegalStateException("network error"));
+        });
+
+        messageSender.send(createMessage("text"));
+
+        awaitCondition(() -> messageSender.getFailedCount() == 1);
+        Assertions.assertEquals(3, attempts.get());
+        Assertions.assertEquals(0, messageSender.getSentCount());
+    }
+
+    /**
+     * Тест, что ответ 429 не расходует попытки отправки
+     */
+    @Test
+    void testSend_TooManyRequests() {
+        TelegramApiRequestException tooManyRequests = Mockito.mock(TelegramApiRequestException.class);
+        Mockito.when(tooManyRequests.getErrorCode()).thenReturn(429);
+        Mockito.when(tooManyRequests.getParameters()).thenReturn(null);
+
+        AtomicInteger attempts = new AtomicInteger();
+        messageSender = new MessageSender(10, 2, 1, Duration.ofMillis(10), 1000, 1000, 1000);
+        messageSender.start(message -> {
+            if (attempts.incrementAndGet() == 1) {
+                return CompletableFuture.failedFuture(tooManyRequests);
+            }
+            return CompletableFuture.completedFuture(new Message());
+        });
+
+        messageSender.send(createMessage("text"));
+
+        awaitCondition(() -> messageSender.getSentCount() == 1);
+        Assertions.assertEquals(1, messageSender.getThrottledCount());
+        Assertions.assertEquals(0, messageSender.getFailedCount());
+    }
+
+    /**
+     * Тест, что сообщение, получившее ответ 429, отправляется раньше следующего сообщения того же чата
+     */
+    @Test
+    void testSend_TooManyRequestsKeepsOrder() {
+        TelegramApiRequestException tooManyRequests = Mockito.mock(TelegramApiRequestException.class);
+        Mockito.when(tooManyRequests.getErrorCode()).thenReturn(429);
+        Mockito.when(tooManyRequests.getParameters()).thenReturn(null);
+
+        List<String> sent = new CopyOnWriteArrayList<>();
+        AtomicBoolean throttled = new AtomicBoolean();
+        CompletableFuture<Message> firstResponse = new CompletableFuture<>();
+        messageSender.start(message -> {
+            if (message.getText().equals("first") && throttled.compareAndSet(false, true)) {
+                return firstResponse;
+            }
+            sent.add(message.getText());
+            return CompletableFuture.completedFuture(new Message());
+        });
+
+        messageSender.send(createMessage("first"));
+        messageSender.send(createMessage("second"));
+        awaitCondition(throttled::get);
+        firstResponse.completeExceptionally(tooManyRequests);
+
+        awaitCondition(() -> messageSender.getSentCount() == 2);
+        Assertions.assertEquals(List.of("first", "second"), sent);
+        Assertions.assertEquals(1, messageSender.getThrottledCount());
+    }
+
+    /**
+     * Тест переполнения очереди, пока отправка не запущена
+     */
+    @Test
+    void testSend_QueueFull() {
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertTrue(messageSender.send(createMessage("text")));
+        }
+
+        Assertions.assertFalse(messageSender.send(createMessage("text")));
+        Assertions.assertEquals(10, messageSender.getQueueDepth());
+        Assertions.assertEquals(1, messageSender.getDroppedCount());
+    }
+
+    /**
+     * Создаёт сообщение для чата
+     */
+    private SendMessage createMessage(String text) {
+        SendMessage message = new SendMessage();
+        message.setChatId("1");
+        message.setText(text);
+        return message;
+    }
+
+    /**
+     * Ожидает выполнения условия не дольше 5 секунд
+     */
+    private void awaitCondition(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                Assertions.fail("Условие не выполнено за отведённое время");
+            }
+            Thread.onSpinWait();
+        }
+    }
+}
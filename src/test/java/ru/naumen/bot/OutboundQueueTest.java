@@ -0,0 +1,211 @@
+package ru.naumen.bot;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import ru.naumen.bot.MessageSender.OutboundMessage;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Класс модульных тестов для OutboundQueue.
+ * Время задаётся вручную, чтобы проверять лимиты без ожидания
+ */
+class OutboundQueueTest {
+
+    /**
+     * Текущее время в наносекундах
+     */
+    private long now;
+
+    /**
+     * Задаёт начальное время перед каждым тестом
+     */
+    @BeforeEach
+    void setUp() {
+        now = 0;
+    }
+
+    /**
+     * Тест, что чаты обслуживаются по кругу
+     */
+    @Test
+    void testPollRoundRobin() {
+        OutboundQueue queue = new OutboundQueue(100, 1000, 1000, 1000, () -> now);
+        queue.offer(message("A", "a1"));
+        queue.offer(message("A", "a2"));
+        queue.offer(message("A", "a3"));
+        queue.offer(message("B", "b1"));
+
+        Assertions.assertEquals("a1", send(queue));
+        Assertions.assertEquals("b1", send(queue));
+        Assertions.assertEquals("a2", send(queue));
+        Assertions.assertEquals("a3", send(queue));
+        Assertions.assertNull(send(queue));
+    }
+
+    /**
+     * Тест лимита сообщений в один чат
+     */
+    @Test
+    void testPollChatRateLimit() {
+        OutboundQueue queue = new OutboundQueue(100, 1000, 1, 1, () -> now);
+        queue.offer(message("A", "a1"));
+        queue.offer(message("A", "a2"));
+        queue.offer(message("B", "b1"));
+
+        Assertions.assertEquals("a1", send(queue));
+        Assertions.assertEquals("b1", send(queue));
+        Assertions.assertNull(send(queue));
+
+        now += TimeUnit.SECONDS.toNanos(1);
+        Assertions.assertEquals("a2", send(queue));
+    }
+
+    /**
+     * Тест, что лимит чата сохраняется, когда очередь чата опустела
+     */
+    @Test
+    void testPollChatRateLimitAfterEmptyQueue() {
+        OutboundQueue queue = new OutboundQueue(100, 1000, 1, 1, () -> now);
+        queue.offer(message("A", "a1"));
+        Assertions.assertEquals("a1", send(queue));
+        Assertions.assertEquals(0, queue.chatCount());
+
+        queue.offer(message("A", "a2"));
+        Assertions.assertNull(send(queue));
+
+        now += TimeUnit.SECONDS.toNanos(1);
+        Assertions.assertEquals("a2", send(queue));
+    }
+
+    /**
+     * Тест, что лимит чата забывается, когда запас токенов полностью восстановился
+     */
+    @Test
+    void testIdleChatLimitEvicted() {
+        OutboundQueue queue = new OutboundQueue(100, 1000, 1, 2, () -> now);
+        queue.offer(message("A", "a1"));
+        send(queue);
+        Assertions.assertEquals(1, queue.limitCount());
+
+        now += TimeUnit.SECONDS.toNanos(2);
+        queue.offer(message("B", "b1"));
+        Assertions.assertEquals(1, queue.limitCount());
+    }
+
+    /**
+     * Тест общего лимита сообщений
+     */
+    @Test
+    void testPollGlobalRateLimit() {
+        OutboundQueue queue = new OutboundQueue(100, 2, 1000, 1000, () -> now);
+        queue.offer(message("A", "a1"));
+        queue.offer(message("B", "b1"));
+        queue.offer(message("C", "c1"));
+
+        Assertions.assertNotNull(send(queue));
+        Assertions.assertNotNull(send(queue));
+        Assertions.assertNull(send(queue));
+
+        now += TimeUnit.MILLISECONDS.toNanos(500);
+        Assertions.assertEquals("c1", send(queue));
+    }
+
+    /**
+     * Тест, что повторная отправка приостанавливает только свой чат и сохраняет порядок сообщений в нём
+     */
+    @Test
+    void testRetryBlocksChat() {
+        OutboundQueue queue = new OutboundQueue(100, 1000, 1000, 1000, () -> now);
+        queue.offer(message("A", "a2"));
+        queue.offer(message("B", "b1"));
+
+        queue.retry(message("A", "a1"), TimeUnit.SECONDS.toNanos(5));
+
+        Assertions.assertEquals("b1", send(queue));
+        Assertions.assertNull(send(queue));
+
+        now += TimeUnit.SECONDS.toNanos(5);
+        Assertions.assertEquals("a1", send(queue));
+        Assertions.assertEquals("a2", send(queue));
+    }
+
+    /**
+     * Тест, что следующее сообщение чата не отправляется, пока не завершена отправка предыдущего
+     */
+    @Test
+    void testPollOneMessagePerChat() {
+        OutboundQueue queue = new OutboundQueue(100, 1000, 1000, 1000, () -> now);
+        queue.offer(message("A", "a1"));
+        queue.offer(message("A", "a2"));
+        queue.offer(message("B", "b1"));
+
+        OutboundMessage first = queue.poll();
+        Assertions.assertEquals("a1", first.sendMessage().getText());
+        Assertions.assertEquals("b1", send(queue));
+        Assertions.assertNull(queue.poll());
+
+        queue.complete(first);
+        Assertions.assertEquals("a2", send(queue));
+    }
+
+    /**
+     * Тест, что сообщение после ответа 429 отправляется раньше следующего сообщения чата
+     */
+    @Test
+    void testRetryKeepsOrderInFlight() {
+        OutboundQueue queue = new OutboundQueue(100, 1000, 1000, 1000, () -> now);
+        queue.offer(message("A", "a1"));
+        OutboundMessage first = queue.poll();
+        queue.offer(message("A", "a2"));
+
+        queue.retry(first, TimeUnit.SECONDS.toNanos(1));
+        queue.complete(first);
+        Assertions.assertNull(send(queue));
+
+        now += TimeUnit.SECONDS.toNanos(1);
+        Assertions.assertEquals("a1", send(queue));
+        Assertions.assertEquals("a2", send(queue));
+    }
+
+    /**
+     * Тест переполнения очереди
+     */
+    @Test
+    void testOfferQueueFull() {
+        OutboundQueue queue = new OutboundQueue(1, 1000, 1000, 1000, () -> now);
+
+        Assertions.assertTrue(queue.offer(message("A", "a1")));
+        Assertions.assertFalse(queue.offer(message("B", "b1")));
+
+        queue.retry(message("B", "b1"), 0);
+        Assertions.assertEquals(2, queue.size());
+        Assertions.assertEquals(2, queue.chatCount());
+    }
+
+    /**
+     * Извлекает сообщение и сразу завершает его отправку
+     *
+     * @return текст сообщения или null, если отправлять нечего
+     */
+    private String send(OutboundQueue queue) {
+        OutboundMessage message = queue.poll();
+        if (message == null) {
+            return null;
+        }
+        queue.complete(message);
+        return message.sendMessage().getText();
+    }
+
+    /**
+     * Создаёт сообщение для чата
+     */
+    private OutboundMessage message(String chatId, String text) {
+        SendMessage sendMessage = new SendMessage();
+        sendMessage.setChatId(chatId);
+        sendMessage.setText(text);
+        return new OutboundMessage(sendMessage, 0);
+    }
+}
@@ -0,0 +1,160 @@
+package ru.naumen.bot;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Класс модульных тестов UpdateDispatcher
+ */
+class UpdateDispatcherTest {
+
+    private UpdateDispatcher updateDispatcher;
+
+    /**
+     * Создаёт новый диспетчер перед каждым тестом
+     */
+    @BeforeEach
+    void setUp() {
+        updateDispatcher = new UpdateDispatcher(2, 100);
+    }
+
+    /**
+     * Останавливает диспетчер после каждого теста
+     */
+    @AfterEach
+    void tearDown() {
+        updateDispatcher.shutdown();
+    }
+
+    /**
+     * Тест, что обновления одного пользователя выполняются в порядке поступления
+     */
+    @Test
+    void testDispatchKeepsOrderForUser() throws InterruptedException {
+        UpdateDispatcher dispatcher = new UpdateDispatcher(100, 100);
+        List<Integer> executed = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(50);
+
+        for (int i = 0; i < 50; i++) {
+            int number = i;
+            dispatcher.dispatch(12345L, () -> {
+                executed.add(number);
+                done.countDown();
+            });
+        }
+
+        Assertions.assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 50; i++) {
+            Assertions.assertEquals(i, executed.get(i));
+        }
+        dispatcher.shutdown();
+    }
+
+    /**
+     * Тест, что медленное обновление одного пользователя не блокирует других пользователей
+     */
+    @Test
+    void testDispatchUsersInParallel() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch otherUserDone = new CountDownLatch(1);
+
+        updateDispatcher.dispatch(1L, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        updateDispatcher.dispatch(2L, otherUserDone::countDown);
+
+        Assertions.assertTrue(otherUserDone.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    /**
+     * Тест отклонения обновлений при переполнении очереди пользователя
+     */
+    @Test
+    void testDispatchRejectsWhenLaneIsFull() {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+
+        updateDispatcher.dispatch(12345L, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        awaitQuietly(started);
+
+        Assertions.assertTrue(updateDispatcher.dispatch(12345L, () -> { }));
+        Assertions.assertTrue(updateDispatcher.dispatch(12345L, () -> { }));
+        Assertions.assertFalse(updateDispatcher.dispatch(12345L, () -> { }));
+        Assertions.assertEquals(1, updateDispatcher.getRejectedCount());
+
+        release.countDown();
+    }
+
+    /**
+     * Тест отбрасывания обновлений при переполнении общей очереди
+     */
+    @Test
+    void testDispatchDropsWhenPendingLimitReached() {
+        UpdateDispatcher dispatcher = new UpdateDispatcher(10, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+
+        dispatcher.dispatch(1L, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        awaitQuietly(started);
+
+        Assertions.assertTrue(dispatcher.dispatch(1L, () -> { }));
+        Assertions.assertFalse(dispatcher.dispatch(2L, () -> { }));
+        Assertions.assertEquals(1, dispatcher.getDroppedCount());
+
+        release.countDown();
+        dispatcher.shutdown();
+    }
+
+    /**
+     * Тест, что ошибка в обработке не останавливает очередь пользователя
+     */
+    @Test
+    void testDispatchContinuesAfterFailure() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+
+        updateDispatcher.dispatch(12345L, () -> {
+            throw new IllegalStateException("failure");
+        });
+        updateDispatcher.dispatch(12345L, done::countDown);
+
+        Assertions.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, updateDispatcher.getFailedCount());
+    }
+
+    /**
+     * Ожидает защёлку, не пробрасывая прерывание
+     */
+    private void awaitQuietly(CountDownLatch latch) {
+        try {
+            Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
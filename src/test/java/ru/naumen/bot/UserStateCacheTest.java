@@ -3,10 +3,21 @@ package ru.naumen.bot;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import ru.naumen.cache.PageCursor;
+import ru.naumen.cache.UserSession;
 import ru.naumen.cache.UserStateCache;
 import ru.naumen.model.State;
+import ru.naumen.service.SortOrder;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Класс модульных тестов UserStateCache
@@ -105,4 +116,230 @@ class UserStateCacheTest {
         userStateCache.clearParamsForUser(12345L);
         Assertions.assertTrue(userStateCache.getUserParams(12345L).isEmpty());
     }
+
+    /**
+     * Тест получения состояния и параметров одним запросом
+     */
+    @Test
+    void getSession() {
+        userStateCache.setState(12345L, State.EDIT_STEP_3);
+        userStateCache.addParam(12345L, "1");
+        userStateCache.addParam(12345L, "12");
+
+        UserSession session = userStateCache.getSession(12345L);
+
+        Assertions.assertEquals(State.EDIT_STEP_3, session.state());
+        Assertions.assertEquals(List.of("1", "12"), session.params());
+        Assertions.assertEquals(UserSession.EMPTY, userStateCache.getSession(1L));
+    }
+
+    /**
+     * Тест, что чтение неизвестного пользователя не создаёт сессию
+     */
+    @Test
+    void getUserStateDoesNotInsert() {
+        userStateCache.getUserState(12345L);
+        userStateCache.getUserParams(12345L);
+
+        Assertions.assertEquals(0, userStateCache.size());
+        Assertions.assertEquals(2, userStateCache.getMissCount());
+    }
+
+    /**
+     * Тест, что сессия без состояния и параметров удаляется
+     */
+    @Test
+    void resetToNoneRemovesSession() {
+        userStateCache.setState(12345L, State.SAVE_STEP_2);
+        userStateCache.addParam(12345L, "param1");
+
+        userStateCache.setState(12345L, State.NONE);
+        Assertions.assertEquals(1, userStateCache.size());
+        userStateCache.clearParamsForUser(12345L);
+
+        Assertions.assertEquals(0, userStateCache.size());
+    }
+
+    /**
+     * Тест, что положение в списке хранится в сессии и удерживает её, пока его не забудут
+     */
+    @Test
+    void pageCursorKeepsSession() {
+        PageCursor cursor = new PageCursor(PageCursor.Listing.LIST, null, SortOrder.LIST, 1, 10,
+                new PageCursor.Key("a", new UUID(0L, 1L)), new PageCursor.Key("b", new UUID(0L, 2L)), true);
+
+        userStateCache.setPageCursor(12345L, cursor);
+        Assertions.assertEquals(cursor, userStateCache.getPageCursor(12345L));
+        Assertions.assertEquals(State.NONE, userStateCache.getUserState(12345L));
+        Assertions.assertEquals(1, userStateCache.size());
+
+        userStateCache.setPageCursor(12345L, null);
+        Assertions.assertNull(userStateCache.getPageCursor(12345L));
+        Assertions.assertEquals(0, userStateCache.size());
+    }
+
+    /**
+     * Тест удаления сессии, к которой долго не обращались
+     */
+    @Test
+    void idleSessionExpires() {
+        AtomicLong time = new AtomicLong();
+        UserStateCache cache = new UserStateCache(100, Duration.ofMinutes(10), time::get);
+        cache.setState(12345L, State.EDIT_STEP_3);
+        cache.addParam(12345L, "1");
+
+        time.addAndGet(Duration.ofMinutes(9).toNanos());
+        Assertions.assertEquals(State.EDIT_STEP_3, cache.getUserState(12345L));
+        Assertions.assertEquals(1, cache.getHitCount());
+
+        time.addAndGet(Duration.ofMinutes(10).toNanos());
+        Assertions.assertEquals(State.NONE, cache.getUserState(12345L));
+        Assertions.assertTrue(cache.getUserParams(12345L).isEmpty());
+        Assertions.assertEquals(1, cache.getEvictionCount());
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    /**
+     * Тест удаления просроченных сессий при очистке
+     */
+    @Test
+    void cleanUpRemovesIdleSessions() {
+        AtomicLong time = new AtomicLong();
+        UserStateCache cache = new UserStateCache(100, Duration.ofMinutes(10), time::get);
+        for (long userId = 0; userId < 50; userId++) {
+            cache.setState(userId, State.FIND_STEP_1);
+        }
+
+        time.addAndGet(Duration.ofMinutes(11).toNanos());
+        cache.cleanUp();
+
+        Assertions.assertEquals(0, cache.size());
+        Assertions.assertEquals(50, cache.getEvictionCount());
+    }
+
+    /**
+     * Тест ограничения количества сессий
+     */
+    @Test
+    void sizeIsBounded() {
+        UserStateCache cache = new UserStateCache(64, Duration.ofHours(1), System::nanoTime);
+        for (long userId = 0; userId < 10_000; userId++) {
+            cache.setState(userId, State.GENERATION_STEP_1);
+        }
+
+        Assertions.assertTrue(cache.size() <= 64);
+        Assertions.assertEquals(10_000 - cache.size(), cache.getEvictionCount());
+    }
+
+    /**
+     * Тест, что сессия, к которой постоянно обращаются, не вытесняется
+     */
+    @Test
+    void recentlyUsedIsKept() {
+        UserStateCache cache = new UserStateCache(64, Duration.ofHours(1), System::nanoTime);
+        cache.setState(0L, State.SORT_STEP_1);
+        for (long userId = 1; userId < 10_000; userId++) {
+            cache.setState(userId, State.FIND_STEP_1);
+            Assertions.assertEquals(State.SORT_STEP_1, cache.getUserState(0L));
+        }
+
+        Assertions.assertEquals(State.NONE, cache.getUserState(1L));
+    }
+
+    /**
+     * Тест атомарного изменения сессии: чтение внутри действия видит собственные записи
+     */
+    @Test
+    void compute() {
+        userStateCache.setState(12345L, State.EDIT_STEP_3);
+        userStateCache.addParam(12345L, "1");
+
+        List<String> params = userStateCache.compute(12345L, session -> session
+                .addParam("12")
+                .setState(State.EDIT_STEP_4)
+                .params());
+
+        Assertions.assertEquals(List.of("1", "12"), params);
+        Assertions.assertEquals(State.EDIT_STEP_4, userStateCache.getUserState(12345L));
+    }
+
+    /**
+     * Тест, что чтение в compute не создаёт сессию, а сброс в NONE без параметров удаляет её
+     */
+    @Test
+    void computeCreatesSessionOnlyOnWrite() {
+        State state = userStateCache.compute(12345L, session -> session.state());
+        Assertions.assertEquals(State.NONE, state);
+        Assertions.assertEquals(0, userStateCache.size());
+
+        userStateCache.compute(12345L, session -> session.setState(State.SORT_STEP_1));
+        Assertions.assertEquals(1, userStateCache.size());
+
+        userStateCache.compute(12345L, session -> session.setState(State.NONE).clearParams());
+        Assertions.assertEquals(0, userStateCache.size());
+    }
+
+    /**
+     * Тест, что редактором нельзя пользоваться вне compute и нельзя вызвать compute из действия
+     */
+    @Test
+    void computeEditorIsScoped() {
+        UserStateCache.SessionEditor leaked = userStateCache.compute(12345L, session -> session);
+
+        Assertions.assertThrows(IllegalStateException.class, leaked::state);
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> userStateCache.compute(12345L, session -> userStateCache.compute(12345L, inner -> null)));
+    }
+
+    /**
+     * Нагрузочный тест: параллельные составные изменения одних и тех же сессий не теряются
+     * и не видны наполовину. Каждое изменение увеличивает счётчик в параметрах
+     * и переключает состояние вместе с количеством параметров
+     */
+    @Test
+    void computeIsAtomicUnderContention() throws Exception {
+        int threads = 8;
+        int iterations = 20_000;
+        long[] users = {1L, 2L, 3L};
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < iterations; i++) {
+                        long userId = users[i % users.length];
+                        userStateCache.compute(userId, session -> {
+                            List<String> params = session.params();
+                            int counter = params.isEmpty() ? 0 : Integer.parseInt(params.get(0));
+                            session.clearParams().addParam(String.valueOf(counter + 1));
+                            if (session.state() == State.EDIT_STEP_4) {
+                                session.setState(State.EDIT_STEP_3);
+                            } else {
+                                session.setState(State.EDIT_STEP_4).addParam("marker");
+                            }
+                            return null;
+                        });
+                        UserSession snapshot = userStateCache.getSession(userId);
+                        int expectedParams = snapshot.state() == State.EDIT_STEP_4 ? 2 : 1;
+                        Assertions.assertEquals(expectedParams, snapshot.params().size());
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int total = 0;
+        for (long userId : users) {
+            total += Integer.parseInt(userStateCache.getUserParams(userId).get(0));
+        }
+        Assertions.assertEquals(threads * iterations, total);
+    }
 }
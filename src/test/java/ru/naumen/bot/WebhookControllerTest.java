@@ -0,0 +1,66 @@
+package ru.naumen.bot;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+/**
+ * Класс модульных тестов для WebhookController
+ */
+class WebhookControllerTest {
+
+    @Mock
+    private TelegramBot telegramBot;
+
+    private WebhookController webhookController;
+
+    /**
+     * Инициализирует моки перед каждым тестом
+     */
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        webhookController = new WebhookController(telegramBot, "secret");
+    }
+
+    /**
+     * Тест приёма обновления с верным токеном
+     */
+    @Test
+    void testOnUpdate_ValidToken() {
+        Update update = new Update();
+
+        ResponseEntity<Void> response = webhookController.onUpdate("secret", update);
+
+        Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+        Mockito.verify(telegramBot).onUpdateReceived(update);
+    }
+
+    /**
+     * Тест приёма обновления с неверным токеном
+     */
+    @Test
+    void testOnUpdate_InvalidToken() {
+        ResponseEntity<Void> response = webhookController.onUpdate("wrong", new Update());
+
+        Assertions.assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
+        Mockito.verify(telegramBot, Mockito.never()).onUpdateReceived(Mockito.any());
+    }
+
+    /**
+     * Тест приёма обновления без токена
+     */
+    @Test
+    void testOnUpdate_NoToken() {
+        ResponseEntity<Void> response = webhookController.onUpdate(null, new Update());
+
+        Assertions.assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
+        Mockito.verify(telegramBot, Mockito.never()).onUpdateReceived(Mockito.any());
+    }
+}
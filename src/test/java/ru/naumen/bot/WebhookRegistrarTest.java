@@ -0,0 +1,100 @@
+package ru.naumen.bot;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Класс модульных тестов для WebhookRegistrar.
+ * Вместо Telegram используется локальный HTTP-сервер
+ */
+class WebhookRegistrarTest {
+
+    private HttpServer telegramServer;
+
+    /**
+     * Путь последнего запроса к серверу
+     */
+    private volatile String requestPath;
+
+    /**
+     * Тело последнего запроса к серверу
+     */
+    private volatile String requestBody;
+
+    /**
+     * Ответ сервера
+     */
+    private volatile String responseBody;
+
+    /**
+     * Запускает локальный сервер перед каждым тестом
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        telegramServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        telegramServer.createContext("/", exchange -> {
+            requestPath = exchange.getRequestURI().getPath();
+            requestBody = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+
+            byte[] response = responseBody.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(response);
+            }
+        });
+        telegramServer.start();
+    }
+
+    /**
+     * Останавливает локальный сервер после каждого теста
+     */
+    @AfterEach
+    void tearDown() {
+        telegramServer.stop(0);
+    }
+
+    /**
+     * Тест успешной регистрации вебхука
+     */
+    @Test
+    void testRegisterWebhook() {
+        responseBody = "{\"ok\":true,\"result\":true,\"description\":\"Webhook was set\"}";
+
+        createRegistrar().registerWebhook();
+
+        Assertions.assertEquals("/botTOKEN/setWebhook", requestPath);
+        Assertions.assertTrue(requestBody.contains("\"url\":\"https://example.com/telegram/webhook\""));
+        Assertions.assertTrue(requestBody.contains("\"secret_token\":\"secret\""));
+    }
+
+    /**
+     * Тест регистрации вебхука, если Telegram отклонил запрос
+     */
+    @Test
+    void testRegisterWebhook_Rejected() {
+        responseBody = "{\"ok\":false,\"description\":\"Bad Request: bad webhook\"}";
+
+        WebhookRegistrar registrar = createRegistrar();
+
+        Assertions.assertThrows(IllegalStateException.class, registrar::registerWebhook);
+    }
+
+    /**
+     * Создаёт регистратор, направленный на локальный сервер
+     */
+    private WebhookRegistrar createRegistrar() {
+        String apiUrl = "http://localhost:" + telegramServer.getAddress().getPort();
+        return new WebhookRegistrar(RestClient.builder(), apiUrl, "TOKEN",
+                "https://example.com", "/telegram/webhook", "secret");
+    }
+}
@@ -0,0 +1,77 @@
+package ru.naumen.bot.command;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Класс модульных тестов CommandResolver
+ */
+class CommandResolverTest {
+
+    private final CommandResolver commandResolver = new CommandResolver("PasswordBot");
+
+    /**
+     * Тест, что все названия и подписи команд находятся
+     */
+    @Test
+    void testResolveAllNames() {
+        for (Command command : Command.values()) {
+            Assertions.assertEquals(command, commandResolver.resolve(command.getCommand()));
+            Assertions.assertEquals(command, commandResolver.resolve(command.getKeyboardLabel()));
+            for (String alias : command.getAliases()) {
+                Assertions.assertEquals(command, commandResolver.resolve(alias));
+            }
+        }
+    }
+
+    /**
+     * Тест поиска команды без учёта регистра
+     */
+    @Test
+    void testResolveIgnoreCase() {
+        Assertions.assertEquals(Command.EDIT, commandResolver.resolve("/EDIT"));
+        Assertions.assertEquals(Command.START, commandResolver.resolve("/Menu"));
+    }
+
+    /**
+     * Тест, что подпись на клавиатуре совпадает только с учётом регистра
+     */
+    @Test
+    void testResolveLabelExact() {
+        Assertions.assertEquals(Command.START, commandResolver.resolve("Меню"));
+        Assertions.assertNull(commandResolver.resolve("меню"));
+        Assertions.assertNull(commandResolver.resolve("ИЗМЕНИТЬ"));
+    }
+
+    /**
+     * Тест поиска команды с именем бота
+     */
+    @Test
+    void testResolveBotName() {
+        Assertions.assertEquals(Command.LIST, commandResolver.resolve("/list@PasswordBot"));
+        Assertions.assertEquals(Command.LIST, commandResolver.resolve("/list@passwordbot"));
+        Assertions.assertNull(commandResolver.resolve("/list@OtherBot"));
+        Assertions.assertNull(commandResolver.resolve("/list@"));
+        Assertions.assertNull(commandResolver.resolve("Менеджер@PasswordBot"));
+    }
+
+    /**
+     * Тест, что префикс и продолжение названия не являются командой
+     */
+    @Test
+    void testResolvePartialName() {
+        Assertions.assertNull(commandResolver.resolve("/ge"));
+        Assertions.assertNull(commandResolver.resolve("/generated"));
+        Assertions.assertNull(commandResolver.resolve(""));
+        Assertions.assertNull(commandResolver.resolve("qwerty"));
+    }
+
+    /**
+     * Тест поиска по первому слову сообщения
+     */
+    @Test
+    void testResolveFirstToken() {
+        Assertions.assertEquals(Command.DELETE, commandResolver.resolve(CommandTokens.parse("/delete 3")));
+        Assertions.assertNull(commandResolver.resolve(CommandTokens.parse("pass /del")));
+    }
+}
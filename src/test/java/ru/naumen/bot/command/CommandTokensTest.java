@@ -0,0 +1,73 @@
+package ru.naumen.bot.command;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Класс модульных тестов CommandTokens
+ */
+class CommandTokensTest {
+
+    /**
+     * Тест, что разбор совпадает с String.split(" ")
+     */
+    @Test
+    void testParseMatchesSplit() {
+        String[] messages = {"/generate 12 3", "/list", "", " ", "   ", "a  b", " a", "a ", "a b  ",
+                "/edit 1 12 2 example.com", "Генерировать"};
+
+        for (String message : messages) {
+            Assertions.assertArrayEquals(message.split(" "), CommandTokens.parse(message).toArray(), message);
+        }
+    }
+
+    /**
+     * Тест чтения слов без создания подстрок
+     */
+    @Test
+    void testTokenAccess() {
+        CommandTokens tokens = CommandTokens.parse("/del 15");
+
+        Assertions.assertEquals(2, tokens.count());
+        Assertions.assertTrue(tokens.contentEquals(0, "/del"));
+        Assertions.assertFalse(tokens.contentEquals(0, "/de"));
+        Assertions.assertEquals(15, tokens.parseInt(1));
+        Assertions.assertEquals(5, tokens.start(1));
+        Assertions.assertEquals(7, tokens.end(1));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> tokens.get(2));
+    }
+
+    /**
+     * Тест разбора нечислового параметра как числа
+     */
+    @Test
+    void testParseIntNotNumber() {
+        CommandTokens tokens = CommandTokens.parse("/del abc");
+
+        Assertions.assertThrows(NumberFormatException.class, () -> tokens.parseInt(1));
+    }
+
+    /**
+     * Тест разбора команды с большим количеством слов
+     */
+    @Test
+    void testParseManyTokens() {
+        String message = "a b c d e f g h i j k l m n o p q r s t";
+
+        Assertions.assertArrayEquals(message.split(" "), CommandTokens.parse(message).toArray());
+    }
+
+    /**
+     * Тест, что команда из массива слов равна разобранной строке
+     */
+    @Test
+    void testOfEqualsParse() {
+        CommandTokens parsed = CommandTokens.parse("/save pass desc");
+        CommandTokens fromArray = CommandTokens.of("/save", "pass", "desc");
+
+        Assertions.assertEquals(parsed, fromArray);
+        Assertions.assertEquals(parsed.hashCode(), fromArray.hashCode());
+        Assertions.assertNotEquals(CommandTokens.of("/save", "pass"), parsed);
+        Assertions.assertNotEquals(CommandTokens.of("/save", "pass desc"), CommandTokens.of("/save pass", "desc"));
+    }
+}
@@ -0,0 +1,74 @@
+package ru.naumen.cache;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+
+/**
+ * Класс модульных тестов для EntityCacheStatistics
+ */
+class EntityCacheStatisticsTest {
+
+    private Statistics statistics;
+
+    private EntityCacheStatistics entityCacheStatistics;
+
+    /**
+     * Создаёт статистику поверх фабрики сессий Hibernate
+     */
+    @BeforeEach
+    void setUp() {
+        statistics = Mockito.mock(Statistics.class);
+        SessionFactory sessionFactory = Mockito.mock(SessionFactory.class);
+        EntityManagerFactory entityManagerFactory = Mockito.mock(EntityManagerFactory.class);
+        Mockito.when(entityManagerFactory.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+        Mockito.when(sessionFactory.getStatistics()).thenReturn(statistics);
+        entityCacheStatistics = new EntityCacheStatistics(entityManagerFactory, Duration.ZERO);
+    }
+
+    /**
+     * Тест доли попаданий по областям
+     */
+    @Test
+    void testReport() {
+        CacheRegionStatistics users = region(3, 1, 2);
+        CacheRegionStatistics passwords = region(0, 0, 0);
+        CacheRegionStatistics queries = region(1, 2, 1);
+        Mockito.when(statistics.getDomainDataRegionStatistics(EntityCacheConfiguration.USERS_REGION))
+                .thenReturn(users);
+        Mockito.when(statistics.getDomainDataRegionStatistics(EntityCacheConfiguration.PASSWORDS_REGION))
+                .thenReturn(passwords);
+        Mockito.when(statistics.getQueryRegionStatistics(EntityCacheConfiguration.QUERIES_REGION))
+                .thenReturn(queries);
+
+        Assertions.assertEquals("Кеш сущностей: "
+                        + "users попаданий 3, промахов 1, доля попаданий 75.0%, записей 2; "
+                        + "passwords попаданий 0, промахов 0, доля попаданий 0.0%, записей 0; "
+                        + "queries попаданий 1, промахов 2, доля попаданий 33.3%, записей 1",
+                entityCacheStatistics.report());
+    }
+
+    /**
+     * Тест области, к которой ещё не обращались
+     */
+    @Test
+    void testReportWithoutRegions() {
+        Assertions.assertEquals("Кеш сущностей: users нет обращений; passwords нет обращений; queries нет обращений",
+                entityCacheStatistics.report());
+    }
+
+    private static CacheRegionStatistics region(long hits, long misses, long elements) {
+        CacheRegionStatistics region = Mockito.mock(CacheRegionStatistics.class);
+        Mockito.when(region.getHitCount()).thenReturn(hits);
+        Mockito.when(region.getMissCount()).thenReturn(misses);
+        Mockito.when(region.getElementCountInMemory()).thenReturn(elements);
+        return region;
+    }
+}
@@ -0,0 +1,64 @@
+package ru.naumen.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.naumen.model.State;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Класс модульных тестов для SessionCacheCleaner
+ */
+class SessionCacheCleanerTest {
+
+    private final AtomicLong time = new AtomicLong();
+
+    private final UserStateCache userStateCache = new UserStateCache(100, Duration.ofMinutes(10), time::get);
+
+    private SessionCacheCleaner sessionCacheCleaner;
+
+    /**
+     * Останавливает очистку после каждого теста
+     */
+    @AfterEach
+    void tearDown() {
+        sessionCacheCleaner.shutdown();
+    }
+
+    /**
+     * Тест, что запущенная очистка удаляет просроченные сессии без обращений к ним
+     */
+    @Test
+    void testStartRemovesIdleSessions() throws InterruptedException {
+        userStateCache.setState(12345L, State.FIND_STEP_1);
+        time.addAndGet(Duration.ofMinutes(11).toNanos());
+        sessionCacheCleaner = new SessionCacheCleaner(userStateCache, Duration.ofMillis(10));
+
+        sessionCacheCleaner.start();
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (userStateCache.size() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(0, userStateCache.size());
+        Assertions.assertEquals(1, userStateCache.getEvictionCount());
+    }
+
+    /**
+     * Тест, что нулевой интервал отключает очистку
+     */
+    @Test
+    void testZeroIntervalDisablesCleanup() throws InterruptedException {
+        userStateCache.setState(12345L, State.FIND_STEP_1);
+        time.addAndGet(Duration.ofMinutes(11).toNanos());
+        sessionCacheCleaner = new SessionCacheCleaner(userStateCache, Duration.ZERO);
+
+        sessionCacheCleaner.start();
+        Thread.sleep(50);
+
+        Assertions.assertEquals(1, userStateCache.size());
+        Assertions.assertEquals(0, userStateCache.getEvictionCount());
+    }
+}
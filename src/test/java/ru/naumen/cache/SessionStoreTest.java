@@ -0,0 +1,220 @@
+package ru.naumen.cache;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.naumen.model.State;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Класс модульных тестов SessionStore
+ */
+class SessionStoreTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Тест восстановления сессий из снимка
+     */
+    @Test
+    void restoreFromSnapshot() throws IOException {
+        UserStateCache cache = new UserStateCache();
+        SessionStore store = newStore(cache);
+        store.open();
+        cache.setState(1L, State.SAVE_STEP_2);
+        cache.addParam(1L, "пароль");
+        cache.setState(2L, State.EDIT_STEP_3);
+        cache.addParam(2L, "1");
+        cache.addParam(2L, "12");
+        store.flush();
+        store.snapshot();
+
+        UserStateCache restored = new UserStateCache();
+        newStore(restored).open();
+
+        Assertions.assertEquals(new UserSession(State.SAVE_STEP_2, List.of("пароль")), restored.getSession(1L));
+        Assertions.assertEquals(new UserSession(State.EDIT_STEP_3, List.of("1", "12")), restored.getSession(2L));
+        Assertions.assertEquals(2, restored.size());
+    }
+
+    /**
+     * Тест, что изменения после снимка восстанавливаются из журнала, в том числе завершение диалога
+     */
+    @Test
+    void restoreReplaysLogAfterSnapshot() throws IOException {
+        UserStateCache cache = new UserStateCache();
+        SessionStore store = newStore(cache);
+        store.open();
+        cache.setState(1L, State.FIND_STEP_1);
+        cache.setState(2L, State.SORT_STEP_1);
+        store.flush();
+        store.snapshot();
+
+        cache.setState(1L, State.NONE);
+        cache.compute(3L, session -> session.setState(State.GENERATION_STEP_2).addParam("16"));
+        store.flush();
+
+        UserStateCache restored = new UserStateCache();
+        newStore(restored).open();
+
+        Assertions.assertEquals(UserSession.EMPTY, restored.getSession(1L));
+        Assertions.assertEquals(State.SORT_STEP_1, restored.getUserState(2L));
+        Assertions.assertEquals(new UserSession(State.GENERATION_STEP_2, List.of("16")), restored.getSession(3L));
+        Assertions.assertEquals(2, restored.size());
+    }
+
+    /**
+     * Тест, что обрезанная запись в конце журнала отбрасывается, а предыдущие применяются
+     */
+    @Test
+    void tornLogTailIsIgnored() throws IOException {
+        UserStateCache cache = new UserStateCache();
+        SessionStore store = newStore(cache);
+        store.open();
+        cache.setState(1L, State.DELETE_STEP_1);
+        store.flush();
+        cache.setState(2L, State.EDIT_STEP_1);
+        store.flush();
+
+        Path log = latestLog();
+        byte[] bytes = Files.readAllBytes(log);
+        Files.write(log, Arrays.copyOf(bytes, bytes.length - 3), StandardOpenOption.TRUNCATE_EXISTING);
+
+        UserStateCache restored = new UserStateCache();
+        newStore(restored).open();
+
+        Assertions.assertEquals(State.DELETE_STEP_1, restored.getUserState(1L));
+        Assertions.assertEquals(State.NONE, restored.getUserState(2L));
+    }
+
+    /**
+     * Тест, что повреждённый снимок пропускается без ошибки
+     */
+    @Test
+    void corruptSnapshotIsSkipped() throws IOException {
+        Files.write(directory.resolve(SessionStore.SNAPSHOT_FILE), new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+
+        UserStateCache restored = new UserStateCache();
+        newStore(restored).open();
+
+        Assertions.assertEquals(0, restored.size());
+    }
+
+    /**
+     * Тест, что снимок удаляет покрытые им журналы, а остановка сохраняет последние изменения
+     */
+    @Test
+    void snapshotDeletesOldLogs() throws IOException {
+        UserStateCache cache = new UserStateCache();
+        SessionStore store = newStore(cache);
+        store.open();
+        for (long userId = 0; userId < 1000; userId++) {
+            cache.setState(userId, State.IN_LIST);
+        }
+        store.flush();
+        store.snapshot();
+        store.snapshot();
+        cache.setState(5000L, State.FIND_STEP_1);
+        store.close();
+
+        Assertions.assertEquals(1, countLogs());
+        Assertions.assertEquals(1001, store.getLoggedCount());
+
+        UserStateCache restored = new UserStateCache();
+        newStore(restored).open();
+        Assertions.assertEquals(1001, restored.size());
+        Assertions.assertEquals(State.FIND_STEP_1, restored.getUserState(5000L));
+    }
+
+    /**
+     * Тест, что сессии, вытесненные после снимка, не возвращаются при восстановлении
+     */
+    @Test
+    void evictedSessionsAreNotRestored() throws IOException {
+        AtomicLong time = new AtomicLong();
+        UserStateCache cache = new UserStateCache(100, Duration.ofMinutes(10), time::get);
+        SessionStore store = newStore(cache);
+        store.open();
+        cache.setState(1L, State.FIND_STEP_1);
+        cache.setState(2L, State.SORT_STEP_1);
+        store.flush();
+        store.snapshot();
+
+        time.addAndGet(Duration.ofMinutes(5).toNanos());
+        cache.setState(2L, State.SHOW_STEP_1);
+        time.addAndGet(Duration.ofMinutes(6).toNanos());
+        cache.cleanUp();
+        store.flush();
+
+        UserStateCache restored = new UserStateCache();
+        newStore(restored).open();
+
+        Assertions.assertEquals(State.NONE, restored.getUserState(1L));
+        Assertions.assertEquals(State.SHOW_STEP_1, restored.getUserState(2L));
+        Assertions.assertEquals(1, restored.size());
+    }
+
+    /**
+     * Тест, что сессии, вытесненные по размеру кеша, не возвращаются при восстановлении
+     */
+    @Test
+    void sizeEvictionsAreNotRestored() throws IOException {
+        UserStateCache cache = new UserStateCache(16, Duration.ofHours(1), System::nanoTime);
+        SessionStore store = newStore(cache);
+        store.open();
+        for (long userId = 0; userId < 200; userId++) {
+            cache.setState(userId, State.IN_LIST);
+        }
+        store.flush();
+
+        UserStateCache restored = new UserStateCache();
+        newStore(restored).open();
+
+        Assertions.assertEquals(cache.size(), restored.size());
+        for (long userId = 0; userId < 200; userId++) {
+            Assertions.assertEquals(cache.getUserState(userId), restored.getUserState(userId));
+        }
+    }
+
+    /**
+     * Тест паузы перед повтором неудавшегося снимка: удваивается и не превышает интервала снимков
+     */
+    @Test
+    void snapshotRetryBacksOff() {
+        SessionStore store = newStore(new UserStateCache());
+
+        Assertions.assertEquals(Duration.ofMinutes(5).toNanos(), store.snapshotDelay(0));
+        Assertions.assertEquals(Duration.ofSeconds(1).toNanos(), store.snapshotDelay(1));
+        Assertions.assertEquals(Duration.ofSeconds(2).toNanos(), store.snapshotDelay(2));
+        Assertions.assertEquals(Duration.ofMinutes(5).toNanos(), store.snapshotDelay(20));
+        Assertions.assertEquals(Duration.ofMinutes(5).toNanos(), store.snapshotDelay(100));
+    }
+
+    private SessionStore newStore(UserStateCache cache) {
+        return new SessionStore(cache, true, directory, Duration.ofMinutes(5));
+    }
+
+    private Path latestLog() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".log"))
+                    .max(Path::compareTo)
+                    .orElseThrow();
+        }
+    }
+
+    private long countLogs() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".log")).count();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package ru.naumen.cache;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.naumen.model.State;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Класс модульных тестов SessionTable
+ */
+class SessionTableTest {
+
+    /**
+     * Тест, что после случайных вставок и удалений таблица совпадает с HashMap
+     */
+    @Test
+    void testMatchesHashMap() {
+        SessionTable table = new SessionTable(5_000);
+        Map<Long, State> expected = new HashMap<>();
+        Random random = new Random(42);
+        State[] states = State.values();
+
+        for (int i = 0; i < 200_000; i++) {
+            // Небольшой диапазон ключей, чтобы чаще попадать в одни и те же цепочки
+            long key = random.nextInt(4_000) - 2_000L;
+            int slot = table.indexOf(key);
+            if (random.nextInt(3) == 0) {
+                if (slot >= 0) {
+                    table.removeAt(slot);
+                }
+                expected.remove(key);
+            } else {
+                State state = states[random.nextInt(states.length)];
+                if (slot < 0) {
+                    slot = table.insert(key, i);
+                }
+                table.setState(slot, state);
+                expected.put(key, state);
+            }
+        }
+
+        Assertions.assertEquals(expected.size(), table.size());
+        for (Map.Entry<Long, State> entry : expected.entrySet()) {
+            int slot = table.indexOf(entry.getKey());
+            Assertions.assertTrue(slot >= 0);
+            Assertions.assertEquals(entry.getValue(), table.stateAt(slot));
+        }
+    }
+
+    /**
+     * Тест хранения параметров сессии
+     */
+    @Test
+    void testParams() {
+        SessionTable table = new SessionTable(16);
+        int slot = table.insert(12345L, 0);
+
+        Assertions.assertNull(table.paramsAt(slot));
+        table.setParams(slot, new String[]{"12", "3"});
+        Assertions.assertArrayEquals(new String[]{"12", "3"}, table.paramsAt(slot));
+        table.setParams(slot, new String[0]);
+        Assertions.assertNull(table.paramsAt(slot));
+    }
+
+    /**
+     * Тест вытеснения давно не использованной сессии
+     */
+    @Test
+    void testEvictOne() {
+        SessionTable table = new SessionTable(4);
+        for (long key = 0; key < 4; key++) {
+            table.insert(key, key);
+        }
+        Assertions.assertTrue(table.isFull());
+
+        Assertions.assertEquals(0L, table.evictOne());
+        Assertions.assertEquals(3, table.size());
+        Assertions.assertEquals(-1, table.indexOf(0L));
+    }
+
+    /**
+     * Тест удаления сессий, к которым долго не обращались
+     */
+    @Test
+    void testRemoveIdle() {
+        SessionTable table = new SessionTable(1_000);
+        for (long key = 0; key < 1_000; key++) {
+            table.insert(key, key);
+        }
+
+        List<Long> removed = new ArrayList<>();
+        Assertions.assertEquals(500, table.removeIdle(999, 500, removed::add));
+        Assertions.assertEquals(500, table.size());
+        Assertions.assertEquals(500, removed.size());
+        Assertions.assertTrue(removed.contains(0L));
+        Assertions.assertFalse(removed.contains(999L));
+        Assertions.assertEquals(-1, table.indexOf(0L));
+        Assertions.assertTrue(table.indexOf(999L) >= 0);
+    }
+}
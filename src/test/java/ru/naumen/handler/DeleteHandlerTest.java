@@ -10,6 +10,7 @@ import org.mockito.MockitoAnnotations;
 import ru.naumen.bot.Response;
 import ru.naumen.keyboard.KeyboardCreator;
 import ru.naumen.cache.UserStateCache;
+import ru.naumen.exception.PasswordNotFoundException;
 import ru.naumen.model.State;
 import ru.naumen.model.User;
 import ru.naumen.model.UserPassword;
@@ -17,6 +18,7 @@ import ru.naumen.service.PasswordService;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.UUID;
 
 /**
  * Класс модульных тестов для DeleteHandler
@@ -48,21 +50,19 @@ class DeleteHandlerTest {
      * Тест удаления пароля с корректным индексом
      */
     @Test
-    void testDeletePassword_CorrectIndex() {
+    void testDeletePassword_CorrectIndex() throws PasswordNotFoundException {
         String[] command = {"/del", "2"};
         User user = new User(12345L, List.of());
-        List<UserPassword> userPasswords = List.of(
-                new UserPassword("uuid", "desc", "pass", user, LocalDate.now()),
-                new UserPassword("uuid2", "desc", "pass", user, LocalDate.now()));
+        UserPassword userPassword = new UserPassword(new UUID(0L, 2L), "desc", "pass", user, LocalDate.now());
 
-        Mockito.when(passwordService.getUserPasswords(12345L)).thenReturn(userPasswords);
-        Mockito.when(passwordService.isValidPasswordIndex(2, 12345L)).thenReturn(true);
+        Mockito.when(passwordService.findPasswordByIndex(12345L, 2)).thenReturn(userPassword);
+        Mockito.when(passwordService.deletePassword(userPassword)).thenReturn(true);
 
         Response response = deleteHandler.handle(command, 12345L);
 
         Assertions.assertEquals("Удалён пароль для сайта desc", response.message());
 
-        Mockito.verify(passwordService).deletePassword("uuid2");
+        Mockito.verify(passwordService).deletePassword(userPassword);
         Mockito.verify(userStateCache).clearParamsForUser(12345L);
     }
 
@@ -70,18 +70,33 @@ class DeleteHandlerTest {
      * Тест удаления пароля с некорректным индексом
      */
     @Test
-    void testDeletePassword_InvalidIndex() {
+    void testDeletePassword_InvalidIndex() throws PasswordNotFoundException {
         String[] command = {"/del", "5"};
-        User user = new User(12345L, List.of());
-        List<UserPassword> userPasswords = List.of(new UserPassword("desc", "pass", user));
 
-        Mockito.when(passwordService.getUserPasswords(12345L)).thenReturn(userPasswords);
+        Mockito.when(passwordService.findPasswordByIndex(12345L, 5)).thenThrow(PasswordNotFoundException.class);
 
         Response response = deleteHandler.handle(command, 12345L);
 
         Assertions.assertEquals("Не найден пароль с id 5", response.message());
 
-        Mockito.verify(passwordService, Mockito.never()).deletePassword(Mockito.anyString());
+        Mockito.verify(passwordService, Mockito.never()).deletePassword(Mockito.any());
+        Mockito.verify(userStateCache).setState(12345L, State.IN_LIST);
+    }
+
+    /**
+     * Тест удаления пароля, который успели удалить после поиска
+     */
+    @Test
+    void testDeletePassword_AlreadyDeleted() throws PasswordNotFoundException {
+        String[] command = {"/del", "1"};
+        UserPassword userPassword = new UserPassword(new UUID(0L, 1L), "desc", "pass", null, LocalDate.now());
+
+        Mockito.when(passwordService.findPasswordByIndex(12345L, 1)).thenReturn(userPassword);
+        Mockito.when(passwordService.deletePassword(userPassword)).thenReturn(false);
+
+        Response response = deleteHandler.handle(command, 12345L);
+
+        Assertions.assertEquals("Не найден пароль с id 1", response.message());
     }
 
     /**
@@ -94,7 +109,7 @@ class DeleteHandlerTest {
 
         Assertions.assertEquals("Индекс должен быть числом", response.message());
         Mockito.verify(passwordService, Mockito.never())
-                .updatePassword(Mockito.anyString(), Mockito.anyString(), Mockito.anyString());
+                .deletePassword(Mockito.any());
     }
 
     /**
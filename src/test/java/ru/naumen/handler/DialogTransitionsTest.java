@@ -0,0 +1,115 @@
+package ru.naumen.handler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import ru.naumen.bot.Response;
+import ru.naumen.keyboard.Keyboard;
+import ru.naumen.model.State;
+
+import java.util.List;
+
+/**
+ * Класс модульных тестов для DialogTransitions
+ */
+class DialogTransitionsTest {
+
+    @Mock
+    private NonCommandHandler nonCommandHandler;
+
+    private DialogTransitions dialogTransitions;
+
+    /**
+     * Перед каждым тестом создаёт таблицу переходов
+     */
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        dialogTransitions = new DialogTransitions(nonCommandHandler);
+    }
+
+    /**
+     * Тест, что переход есть для каждого шага диалога и нет для состояний вне диалога
+     */
+    @Test
+    void testGetTransition() {
+        for (State state : State.values()) {
+            if (state == State.NONE || state == State.IN_LIST) {
+                Assertions.assertNull(dialogTransitions.get(state));
+            } else {
+                Assertions.assertEquals(state, dialogTransitions.get(state).state());
+            }
+        }
+    }
+
+    /**
+     * Тест, что шаг вызывает нужный метод обработчика
+     */
+    @Test
+    void testStepCallsHandler() {
+        Mockito.when(nonCommandHandler.getPasswordLength("12", 12345L, State.EDIT_STEP_3))
+                .thenReturn(new Response("Выберите сложность пароля", new Keyboard(List.of())));
+
+        Response response = dialogTransitions.get(State.EDIT_STEP_2).step().handle("12", 12345L);
+
+        Assertions.assertEquals("Выберите сложность пароля", response.message());
+    }
+
+    /**
+     * Тест, что последние шаги сохранения и изменения вызывают каждый свой метод обработчика
+     */
+    @Test
+    void testFinalStepsCallOwnHandler() {
+        Mockito.when(nonCommandHandler.savePassword("desc", 12345L))
+                .thenReturn(new Response("saved", new Keyboard(List.of())));
+        Mockito.when(nonCommandHandler.editPassword("desc", 12345L))
+                .thenReturn(new Response("edited", new Keyboard(List.of())));
+
+        Assertions.assertEquals("saved",
+                dialogTransitions.get(State.SAVE_STEP_2).step().handle("desc", 12345L).message());
+        Assertions.assertEquals("edited",
+                dialogTransitions.get(State.EDIT_STEP_4).step().handle("desc", 12345L).message());
+    }
+
+    /**
+     * Тест, что шаги ввода номера, сортировки и поиска вызывают каждый свой метод обработчика
+     * и не перечитывают состояние
+     */
+    @Test
+    void testStateStepsCallOwnHandler() {
+        Mockito.when(nonCommandHandler.getEditIndex("1", 12345L))
+                .thenReturn(new Response("edit", new Keyboard(List.of())));
+        Mockito.when(nonCommandHandler.getDeleteIndex("1", 12345L))
+                .thenReturn(new Response("delete", new Keyboard(List.of())));
+        Mockito.when(nonCommandHandler.getShowIndex("1", 12345L))
+                .thenReturn(new Response("show", new Keyboard(List.of())));
+        Mockito.when(nonCommandHandler.getSortType("Дате", 12345L))
+                .thenReturn(new Response("sort", new Keyboard(List.of())));
+        Mockito.when(nonCommandHandler.getSearchRequest("query", 12345L))
+                .thenReturn(new Response("find", new Keyboard(List.of())));
+
+        Assertions.assertEquals("edit", dialogTransitions.get(State.EDIT_STEP_1).step().handle("1", 12345L).message());
+        Assertions.assertEquals("delete",
+                dialogTransitions.get(State.DELETE_STEP_1).step().handle("1", 12345L).message());
+        Assertions.assertEquals("show", dialogTransitions.get(State.SHOW_STEP_1).step().handle("1", 12345L).message());
+        Assertions.assertEquals("sort",
+                dialogTransitions.get(State.SORT_STEP_1).step().handle("Дате", 12345L).message());
+        Assertions.assertEquals("find",
+                dialogTransitions.get(State.FIND_STEP_1).step().handle("query", 12345L).message());
+    }
+
+    /**
+     * Тест вывода графа диалога
+     */
+    @Test
+    void testToDot() {
+        String dot = dialogTransitions.toDot();
+
+        Assertions.assertTrue(dot.startsWith("digraph dialog {"));
+        Assertions.assertTrue(dot.contains("NONE -> GENERATION_STEP_1 [label=\"/generate\"];"));
+        Assertions.assertTrue(dot.contains("EDIT_STEP_1 -> IN_LIST [label=\"номер пароля\"];"));
+    }
+}
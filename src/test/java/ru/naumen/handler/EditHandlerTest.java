@@ -19,6 +19,7 @@ import ru.naumen.service.PasswordService;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.UUID;
 
 /**
  * Класс модульных тестов для EditHandler
@@ -52,18 +53,16 @@ class EditHandlerTest {
     @Test
     void testUpdatePassword_WithCorrectParamsAndDescription() throws PasswordNotFoundException, PasswordLengthException, ComplexityFormatException {
         String[] command = {"/edit", "1", "12", "3", "newd"};
-        UserPassword password = new UserPassword("uuid", "d", "pass", null, LocalDate.of(2010, 1, 1));
-        List<UserPassword> userPasswords = List.of(password);
+        UserPassword password = new UserPassword(new UUID(0L, 1L), "d", "pass", null, LocalDate.of(2010, 1, 1));
 
-        Mockito.when(passwordService.getUserPasswords(12345L)).thenReturn(userPasswords);
+        Mockito.when(passwordService.findPasswordByIndex(12345L, 1)).thenReturn(password);
         Mockito.when(passwordService.generatePassword(12, "3")).thenReturn("npass");
-        Mockito.when(passwordService.findPasswordByUuid("uuid")).thenReturn(password);
-        Mockito.when(passwordService.isValidPasswordIndex(1, 12345L)).thenReturn(true);
+        Mockito.when(passwordService.updatePassword(password, "newd", "npass")).thenReturn(true);
 
         Response response = editHandler.handle(command, 12345L);
 
         Assertions.assertEquals("Обновлён пароль для newd: npass", response.message());
-        Mockito.verify(passwordService).updatePassword("uuid", "newd", "npass");
+        Mockito.verify(passwordService).updatePassword(password, "newd", "npass");
         Mockito.verify(userStateCache).clearParamsForUser(12345L);
     }
 
@@ -73,32 +72,32 @@ class EditHandlerTest {
     @Test
     void testUpdatePassword_WithCorrectParamsWithoutDescription() throws PasswordNotFoundException, PasswordLengthException, ComplexityFormatException {
         String[] command = {"/edit", "1", "12", "3"};
-        UserPassword password = new UserPassword("uuid", "d", "pass", null,
+        UserPassword password = new UserPassword(new UUID(0L, 1L), "d", "pass", null,
                 LocalDate.of(2010, 1, 1));
-        List<UserPassword> userPasswords = List.of(password);
 
-        Mockito.when(passwordService.getUserPasswords(12345L)).thenReturn(userPasswords);
+        Mockito.when(passwordService.findPasswordByIndex(12345L, 1)).thenReturn(password);
         Mockito.when(passwordService.generatePassword(12, "3")).thenReturn("npass");
-        Mockito.when(passwordService.findPasswordByUuid("uuid")).thenReturn(password);
-        Mockito.when(passwordService.isValidPasswordIndex(1, 12345L)).thenReturn(true);
+        Mockito.when(passwordService.updatePassword(password, "d", "npass")).thenReturn(true);
 
         Response response = editHandler.handle(command, 12345L);
 
         Assertions.assertEquals("Обновлён пароль для d: npass", response.message());
-        Mockito.verify(passwordService).updatePassword("uuid", "d", "npass");
+        Mockito.verify(passwordService).updatePassword(password, "d", "npass");
     }
 
     /**
      * Тест обновления пароля с некорректным индексом
      */
     @Test
-    void testUpdatePassword_InvalidIndex() {
+    void testUpdatePassword_InvalidIndex() throws PasswordNotFoundException {
         String[] command = {"/edit", "5", "12", "3"};
+        Mockito.when(passwordService.findPasswordByIndex(12345L, 5)).thenThrow(PasswordNotFoundException.class);
+
         Response response = editHandler.handle(command, 12345L);
 
         Assertions.assertEquals("Не найден пароль с id 5", response.message());
         Mockito.verify(passwordService, Mockito.never())
-                .updatePassword(Mockito.anyString(), Mockito.anyString(), Mockito.anyString());
+                .updatePassword(Mockito.any(), Mockito.any(), Mockito.any());
     }
 
     /**
@@ -111,7 +110,7 @@ class EditHandlerTest {
 
         Assertions.assertEquals("Индекс должен быть числом", response.message());
         Mockito.verify(passwordService, Mockito.never())
-                .updatePassword(Mockito.anyString(), Mockito.anyString(), Mockito.anyString());
+                .updatePassword(Mockito.any(), Mockito.any(), Mockito.any());
     }
 
     /**
@@ -134,18 +133,14 @@ class EditHandlerTest {
     @Test
     void testUpdatePassword_InvalidLengthOrComplexity() throws PasswordNotFoundException, PasswordLengthException, ComplexityFormatException {
         String[] command = {"/edit", "1", "5", "4"};
-        List<UserPassword> userPasswords = List.of(new UserPassword("desc", "pass", null));
-
-        Mockito.when(passwordService.getUserPasswords(12345L)).thenReturn(userPasswords);
-        Mockito.when(passwordService.isValidPasswordIndex(1, 12345L)).thenReturn(true);
-        Mockito.when(passwordService.findPasswordByUuid(Mockito.any())).thenReturn(userPasswords.get(0));
+        Mockito.when(passwordService.findPasswordByIndex(12345L, 1)).thenReturn(new UserPassword("desc", "pass", null));
         Mockito.when(passwordService.generatePassword(5, "4")).thenThrow(PasswordLengthException.class);
 
         Response response = editHandler.handle(command, 12345L);
 
         Assertions.assertEquals("Длина пароля должна быть от 8 до 128 символов!", response.message());
         Mockito.verify(passwordService, Mockito.never())
-                .updatePassword(Mockito.anyString(), Mockito.anyString(), Mockito.anyString());
+                .updatePassword(Mockito.any(), Mockito.any(), Mockito.any());
     }
 
     /**
@@ -159,4 +154,17 @@ class EditHandlerTest {
 
         Assertions.assertEquals("Введена некорректная команда! Справка: /help", response.message());
     }
+
+    /**
+     * Тест команды с лишним параметром
+     */
+    @Test
+    void testEditPassword_TooManyParams() {
+        String[] command = {"/edit", "2", "10", "2", "15", "14"};
+
+        Response response = editHandler.handle(command, 12345L);
+
+        Assertions.assertEquals("Введена некорректная команда! Справка: /help", response.message());
+        Mockito.verifyNoInteractions(passwordService);
+    }
 }
@@ -3,17 +3,20 @@ package ru.naumen.handler;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import ru.naumen.bot.Response;
 import ru.naumen.keyboard.KeyboardCreator;
 import ru.naumen.cache.UserStateCache;
+import ru.naumen.exception.IncorrectSortTypeException;
 import ru.naumen.model.State;
 import ru.naumen.model.UserPassword;
 import ru.naumen.service.EncodeService;
 import ru.naumen.service.PasswordService;
+import ru.naumen.service.SortOrder;
+import ru.naumen.service.SortType;
 
 import java.util.List;
 
@@ -31,50 +34,69 @@ class FindHandlerTest {
     @Mock
     private EncodeService encodeService;
 
-    @InjectMocks
-    private FindHandler findHandler;
-
     @Mock
     private KeyboardCreator keyboardCreator;
 
+    private FindHandler findHandler;
+
     /**
      * Инициализирует моки перед каждым тестом
      */
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        PasswordPager passwordPager = new PasswordPager(passwordService, encodeService, userStateCache, keyboardCreator, 10);
+        findHandler = new FindHandler(passwordPager, userStateCache, keyboardCreator);
     }
 
     /**
      * Тест поиска паролей, если найдены
      */
     @Test
-    void testFindPasswords() {
+    void testFindPasswords() throws IncorrectSortTypeException {
         String[] command = {"/find", "de"};
         List<UserPassword> passwords = List.of(new UserPassword("desc", "pass", null));
 
-        Mockito.when(passwordService.getUserPasswordsWithPartialDescription(12345L, "de")).thenReturn(passwords);
-        Mockito.when(encodeService.decryptData("pass")).thenReturn("dpass");
+        mockFirstPage("de", passwords);
+        Mockito.when(encodeService.decryptPasswords(passwords)).thenReturn(List.of("dpass"));
 
         Response response = findHandler.handle(command, 12345L);
 
         Assertions.assertEquals("\n1) Сайт: desc, Пароль: dpass", response.message());
-        Mockito.verify(userStateCache).clearParamsForUser(12345L);
+        Mockito.verify(userStateCache).compute(ArgumentMatchers.eq(12345L), ArgumentMatchers.any());
     }
 
     /**
      * Тест поиска паролей, если не найдены
      */
     @Test
-    void testFindPasswords_WithNoResults() {
+    void testFindPasswords_WithNoResults() throws IncorrectSortTypeException {
         String[] command = {"/find", "no"};
-        Mockito.when(passwordService.getUserPasswordsWithPartialDescription(12345L, "no")).thenReturn(List.of());
+        mockFirstPage("no", List.of());
 
         Response response = findHandler.handle(command, 12345L);
 
         Assertions.assertEquals("Не найдены пароли по вашему запросу", response.message());
     }
 
+    /**
+     * Тест поиска с опечаткой: если точных совпадений нет, показываются похожие пароли
+     */
+    @Test
+    void testFindPasswords_Similar() throws IncorrectSortTypeException {
+        String[] command = {"/find", "gogle"};
+        List<UserPassword> passwords = List.of(new UserPassword("google.com", "pass", null));
+
+        mockFirstPage("gogle", List.of());
+        Mockito.when(passwordService.findSimilarPasswords(12345L, "gogle", 10)).thenReturn(passwords);
+        Mockito.when(encodeService.decryptPasswords(passwords)).thenReturn(List.of("dpass"));
+
+        Response response = findHandler.handle(command, 12345L);
+
+        Assertions.assertEquals("Точных совпадений нет. Похожие пароли:\n1) Сайт: google.com, Пароль: dpass",
+                response.message());
+    }
+
     /**
      * Тест поиска паролей при вводе команды с кнопки
      */
@@ -86,7 +108,8 @@ class FindHandlerTest {
 
         Response response = findHandler.handle(command, 12345L);
 
-        Assertions.assertEquals("Введите поисковый запрос", response.message());
+        Assertions.assertEquals("Введите поисковый запрос: часть описания, "
+                + "начало слова со звёздочкой (exa*) или слово целиком в кавычках (\"example\")", response.message());
     }
 
     /**
@@ -100,4 +123,11 @@ class FindHandlerTest {
 
         Assertions.assertEquals("Введена некорректная команда! Справка: /help", response.message());
     }
+
+    private void mockFirstPage(String searchRequest, List<UserPassword> page) throws IncorrectSortTypeException {
+        Mockito.when(passwordService.getPasswordPage(ArgumentMatchers.eq(12345L),
+                        ArgumentMatchers.eq(SortOrder.ascending(SortType.BY_DESCRIPTION)), ArgumentMatchers.eq(searchRequest), ArgumentMatchers.isNull(), ArgumentMatchers.eq(true),
+                        ArgumentMatchers.eq(11)))
+                .thenReturn(page);
+    }
 }
@@ -44,6 +44,7 @@ class HelpHandlerTest {
                 "- /generate [length] [complexity] – Генерировать пароль длиной [length] символов и сложностью [complexity] (1, 2 или 3, где 1 - простой, 3 - сложный);\n" +
                 "- /save [password] [description] – Сохранить пароль, задать описание;\n" +
                 "- /list – Показать список сохранённых паролей;\n" +
+                "- /show [passwordID] – Показать сохранённый пароль с ID [passwordID];\n" +
                 "- /edit [passwordID] [length] [complexity] [description] – Изменяет пароль с ID [passwordID], генерирует новый под заданные параметры;\n" +
                 "- /del [passwordID] – Удалить сохранённый пароль с ID [passwordID];\n" +
                 "- /help - Справка.";
@@ -3,16 +3,18 @@ package ru.naumen.handler;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import ru.naumen.bot.Response;
 import ru.naumen.keyboard.KeyboardCreator;
 import ru.naumen.cache.UserStateCache;
+import ru.naumen.exception.IncorrectSortTypeException;
 import ru.naumen.model.UserPassword;
 import ru.naumen.service.EncodeService;
 import ru.naumen.service.PasswordService;
+import ru.naumen.service.SortOrder;
 
 import java.util.List;
 
@@ -21,19 +23,18 @@ import java.util.List;
  */
 class ListHandlerTest {
 
-    @Mock
-    private EncodeService encodeService;
-
     @Mock
     private PasswordService passwordService;
 
     @Mock
     private UserStateCache userStateCache;
 
+    @Mock
+    private EncodeService encodeService;
+
     @Mock
     private KeyboardCreator keyboardCreator;
 
-    @InjectMocks
     private ListHandler listHandler;
 
     /**
@@ -42,15 +43,17 @@ class ListHandlerTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        PasswordPager passwordPager = new PasswordPager(passwordService, encodeService, userStateCache, keyboardCreator, 10);
+        listHandler = new ListHandler(passwordPager, keyboardCreator);
     }
 
     /**
      * Тест получения списка паролей, если у пользователя нет паролей
      */
     @Test
-    void testGetUserPasswords_NoPasswords() {
+    void testGetUserPasswords_NoPasswords() throws IncorrectSortTypeException {
         String[] command = {"/list"};
-        Mockito.when(passwordService.getUserPasswords(12345L)).thenReturn(List.of());
+        mockFirstPage(List.of());
 
         Response response = listHandler.handle(command, 12345L);
 
@@ -58,24 +61,24 @@ class ListHandlerTest {
     }
 
     /**
-     * Тест получения списка паролей, если у пользователя есть пароли
+     * Тест получения списка паролей, если у пользователя есть пароли: пароли скрыты и не расшифровываются
      */
     @Test
-    void testGetUserPasswords_WithPasswords() {
+    void testGetUserPasswords_WithPasswords() throws IncorrectSortTypeException {
         String[] command = {"/list"};
         UserPassword userPassword1 = new UserPassword("d1", "pass1", null);
         UserPassword userPassword2 = new UserPassword("d2", "pass2", null);
         List<UserPassword> userPasswords = List.of(userPassword1, userPassword2);
 
-        Mockito.when(passwordService.getUserPasswords(12345L)).thenReturn(userPasswords);
-        Mockito.when(encodeService.decryptData("pass1")).thenReturn("dpass1");
-        Mockito.when(encodeService.decryptData("pass2")).thenReturn("dpass2");
+        mockFirstPage(userPasswords);
 
         Response response = listHandler.handle(command, 12345L);
-        String expectedMessage = String.format("\n%s) Сайт: %s, Пароль: %s", 1, "d1", "dpass1") +
-                String.format("\n%s) Сайт: %s, Пароль: %s", 2, "d2", "dpass2");
+        String expectedMessage = "\n1) Сайт: d1, Пароль: ********"
+                + "\n2) Сайт: d2, Пароль: ********"
+                + "\n\nПоказать пароль: /show [номер]";
 
         Assertions.assertEquals(expectedMessage, response.message());
+        Mockito.verifyNoInteractions(encodeService);
     }
 
     /**
@@ -89,4 +92,10 @@ class ListHandlerTest {
 
         Assertions.assertEquals("Введена некорректная команда! Справка: /help", response.message());
     }
+
+    private void mockFirstPage(List<UserPassword> page) throws IncorrectSortTypeException {
+        Mockito.when(passwordService.getPasswordPage(ArgumentMatchers.eq(12345L), ArgumentMatchers.eq(SortOrder.LIST),
+                        ArgumentMatchers.isNull(), ArgumentMatchers.isNull(), ArgumentMatchers.eq(true), ArgumentMatchers.eq(11)))
+                .thenReturn(page);
+    }
 }
@@ -14,16 +14,17 @@ import ru.naumen.model.State;
 import ru.naumen.service.PasswordService;
 
 import java.util.List;
-import java.util.Map;
 
 /**
  * Класс модульных тестов для NonCommandHandler
  */
 class NonCommandHandlerTest {
 
-    @Mock
     private UserStateCache userStateCache;
 
+    @Mock
+    private GenerateHandler generateHandler;
+
     @Mock
     private EditHandler editHandler;
 
@@ -39,6 +40,9 @@ class NonCommandHandlerTest {
     @Mock
     private FindHandler findHandler;
 
+    @Mock
+    private ShowHandler showHandler;
+
     @Mock
     private PasswordService passwordService;
     @Mock
@@ -48,41 +52,58 @@ class NonCommandHandlerTest {
 
     /**
      * Перед каждым тестом создаёт объекты (не моки!)
-     * класса поиска команд, отображения хэндлеров и тестируемого класса
+     * кеша состояний и тестируемого класса
      */
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        Mockito.when(userStateCache.getUserState(Mockito.anyLong())).thenReturn(State.NONE);
-        Mockito.when(userStateCache.getUserParams(Mockito.anyLong())).thenReturn(List.of());
-
-        Map<String, CommandHandler> commandHandlers = Map.of(
-                "/edit", editHandler,
-                "/del", deleteHandler,
-                "/save", saveHandler,
-                "/sort", sortHandler,
-                "/find", findHandler
-        );
+        userStateCache = new UserStateCache();
 
         nonCommandHandler = new NonCommandHandler(
                 userStateCache,
                 passwordService,
-                commandHandlers,
+                generateHandler,
+                saveHandler,
+                editHandler,
+                deleteHandler,
+                sortHandler,
+                findHandler,
+                showHandler,
                 keyboardCreator
         );
     }
 
     /**
-     * Тест метода получения сложности пароля
+     * Тест метода получения сложности пароля при изменении
+     */
+    @Test
+    void testGetEditComplexity() {
+        userStateCache.setState(12345L, State.EDIT_STEP_3);
+        userStateCache.addParam(12345L, "1");
+        userStateCache.addParam(12345L, "12");
+
+        Response response = nonCommandHandler.getEditComplexity("3", 12345L);
+
+        Assertions.assertEquals(List.of("1", "12", "3"), userStateCache.getUserParams(12345L));
+        Assertions.assertEquals(State.EDIT_STEP_4, userStateCache.getUserState(12345L));
+        Assertions.assertEquals("Введите описание пароля", response.message());
+        Mockito.verifyNoInteractions(generateHandler);
+    }
+
+    /**
+     * Тест метода генерации пароля на последнем шаге генерации
      */
     @Test
-    void testGetComplexity() {
-        Response response = nonCommandHandler.getComplexity("3", 12345L, State.SAVE_STEP_2, "complexity entered");
+    void testGeneratePassword() {
+        userStateCache.setState(12345L, State.GENERATION_STEP_2);
+        userStateCache.addParam(12345L, "12");
+        Mockito.when(generateHandler.generate("12", "3", 12345L))
+                .thenReturn(new Response("generated", new Keyboard(List.of())));
 
-        Mockito.when(userStateCache.getUserParams(12345L)).thenReturn(List.of("3"));
+        Response response = nonCommandHandler.generatePassword("3", 12345L);
 
-        Mockito.verify(userStateCache).addParam(12345L, "3");
-        Assertions.assertEquals("complexity entered", response.message());
+        Assertions.assertEquals("generated", response.message());
+        Assertions.assertEquals(State.NONE, userStateCache.getUserState(12345L));
     }
 
     /**
@@ -93,39 +114,44 @@ class NonCommandHandlerTest {
         Response response = nonCommandHandler.getPasswordLength("8", 12345L, State.SAVE_STEP_1);
 
         Assertions.assertEquals("Выберите сложность пароля", response.message());
-        Mockito.verify(userStateCache).addParam(12345L, "8");
+        Assertions.assertEquals(List.of("8"), userStateCache.getUserParams(12345L));
+        Assertions.assertEquals(State.SAVE_STEP_1, userStateCache.getUserState(12345L));
     }
 
     /**
-     * Тест метода получения описания пароля при сохранении
+     * Тест метода сохранения пароля на последнем шаге сохранения
      */
     @Test
-    void testGetDescriptionWhenSave() {
-        String[] splitCommand = {"/save", "pass", "desc"};
-        Mockito.when(userStateCache.getUserState(12345L)).thenReturn(State.SAVE_STEP_2);
-        Mockito.when(userStateCache.getUserParams(12345L)).thenReturn(List.of("pass"));
-        Mockito.when(saveHandler.handle(splitCommand, 12345L))
+    void testSavePassword() {
+        userStateCache.setState(12345L, State.SAVE_STEP_2);
+        userStateCache.addParam(12345L, "pass");
+        Mockito.when(saveHandler.save("pass", "desc", 12345L))
                 .thenReturn(new Response("pass saved", new Keyboard(List.of())));
 
-        Response response = nonCommandHandler.getDescription("desc", 12345L, State.NONE, null);
+        Response response = nonCommandHandler.savePassword("desc", 12345L);
 
         Assertions.assertEquals("pass saved", response.message());
+        Assertions.assertEquals(State.NONE, userStateCache.getUserState(12345L));
+        Mockito.verifyNoInteractions(editHandler);
     }
 
     /**
-     * Тест метода получения описания пароля при изменении
+     * Тест метода изменения пароля на последнем шаге изменения
      */
     @Test
-    void testGetDescriptionWhenEdit() {
-        String[] splitCommand = {"/edit", "1", "12", "3", "desc"};
-        Mockito.when(userStateCache.getUserState(12345L)).thenReturn(State.EDIT_STEP_4);
-        Mockito.when(userStateCache.getUserParams(12345L)).thenReturn(List.of("1", "12", "3"));
-        Mockito.when(editHandler.handle(splitCommand, 12345L))
+    void testEditPassword() {
+        userStateCache.setState(12345L, State.EDIT_STEP_4);
+        userStateCache.addParam(12345L, "1");
+        userStateCache.addParam(12345L, "12");
+        userStateCache.addParam(12345L, "3");
+        Mockito.when(editHandler.edit("1", "12", "3", "desc", 12345L))
                 .thenReturn(new Response("pass updated", new Keyboard(List.of())));
 
-        Response response = nonCommandHandler.getDescription("desc", 12345L, State.NONE, null);
+        Response response = nonCommandHandler.editPassword("desc", 12345L);
 
         Assertions.assertEquals("pass updated", response.message());
+        Assertions.assertEquals(State.NONE, userStateCache.getUserState(12345L));
+        Mockito.verifyNoInteractions(saveHandler);
     }
 
     /**
@@ -136,35 +162,50 @@ class NonCommandHandlerTest {
         Response response = nonCommandHandler.getPassword("pass", 12345L, State.SAVE_STEP_2);
 
         Assertions.assertEquals("Введите описание пароля", response.message());
-        Mockito.verify(userStateCache).addParam(12345L, "pass");
+        Assertions.assertEquals(List.of("pass"), userStateCache.getUserParams(12345L));
+        Assertions.assertEquals(State.SAVE_STEP_2, userStateCache.getUserState(12345L));
     }
 
     /**
      * Тест метода получения индекса пароля при изменении
      */
     @Test
-    void testGetIndexPasswordWhenEdit() {
-        Mockito.when(userStateCache.getUserState(12345L)).thenReturn(State.EDIT_STEP_1);
+    void testGetEditIndex() {
+        userStateCache.setState(12345L, State.EDIT_STEP_1);
         Mockito.when(passwordService.isValidPasswordIndex(1, 12345L)).thenReturn(true);
-        Response response = nonCommandHandler.getIndexPassword("1", 12345L);
+        Response response = nonCommandHandler.getEditIndex("1", 12345L);
 
         Assertions.assertEquals("Введите длину пароля", response.message());
+        Assertions.assertEquals(State.EDIT_STEP_2, userStateCache.getUserState(12345L));
+        Assertions.assertEquals(List.of("1"), userStateCache.getUserParams(12345L));
     }
 
     /**
      * Тест метода получения индекса пароля при удалении
      */
     @Test
-    void testGetIndexPasswordWhenDelete() {
-        Mockito.when(userStateCache.getUserState(12345L)).thenReturn(State.DELETE_STEP_1);
-
-        String[] splitCommand = {"/del", "1"};
-        Mockito.when(deleteHandler.handle(splitCommand, 12345L))
+    void testGetDeleteIndex() {
+        userStateCache.setState(12345L, State.DELETE_STEP_1);
+        Mockito.when(deleteHandler.delete("1", 12345L))
                 .thenReturn(new Response("pass deleted", new Keyboard(List.of())));
-        Mockito.when(passwordService.isValidPasswordIndex(1, 12345L)).thenReturn(true);
-        Response response = nonCommandHandler.getIndexPassword("1", 12345L);
+        Response response = nonCommandHandler.getDeleteIndex("1", 12345L);
 
         Assertions.assertEquals("pass deleted", response.message());
+        Mockito.verify(passwordService, Mockito.never()).isValidPasswordIndex(Mockito.anyInt(), Mockito.anyLong());
+    }
+
+    /**
+     * Тест метода получения индекса пароля при показе
+     */
+    @Test
+    void testGetShowIndex() {
+        userStateCache.setState(12345L, State.SHOW_STEP_1);
+        Mockito.when(showHandler.show("1", 12345L))
+                .thenReturn(new Response("pass", new Keyboard(List.of())));
+        Response response = nonCommandHandler.getShowIndex("1", 12345L);
+
+        Assertions.assertEquals("pass", response.message());
+        Mockito.verify(passwordService, Mockito.never()).isValidPasswordIndex(Mockito.anyInt(), Mockito.anyLong());
     }
 
     /**
@@ -172,9 +213,8 @@ class NonCommandHandlerTest {
      */
     @Test
     void testGetSortType() {
-        String[] splitCommand = {"Дате"};
-        Mockito.when(userStateCache.getUserState(12345L)).thenReturn(State.SORT_STEP_1);
-        Mockito.when(sortHandler.handle(splitCommand, 12345L))
+        userStateCache.setState(12345L, State.SORT_STEP_1);
+        Mockito.when(sortHandler.sort("Дате", 12345L))
                 .thenReturn(new Response("sorted", new Keyboard(List.of())));
 
         Response response = nonCommandHandler.getSortType("Дате", 12345L);
@@ -187,13 +227,41 @@ class NonCommandHandlerTest {
      */
     @Test
     void testGetSearchRequest() {
-        String[] splitCommand = {"/find", "query"};
-        Mockito.when(userStateCache.getUserState(12345L)).thenReturn(State.FIND_STEP_1);
-        Mockito.when(findHandler.handle(splitCommand, 12345L))
+        userStateCache.setState(12345L, State.FIND_STEP_1);
+        Mockito.when(findHandler.find("query", 12345L))
                 .thenReturn(new Response("found", new Keyboard(List.of())));
 
         Response response = nonCommandHandler.getSearchRequest("query", 12345L);
 
         Assertions.assertEquals("found", response.message());
     }
+
+    /**
+     * Тест, что при неверном индексе пользователь возвращается к списку без параметров
+     */
+    @Test
+    void testGetEditIndexNotFound() {
+        userStateCache.setState(12345L, State.EDIT_STEP_1);
+        Mockito.when(passwordService.isValidPasswordIndex(7, 12345L)).thenReturn(false);
+
+        nonCommandHandler.getEditIndex("7", 12345L);
+
+        Assertions.assertEquals(State.IN_LIST, userStateCache.getUserState(12345L));
+        Assertions.assertTrue(userStateCache.getUserParams(12345L).isEmpty());
+    }
+
+    /**
+     * Тест, что при номере не из цифр пользователь возвращается к списку без параметров
+     */
+    @Test
+    void testGetEditIndexNotNumber() {
+        userStateCache.setState(12345L, State.EDIT_STEP_1);
+
+        Response response = nonCommandHandler.getEditIndex("abc", 12345L);
+
+        Assertions.assertEquals(State.IN_LIST, userStateCache.getUserState(12345L));
+        Assertions.assertTrue(userStateCache.getUserParams(12345L).isEmpty());
+        Assertions.assertEquals("Индекс должен быть числом", response.message());
+        Mockito.verifyNoInteractions(passwordService);
+    }
 }
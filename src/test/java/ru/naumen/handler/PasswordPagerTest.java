@@ -0,0 +1,212 @@
+package ru.naumen.handler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import ru.naumen.bot.Response;
+import ru.naumen.cache.PageCursor;
+import ru.naumen.cache.PageCursor.Listing;
+import ru.naumen.cache.UserStateCache;
+import ru.naumen.exception.IncorrectSortTypeException;
+import ru.naumen.keyboard.KeyboardCreator;
+import ru.naumen.model.State;
+import ru.naumen.model.UserPassword;
+import ru.naumen.service.EncodeService;
+import ru.naumen.service.PasswordService;
+import ru.naumen.service.SortOrder;
+import ru.naumen.service.SortType;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Класс модульных тестов для PasswordPager
+ */
+class PasswordPagerTest {
+
+    private static final long USER_ID = 12345L;
+
+    @Mock
+    private PasswordService passwordService;
+
+    @Mock
+    private EncodeService encodeService;
+
+    private UserStateCache userStateCache;
+
+    private PasswordPager passwordPager;
+
+    /**
+     * Создаёт постраничный вывод по две записи на странице
+     */
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        Mockito.when(passwordService.getPageKey(ArgumentMatchers.any(), ArgumentMatchers.any()))
+                .thenAnswer(invocation -> {
+                    UserPassword password = invocation.getArgument(0);
+                    return new PageCursor.Key(password.getDescription(), password.getUuid());
+                });
+        userStateCache = new UserStateCache();
+        passwordPager = new PasswordPager(passwordService, encodeService, userStateCache, new KeyboardCreator(), 2);
+    }
+
+    /**
+     * Тест первой страницы: выводятся две записи, запоминается ключ последней и наличие следующей страницы
+     */
+    @Test
+    void testFirstPage() throws IncorrectSortTypeException {
+        mockPage(null, true, 3, List.of(password("a"), password("b"), password("c")));
+
+        Response response = passwordPager.firstPage(USER_ID, Listing.LIST, null);
+
+        Assertions.assertEquals("\n1) Сайт: a, Пароль: ********"
+                + "\n2) Сайт: b, Пароль: ********"
+                + "\n\nПоказать пароль: /show [номер]", response.message());
+        Assertions.assertEquals("Вперёд", response.keyboard().keyboardRows().get(0).get(0).getText());
+        Assertions.assertEquals(State.IN_LIST, userStateCache.getUserState(USER_ID));
+        PageCursor cursor = userStateCache.getPageCursor(USER_ID);
+        Assertions.assertEquals(new PageCursor.Key("b", uuid("b")), cursor.last());
+        Assertions.assertTrue(cursor.hasNext());
+        Assertions.assertFalse(cursor.hasPrevious());
+        Mockito.verifyNoInteractions(encodeService);
+    }
+
+    /**
+     * Тест первой страницы пустого списка
+     */
+    @Test
+    void testFirstPage_Empty() throws IncorrectSortTypeException {
+        mockPage(null, true, 3, List.of());
+
+        Assertions.assertNull(passwordPager.firstPage(USER_ID, Listing.LIST, null));
+        Assertions.assertNull(userStateCache.getPageCursor(USER_ID));
+    }
+
+    /**
+     * Тест перехода вперёд и назад: нумерация продолжается, страницы загружаются от ключей границ
+     */
+    @Test
+    void testNextAndPreviousPage() throws IncorrectSortTypeException {
+        mockPage(null, true, 3, List.of(password("a"), password("b"), password("c")));
+        mockPage(new PageCursor.Key("b", uuid("b")), true, 3, List.of(password("c")));
+        mockPage(new PageCursor.Key("c", uuid("c")), false, 2, List.of(password("a"), password("b")));
+        passwordPager.firstPage(USER_ID, Listing.LIST, null);
+
+        Response next = passwordPager.nextPage(USER_ID);
+
+        Assertions.assertEquals("\n3) Сайт: c, Пароль: ********"
+                + "\n\nПоказать пароль: /show [номер]", next.message());
+        Assertions.assertEquals("Назад", next.keyboard().keyboardRows().get(0).get(0).getText());
+        Assertions.assertFalse(userStateCache.getPageCursor(USER_ID).hasNext());
+
+        Response previous = passwordPager.previousPage(USER_ID);
+
+        Assertions.assertEquals("\n1) Сайт: a, Пароль: ********"
+                + "\n2) Сайт: b, Пароль: ********"
+                + "\n\nПоказать пароль: /show [номер]", previous.message());
+        Assertions.assertEquals(1, userStateCache.getPageCursor(USER_ID).firstIndex());
+    }
+
+    /**
+     * Тест перехода, если список не открыт
+     */
+    @Test
+    void testNextPage_WithoutList() {
+        Response response = passwordPager.nextPage(USER_ID);
+
+        Assertions.assertEquals("Сначала откройте список паролей: /list", response.message());
+        Mockito.verifyNoInteractions(encodeService);
+    }
+
+    /**
+     * Тест отсортированного списка: расшифровываются только пароли страницы, состояние сбрасывается,
+     * а следующая страница загружается в том же порядке
+     */
+    @Test
+    void testSortedPageDecryptsOnlyPage() throws IncorrectSortTypeException {
+        SortOrder order = SortOrder.descending(SortType.BY_DATE);
+        List<UserPassword> rows = List.of(password("a"), password("b"), password("c"));
+        Mockito.when(passwordService.getPasswordPage(USER_ID, order, null, null, true, 3)).thenReturn(rows);
+        Mockito.when(encodeService.decryptPasswords(rows.subList(0, 2))).thenReturn(List.of("pa", "pb"));
+        userStateCache.setState(USER_ID, State.SORT_STEP_1);
+
+        Response response = passwordPager.sortedPage(USER_ID, order);
+
+        Assertions.assertEquals("\n1) Сайт: a, Пароль: pa\n2) Сайт: b, Пароль: pb", response.message());
+        Assertions.assertEquals(State.NONE, userStateCache.getUserState(USER_ID));
+        PageCursor cursor = userStateCache.getPageCursor(USER_ID);
+        Assertions.assertEquals(Listing.SORTED, cursor.listing());
+        Assertions.assertEquals(order, cursor.order());
+
+        List<UserPassword> next = List.of(password("c"));
+        Mockito.when(passwordService.getPasswordPage(USER_ID, order, null, new PageCursor.Key("b", uuid("b")), true, 3))
+                .thenReturn(next);
+        Mockito.when(encodeService.decryptPasswords(next)).thenReturn(List.of("pc"));
+
+        Assertions.assertEquals("\n3) Сайт: c, Пароль: pc", passwordPager.nextPage(USER_ID).message());
+    }
+
+    /**
+     * Тест похожих паролей: одна страница с заголовком в порядке близости, без перехода к следующей
+     */
+    @Test
+    void testSimilarPage() {
+        List<UserPassword> rows = List.of(password("b"), password("a"));
+        Mockito.when(passwordService.findSimilarPasswords(USER_ID, "c", 2)).thenReturn(rows);
+        Mockito.when(encodeService.decryptPasswords(rows)).thenReturn(List.of("pb", "pa"));
+
+        Response response = passwordPager.similarPage(USER_ID, "c");
+
+        Assertions.assertEquals("Точных совпадений нет. Похожие пароли:"
+                + "\n1) Сайт: b, Пароль: pb\n2) Сайт: a, Пароль: pa", response.message());
+        PageCursor cursor = userStateCache.getPageCursor(USER_ID);
+        Assertions.assertEquals(Listing.SIMILAR, cursor.listing());
+        Assertions.assertFalse(cursor.hasNext());
+        Assertions.assertEquals("Это последняя страница списка", passwordPager.nextPage(USER_ID).message());
+    }
+
+    /**
+     * Тест, что страница заканчивается раньше, если сообщение превысит ограничение Telegram
+     */
+    @Test
+    void testPageFitsMessageLimit() throws IncorrectSortTypeException {
+        PasswordPager widePager = new PasswordPager(passwordService, encodeService, userStateCache,
+                new KeyboardCreator(), 20);
+        List<UserPassword> rows = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            rows.add(password(i + "x".repeat(250)));
+        }
+        Mockito.when(passwordService.getPasswordPage(USER_ID, SortOrder.LIST, null, null, true, 21))
+                .thenReturn(rows);
+
+        Response response = widePager.firstPage(USER_ID, Listing.LIST, null);
+
+        PageCursor cursor = userStateCache.getPageCursor(USER_ID);
+        Assertions.assertTrue(response.message().length() <= PasswordPager.MESSAGE_LIMIT);
+        Assertions.assertTrue(cursor.count() < rows.size());
+        Assertions.assertTrue(cursor.hasNext());
+        Assertions.assertEquals(rows.get(cursor.count() - 1).getUuid(), cursor.last().uuid());
+    }
+
+    private void mockPage(PageCursor.Key from, boolean forward, int limit, List<UserPassword> rows)
+            throws IncorrectSortTypeException {
+        Mockito.when(passwordService.getPasswordPage(USER_ID, SortOrder.LIST, null, from, forward, limit))
+                .thenReturn(rows);
+    }
+
+    private static UserPassword password(String description) {
+        return new UserPassword(uuid(description), description, null, null, LocalDate.of(2024, 1, 1));
+    }
+
+    private static UUID uuid(String description) {
+        return UUID.nameUUIDFromBytes(description.getBytes(StandardCharsets.UTF_8));
+    }
+}
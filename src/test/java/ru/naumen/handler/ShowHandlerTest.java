@@ -0,0 +1,109 @@
+package ru.naumen.handler;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import ru.naumen.bot.Response;
+import ru.naumen.cache.UserStateCache;
+import ru.naumen.exception.PasswordNotFoundException;
+import ru.naumen.keyboard.KeyboardCreator;
+import ru.naumen.model.State;
+import ru.naumen.model.User;
+import ru.naumen.model.UserPassword;
+import ru.naumen.service.EncodeService;
+import ru.naumen.service.PasswordService;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Класс модульных тестов для ShowHandler
+ */
+class ShowHandlerTest {
+
+    @Mock
+    private EncodeService encodeService;
+
+    @Mock
+    private PasswordService passwordService;
+
+    @Mock
+    private KeyboardCreator keyboardCreator;
+
+    private UserStateCache userStateCache;
+
+    private ShowHandler showHandler;
+
+    private final User user = new User(12345L, List.of());
+
+    private final List<UserPassword> userPasswords = List.of(
+            new UserPassword(new UUID(0L, 1L), "site1", "pass1", user, LocalDate.now()),
+            new UserPassword(new UUID(0L, 2L), "site2", "pass2", user, LocalDate.now()));
+
+    /**
+     * Инициализирует моки и создаёт кеш состояний перед каждым тестом
+     */
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        userStateCache = new UserStateCache();
+        showHandler = new ShowHandler(encodeService, passwordService, userStateCache, keyboardCreator);
+    }
+
+    /**
+     * Тест, что расшифровывается только выбранный пароль
+     */
+    @Test
+    void testShowPassword() throws PasswordNotFoundException {
+        Mockito.when(passwordService.findPasswordByIndex(12345L, 2)).thenReturn(userPasswords.get(1));
+        Mockito.when(encodeService.decryptPassword(userPasswords.get(1))).thenReturn("dpass2");
+
+        Response response = showHandler.handle(new String[]{"/show", "2"}, 12345L);
+
+        Assertions.assertEquals("Сайт: site2, Пароль: dpass2", response.message());
+        Assertions.assertEquals(State.IN_LIST, userStateCache.getUserState(12345L));
+        Mockito.verify(encodeService, Mockito.times(1)).decryptPassword(ArgumentMatchers.any());
+        Mockito.verify(encodeService, Mockito.never()).decryptPasswords(ArgumentMatchers.any());
+    }
+
+    /**
+     * Тест команды без номера: бот запрашивает номер пароля
+     */
+    @Test
+    void testShowWithoutIndex() {
+        Response response = showHandler.handle(new String[]{"/show"}, 12345L);
+
+        Assertions.assertEquals("Введите индекс пароля", response.message());
+        Assertions.assertEquals(State.SHOW_STEP_1, userStateCache.getUserState(12345L));
+    }
+
+    /**
+     * Тест номера вне списка
+     */
+    @Test
+    void testShowIndexOutOfRange() throws PasswordNotFoundException {
+        Mockito.when(passwordService.findPasswordByIndex(12345L, 3)).thenThrow(PasswordNotFoundException.class);
+
+        Response response = showHandler.show("3", 12345L);
+
+        Assertions.assertEquals("Не найден пароль с id 3", response.message());
+        Assertions.assertEquals(State.IN_LIST, userStateCache.getUserState(12345L));
+        Mockito.verifyNoInteractions(encodeService);
+    }
+
+    /**
+     * Тест номера, который не является числом
+     */
+    @Test
+    void testShowIncorrectIndex() {
+        Response response = showHandler.show("два", 12345L);
+
+        Assertions.assertEquals("Индекс должен быть числом", response.message());
+        Mockito.verifyNoInteractions(encodeService);
+    }
+}
@@ -3,7 +3,7 @@ package ru.naumen.handler;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
@@ -15,10 +15,12 @@ import ru.naumen.model.State;
 import ru.naumen.model.UserPassword;
 import ru.naumen.service.EncodeService;
 import ru.naumen.service.PasswordService;
+import ru.naumen.service.SortOrder;
 import ru.naumen.service.SortType;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.UUID;
 
 /**
  * Класс модульных тестов для SortHandler
@@ -37,7 +39,6 @@ class SortHandlerTest {
     @Mock
     private KeyboardCreator keyboardCreator;
 
-    @InjectMocks
     private SortHandler sortHandler;
 
     /**
@@ -46,6 +47,8 @@ class SortHandlerTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        PasswordPager passwordPager = new PasswordPager(passwordService, encodeService, userStateCache, keyboardCreator, 10);
+        sortHandler = new SortHandler(passwordPager, userStateCache, keyboardCreator);
         Mockito.when(userStateCache.getUserState(Mockito.anyLong())).thenReturn(State.NONE);
         Mockito.when(userStateCache.getUserParams(Mockito.anyLong())).thenReturn(List.of());
     }
@@ -66,14 +69,13 @@ class SortHandlerTest {
                 "2) Сайт: bdesc, Пароль: dpass1";
 
         Mockito.when(userStateCache.getUserState(12345L)).thenReturn(State.SORT_STEP_1);
-        Mockito.when(passwordService.getUserPasswordsSorted(12345L, SortType.BY_DESCRIPTION)).thenReturn(passwords);
-        Mockito.when(encodeService.decryptData("pass1")).thenReturn("dpass1");
-        Mockito.when(encodeService.decryptData("pass2")).thenReturn("dpass2");
+        mockFirstPage(SortOrder.ascending(SortType.BY_DESCRIPTION), passwords);
+        Mockito.when(encodeService.decryptPasswords(passwords)).thenReturn(List.of("dpass2", "dpass1"));
 
         Response response = sortHandler.handle(command, 12345L);
 
         Assertions.assertEquals(expectedResponse, response.message());
-        Mockito.verify(userStateCache).clearParamsForUser(12345L);
+        Mockito.verify(userStateCache).compute(ArgumentMatchers.eq(12345L), ArgumentMatchers.any());
     }
 
     /**
@@ -83,9 +85,9 @@ class SortHandlerTest {
     void testSortPasswords_ByDate() throws IncorrectSortTypeException {
         String[] command = {"Дате"};
         List<UserPassword> passwords = List.of(
-                new UserPassword("uuid1", "desc1", "pass1", null, LocalDate.of(2010, 1, 1)),
-                new UserPassword("uuid3", "desc3", "pass3", null, LocalDate.of(2012, 1, 1)),
-                new UserPassword("uuid2", "desc2", "pass2", null, LocalDate.of(2013, 1, 1))
+                new UserPassword(new UUID(0L, 1L), "desc1", "pass1", null, LocalDate.of(2010, 1, 1)),
+                new UserPassword(new UUID(0L, 3L), "desc3", "pass3", null, LocalDate.of(2012, 1, 1)),
+                new UserPassword(new UUID(0L, 2L), "desc2", "pass2", null, LocalDate.of(2013, 1, 1))
         );
 
         String expectedResponse = "\n" +
@@ -94,15 +96,48 @@ class SortHandlerTest {
                 "3) Сайт: desc2, Пароль: dpass2";
 
         Mockito.when(userStateCache.getUserState(12345L)).thenReturn(State.SORT_STEP_1);
-        Mockito.when(passwordService.getUserPasswordsSorted(12345L, SortType.BY_DATE)).thenReturn(passwords);
-        Mockito.when(encodeService.decryptData("pass1")).thenReturn("dpass1");
-        Mockito.when(encodeService.decryptData("pass2")).thenReturn("dpass2");
-        Mockito.when(encodeService.decryptData("pass3")).thenReturn("dpass3");
+        mockFirstPage(SortOrder.ascending(SortType.BY_DATE), passwords);
+        Mockito.when(encodeService.decryptPasswords(passwords)).thenReturn(List.of("dpass1", "dpass3", "dpass2"));
 
         Response response = sortHandler.handle(command, 12345L);
 
         Assertions.assertEquals(expectedResponse, response.message());
-        Mockito.verify(userStateCache).clearParamsForUser(12345L);
+        Mockito.verify(userStateCache).compute(ArgumentMatchers.eq(12345L), ArgumentMatchers.any());
+    }
+
+    /**
+     * Тест сортировки по надёжности по убыванию
+     */
+    @Test
+    void testSortPasswords_ByStrengthDescending() throws IncorrectSortTypeException {
+        String[] command = {"Надёжности↓"};
+        List<UserPassword> passwords = List.of(
+                new UserPassword(new UUID(0L, 1L), "strong", "pass1", null, LocalDate.of(2010, 1, 1)),
+                new UserPassword(new UUID(0L, 2L), "weak", "pass2", null, LocalDate.of(2010, 1, 1))
+        );
+
+        String expectedResponse = "\n" +
+                "1) Сайт: strong, Пароль: Xk9#mQ2$vL\n" +
+                "2) Сайт: weak, Пароль: qwerty";
+
+        Mockito.when(userStateCache.getUserState(12345L)).thenReturn(State.SORT_STEP_1);
+        mockFirstPage(SortOrder.descending(SortType.BY_STRENGTH), passwords);
+        Mockito.when(encodeService.decryptPasswords(passwords)).thenReturn(List.of("Xk9#mQ2$vL", "qwerty"));
+
+        Response response = sortHandler.handle(command, 12345L);
+
+        Assertions.assertEquals(expectedResponse, response.message());
+    }
+
+    /**
+     * Тест неизвестного типа сортировки
+     */
+    @Test
+    void testSortPasswords_UnknownType() {
+        Response response = sortHandler.sort("Цвету↓", 12345L);
+
+        Assertions.assertEquals("Введена некорректная команда! Справка: /help", response.message());
+        Mockito.verifyNoInteractions(passwordService);
     }
 
     /**
@@ -114,7 +149,7 @@ class SortHandlerTest {
         List<UserPassword> passwords = List.of();
 
         Mockito.when(userStateCache.getUserState(12345L)).thenReturn(State.SORT_STEP_1);
-        Mockito.when(passwordService.getUserPasswordsSorted(12345L, SortType.BY_DATE)).thenReturn(passwords);
+        mockFirstPage(SortOrder.ascending(SortType.BY_DATE), passwords);
 
         Response response = sortHandler.handle(command, 12345L);
 
@@ -145,4 +180,11 @@ class SortHandlerTest {
 
         Assertions.assertEquals("Введена некорректная команда! Справка: /help", response.message());
     }
+
+    private void mockFirstPage(SortOrder sortOrder, List<UserPassword> page) throws IncorrectSortTypeException {
+        Mockito.when(passwordService.getPasswordPage(ArgumentMatchers.eq(12345L), ArgumentMatchers.eq(sortOrder),
+                        ArgumentMatchers.isNull(), ArgumentMatchers.isNull(), ArgumentMatchers.eq(true),
+                        ArgumentMatchers.eq(11)))
+                .thenReturn(page);
+    }
 }
@@ -0,0 +1,84 @@
+package ru.naumen.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Класс модульных тестов для BkTree
+ */
+class BkTreeTest {
+
+    /**
+     * Тест расстояния Левенштейна
+     */
+    @Test
+    void testDistance() {
+        Assertions.assertEquals(0, BkTree.distance("google", "google"));
+        Assertions.assertEquals(1, BkTree.distance("gogle", "google"));
+        Assertions.assertEquals(2, BkTree.distance("gooogle", "gogle"));
+        Assertions.assertEquals(3, BkTree.distance("kitten", "sitting"));
+        Assertions.assertEquals(4, BkTree.distance("", "mail"));
+    }
+
+    /**
+     * Тест, что поиск находит то же, что и сравнение со всеми словами
+     */
+    @Test
+    void testSearchMatchesBruteForce() {
+        Random random = new Random(42);
+        BkTree<Integer> tree = new BkTree<>();
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            String word = randomWord(random);
+            words.add(word);
+            tree.add(word, i);
+        }
+
+        for (int query = 0; query < 50; query++) {
+            String word = randomWord(random);
+            Map<Integer, Integer> expected = new HashMap<>();
+            for (int i = 0; i < words.size(); i++) {
+                int distance = BkTree.distance(word, words.get(i));
+                if (distance <= 2) {
+                    expected.put(i, distance);
+                }
+            }
+
+            Map<Integer, Integer> found = new HashMap<>();
+            tree.search(word, 2, found::put);
+
+            Assertions.assertEquals(expected, found);
+        }
+    }
+
+    /**
+     * Тест, что одинаковые слова хранятся в одном узле
+     */
+    @Test
+    void testSameWordValues() {
+        BkTree<String> tree = new BkTree<>();
+        tree.add("mail", "first");
+        tree.add("mail", "second");
+        tree.add("gmail", "third");
+
+        Map<String, Integer> found = new HashMap<>();
+        tree.search("mail", 0, found::put);
+
+        Assertions.assertEquals(Map.of("first", 0, "second", 0), found);
+        Assertions.assertEquals(2, tree.size());
+    }
+
+    private static String randomWord(Random random) {
+        char[] word = new char[3 + random.nextInt(5)];
+        for (int i = 0; i < word.length; i++) {
+            word[i] = (char) ('a' + random.nextInt(4));
+        }
+        return new String(word);
+    }
+}
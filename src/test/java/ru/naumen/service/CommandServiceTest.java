@@ -8,6 +8,8 @@ import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import ru.naumen.keyboard.Keyboard;
 import ru.naumen.bot.Response;
+import ru.naumen.bot.command.CommandResolver;
+import ru.naumen.bot.command.CommandTokens;
 import ru.naumen.keyboard.KeyboardCreator;
 import ru.naumen.cache.UserStateCache;
 import ru.naumen.handler.*;
@@ -59,6 +61,18 @@ class CommandServiceTest {
     @Mock
     private HelpHandler helpHandler;
 
+    @Mock
+    private StartHandler startHandler;
+
+    @Mock
+    private ShowHandler showHandler;
+
+    @Mock
+    private NextPageHandler nextPageHandler;
+
+    @Mock
+    private PreviousPageHandler previousPageHandler;
+
     @Mock
     private KeyboardCreator keyboardCreator;
 
@@ -72,31 +86,49 @@ class CommandServiceTest {
     void setUp() {
         MockitoAnnotations.openMocks(this);
 
-        Map<String, CommandHandler> commandHandlers = Map.of(
-                "/generate", generateHandler,
-                "/list", listHandler,
-                "/edit", editHandler,
-                "/del", deleteHandler,
-                "/save", saveHandler,
-                "/sort", sortHandler,
-                "/find", findHandler,
-                "/help", helpHandler
+        Map<String, CommandHandler> commandHandlers = Map.ofEntries(
+                Map.entry("/generate", generateHandler),
+                Map.entry("/list", listHandler),
+                Map.entry("/edit", editHandler),
+                Map.entry("/del", deleteHandler),
+                Map.entry("/save", saveHandler),
+                Map.entry("/sort", sortHandler),
+                Map.entry("/find", findHandler),
+                Map.entry("/help", helpHandler),
+                Map.entry("/start", startHandler),
+                Map.entry("/show", showHandler),
+                Map.entry("/next", nextPageHandler),
+                Map.entry("/prev", previousPageHandler)
         );
 
         commandService = new CommandService(
                 userStateCache,
-                nonCommandHandler,
+                new DialogTransitions(nonCommandHandler),
                 keyboardCreator,
-                commandHandlers
+                commandHandlers,
+                new CommandResolver("PasswordBot")
         );
     }
 
+    /**
+     * Тест, что команда без хэндлера обнаруживается при создании сервиса
+     */
+    @Test
+    void testMissingHandler() {
+        Map<String, CommandHandler> commandHandlers = Map.of("/help", helpHandler);
+        DialogTransitions dialogTransitions = new DialogTransitions(nonCommandHandler);
+        CommandResolver commandResolver = new CommandResolver("PasswordBot");
+
+        Assertions.assertThrows(IllegalStateException.class, () -> new CommandService(userStateCache,
+                dialogTransitions, keyboardCreator, commandHandlers, commandResolver));
+    }
+
     /**
      * Тест команды /generate, при валидных значениях
      */
     @Test
     void testPerformCommandGenerate() {
-        Mockito.when(generateHandler.handle(new String[]{"/generate", "12", "3"}, 12345L))
+        Mockito.when(generateHandler.handle(CommandTokens.of("/generate", "12", "3"), 12345L))
                 .thenReturn(new Response("Сгенерирован пароль: generatedPassword",
                         new Keyboard(List.of())));
 
@@ -109,7 +141,7 @@ class CommandServiceTest {
      */
     @Test
     void testPerformCommandGenerateLowLength() {
-        Mockito.when(generateHandler.handle(new String[]{"/generate", "4", "3"}, 12345L))
+        Mockito.when(generateHandler.handle(CommandTokens.of("/generate", "4", "3"), 12345L))
                 .thenReturn(new Response("Длина пароля должна быть от 8 до 128 символов!",
                         new Keyboard(List.of())));
         Response response = commandService.performCommand("/generate 4 3", 12345L);
@@ -122,7 +154,7 @@ class CommandServiceTest {
      */
     @Test
     void testPerformCommandGenerateHighLength() {
-        Mockito.when(generateHandler.handle(new String[]{"/generate", "129", "3"}, 12345L))
+        Mockito.when(generateHandler.handle(CommandTokens.of("/generate", "129", "3"), 12345L))
                 .thenReturn(
                         new Response("Длина пароля должна быть от 8 до 128 символов!",
                                 new Keyboard(List.of())
@@ -141,7 +173,7 @@ class CommandServiceTest {
                 "1 - простой пароль;\n" +
                 "2 - пароль средней сложности;\n" +
                 "3 - сложный пароль.";
-        Mockito.when(generateHandler.handle(new String[]{"/generate", "15", "4"}, 12345L))
+        Mockito.when(generateHandler.handle(CommandTokens.of("/generate", "15", "4"), 12345L))
                 .thenReturn(
                         new Response(expectedResponse,
                                 new Keyboard(List.of())
@@ -156,7 +188,7 @@ class CommandServiceTest {
      */
     @Test
     void testPerformCommandSaveWithDescription() {
-        Mockito.when(saveHandler.handle(new String[]{"/save", "pass", "desc"}, 12345L))
+        Mockito.when(saveHandler.handle(CommandTokens.of("/save", "pass", "desc"), 12345L))
                 .thenReturn(
                         new Response("Пароль успешно сохранён",
                                 new Keyboard(List.of())
@@ -171,7 +203,7 @@ class CommandServiceTest {
      */
     @Test
     void testPerformCommandSaveWithoutDescription() {
-        Mockito.when(saveHandler.handle(new String[]{"/save", "pass"}, 12345L))
+        Mockito.when(saveHandler.handle(CommandTokens.of("/save", "pass"), 12345L))
                 .thenReturn(
                         new Response("Пароль успешно сохранён",
                                 new Keyboard(List.of())
@@ -196,7 +228,7 @@ class CommandServiceTest {
         Mockito.when(passwordService.getUserPasswords(12345L)).thenReturn(userPasswords);
         Mockito.when(encodeService.decryptData("pass1")).thenReturn("dec1");
         Mockito.when(encodeService.decryptData("pass2")).thenReturn("dec2");
-        Mockito.when(listHandler.handle(new String[]{"/list"}, 12345L))
+        Mockito.when(listHandler.handle(CommandTokens.of("/list"), 12345L))
                 .thenReturn(
                         new Response(expectedMessage,
                                 new Keyboard(List.of())
@@ -211,7 +243,7 @@ class CommandServiceTest {
      */
     @Test
     void testPerformCommandDelete() {
-        Mockito.when(deleteHandler.handle(new String[]{"/del", "1"}, 12345L))
+        Mockito.when(deleteHandler.handle(CommandTokens.of("/del", "1"), 12345L))
                 .thenReturn(
                         new Response("Удалён пароль для сайта site",
                                 new Keyboard(List.of())
@@ -226,7 +258,7 @@ class CommandServiceTest {
      */
     @Test
     void testPerformCommandDeleteInvalidId() {
-        Mockito.when(deleteHandler.handle(new String[]{"/del", "2"}, 12345L))
+        Mockito.when(deleteHandler.handle(CommandTokens.of("/del", "2"), 12345L))
                 .thenReturn(
                         new Response("Не найден пароль с id 2",
                                 new Keyboard(List.of())
@@ -241,7 +273,7 @@ class CommandServiceTest {
      */
     @Test
     void testPerformCommandDeleteMinusId() {
-        Mockito.when(deleteHandler.handle(new String[]{"/del", "-2"}, 12345L))
+        Mockito.when(deleteHandler.handle(CommandTokens.of("/del", "-2"), 12345L))
                 .thenReturn(
                         new Response("Не найден пароль с id -2",
                                 new Keyboard(List.of())
@@ -256,7 +288,7 @@ class CommandServiceTest {
      */
     @Test
     void testPerformCommandEditValid() {
-        Mockito.when(editHandler.handle(new String[]{"/edit", "1", "12", "2", "updDesc"}, 12345L))
+        Mockito.when(editHandler.handle(CommandTokens.of("/edit", "1", "12", "2", "updDesc"), 12345L))
                 .thenReturn(
                         new Response("Обновлён пароль для updDesc: newPass",
                                 new Keyboard(List.of())
@@ -272,7 +304,7 @@ class CommandServiceTest {
      */
     @Test
     void testPerformCommandEditValidWithoutDescription() {
-        Mockito.when(editHandler.handle(new String[]{"/edit", "1", "12", "2"}, 12345L))
+        Mockito.when(editHandler.handle(CommandTokens.of("/edit", "1", "12", "2"), 12345L))
                 .thenReturn(
                         new Response("Обновлён пароль для site: newPass",
                                 new Keyboard(List.of())
@@ -288,7 +320,7 @@ class CommandServiceTest {
      */
     @Test
     void testPerformCommandEditInvalidLength() {
-        Mockito.when(editHandler.handle(new String[]{"/edit", "1", "129", "2"}, 12345L))
+        Mockito.when(editHandler.handle(CommandTokens.of("/edit", "1", "129", "2"), 12345L))
                 .thenReturn(
                         new Response("Длина пароля должна быть от 8 до 128 символов!",
                                 new Keyboard(List.of())
@@ -308,7 +340,7 @@ class CommandServiceTest {
                 "2 - пароль средней сложности;\n" +
                 "3 - сложный пароль.";
 
-        Mockito.when(editHandler.handle(new String[]{"/edit", "1", "12", "4"}, 12345L))
+        Mockito.when(editHandler.handle(CommandTokens.of("/edit", "1", "12", "4"), 12345L))
                 .thenReturn(
                         new Response(expectedResponse,
                                 new Keyboard(List.of())
@@ -324,7 +356,7 @@ class CommandServiceTest {
      */
     @Test
     void testPerformCommandEditPasswordNotFound() {
-        Mockito.when(editHandler.handle(new String[]{"/edit", "2", "10", "2"}, 12345L))
+        Mockito.when(editHandler.handle(CommandTokens.of("/edit", "2", "10", "2"), 12345L))
                 .thenReturn(
                         new Response("Не найден пароль с id 2",
                                 new Keyboard(List.of())
@@ -334,16 +366,6 @@ class CommandServiceTest {
         Assertions.assertEquals("Не найден пароль с id 2", response.message());
     }
 
-    /**
-     * Тест команды /edit, введённой некорректно
-     */
-    @Test
-    void testPerformCommandEditInvalidCommand() {
-
-        Response response = commandService.performCommand("/edit 2 10 2 15 14", 12345L);
-        Assertions.assertEquals("Введена некорректная команда! Справка: /help", response.message());
-    }
-
     /**
      * Тест команды /help
      */
@@ -354,11 +376,12 @@ class CommandServiceTest {
                 "- /generate [length] [complexity] – Генерировать пароль длиной [length] символов и сложностью [complexity] (1, 2 или 3, где 1 - простой, 3 - сложный);\n" +
                 "- /save [password] [description] – Сохранить пароль, задать описание;\n" +
                 "- /list – Показать список сохранённых паролей;\n" +
+                "- /show [passwordID] – Показать сохранённый пароль с ID [passwordID];\n" +
                 "- /edit [passwordID] [length] [complexity] [description] – Изменяет пароль с ID [passwordID], генерирует новый под заданные параметры;\n" +
                 "- /del [passwordID] – Удалить сохранённый пароль с ID [passwordID];\n" +
                 "- /help - Справка.";
 
-        Mockito.when(helpHandler.handle(new String[]{"/help"}, 12345L))
+        Mockito.when(helpHandler.handle(CommandTokens.of("/help"), 12345L))
                 .thenReturn(
                         new Response(expectedResponse,
                                 new Keyboard(List.of())
@@ -378,13 +401,38 @@ class CommandServiceTest {
         Assertions.assertEquals("Введена некорректная команда! Справка: /help", response.message());
     }
 
+    /**
+     * Тест команды, заданной альтернативным названием в другом регистре и с именем бота
+     */
+    @Test
+    void testPerformCommandAliasWithBotName() {
+        Mockito.when(generateHandler.handle(CommandTokens.of("/GEN@passwordbot", "12", "3"), 12345L))
+                .thenReturn(new Response("Сгенерирован пароль: generatedPassword",
+                        new Keyboard(List.of())));
+
+        Response response = commandService.performCommand("/GEN@passwordbot 12 3", 12345L);
+        Assertions.assertEquals("Сгенерирован пароль: generatedPassword", response.message());
+    }
+
+    /**
+     * Тест команды, адресованной другому боту
+     */
+    @Test
+    void testPerformCommandOtherBotName() {
+        Mockito.when(userStateCache.getUserState(12345L)).thenReturn(State.NONE);
+
+        Response response = commandService.performCommand("/generate@OtherBot", 12345L);
+        Assertions.assertEquals("Введена некорректная команда! Справка: /help", response.message());
+        Mockito.verifyNoInteractions(generateHandler);
+    }
+
     /**
      * Тест, когда генерация должна проходить успешно
      */
     @Test
     void testPerformCommandGenerateKeyboard() {
 
-        Mockito.when(generateHandler.handle(new String[]{"Генерировать"}, 12345L))
+        Mockito.when(generateHandler.handle(CommandTokens.of("Генерировать"), 12345L))
                 .thenReturn(
                         new Response("Введите длину пароля",
                                 new Keyboard(List.of())
@@ -399,7 +447,7 @@ class CommandServiceTest {
         Mockito.when(userStateCache.getUserState(12345L)).thenReturn(State.GENERATION_STEP_1);
         Response secondStep = commandService.performCommand("20", 12345L);
 
-        Mockito.when(nonCommandHandler.getComplexity("3", 12345L, State.NONE, null))
+        Mockito.when(nonCommandHandler.generatePassword("3", 12345L))
                 .thenReturn(
                         new Response("Сгенерирован пароль:",
                                 new Keyboard(List.of())
@@ -417,7 +465,7 @@ class CommandServiceTest {
      */
     @Test
     void testPerformCommandGenerateKeyboard_lengthUnCorrect() {
-        Mockito.when(generateHandler.handle(new String[]{"Генерировать"}, 12345L))
+        Mockito.when(generateHandler.handle(CommandTokens.of("Генерировать"), 12345L))
                 .thenReturn(
                         new Response("Введите длину пароля",
                                 new Keyboard(List.of())
@@ -447,7 +495,7 @@ class CommandServiceTest {
                 2 - пароль средней сложности;
                 3 - сложный пароль.""";
 
-        Mockito.when(generateHandler.handle(new String[]{"Генерировать"}, 12345L))
+        Mockito.when(generateHandler.handle(CommandTokens.of("Генерировать"), 12345L))
                 .thenReturn(
                         new Response("Введите длину пароля",
                                 new Keyboard(List.of())
@@ -462,7 +510,7 @@ class CommandServiceTest {
         Mockito.when(userStateCache.getUserState(12345L)).thenReturn(State.GENERATION_STEP_1);
         Response secondStep = commandService.performCommand("20", 12345L);
 
-        Mockito.when(nonCommandHandler.getComplexity("4", 12345L, State.NONE, null))
+        Mockito.when(nonCommandHandler.generatePassword("4", 12345L))
                 .thenReturn(
                         new Response(expectedMessage,
                                 new Keyboard(List.of())
@@ -480,7 +528,7 @@ class CommandServiceTest {
      */
     @Test
     void testPerformCommandSaveKeyboard() {
-        Mockito.when(saveHandler.handle(new String[]{"Сохранить"}, 12345L))
+        Mockito.when(saveHandler.handle(CommandTokens.of("Сохранить"), 12345L))
                 .thenReturn(
                         new Response("Введите пароль",
                                 new Keyboard(List.of())
@@ -495,7 +543,7 @@ class CommandServiceTest {
         Mockito.when(userStateCache.getUserState(12345L)).thenReturn(State.SAVE_STEP_1);
         Response secondStep = commandService.performCommand("password", 12345L);
 
-        Mockito.when(nonCommandHandler.getDescription("description", 12345L, State.NONE, null))
+        Mockito.when(nonCommandHandler.savePassword("description", 12345L))
                 .thenReturn(
                         new Response("Пароль успешно сохранён",
                                 new Keyboard(List.of())
@@ -513,14 +561,14 @@ class CommandServiceTest {
      */
     @Test
     void testPerformCommandEditKeyboard() {
-        Mockito.when(editHandler.handle(new String[]{"Изменить"}, 12345L))
+        Mockito.when(editHandler.handle(CommandTokens.of("Изменить"), 12345L))
                 .thenReturn(
                         new Response("Введите индекс пароля",
                                 new Keyboard(List.of())
                         ));
         Response firstStep = commandService.performCommand("Изменить", 12345L);
 
-        Mockito.when(nonCommandHandler.getIndexPassword("1", 12345L))
+        Mockito.when(nonCommandHandler.getEditIndex("1", 12345L))
                 .thenReturn(
                         new Response("Введите длину пароля",
                                 new Keyboard(List.of())
@@ -536,7 +584,7 @@ class CommandServiceTest {
         Mockito.when(userStateCache.getUserState(12345L)).thenReturn(State.EDIT_STEP_2);
         Response thirdStep = commandService.performCommand("20", 12345L);
 
-        Mockito.when(nonCommandHandler.getComplexity("2", 12345L, State.EDIT_STEP_4, "Введите описание пароля"))
+        Mockito.when(nonCommandHandler.getEditComplexity("2", 12345L))
                 .thenReturn(
                         new Response("Введите описание пароля",
                                 new Keyboard(List.of())
@@ -544,7 +592,7 @@ class CommandServiceTest {
         Mockito.when(userStateCache.getUserState(12345L)).thenReturn(State.EDIT_STEP_3);
         Response fourStep = commandService.performCommand("2", 12345L);
 
-        Mockito.when(nonCommandHandler.getDescription("description", 12345L, State.NONE, null))
+        Mockito.when(nonCommandHandler.editPassword("description", 12345L))
                 .thenReturn(
                         new Response("Обновлён пароль для description",
                                 new Keyboard(List.of())
@@ -564,14 +612,14 @@ class CommandServiceTest {
      */
     @Test
     void testPerformCommandDeleteKeyboard() {
-        Mockito.when(deleteHandler.handle(new String[]{"Удалить"}, 12345L))
+        Mockito.when(deleteHandler.handle(CommandTokens.of("Удалить"), 12345L))
                 .thenReturn(
                         new Response("Введите индекс пароля",
                                 new Keyboard(List.of())
                         ));
         Response firstStep = commandService.performCommand("Удалить", 12345L);
 
-        Mockito.when(nonCommandHandler.getIndexPassword("1", 12345L))
+        Mockito.when(nonCommandHandler.getDeleteIndex("1", 12345L))
                 .thenReturn(
                         new Response("Удалён пароль для сайта description",
                                 new Keyboard(List.of())
@@ -588,7 +636,7 @@ class CommandServiceTest {
      */
     @Test
     void testPerformCommandSortKeyboard() {
-        Mockito.when(sortHandler.handle(new String[]{"Сортировать"}, 12345L))
+        Mockito.when(sortHandler.handle(CommandTokens.of("Сортировать"), 12345L))
                 .thenReturn(
                         new Response("Отсортировать по:",
                                 new Keyboard(List.of())
@@ -612,7 +660,7 @@ class CommandServiceTest {
      */
     @Test
     void testPerformCommandFindKeyboard() {
-        Mockito.when(findHandler.handle(new String[]{"Искать"}, 12345L))
+        Mockito.when(findHandler.handle(CommandTokens.of("Искать"), 12345L))
                 .thenReturn(
                         new Response("Введите поисковый запрос",
                                 new Keyboard(List.of())
@@ -0,0 +1,156 @@
+package ru.naumen.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.util.unit.DataSize;
+import ru.naumen.exception.DecryptException;
+import ru.naumen.model.User;
+import ru.naumen.model.UserPassword;
+import ru.naumen.repository.UserRepository;
+
+import javax.crypto.SecretKey;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Класс модульных тестов для DataKeyService
+ */
+class DataKeyServiceTest {
+
+    private static final String KEY = "BC1D9VG58QKH6CYK99DGB1UBESR8VRXD";
+
+    @Mock
+    private UserRepository userRepository;
+
+    private DataKeyService dataKeyService;
+
+    /**
+     * Инициализирует моки: ключ пользователя сохраняется с первой попытки
+     */
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        Mockito.when(userRepository.initDataKey(
+                        ArgumentMatchers.anyLong(), ArgumentMatchers.any(), ArgumentMatchers.anyInt()))
+                .thenReturn(1);
+        dataKeyService = newService(DataSize.ofKilobytes(64));
+    }
+
+    /**
+     * Тест, что ключ создаётся один раз, сохраняется у пользователя и дальше берётся из кэша
+     */
+    @Test
+    void testGetDataKeyCreatesKeyOnce() {
+        User user = new User(1L);
+
+        SecretKey first = dataKeyService.getDataKey(user);
+        SecretKey second = dataKeyService.getDataKey(user);
+
+        Assertions.assertSame(first, second);
+        Assertions.assertEquals(DataKeyService.WRAPPED_KEY_LENGTH, user.getDataKey().length);
+        Assertions.assertEquals(1, user.getMasterKeyId());
+        Assertions.assertEquals(1, dataKeyService.getUnwrapCount());
+        Mockito.verify(userRepository, Mockito.times(1))
+                .initDataKey(ArgumentMatchers.eq(1L), ArgumentMatchers.any(), ArgumentMatchers.eq(1));
+    }
+
+    /**
+     * Тест, что расшифрование списка стоит одного расшифрования ключа пользователя
+     */
+    @Test
+    void testDecryptPasswordsUnwrapsOnce() {
+        User user = new User(1L);
+        EncodeService writer = new EncodeService(KEY, 256, dataKeyService);
+        List<UserPassword> passwords = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            UserPassword password = new UserPassword(new UUID(0L, i + 1L), "site", null, user, LocalDate.now());
+            password.setSecret(writer.encrypt("pass" + i, user));
+            passwords.add(password);
+        }
+
+        DataKeyService coldService = newService(DataSize.ofKilobytes(64));
+        List<String> decrypted = new EncodeService(KEY, 256, coldService).decryptPasswords(passwords);
+
+        Assertions.assertEquals("pass0", decrypted.get(0));
+        Assertions.assertEquals("pass9", decrypted.get(9));
+        Assertions.assertEquals(1, coldService.getUnwrapCount());
+    }
+
+    /**
+     * Тест, что при одновременном создании ключа используется ключ, сохранённый первым
+     */
+    @Test
+    void testConcurrentCreationUsesStoredKey() {
+        User stored = new User(1L);
+        SecretKey storedKey = newService(DataSize.ofKilobytes(64)).getDataKey(stored);
+        Mockito.when(userRepository.initDataKey(
+                        ArgumentMatchers.anyLong(), ArgumentMatchers.any(), ArgumentMatchers.anyInt()))
+                .thenReturn(0);
+        Mockito.when(userRepository.findById(1L)).thenReturn(stored);
+
+        User stale = new User(1L);
+        SecretKey dataKey = dataKeyService.getDataKey(stale);
+
+        Assertions.assertArrayEquals(storedKey.getEncoded(), dataKey.getEncoded());
+        Assertions.assertArrayEquals(stored.getDataKey(), stale.getDataKey());
+    }
+
+    /**
+     * Тест, что кэш ограничен заданным объёмом и вытесняет давно не использованные ключи
+     */
+    @Test
+    void testCacheIsBoundedByMemory() {
+        DataKeyService smallService = newService(DataSize.ofBytes(3L * DataKeyService.CACHE_ENTRY_BYTES));
+        List<User> users = new ArrayList<>();
+        for (long userId = 1; userId <= 5; userId++) {
+            User user = new User(userId);
+            users.add(user);
+            smallService.getDataKey(user);
+        }
+
+        Assertions.assertEquals(3, smallService.cachedCount());
+        smallService.getDataKey(users.get(4));
+        Assertions.assertEquals(5, smallService.getUnwrapCount());
+        smallService.getDataKey(users.get(0));
+        Assertions.assertEquals(6, smallService.getUnwrapCount());
+    }
+
+    /**
+     * Тест, что ключ одного пользователя нельзя подставить другому
+     */
+    @Test
+    void testWrappedKeyIsBoundToUser() {
+        User owner = new User(1L);
+        dataKeyService.getDataKey(owner);
+        User other = new User(2L);
+        other.setDataKey(owner.getDataKey());
+        other.setMasterKeyId(1);
+
+        Assertions.assertThrows(DecryptException.class, () -> newService(DataSize.ofKilobytes(64)).getDataKey(other));
+    }
+
+    /**
+     * Тест, что ключ, зашифрованный незаданным мастер-ключом, не расшифровывается
+     */
+    @Test
+    void testUnknownMasterKey() {
+        DataKeyService rotated = new DataKeyService(userRepository, KEY, 2,
+                "2:ND4WJ7XKQ2M9P8R5T6V3Y1Z0A2B4C6E8", DataSize.ofKilobytes(64));
+        User user = new User(1L);
+        rotated.getDataKey(user);
+
+        Assertions.assertEquals(2, user.getMasterKeyId());
+        Assertions.assertThrows(DecryptException.class, () -> newService(DataSize.ofKilobytes(64)).getDataKey(user));
+    }
+
+    private DataKeyService newService(DataSize cacheMaxSize) {
+        return new DataKeyService(userRepository, KEY, 1, "", cacheMaxSize);
+    }
+}
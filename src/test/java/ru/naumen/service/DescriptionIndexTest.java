@@ -0,0 +1,240 @@
+package ru.naumen.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import ru.naumen.cache.PageCursor;
+import ru.naumen.model.User;
+import ru.naumen.model.UserPassword;
+import ru.naumen.repository.PasswordDescription;
+import ru.naumen.repository.UserPasswordRepository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Класс модульных тестов для DescriptionIndex
+ */
+class DescriptionIndexTest {
+
+    private static final long USER_ID = 12345L;
+
+    private static final UUID MAIL = new UUID(0L, 1L);
+    private static final UUID EXAMPLE = new UUID(0L, 2L);
+    private static final UUID BANK = new UUID(0L, 3L);
+    private static final UUID EXAMPLE_COPY = new UUID(0L, 4L);
+
+    @Mock
+    private UserPasswordRepository userPasswordRepository;
+
+    private DescriptionIndex descriptionIndex;
+
+    /**
+     * Создаёт индекс пользователя с четырьмя паролями
+     */
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        Mockito.when(userPasswordRepository.findDescriptionsByUserId(USER_ID)).thenReturn(List.of(
+                new Row(MAIL, "Mail.ru"),
+                new Row(EXAMPLE, "example.com"),
+                new Row(BANK, "Мой Банк"),
+                new Row(EXAMPLE_COPY, "example.com")));
+        descriptionIndex = new DescriptionIndex(userPasswordRepository, new SortEngine(null, "ru"), false, 2);
+    }
+
+    /**
+     * Тест поиска части описания без учёта регистра в порядке описания и uuid
+     */
+    @Test
+    void testFindSubstring() {
+        Assertions.assertEquals(List.of(EXAMPLE, EXAMPLE_COPY), find("AMP"));
+        Assertions.assertEquals(List.of(BANK), find("банк"));
+        Assertions.assertEquals(List.of(), find("xyz"));
+    }
+
+    /**
+     * Тест запроса короче триграммы: описания сравниваются без учёта регистра, как в /sort
+     */
+    @Test
+    void testFindShortQuery() {
+        Assertions.assertEquals(List.of(EXAMPLE, EXAMPLE_COPY, MAIL), find("m"));
+    }
+
+    /**
+     * Тест поиска по началу слова и слову целиком
+     */
+    @Test
+    void testFindPrefixAndWord() {
+        Assertions.assertEquals(List.of(MAIL), find("ru*"));
+        Assertions.assertEquals(List.of(), find("ai*"));
+        Assertions.assertEquals(List.of(EXAMPLE, EXAMPLE_COPY), find("\"com\""));
+        Assertions.assertEquals(List.of(), find("\"exam\""));
+    }
+
+    /**
+     * Тест страниц после и перед ключом записи
+     */
+    @Test
+    void testFindPages() {
+        PageCursor.Key example = new PageCursor.Key("example.com", EXAMPLE);
+
+        Assertions.assertEquals(List.of(EXAMPLE), descriptionIndex.find(USER_ID, SearchQuery.parse("e"), null, true, 1));
+        Assertions.assertEquals(List.of(EXAMPLE_COPY),
+                descriptionIndex.find(USER_ID, SearchQuery.parse("e"), example, true, 10));
+        Assertions.assertEquals(List.of(MAIL),
+                descriptionIndex.find(USER_ID, SearchQuery.parse("ma"), example, true, 10));
+        Assertions.assertEquals(List.of(EXAMPLE, EXAMPLE_COPY), descriptionIndex.find(USER_ID,
+                SearchQuery.parse("e"), new PageCursor.Key("Mail.ru", MAIL), false, 10));
+    }
+
+    /**
+     * Тест, что выдача упорядочена, как /sort по описанию: по правилам русского алфавита, ё рядом с е,
+     * а страницы по ключу следуют тому же порядку
+     */
+    @Test
+    void testFindOrderMatchesSort() {
+        List<String> descriptions = List.of("ёлка банк", "Банк", "яблоко банк", "елка банк", "банк", "Bank банк");
+        List<PasswordDescription> rows = new ArrayList<>();
+        List<StoredPassword> passwords = new ArrayList<>();
+        for (int i = 0; i < descriptions.size(); i++) {
+            rows.add(new Row(new UUID(0L, i), descriptions.get(i)));
+            passwords.add(StoredPassword.of(new UserPassword(new UUID(0L, i), descriptions.get(i), null,
+                    new User(USER_ID), LocalDate.of(2024, 1, 1))));
+        }
+        Mockito.when(userPasswordRepository.findDescriptionsByUserId(USER_ID)).thenReturn(rows);
+        List<UUID> sorted = new ArrayList<>();
+        for (StoredPassword password : new SortEngine(null, "ru")
+                .sort(passwords, new User(USER_ID), SortType.BY_DESCRIPTION).passwords()) {
+            sorted.add(password.uuid());
+        }
+
+        Assertions.assertEquals(sorted, find("банк"));
+        PageCursor.Key third = new PageCursor.Key(descriptions.get((int) sorted.get(2).getLeastSignificantBits()),
+                sorted.get(2));
+        Assertions.assertEquals(sorted.subList(3, 6),
+                descriptionIndex.find(USER_ID, SearchQuery.parse("банк"), third, true, 10));
+        Assertions.assertEquals(sorted.subList(0, 2),
+                descriptionIndex.find(USER_ID, SearchQuery.parse("банк"), third, false, 10));
+    }
+
+    /**
+     * Тест, что индекс меняется вместе с паролями и загружается из БД один раз
+     */
+    @Test
+    void testIndexFollowsChanges() {
+        find("mail");
+        UUID added = new UUID(0L, 5L);
+
+        descriptionIndex.put(USER_ID, added, "Почта mail");
+        descriptionIndex.put(USER_ID, MAIL, "yandex");
+        descriptionIndex.remove(USER_ID, EXAMPLE);
+
+        Assertions.assertEquals(List.of(added), find("mail"));
+        Assertions.assertEquals(List.of(MAIL), find("yandex"));
+        Assertions.assertEquals(List.of(EXAMPLE_COPY), find("example"));
+        Mockito.verify(userPasswordRepository, Mockito.times(1)).findDescriptionsByUserId(USER_ID);
+    }
+
+    /**
+     * Тест, что изменения незагруженного индекса не создают его: он будет прочитан из БД
+     */
+    @Test
+    void testChangesBeforeLoadAreIgnored() {
+        descriptionIndex.put(USER_ID, new UUID(0L, 5L), "mail");
+
+        Assertions.assertEquals(0, descriptionIndex.indexedUsers());
+        Assertions.assertEquals(List.of(MAIL), find("mail"));
+    }
+
+    /**
+     * Тест, что индекс, во время чтения которого пароли изменились, используется для поиска,
+     * но не сохраняется
+     */
+    @Test
+    void testChangeDuringLoad() {
+        Mockito.when(userPasswordRepository.findDescriptionsByUserId(USER_ID))
+                .thenAnswer(invocation -> {
+                    descriptionIndex.remove(USER_ID, BANK);
+                    return List.of(new Row(BANK, "Мой Банк"));
+                })
+                .thenReturn(List.of());
+
+        Assertions.assertEquals(List.of(BANK), find("банк"));
+        Assertions.assertEquals(0, descriptionIndex.indexedUsers());
+        Assertions.assertEquals(List.of(), find("банк"));
+        Assertions.assertEquals(1, descriptionIndex.indexedUsers());
+    }
+
+    /**
+     * Тест вытеснения индекса пользователя, к которому дольше всех не обращались
+     */
+    @Test
+    void testEviction() {
+        Mockito.when(userPasswordRepository.findDescriptionsByUserId(Mockito.anyLong())).thenReturn(List.of());
+
+        descriptionIndex.find(1L, SearchQuery.parse("mail"), null, true, 10);
+        descriptionIndex.find(2L, SearchQuery.parse("mail"), null, true, 10);
+        descriptionIndex.find(1L, SearchQuery.parse("mail"), null, true, 10);
+        descriptionIndex.find(3L, SearchQuery.parse("mail"), null, true, 10);
+        descriptionIndex.find(1L, SearchQuery.parse("mail"), null, true, 10);
+        descriptionIndex.find(2L, SearchQuery.parse("mail"), null, true, 10);
+
+        Assertions.assertEquals(2, descriptionIndex.indexedUsers());
+        Mockito.verify(userPasswordRepository, Mockito.times(1)).findDescriptionsByUserId(1L);
+        Mockito.verify(userPasswordRepository, Mockito.times(2)).findDescriptionsByUserId(2L);
+    }
+
+    /**
+     * Тест поиска с опечатками: сначала пароли с большим количеством похожих слов, затем с меньшим расстоянием
+     */
+    @Test
+    void testFindSimilar() {
+        Assertions.assertEquals(List.of(EXAMPLE, EXAMPLE_COPY), descriptionIndex.findSimilar(USER_ID, "exampel", 10));
+        Assertions.assertEquals(List.of(BANK), descriptionIndex.findSimilar(USER_ID, "банг", 10));
+        Assertions.assertEquals(List.of(EXAMPLE, EXAMPLE_COPY, MAIL),
+                descriptionIndex.findSimilar(USER_ID, "meil com", 10));
+        Assertions.assertEquals(List.of(MAIL, EXAMPLE), descriptionIndex.findSimilar(USER_ID, "meil.ru com", 2));
+        Assertions.assertEquals(List.of(), descriptionIndex.findSimilar(USER_ID, "xyz", 10));
+    }
+
+    /**
+     * Тест, что слова для поиска с опечатками обновляются после изменения паролей
+     */
+    @Test
+    void testFindSimilarAfterChange() {
+        Assertions.assertEquals(List.of(), descriptionIndex.findSimilar(USER_ID, "gogle", 10));
+        UUID google = new UUID(0L, 5L);
+
+        descriptionIndex.put(USER_ID, google, "google.com");
+        descriptionIndex.remove(USER_ID, MAIL);
+
+        Assertions.assertEquals(List.of(google), descriptionIndex.findSimilar(USER_ID, "gogle", 10));
+        Assertions.assertEquals(List.of(), descriptionIndex.findSimilar(USER_ID, "meil", 10));
+    }
+
+    private List<UUID> find(String request) {
+        return descriptionIndex.find(USER_ID, SearchQuery.parse(request), null, true, 10);
+    }
+
+    /**
+     * Строка результата запроса описаний
+     */
+    private record Row(UUID uuid, String description) implements PasswordDescription {
+
+        @Override
+        public UUID getUuid() {
+            return uuid;
+        }
+
+        @Override
+        public String getDescription() {
+            return description;
+        }
+    }
+}
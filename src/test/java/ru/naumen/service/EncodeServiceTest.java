@@ -3,6 +3,15 @@ package ru.naumen.service;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import ru.naumen.exception.DecryptException;
+import ru.naumen.model.UserPassword;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Класс модульных тестов для CommandService
@@ -44,4 +53,146 @@ public class EncodeServiceTest {
         Assertions.assertNotNull(decryptedText);
         Assertions.assertEquals(expectedText, decryptedText);
     }
+
+    /**
+     * Тест расшифрования прежнего формата одним набором буферов: записи разной длины с любым выравниванием
+     * base64 подряд, пробелы на месте '+' и некорректный base64
+     */
+    @Test
+    public void decryptLegacyReusesBuffersTest() {
+        List<UserPassword> passwords = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int length = 40; length >= 0; length--) {
+            String plainText = "пароль-".repeat(length / 7 + 1).substring(0, length);
+            passwords.add(new UserPassword("site", encodeService.encryptData(plainText), null));
+            expected.add(plainText);
+        }
+        passwords.add(new UserPassword("site", "bQd 8RRXsEd8DaOsQFkGmw==", null));
+        expected.add("text123");
+
+        Assertions.assertEquals(expected, encodeService.decryptPasswords(passwords));
+        Assertions.assertThrows(DecryptException.class, () -> encodeService.decryptData("bQd+8RRXsEd8DaOsQFkGmw="));
+        Assertions.assertThrows(DecryptException.class, () -> encodeService.decryptData("bQd*8RRXsEd8DaOsQFkGmw=="));
+    }
+
+    /**
+     * Тест, что после ошибки расшифрования сервис продолжает работать
+     */
+    @Test
+    public void decryptAfterFailureTest() {
+        Assertions.assertThrows(DecryptException.class, () -> encodeService.decryptData("AAAAAAAAAAAAAAAAAAAAAA=="));
+
+        Assertions.assertEquals("text123", encodeService.decryptData("bQd+8RRXsEd8DaOsQFkGmw=="));
+    }
+
+    /**
+     * Тест шифрования и расшифрования из многих виртуальных потоков одновременно
+     */
+    @Test
+    public void concurrentRoundTripTest() throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int task = 0; task < 200; task++) {
+                String plainText = "пароль-" + task;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        Assertions.assertEquals(plainText, encodeService.decryptData(encodeService.encryptData(plainText)));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+    }
+
+    /**
+     * Тест расшифрования списка: порядок сохраняется, пробелы на месте '+' допускаются
+     */
+    @Test
+    public void decryptAllTest() {
+        List<String> decrypted = encodeService.decryptAll(
+                List.of("bQd+8RRXsEd8DaOsQFkGmw==", encodeService.encryptData("второй"), "bQd 8RRXsEd8DaOsQFkGmw=="));
+
+        Assertions.assertEquals(List.of("text123", "второй", "text123"), decrypted);
+        Assertions.assertTrue(encodeService.decryptAll(List.of()).isEmpty());
+    }
+
+    /**
+     * Тест параллельного расшифрования длинного списка
+     */
+    @Test
+    public void decryptAllParallelTest() {
+        EncodeService parallelService = new EncodeService("BC1D9VG58QKH6CYK99DGB1UBESR8VRXD", 4);
+        List<String> plain = new ArrayList<>();
+        List<String> encrypted = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            plain.add("пароль-" + i);
+            encrypted.add(parallelService.encryptData("пароль-" + i));
+        }
+
+        Assertions.assertEquals(plain, parallelService.decryptAll(encrypted));
+    }
+
+    /**
+     * Тест, что ошибка в одной строке списка приводит к DecryptException
+     */
+    @Test
+    public void decryptAllFailureTest() {
+        EncodeService parallelService = new EncodeService("BC1D9VG58QKH6CYK99DGB1UBESR8VRXD", 4);
+        List<String> encrypted = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            encrypted.add(i == 57 ? "не base64" : parallelService.encryptData("пароль"));
+        }
+
+        Assertions.assertThrows(DecryptException.class, () -> parallelService.decryptAll(encrypted));
+        Assertions.assertThrows(DecryptException.class, () -> encodeService.decryptAll(encrypted));
+    }
+
+    /**
+     * Тест шифрования в формате AES-GCM: заголовок с версией, случайный nonce
+     */
+    @Test
+    public void encryptGcmTest() {
+        byte[] first = encodeService.encrypt("text123");
+        byte[] second = encodeService.encrypt("text123");
+
+        Assertions.assertEquals(EncodeService.FORMAT_GCM_V1, first[0]);
+        Assertions.assertEquals(1 + 12 + "text123".length() + 16, first.length);
+        Assertions.assertFalse(Arrays.equals(first, second));
+        Assertions.assertEquals("text123", encodeService.decrypt(first));
+        Assertions.assertEquals("пароль", encodeService.decrypt(encodeService.encrypt("пароль")));
+    }
+
+    /**
+     * Тест, что изменённый шифротекст, заголовок или другой ключ не расшифровываются
+     */
+    @Test
+    public void decryptGcmTamperedTest() {
+        byte[] secret = encodeService.encrypt("text123");
+
+        byte[] tamperedBody = secret.clone();
+        tamperedBody[tamperedBody.length - 1] ^= 1;
+        byte[] tamperedVersion = secret.clone();
+        tamperedVersion[0] = 2;
+        EncodeService otherKey = new EncodeService("CC1D9VG58QKH6CYK99DGB1UBESR8VRXD");
+
+        Assertions.assertThrows(DecryptException.class, () -> encodeService.decrypt(tamperedBody));
+        Assertions.assertThrows(DecryptException.class, () -> encodeService.decrypt(tamperedVersion));
+        Assertions.assertThrows(DecryptException.class, () -> otherKey.decrypt(secret));
+        Assertions.assertEquals("text123", encodeService.decrypt(secret));
+    }
+
+    /**
+     * Тест расшифрования паролей обоих форматов одним списком
+     */
+    @Test
+    public void decryptPasswordsMixedFormatsTest() {
+        UserPassword legacy = new UserPassword("site1", "bQd+8RRXsEd8DaOsQFkGmw==", null);
+        UserPassword current = new UserPassword("site2", null, null);
+        current.setSecret(encodeService.encrypt("новый"));
+
+        Assertions.assertEquals(List.of("text123", "новый"), encodeService.decryptPasswords(List.of(legacy, current)));
+    }
 }
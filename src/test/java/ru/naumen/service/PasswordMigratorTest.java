@@ -0,0 +1,156 @@
+package ru.naumen.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
+import org.springframework.util.unit.DataSize;
+import ru.naumen.model.User;
+import ru.naumen.model.UserPassword;
+import ru.naumen.repository.UserPasswordRepository;
+import ru.naumen.repository.UserRepository;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Класс модульных тестов для PasswordMigrator
+ */
+class PasswordMigratorTest {
+
+    private static final String KEY = "BC1D9VG58QKH6CYK99DGB1UBESR8VRXD";
+    private static final String NEW_KEY = "ND4WJ7XKQ2M9P8R5T6V3Y1Z0A2B4C6E8";
+
+    @Mock
+    private UserPasswordRepository userPasswordRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PasswordVault passwordVault;
+
+    private final User owner = new User(12345L);
+
+    private EncodeService encodeService;
+
+    private PasswordMigrator passwordMigrator;
+
+    /**
+     * Инициализирует моки и создаёт мигратор с порцией из двух записей
+     */
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        Mockito.when(userRepository.initDataKey(
+                        ArgumentMatchers.anyLong(), ArgumentMatchers.any(), ArgumentMatchers.anyInt()))
+                .thenReturn(1);
+        DataKeyService dataKeyService = new DataKeyService(userRepository, KEY, 1, "", DataSize.ofKilobytes(64));
+        encodeService = new EncodeService(KEY, 256, dataKeyService);
+        passwordMigrator = new PasswordMigrator(userPasswordRepository, userRepository, encodeService,
+                dataKeyService, passwordVault, true, 2, Duration.ZERO);
+    }
+
+    /**
+     * Тест перешифрования порции: новый формат расшифровывается в исходный пароль
+     */
+    @Test
+    void testMigrateBatch() {
+        UserPassword first = legacyPassword(new UUID(0L, 1L), "pass1");
+        UserPassword second = legacyPassword(new UUID(0L, 2L), "pass2");
+        Mockito.when(userPasswordRepository.findByPasswordIsNotNullAndUuidGreaterThanOrderByUuidAsc(
+                        PasswordMigrator.FIRST_UUID, Limit.of(2)))
+                .thenReturn(List.of(first, second));
+        Mockito.when(userPasswordRepository.replaceLegacyPassword(
+                        ArgumentMatchers.any(), ArgumentMatchers.anyString(), ArgumentMatchers.any()))
+                .thenReturn(true);
+
+        UUID lastUuid = passwordMigrator.migrateBatch(PasswordMigrator.FIRST_UUID);
+
+        Assertions.assertEquals(new UUID(0L, 2L), lastUuid);
+        Assertions.assertEquals(2, passwordMigrator.getMigratedCount());
+        Mockito.verify(userPasswordRepository).replaceLegacyPassword(
+                ArgumentMatchers.eq(new UUID(0L, 1L)),
+                ArgumentMatchers.eq(first.getPassword()),
+                ArgumentMatchers.argThat(secret -> encodeService.decrypt(secret, owner).equals("pass1")));
+        Mockito.verify(passwordVault, Mockito.times(2)).invalidate(12345L);
+    }
+
+    /**
+     * Тест, что нерасшифровываемая запись пропускается, а запись, изменённая пользователем, не считается
+     */
+    @Test
+    void testMigrateBatchSkipsBrokenAndChanged() {
+        UserPassword broken = new UserPassword(new UUID(0L, 1L), "site", "не base64", null, LocalDate.now());
+        UserPassword changed = legacyPassword(new UUID(0L, 2L), "pass2");
+        Mockito.when(userPasswordRepository.findByPasswordIsNotNullAndUuidGreaterThanOrderByUuidAsc(
+                        PasswordMigrator.FIRST_UUID, Limit.of(2)))
+                .thenReturn(List.of(broken, changed));
+        Mockito.when(userPasswordRepository.replaceLegacyPassword(
+                        ArgumentMatchers.any(), ArgumentMatchers.anyString(), ArgumentMatchers.any()))
+                .thenReturn(false);
+
+        passwordMigrator.migrateBatch(PasswordMigrator.FIRST_UUID);
+
+        Assertions.assertEquals(1, passwordMigrator.getFailedCount());
+        Assertions.assertEquals(0, passwordMigrator.getMigratedCount());
+        Mockito.verify(userPasswordRepository, Mockito.never()).replaceLegacyPassword(
+                ArgumentMatchers.eq(new UUID(0L, 1L)), ArgumentMatchers.anyString(), ArgumentMatchers.any());
+    }
+
+    /**
+     * Тест, что перешифрование идёт порциями до последней неполной
+     */
+    @Test
+    void testMigrateAll() throws InterruptedException {
+        Mockito.when(userPasswordRepository.countByPasswordIsNotNull()).thenReturn(3L);
+        Mockito.when(userPasswordRepository.findByPasswordIsNotNullAndUuidGreaterThanOrderByUuidAsc(
+                        PasswordMigrator.FIRST_UUID, Limit.of(2)))
+                .thenReturn(List.of(legacyPassword(new UUID(0L, 1L), "pass1"),
+                        legacyPassword(new UUID(0L, 2L), "pass2")));
+        Mockito.when(userPasswordRepository.findByPasswordIsNotNullAndUuidGreaterThanOrderByUuidAsc(new UUID(0L, 2L), Limit.of(2)))
+                .thenReturn(List.of(legacyPassword(new UUID(0L, 3L), "pass3")));
+        Mockito.when(userPasswordRepository.replaceLegacyPassword(
+                        ArgumentMatchers.any(), ArgumentMatchers.anyString(), ArgumentMatchers.any()))
+                .thenReturn(true);
+
+        passwordMigrator.migrateAll();
+
+        Assertions.assertEquals(3, passwordMigrator.getMigratedCount());
+    }
+
+    /**
+     * Тест, что после смены мастер-ключа ключи пользователей перешифровываются, а пароли остаются читаемыми
+     */
+    @Test
+    void testRewrapBatch() {
+        byte[] secret = encodeService.encrypt("pass1", owner);
+        DataKeyService rotated = new DataKeyService(userRepository, KEY, 2, "2:" + NEW_KEY, DataSize.ofKilobytes(64));
+        PasswordMigrator rotatingMigrator = new PasswordMigrator(userPasswordRepository, userRepository,
+                new EncodeService(KEY, 256, rotated), rotated, passwordVault, true, 2, Duration.ZERO);
+        Mockito.when(userRepository.findByMasterKeyIdNotAndIdGreaterThanOrderByIdAsc(2, Long.MIN_VALUE, Limit.of(2)))
+                .thenReturn(List.of(owner));
+        Mockito.when(userRepository.rewrapDataKey(
+                        ArgumentMatchers.eq(12345L), ArgumentMatchers.eq(1), ArgumentMatchers.any(), ArgumentMatchers.eq(2)))
+                .thenReturn(1);
+
+        Long lastId = rotatingMigrator.rewrapBatch(Long.MIN_VALUE);
+
+        Assertions.assertNull(lastId);
+        Assertions.assertEquals(1, rotatingMigrator.getRewrappedCount());
+        Assertions.assertEquals(2, owner.getMasterKeyId());
+        DataKeyService newKeyOnly = new DataKeyService(userRepository, NEW_KEY, 1, "2:" + NEW_KEY,
+                DataSize.ofKilobytes(64));
+        Assertions.assertEquals("pass1", new EncodeService(KEY, 256, newKeyOnly).decrypt(secret, owner));
+    }
+
+    private UserPassword legacyPassword(UUID uuid, String password) {
+        return new UserPassword(uuid, "site", encodeService.encryptData(password), owner, LocalDate.now());
+    }
+}
@@ -5,12 +5,16 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.RepeatedTest;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import ru.naumen.cache.PageCursor;
 import ru.naumen.exception.*;
 import ru.naumen.model.User;
 import ru.naumen.model.UserPassword;
 import ru.naumen.repository.UserPasswordRepository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -28,6 +32,12 @@ class PasswordServiceTest {
     @Mock
     private UserPasswordRepository userPasswordRepository;
 
+    @Mock
+    private DescriptionIndex descriptionIndex;
+
+    @Mock
+    private PasswordVault passwordVault;
+
     @InjectMocks
     private PasswordService passwordService;
 
@@ -45,17 +55,21 @@ class PasswordServiceTest {
     @Test
     void testCreateUserPassword() throws UserNotFoundException {
         String password = "pass";
-        String encodedPassword = "encPass";
+        byte[] secret = {1, 2, 3};
         String description = "desc";
         long userId = 12345L;
 
-        Mockito.when(encodeService.encryptData(password)).thenReturn(encodedPassword);
-        Mockito.when(userService.getUserById(userId)).thenReturn(new User());
+        User user = new User(userId);
+        Mockito.when(encodeService.encrypt(password, user)).thenReturn(secret);
+        Mockito.when(userService.getUserById(userId)).thenReturn(user);
 
         passwordService.createUserPassword(password, description, userId);
 
         Mockito.verify(userPasswordRepository, Mockito.times(1))
-                .save(ArgumentMatchers.any(UserPassword.class));
+                .save(ArgumentMatchers.argThat(saved -> saved.getSecret() == secret && saved.getPassword() == null));
+        Mockito.verify(descriptionIndex).put(ArgumentMatchers.eq(userId), ArgumentMatchers.any(),
+                ArgumentMatchers.eq(description));
+        Mockito.verify(passwordVault).invalidate(userId);
     }
 
     /**
@@ -66,7 +80,7 @@ class PasswordServiceTest {
         long userId = 12345L;
         List<UserPassword> passwords = List.of(new UserPassword(), new UserPassword());
 
-        Mockito.when(userPasswordRepository.findByUserId(userId)).thenReturn(passwords);
+        Mockito.when(userPasswordRepository.findByUserIdOrderByCreatedAtAscUuidAsc(userId)).thenReturn(passwords);
 
         List<UserPassword> result = passwordService.getUserPasswords(userId);
 
@@ -74,59 +88,94 @@ class PasswordServiceTest {
     }
 
     /**
-     * Тест поиска паролей по частичному описанию
+     * Тест списка, страницы, количества и выбора по номеру из снимка хранилища без запросов к БД
      */
     @Test
-    void testGetUserPasswordsWithPartialDescription() {
+    void testVaultSnapshot() throws IncorrectSortTypeException, PasswordNotFoundException {
         long userId = 12345L;
-        String searchRequest = "mat";
-        List<UserPassword> passwords = List.of(
-                new UserPassword(UUID.randomUUID().toString(), "match", "pass1", new User(), LocalDate.now()),
-                new UserPassword(UUID.randomUUID().toString(), "mat123", "pass2", new User(), LocalDate.now())
-        );
-
-        Mockito.when(userPasswordRepository.findByDescriptionContainsIgnoreCaseAndUserId(searchRequest, userId))
-                .thenReturn(passwords);
-
-        List<UserPassword> result = passwordService.getUserPasswordsWithPartialDescription(userId, searchRequest);
-
-        Assertions.assertEquals(passwords, result);
+        UserPassword first = new UserPassword(new UUID(0L, 1L), "b", "pass1", new User(), LocalDate.of(2022, 1, 1));
+        UserPassword second = new UserPassword(new UUID(0L, 2L), "a", "pass2", new User(), LocalDate.of(2021, 1, 1));
+        first.setCreatedAt(LocalDateTime.of(2024, 1, 1, 0, 0));
+        second.setCreatedAt(LocalDateTime.of(2024, 1, 2, 0, 0));
+        Mockito.when(passwordVault.get(userId))
+                .thenReturn(new PasswordVault.Snapshot(List.of(first, second), new SortEngine(encodeService, "ru")));
+
+        Assertions.assertEquals(List.of(first, second), passwordService.getUserPasswords(userId));
+        Assertions.assertEquals(List.of(second, first), passwordService.getPasswordPage(userId,
+                SortOrder.ascending(SortType.BY_DESCRIPTION), null, null, true, 10));
+        Assertions.assertEquals(List.of(first), passwordService.getPasswordPage(userId,
+                SortOrder.ascending(SortType.BY_DATE), null, passwordService.getPageKey(second, SortType.BY_DATE),
+                true, 10));
+        Assertions.assertEquals(second, passwordService.findPasswordByIndex(userId, 2));
+        Assertions.assertThrows(PasswordNotFoundException.class, () -> passwordService.findPasswordByIndex(userId, 3));
+        Assertions.assertTrue(passwordService.isValidPasswordIndex(2, userId));
+        Assertions.assertFalse(passwordService.isValidPasswordIndex(3, userId));
+        Mockito.verifyNoInteractions(userPasswordRepository);
     }
 
     /**
-     * Тест получения отсортированных паролей по дате
+     * Тест страницы поиска: uuid страницы находятся по индексу описаний, загружаются только они,
+     * порядок индекса сохраняется, а пароль, удалённый после поиска, пропускается
      */
     @Test
-    void testGetUserPasswordsSorted_ByDate() throws IncorrectSortTypeException {
+    void testGetPasswordPage_SearchUsesIndex() throws IncorrectSortTypeException {
         long userId = 12345L;
-        List<UserPassword> passwords = List.of(
-                new UserPassword("uuid", "desc1", "pass1", new User(), LocalDate.of(2021, 1, 1)),
-                new UserPassword("uuid", "desc2", "pass2", new User(), LocalDate.of(2023, 1, 1))
-        );
+        UserPassword first = new UserPassword(new UUID(0L, 1L), "a example", "pass1", new User(), LocalDate.now());
+        UserPassword second = new UserPassword(new UUID(0L, 2L), "b example", "pass2", new User(), LocalDate.now());
+        List<UUID> uuids = List.of(first.getUuid(), new UUID(0L, 3L), second.getUuid());
+        PageCursor.Key key = new PageCursor.Key("a", new UUID(0L, 9L));
 
-        Mockito.when(userPasswordRepository.findByUserIdOrderByLastModifyDate(userId)).thenReturn(passwords);
+        Mockito.when(descriptionIndex.find(userId, new SearchQuery("exa", SearchQuery.Mode.PREFIX), key, true, 11))
+                .thenReturn(uuids);
+        Mockito.when(userPasswordRepository.findAllById(uuids)).thenReturn(List.of(second, first));
 
-        List<UserPassword> result = passwordService.getUserPasswordsSorted(userId, SortType.BY_DATE);
+        List<UserPassword> result = passwordService.getPasswordPage(userId,
+                SortOrder.ascending(SortType.BY_DESCRIPTION), "Exa*", key, true, 11);
 
-        Assertions.assertEquals(passwords, result);
+        Assertions.assertEquals(List.of(first, second), result);
+        Mockito.verify(userPasswordRepository).findAllById(uuids);
+        Mockito.verifyNoMoreInteractions(userPasswordRepository);
     }
 
     /**
-     * Тест получения отсортированных паролей по описанию
+     * Тест страниц хранилища без снимка: страница любого порядка выбирается в порядке, который хранит
+     * {@link PasswordVault}, без запросов страниц к БД
      */
     @Test
-    void testGetUserPasswordsSorted_ByDescription() throws IncorrectSortTypeException {
+    void testGetPasswordPage_LargeVault() throws IncorrectSortTypeException {
         long userId = 12345L;
-        List<UserPassword> passwords = List.of(
-                new UserPassword(UUID.randomUUID().toString(), "A desc", "pass1", new User(), LocalDate.now()),
-                new UserPassword(UUID.randomUUID().toString(), "Z desc", "pass2", new User(), LocalDate.now())
-        );
+        PageCursor.Key key = new PageCursor.Key("B desc", new UUID(0L, 1L));
+        List<UserPassword> passwords = List.of(new UserPassword());
+        for (SortType sortType : SortType.values()) {
+            SortOrder sortOrder = SortOrder.descending(sortType);
+            Mockito.when(passwordVault.largePage(userId, sortOrder, key, false, 10)).thenReturn(passwords);
+
+            Assertions.assertEquals(passwords, passwordService.getPasswordPage(userId, sortOrder, null, key, false, 10));
+        }
+        Mockito.verifyNoInteractions(userPasswordRepository);
+    }
 
-        Mockito.when(userPasswordRepository.findByUserIdOrderByDescriptionAsc(userId)).thenReturn(passwords);
+    /**
+     * Тест ключа записи для сортировки по дате
+     */
+    @Test
+    void testGetPageKey_ByDate() {
+        UserPassword password = new UserPassword(new UUID(0L, 1L), "desc", "pass", new User(), LocalDate.of(2021, 1, 1));
 
-        List<UserPassword> result = passwordService.getUserPasswordsSorted(userId, SortType.BY_DESCRIPTION);
+        Assertions.assertEquals(new PageCursor.Key("2021-01-01", new UUID(0L, 1L)),
+                passwordService.getPageKey(password, SortType.BY_DATE));
+    }
 
-        Assertions.assertEquals(passwords, result);
+    /**
+     * Тест ключа записи для сортировки по надёжности: в ключ попадает оценка, а не сам пароль
+     */
+    @Test
+    void testGetPageKey_ByStrength() {
+        UserPassword password = new UserPassword(new UUID(0L, 1L), "desc", "pass", new User(), LocalDate.of(2021, 1, 1));
+        Mockito.when(encodeService.decryptPassword(password)).thenReturn("Abcdefgh1");
+
+        Assertions.assertEquals(new PageCursor.Key("54", new UUID(0L, 1L)),
+                passwordService.getPageKey(password, SortType.BY_STRENGTH));
     }
 
     /**
@@ -156,20 +205,30 @@ class PasswordServiceTest {
     }
 
     /**
-     * Тест поиска пароля по UUID
+     * Тест поиска пароля по номеру в списке: запрашивается одна запись со смещением номера
      */
     @Test
-    void testFindPasswordByUuid() throws PasswordNotFoundException {
-        String passUuid = UUID.randomUUID().toString();
-
+    void testFindPasswordByIndex() throws PasswordNotFoundException {
         User user = new User(12345L, List.of());
-        UserPassword password = new UserPassword(passUuid, "desc", "pass", user, LocalDate.of(2010, 1, 1));
+        UserPassword password = new UserPassword(new UUID(0L, 1L), "desc", "pass", user, LocalDate.of(2010, 1, 1));
+
+        Mockito.when(userPasswordRepository.findByUserIdOrderByCreatedAtAscUuidAsc(12345L, PageRequest.of(2, 1)))
+                .thenReturn(List.of(password));
 
-        Mockito.when(userPasswordRepository.findByUuid(passUuid)).thenReturn(password);
+        Assertions.assertEquals(password, passwordService.findPasswordByIndex(12345L, 3));
+    }
 
-        UserPassword expectedPass = passwordService.findPasswordByUuid(passUuid);
+    /**
+     * Тест поиска пароля по номеру вне списка
+     */
+    @Test
+    void testFindPasswordByIndex_NotFound() {
+        Mockito.when(userPasswordRepository.findByUserIdOrderByCreatedAtAscUuidAsc(
+                        ArgumentMatchers.eq(12345L), ArgumentMatchers.any(Pageable.class)))
+                .thenReturn(List.of());
 
-        Assertions.assertEquals(expectedPass, password);
+        Assertions.assertThrows(PasswordNotFoundException.class, () -> passwordService.findPasswordByIndex(12345L, 3));
+        Assertions.assertThrows(PasswordNotFoundException.class, () -> passwordService.findPasswordByIndex(12345L, 0));
     }
 
     /**
@@ -177,13 +236,16 @@ class PasswordServiceTest {
      */
     @Test
     void testDeletePassword() {
-        String uuid = UUID.randomUUID().toString();
+        UUID uuid = UUID.randomUUID();
+        UserPassword pass = new UserPassword(uuid, "site", "pass", new User(12345L, List.of()), LocalDate.now());
 
-        Mockito.when(userPasswordRepository.existsByUuid(uuid)).thenReturn(true);
+        Mockito.when(userPasswordRepository.removeByUuid(uuid)).thenReturn(true);
 
-        passwordService.deletePassword(uuid);
-
-        Mockito.verify(userPasswordRepository, Mockito.times(1)).deleteByUuid(uuid);
+        Assertions.assertTrue(passwordService.deletePassword(pass));
+        Mockito.verify(userPasswordRepository, Mockito.times(1)).removeByUuid(uuid);
+        Mockito.verify(descriptionIndex).remove(12345L, uuid);
+        Mockito.verify(passwordVault).invalidate(12345L);
+        Mockito.verifyNoMoreInteractions(userPasswordRepository);
     }
 
     /**
@@ -191,22 +253,38 @@ class PasswordServiceTest {
      */
     @Test
     void testUpdatePassword() {
-        String passUuid = UUID.randomUUID().toString();
+        UUID passUuid = UUID.randomUUID();
         User user = new User(12345L, List.of());
         UserPassword pass = new UserPassword(passUuid, "site", "pass", user, LocalDate.of(2010, 1, 1));
 
         String newPass = "newPass";
         String newDesc = "newDesc";
-        String encodedPass = "encPass";
+        byte[] secret = {1, 2, 3};
+
+        Mockito.when(encodeService.encrypt(newPass, user)).thenReturn(secret);
+        Mockito.when(userPasswordRepository.replacePassword(passUuid, newDesc, secret)).thenReturn(true);
+
+        Assertions.assertTrue(passwordService.updatePassword(pass, newDesc, newPass));
+        Mockito.verify(descriptionIndex).put(12345L, passUuid, newDesc);
+        Mockito.verify(passwordVault).invalidate(12345L);
+        Mockito.verify(userPasswordRepository).replacePassword(passUuid, newDesc, secret);
+        Mockito.verifyNoMoreInteractions(userPasswordRepository);
+    }
 
-        Mockito.when(userPasswordRepository.existsByUuid(passUuid)).thenReturn(true);
-        Mockito.when(userPasswordRepository.findByUuid(passUuid)).thenReturn(pass);
-        Mockito.when(encodeService.encryptData(newPass)).thenReturn(encodedPass);
+    /**
+     * Тест обновления пароля, который успели удалить
+     */
+    @Test
+    void testUpdatePassword_Deleted() {
+        User user = new User(12345L, List.of());
+        UserPassword pass = new UserPassword(new UUID(0L, 1L), "site", "pass", user, LocalDate.of(2010, 1, 1));
 
-        passwordService.updatePassword(passUuid, newDesc, newPass);
+        Mockito.when(encodeService.encrypt("newPass", user)).thenReturn(new byte[]{1});
 
-        Assertions.assertEquals(newDesc, pass.getDescription());
-        Assertions.assertEquals(encodedPass, pass.getPassword());
+        Assertions.assertFalse(passwordService.updatePassword(pass, null, "newPass"));
+        Mockito.verifyNoInteractions(descriptionIndex, passwordVault);
+        Mockito.verify(userPasswordRepository).replacePassword(
+                ArgumentMatchers.eq(new UUID(0L, 1L)), ArgumentMatchers.eq("site"), ArgumentMatchers.any());
     }
 
     /**
@@ -0,0 +1,305 @@
+package ru.naumen.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import ru.naumen.cache.PageCursor;
+import ru.naumen.model.User;
+import ru.naumen.model.UserPassword;
+import ru.naumen.repository.UserPasswordRepository;
+
+import java.text.Collator;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Класс модульных тестов для PasswordVault
+ */
+class PasswordVaultTest {
+
+    private static final long USER_ID = 12345L;
+
+    @Mock
+    private UserPasswordRepository userPasswordRepository;
+
+    @Mock
+    private EncodeService encodeService;
+
+    private SortEngine sortEngine;
+
+    private PasswordVault passwordVault;
+
+    /**
+     * Создаёт кэш на двух пользователей с хранилищами до трёх паролей.
+     * Пароли тестов не зашифрованы: расшифровка возвращает их как есть
+     */
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        Mockito.when(encodeService.decryptPassword(Mockito.any()))
+                .thenAnswer(invocation -> invocation.<UserPassword>getArgument(0).getPassword());
+        Mockito.when(encodeService.decryptPasswords(Mockito.any()))
+                .thenAnswer(invocation -> invocation.<List<UserPassword>>getArgument(0).stream()
+                        .map(UserPassword::getPassword)
+                        .toList());
+        sortEngine = new SortEngine(encodeService, "ru");
+        passwordVault = new PasswordVault(userPasswordRepository, sortEngine, 2, 3, 1);
+    }
+
+    /**
+     * Тест, что снимок читается из БД один раз и перечитывается после сброса
+     */
+    @Test
+    void testLoadOnceUntilInvalidated() {
+        Mockito.when(userPasswordRepository.findByUserIdOrderByCreatedAtAscUuidAsc(USER_ID))
+                .thenReturn(passwords(2), passwords(1));
+
+        Assertions.assertEquals(2, passwordVault.get(USER_ID).size());
+        Assertions.assertEquals(2, passwordVault.get(USER_ID).size());
+        passwordVault.invalidate(USER_ID);
+
+        Assertions.assertEquals(1, passwordVault.get(USER_ID).size());
+        Mockito.verify(userPasswordRepository, Mockito.times(2)).findByUserIdOrderByCreatedAtAscUuidAsc(USER_ID);
+    }
+
+    /**
+     * Тест, что снимок, во время чтения которого пароли изменились, не сохраняется
+     */
+    @Test
+    void testChangeDuringLoad() {
+        Mockito.when(userPasswordRepository.findByUserIdOrderByCreatedAtAscUuidAsc(USER_ID))
+                .thenAnswer(invocation -> {
+                    passwordVault.invalidate(USER_ID);
+                    return passwords(1);
+                })
+                .thenReturn(passwords(2));
+
+        Assertions.assertEquals(1, passwordVault.get(USER_ID).size());
+        Assertions.assertEquals(2, passwordVault.get(USER_ID).size());
+        Assertions.assertEquals(2, passwordVault.get(USER_ID).size());
+        Mockito.verify(userPasswordRepository, Mockito.times(2)).findByUserIdOrderByCreatedAtAscUuidAsc(USER_ID);
+    }
+
+    /**
+     * Тест, что для большого хранилища снимка нет: его размер узнаётся запросом количества без чтения паролей,
+     * и до изменения паролей хранилище не перечитывается
+     */
+    @Test
+    void testTooLarge() {
+        Mockito.when(userPasswordRepository.countByUserId(USER_ID)).thenReturn(4);
+
+        Assertions.assertNull(passwordVault.get(USER_ID));
+        Assertions.assertNull(passwordVault.get(USER_ID));
+        Mockito.verify(userPasswordRepository, Mockito.times(1)).countByUserId(USER_ID);
+        Mockito.verify(userPasswordRepository, Mockito.never()).findByUserIdOrderByCreatedAtAscUuidAsc(USER_ID);
+    }
+
+    /**
+     * Тест, что хранилище, выросшее между запросом количества и чтением паролей, тоже считается большим
+     */
+    @Test
+    void testGrownDuringLoad() {
+        Mockito.when(userPasswordRepository.countByUserId(USER_ID)).thenReturn(3);
+        Mockito.when(userPasswordRepository.findByUserIdOrderByCreatedAtAscUuidAsc(USER_ID)).thenReturn(passwords(4));
+
+        Assertions.assertNull(passwordVault.get(USER_ID));
+        Assertions.assertNull(passwordVault.get(USER_ID));
+        Mockito.verify(userPasswordRepository, Mockito.times(1)).findByUserIdOrderByCreatedAtAscUuidAsc(USER_ID);
+    }
+
+    /**
+     * Тест, что пароли большого хранилища читаются для страниц один раз и перечитываются после сброса
+     */
+    @Test
+    void testLargePageBuiltOnce() {
+        List<UserPassword> passwords = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            UserPassword password = new UserPassword(new UUID(0L, i), "site" + i, "a".repeat(i + 1),
+                    new User(USER_ID), LocalDate.of(2024, 1, 1));
+            password.setCreatedAt(LocalDateTime.of(2024, 1, 1, 0, 0).plusSeconds(i));
+            passwords.add(password);
+        }
+        Mockito.when(userPasswordRepository.findByUserIdOrderByCreatedAtAscUuidAsc(USER_ID)).thenReturn(passwords);
+
+        Mockito.when(userPasswordRepository.countByUserId(USER_ID)).thenReturn(4);
+        SortOrder byStrength = SortOrder.descending(SortType.BY_STRENGTH);
+
+        Assertions.assertNull(passwordVault.get(USER_ID));
+        Assertions.assertEquals(List.of(passwords.get(3), passwords.get(2)),
+                passwordVault.largePage(USER_ID, byStrength, null, true, 2));
+        PasswordService keys = new PasswordService(encodeService, null, null, null, null);
+        Assertions.assertEquals(List.of(passwords.get(1), passwords.get(0)), passwordVault.largePage(USER_ID,
+                byStrength, keys.getPageKey(passwords.get(2), SortType.BY_STRENGTH), true, 2));
+        Assertions.assertEquals(List.of(passwords.get(0), passwords.get(1)),
+                passwordVault.largePage(USER_ID, SortOrder.LIST, null, true, 2));
+        Mockito.verify(userPasswordRepository, Mockito.times(1)).findByUserIdOrderByCreatedAtAscUuidAsc(USER_ID);
+
+        passwordVault.invalidate(USER_ID);
+        passwordVault.largePage(USER_ID, byStrength, null, true, 2);
+        Mockito.verify(userPasswordRepository, Mockito.times(2)).findByUserIdOrderByCreatedAtAscUuidAsc(USER_ID);
+    }
+
+    /**
+     * Тест, что страницы по описанию большого хранилища упорядочены ключами сопоставления, как в снимке,
+     * а не посимвольно, как сравнивает строки БД: ё рядом с е, регистр не учитывается
+     */
+    @Test
+    void testLargePageDescriptionOrderMatchesSnapshot() {
+        List<UserPassword> passwords = new ArrayList<>();
+        String[] descriptions = {"яндекс", "ёлка", "банк", "apple", "Банк"};
+        for (int i = 0; i < descriptions.length; i++) {
+            UserPassword password = new UserPassword(new UUID(0L, i), descriptions[i], null, new User(USER_ID),
+                    LocalDate.of(2024, 1, 1));
+            password.setCreatedAt(LocalDateTime.of(2024, 1, 1, 0, 0).plusSeconds(i));
+            passwords.add(password);
+        }
+        Mockito.when(userPasswordRepository.countByUserId(USER_ID)).thenReturn(descriptions.length);
+        Mockito.when(userPasswordRepository.findByUserIdOrderByCreatedAtAscUuidAsc(USER_ID)).thenReturn(passwords);
+        SortOrder byDescription = SortOrder.ascending(SortType.BY_DESCRIPTION);
+
+        Assertions.assertNull(passwordVault.get(USER_ID));
+        List<UserPassword> page = passwordVault.largePage(USER_ID, byDescription, null, true, 10);
+
+        Assertions.assertEquals(List.of("apple", "Банк", "банк", "ёлка", "яндекс"),
+                page.stream().map(UserPassword::getDescription).toList());
+        Assertions.assertEquals(new PasswordVault.Snapshot(passwords, sortEngine).page(byDescription, null, true, 10),
+                page);
+    }
+
+    /**
+     * Тест вытеснения снимка пользователя, к которому дольше всех не обращались
+     */
+    @Test
+    void testEviction() {
+        Mockito.when(userPasswordRepository.findByUserIdOrderByCreatedAtAscUuidAsc(Mockito.anyLong()))
+                .thenAnswer(invocation -> passwords(1));
+
+        passwordVault.get(1L);
+        passwordVault.get(2L);
+        passwordVault.get(1L);
+        passwordVault.get(3L);
+        passwordVault.get(1L);
+        passwordVault.get(2L);
+
+        Mockito.verify(userPasswordRepository, Mockito.times(1)).findByUserIdOrderByCreatedAtAscUuidAsc(1L);
+        Mockito.verify(userPasswordRepository, Mockito.times(2)).findByUserIdOrderByCreatedAtAscUuidAsc(2L);
+    }
+
+    /**
+     * Тест, что снимок хранит копии полей: изменение прочитанной сущности и выданных паролей
+     * не меняет снимок, а каждый вызов возвращает новую сущность
+     */
+    @Test
+    void testSnapshotCopiesPasswords() {
+        List<UserPassword> passwords = passwords(2);
+        passwords.get(0).setSecret(new byte[]{1, 2, 3});
+        PasswordVault.Snapshot snapshot = new PasswordVault.Snapshot(passwords, sortEngine);
+
+        passwords.get(0).setDescription("changed");
+        passwords.get(0).getSecret()[0] = 9;
+        UserPassword first = snapshot.get(0);
+        first.setDescription("edited");
+        first.getSecret()[1] = 9;
+
+        UserPassword again = snapshot.find(passwords.get(0).getUuid());
+        Assertions.assertNotSame(first, again);
+        Assertions.assertNotSame(first.getUser(), again.getUser());
+        Assertions.assertEquals("site0", again.getDescription());
+        Assertions.assertArrayEquals(new byte[]{1, 2, 3}, again.getSecret());
+        Assertions.assertEquals(passwords.get(0).getCreatedAt(), again.getCreatedAt());
+        Assertions.assertEquals(USER_ID, again.getUser().getId());
+        Assertions.assertEquals("site0", snapshot.page(new SortOrder(SortType.BY_DESCRIPTION, false), null, true, 1)
+                .get(0).getDescription());
+    }
+
+    /**
+     * Тест, что страницы вперёд и назад по ключу проходят весь порядок сортировки без пропусков и повторов
+     * по возрастанию и по убыванию. Описания, даты и надёжность повторяются, описания различаются регистром
+     * и буквами е и ё, а uuid с установленным старшим битом сравниваются без знака
+     */
+    @Test
+    void testPages() {
+        Random random = new Random(42);
+        String[] descriptions = {"Почта", "почта", "ёлка", "Елка", "Банк", "bank", "Bank", "apple", "яндекс", null};
+        List<UserPassword> passwords = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            UserPassword password = new UserPassword(new UUID(random.nextLong(), random.nextLong()),
+                    descriptions[random.nextInt(descriptions.length)],
+                    "secret".substring(random.nextInt(4)) + (random.nextBoolean() ? "A1" : ""),
+                    new User(USER_ID), LocalDate.of(2024, 1, 1 + random.nextInt(5)));
+            password.setCreatedAt(LocalDateTime.of(2024, 1, 1, 0, 0).plusSeconds(i / 3));
+            passwords.add(password);
+        }
+        passwords.sort(order(SortType.BY_CREATION));
+        PasswordVault.Snapshot snapshot = new PasswordVault.Snapshot(passwords, sortEngine);
+        PasswordService keys = new PasswordService(encodeService, null, null, null, null);
+
+        for (SortType sortType : SortType.values()) {
+            for (boolean descending : new boolean[]{false, true}) {
+                SortOrder sortOrder = new SortOrder(sortType, descending);
+                List<UserPassword> forward = new ArrayList<>();
+                List<UserPassword> page = snapshot.page(sortOrder, null, true, 7);
+                while (!page.isEmpty()) {
+                    forward.addAll(page);
+                    page = snapshot.page(sortOrder, keys.getPageKey(page.get(page.size() - 1), sortType), true, 7);
+                }
+                List<UserPassword> expected = new ArrayList<>(passwords);
+                expected.sort(descending ? order(sortType).reversed() : order(sortType));
+                Assertions.assertEquals(expected, forward, sortOrder.toString());
+                for (int i = 1; i < forward.size(); i++) {
+                    PageCursor.Key previous = keys.getPageKey(forward.get(i - 1), sortType);
+                    Assertions.assertEquals(List.of(forward.get(i)), snapshot.page(sortOrder, previous, true, 1));
+                    Assertions.assertEquals(List.of(forward.get(i - 1)),
+                            snapshot.page(sortOrder, keys.getPageKey(forward.get(i), sortType), false, 1));
+                }
+
+                List<UserPassword> backward = new ArrayList<>();
+                page = snapshot.page(sortOrder, keys.getPageKey(forward.get(49), sortType), false, 7);
+                while (!page.isEmpty()) {
+                    backward.addAll(0, page);
+                    page = snapshot.page(sortOrder, keys.getPageKey(page.get(0), sortType), false, 7);
+                }
+                Assertions.assertEquals(forward.subList(0, 49), backward, sortOrder.toString());
+            }
+        }
+    }
+
+    /**
+     * Порядок сортировки по возрастанию: описания по правилам русского алфавита без учёта регистра,
+     * а равные по этим правилам - посимвольно
+     */
+    private static Comparator<UserPassword> order(SortType sortType) {
+        Collator collator = Collator.getInstance(Locale.forLanguageTag("ru"));
+        collator.setStrength(Collator.SECONDARY);
+        Comparator<UserPassword> order = switch (sortType) {
+            case BY_CREATION -> Comparator.comparing(UserPassword::getCreatedAt);
+            case BY_DATE -> Comparator.comparing(UserPassword::getLastModifyDate);
+            case BY_DESCRIPTION -> Comparator
+                    .comparing((UserPassword password) -> Objects.toString(password.getDescription(), ""), collator)
+                    .thenComparing(UserPassword::getDescription, Comparator.nullsFirst(Comparator.naturalOrder()));
+            case BY_STRENGTH -> Comparator.comparingInt(password -> SortEngine.strength(password.getPassword()));
+        };
+        return order.thenComparing(UserPassword::getUuid, DescriptionIndex::compareUuid);
+    }
+
+    private static List<UserPassword> passwords(int count) {
+        List<UserPassword> passwords = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            UserPassword password = new UserPassword(new UUID(0L, i), "site" + i, null, new User(USER_ID),
+                    LocalDate.of(2024, 1, 1));
+            password.setCreatedAt(LocalDateTime.of(2024, 1, 1, 0, 0).plusSeconds(i));
+            passwords.add(password);
+        }
+        return passwords;
+    }
+}
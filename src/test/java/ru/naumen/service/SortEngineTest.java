@@ -0,0 +1,117 @@
+package ru.naumen.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import ru.naumen.cache.PageCursor;
+import ru.naumen.model.User;
+import ru.naumen.model.UserPassword;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Класс модульных тестов для SortEngine
+ */
+class SortEngineTest {
+
+    private static final User OWNER = new User(1L);
+
+    @Mock
+    private EncodeService encodeService;
+
+    private SortEngine sortEngine;
+
+    /**
+     * Создаёт сортировку по правилам русского языка
+     */
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        sortEngine = new SortEngine(encodeService, "ru");
+    }
+
+    /**
+     * Тест порядка описаний: латиница перед кириллицей, регистр не учитывается, ё стоит после е,
+     * а описания, равные без учёта регистра, идут посимвольно
+     */
+    @Test
+    void testDescriptionOrder() {
+        List<StoredPassword> passwords = stored(
+                passwords("яндекс", "банк", "apple", "ёлка", "Zoo", "Банк", "елка", null));
+
+        List<String> sorted = new ArrayList<>();
+        for (StoredPassword password : sortEngine.sort(passwords, OWNER, SortType.BY_DESCRIPTION).passwords()) {
+            sorted.add(password.description());
+        }
+
+        Assertions.assertEquals(Arrays.asList(null, "apple", "Zoo", "Банк", "банк", "елка", "ёлка", "яндекс"), sorted);
+    }
+
+    /**
+     * Тест страницы по ключу описания: страница начинается сразу после записи ключа
+     * в обоих направлениях сортировки
+     */
+    @Test
+    void testDescriptionPageByKey() {
+        List<StoredPassword> passwords = stored(passwords("Банк", "apple", "яндекс"));
+        SortEngine.Ordering ordering = sortEngine.sort(passwords, OWNER, SortType.BY_DESCRIPTION);
+        SortEngine.SortKey key = sortEngine.keyOf(SortType.BY_DESCRIPTION,
+                new PageCursor.Key("Банк", passwords.get(0).uuid()));
+
+        Assertions.assertEquals(List.of(passwords.get(2)), ordering.page(key, false, true, 10));
+        Assertions.assertEquals(List.of(passwords.get(1)), ordering.page(key, true, true, 10));
+        Assertions.assertEquals(List.of(passwords.get(2)), ordering.page(key, true, false, 10));
+        Assertions.assertEquals(List.of(passwords.get(2), passwords.get(0)), ordering.page(null, true, true, 2));
+    }
+
+    /**
+     * Тест порядка по надёжности: пароли расшифровываются одним вызовом, с ключом данных владельца
+     */
+    @Test
+    void testStrengthOrder() {
+        List<UserPassword> userPasswords = passwords("a", "b", "c");
+        List<StoredPassword> passwords = stored(userPasswords);
+        Mockito.when(encodeService.decryptPasswords(userPasswords)).thenReturn(List.of("Abcdefgh1", "abc", "пароль"));
+
+        Assertions.assertEquals(List.of(passwords.get(1), passwords.get(2), passwords.get(0)),
+                sortEngine.sort(passwords, OWNER, SortType.BY_STRENGTH).passwords());
+        Mockito.verify(encodeService).decryptPasswords(userPasswords);
+        Mockito.verifyNoMoreInteractions(encodeService);
+    }
+
+    /**
+     * Тест оценки надёжности по длине и группам символов
+     */
+    @Test
+    void testStrength() {
+        Assertions.assertEquals(0, SortEngine.strength(""));
+        Assertions.assertEquals(14, SortEngine.strength("abc"));
+        Assertions.assertEquals(54, SortEngine.strength("Abcdefgh1"));
+        Assertions.assertEquals(30, SortEngine.strength("пароль"));
+        Assertions.assertEquals(SortEngine.strength("aaaaaaaa"), SortEngine.strength("zyxwvuts"));
+    }
+
+    private static List<UserPassword> passwords(String... descriptions) {
+        List<UserPassword> passwords = new ArrayList<>();
+        for (int i = 0; i < descriptions.length; i++) {
+            passwords.add(new UserPassword(new UUID(0L, i), descriptions[i], null, OWNER,
+                    LocalDate.of(2024, 1, 1)));
+        }
+        return passwords;
+    }
+
+    private static List<StoredPassword> stored(List<UserPassword> passwords) {
+        List<StoredPassword> stored = new ArrayList<>();
+        for (UserPassword password : passwords) {
+            stored.add(StoredPassword.of(password));
+        }
+        return stored;
+    }
+}